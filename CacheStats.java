@@ -0,0 +1,18 @@
+/**
+ * The {@code CacheStats} record holds the counters of the report result cache.
+ *
+ * @param hits      the number of queries answered from the cache
+ * @param misses    the number of queries that had to be computed
+ * @param evictions the number of results removed to make room for newer ones
+ * @param size      the number of results currently cached
+ * @param capacity  the maximum number of results the cache holds
+ */
+// CacheStats record is a snapshot of the report cache counters
+public record CacheStats(long hits, long misses, long evictions, int size, int capacity) {
+
+    // Method to work out the share of queries answered from the cache
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -8,14 +8,17 @@
  * - Validate the car type during object creation.
  * - Retrieve various attributes using getter methods.
  * </p>
+ * <p>
+ * A car model has no setters. Sales and price changes for a car model held by a manufacturer are made
+ * through {@code Manufacturer.recordSale} and {@code Manufacturer.repriceModel}, which keep the
+ * manufacturer's totals and indexes in step, and the view reads the new values.
+ * </p>
  */
 // CarModel class represents an individual car model its attributes describing the car
 public class CarModel {
-   private String name;
-   private double weight;
-   private double sales_price;
-   private int NSold;
-   private String type;
+   // a car model is a view over one row of a column store rather than holding its own copies
+   private final CarModelColumns columns;
+   private final int row;
 
     /**
      * Constructs a {@code CarModel} object with the specified attributes.
@@ -33,44 +36,108 @@ public class CarModel {
      */
     // Constructor to initialize a CarModel object
    public CarModel(String name, double weight, double sales_price, int NSold, String type) {
-       // Validate car type
-       /**
-        * https://www.w3schools.com/java/ref_string_equalsignorecase.asp
-        */
-       if (!type.equalsIgnoreCase("hatchback") && !type.equalsIgnoreCase("saloon") && !type.equalsIgnoreCase("estate")) {
+       // Validate car type, it is parsed once here and only its ordinal is kept
+       this(name, weight, sales_price, NSold, parseType(type));
+   }
+
+    /**
+     * Constructs a {@code CarModel} object with the specified attributes and an already parsed car type.
+     *
+     * @param name        the name of the car model
+     * @param weight      the weight of the car model in kilograms
+     * @param sales_price the sales price of the car model in GBP
+     * @param NSold       the number of units sold
+     * @param type        the type of car
+     * @throws IllegalArgumentException if the car type is null
+     */
+    // Constructor for callers that already hold a CarType
+   public CarModel(String name, double weight, double sales_price, int NSold, CarType type) {
+       if (type == null) {
+           throw new IllegalArgumentException("Invalid car type. Must be hatchback, saloon, or estate.");
+       }
+
+       // a standalone car model keeps its values in a single row of its own
+       this.columns = new CarModelColumns(1);
+       this.row = columns.add(name, weight, sales_price, NSold, type.code());
+   }
+
+    /**
+     * Constructs a {@code CarModel} view over a row that is already stored in a column store.
+     *
+     * @param columns the column store holding the car model
+     * @param row     the row index of the car model
+     */
+    // Constructor used by the column store to hand out views over its rows
+   CarModel(CarModelColumns columns, int row) {
+       this.columns = columns;
+       this.row = row;
+   }
+
+    // Method to parse and validate a car type name
+   private static CarType parseType(String type) {
+       CarType carType = CarType.parse(type);
+       if (carType == null) {
            /**
             * https://stackoverflow.com/questions/10344187/is-this-the-correct-way-to-use-an-illegalargumentexception
             *
             */
            throw new IllegalArgumentException("Invalid car type. Must be hatchback, saloon, or estate.");
        }
-
-       this.name = name;
-       this.weight = weight;
-       this.sales_price = sales_price;
-       this.NSold = NSold;
-       this.type = type;
+       return carType;
    }
 
     // Getter methods to retrieve the values of private attributes
    public String getName() {
-       return name;
+       return columns.name(row);
    }
 
    public double getWeight() {
-       return weight;
+       return columns.weight(row);
    }
 
    public double getSales_price() {
-       return sales_price;
+       return columns.price(row);
    }
 
    public int getNSold() {
-       return NSold;
+       return columns.nSold(row);
    }
 
    public String getType() {
-       return type;
+       return getCarType().getDisplayName();
+   }
+
+   public CarType getCarType() {
+       return CarType.fromCode(columns.type(row));
+   }
+
+    // Getter methods for the column store and row this car model views, used to find its manufacturer
+   CarModelColumns getColumns() {
+       return columns;
+   }
+
+   int getRow() {
+       return row;
+   }
+
+    /**
+     * Compares this car model with another object. Two car models are equal when they view the same row of
+     * the same column store, so the views a manufacturer hands out for a car model each time it is read are
+     * equal to each other, and a standalone car model is only equal to itself.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if the object views the same car model
+     */
+    // Method to compare two car model views
+   @Override
+   public boolean equals(Object o) {
+       return o instanceof CarModel other && other.columns == columns && other.row == row;
+   }
+
+    // Method to hash a car model view consistently with equals
+   @Override
+   public int hashCode() {
+       return 31 * System.identityHashCode(columns) + row;
    }
 
     public static void main(String[] args) {
@@ -0,0 +1,582 @@
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code CarModelColumns} class stores car models column by column instead of as separate objects.
+ * <p>
+ * Each attribute of a car model is kept in its own primitive array, and a car model is identified by
+ * its row index in those arrays. This keeps the data for a whole catalogue in a handful of arrays so
+ * reports can scan prices, units sold and types without following a reference per model.
+ * Names are stored as ids into a {@link StringDictionary}, so a name repeated across many car models
+ * is kept once, and the {@code String} is only created when a name is read.
+ * </p>
+ * <p>
+ * Rows are only ever appended. One thread at a time may add rows (the owning {@code Manufacturer} holds its
+ * write lock), while any number of threads read. The arrays are published through a volatile reference and
+ * the row count through a volatile size, so a reader that reads {@link #size()} first sees every row below
+ * that size fully written, in whichever generation of the arrays it reads them from.
+ * </p>
+ * <p>
+ * The units sold and sales price of an existing row can be changed, also only with the write lock held.
+ * The new value is written to the current generation of the arrays and published by the owner's version
+ * stamp, so a reader still holding an older generation keeps seeing the value from when it started.
+ * </p>
+ * <p>
+ * Columns created by {@link CarModelStorage#OFF_HEAP} keep their rows and names in {@link OffHeapRecords}
+ * instead, under the same rules. Single values are read the same way. Scans read the rows through
+ * {@link #slice(int, int, Slice)}, which hands out the arrays themselves for columns on the heap and copies
+ * off-heap rows into small reused arrays a run at a time.
+ * </p>
+ */
+// CarModelColumns class holds the car model data as parallel primitive arrays
+class CarModelColumns {
+    static final int DEFAULT_CAPACITY = 16;
+    // number of off-heap rows copied onto the heap at a time by a scan
+    private static final int SLICE_ROWS = 16_384;
+
+    // Storage class holds one generation of the arrays, replaced as a whole when the columns grow
+    private static final class Storage {
+        // one array per attribute, all indexed by the same row number
+        private final int[] nameIds;
+        private final double[] weights;
+        private final double[] prices;
+        private final int[] nSold;
+        private final byte[] types;
+
+        Storage(int[] nameIds, double[] weights, double[] prices, int[] nSold, byte[] types) {
+            this.nameIds = nameIds;
+            this.weights = weights;
+            this.prices = prices;
+            this.nSold = nSold;
+            this.types = types;
+        }
+    }
+
+    // Slice class holds the values of a run of rows as arrays, row r at index r - base()
+    static final class Slice {
+        private double[] prices;
+        private double[] weights;
+        private int[] nSold;
+        private byte[] types;
+        private int base;
+        private int end;
+        // whether the arrays belong to the slice, rather than being the columns of on-heap storage
+        private boolean copied;
+
+        // Getter methods for the arrays and the rows they hold
+        double[] prices() {
+            return prices;
+        }
+
+        double[] weights() {
+            return weights;
+        }
+
+        int[] nSold() {
+            return nSold;
+        }
+
+        byte[] types() {
+            return types;
+        }
+
+        int base() {
+            return base;
+        }
+
+        int end() {
+            return end;
+        }
+    }
+
+    // the arrays on the heap, or null when the rows are kept off-heap
+    private volatile Storage storage;
+    private volatile int size;
+
+    // the distinct names of the car models, written by the same thread that adds rows, or null when kept off-heap
+    private final StringDictionary dictionary;
+    // the rows and names kept outside the heap, or null for columns on the heap
+    private final OffHeapRecords records;
+
+    // the manufacturer whose car models these are, or null for standalone car models and batches
+    private Manufacturer manufacturer;
+
+    /**
+     * Constructs an empty {@code CarModelColumns} with a small default capacity.
+     */
+    // Constructor
+    CarModelColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty {@code CarModelColumns} able to hold {@code capacity} rows before growing.
+     *
+     * @param capacity the initial number of rows
+     */
+    CarModelColumns(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.dictionary = new StringDictionary(capacity);
+        this.records = null;
+        this.storage = new Storage(new int[capacity], new double[capacity], new double[capacity], new int[capacity], new byte[capacity]);
+    }
+
+    /**
+     * Constructs {@code CarModelColumns} over arrays that already hold {@code size} rows.
+     * The number arrays are used directly, not copied, and the names are interned.
+     *
+     * @param names   the names of the car models
+     * @param weights the weights of the car models
+     * @param prices  the sales prices of the car models
+     * @param nSold   the number of units sold of each car model
+     * @param types   the car type codes of the car models
+     * @param size    the number of rows held in the arrays
+     */
+    CarModelColumns(String[] names, double[] weights, double[] prices, int[] nSold, byte[] types, int size) {
+        this.dictionary = new StringDictionary();
+        this.records = null;
+        int[] nameIds = new int[prices.length];
+        for (int row = 0; row < size; row++) {
+            nameIds[row] = dictionary.intern(names[row]);
+        }
+        this.storage = new Storage(nameIds, weights, prices, nSold, types);
+        this.size = size;
+    }
+
+    /**
+     * Constructs empty {@code CarModelColumns} whose rows and names are kept in off-heap records.
+     *
+     * @param records the empty records to keep the rows in
+     */
+    CarModelColumns(OffHeapRecords records) {
+        this.dictionary = null;
+        this.records = records;
+    }
+
+    /**
+     * Appends a row to the columns.
+     *
+     * @param name     the name of the car model
+     * @param weight   the weight of the car model in kilograms
+     * @param price    the sales price of the car model in GBP
+     * @param units    the number of units sold
+     * @param typeCode the byte code of the car type
+     * @return the row index of the new car model
+     */
+    // Method to add a row to every column
+    int add(String name, double weight, double price, int units, byte typeCode) {
+        return addRow(intern(name), weight, price, units, typeCode);
+    }
+
+    /**
+     * Appends a row whose name is held as UTF-8 in part of a buffer, so no {@code String} is created for it.
+     *
+     * @param name     the bytes holding the name
+     * @param nameFrom the index of the first byte of the name
+     * @param nameTo   the index after the last byte of the name
+     * @param weight   the weight of the car model in kilograms
+     * @param price    the sales price of the car model in GBP
+     * @param units    the number of units sold
+     * @param typeCode the byte code of the car type
+     * @return the row index of the new car model
+     */
+    // Method to add a row read straight from a file buffer
+    int add(byte[] name, int nameFrom, int nameTo, double weight, double price, int units, byte typeCode) {
+        int nameId = records == null ? dictionary.intern(name, nameFrom, nameTo) : records.intern(name, nameFrom, nameTo);
+        return addRow(nameId, weight, price, units, typeCode);
+    }
+
+    /**
+     * Appends a copy of a row of other columns.
+     *
+     * @param other the columns holding the row
+     * @param row   the row to copy
+     * @return the row index of the new car model
+     */
+    // Method to copy a single row, copying its name as bytes
+    int add(CarModelColumns other, int row) {
+        return addRow(internFrom(other, other.nameId(row)), other.weight(row), other.price(row), other.nSold(row), other.type(row));
+    }
+
+    // Method to find the id of a name, adding it if it is new
+    private int intern(String name) {
+        if (records == null) {
+            return dictionary.intern(name);
+        }
+        if (name == null) {
+            return StringDictionary.NULL_ID;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return records.intern(bytes, 0, bytes.length);
+    }
+
+    // Method to find the id of a name held by other columns, copying its bytes when both are on the same side of the heap
+    private int internFrom(CarModelColumns other, int otherId) {
+        if (otherId == StringDictionary.NULL_ID) {
+            return StringDictionary.NULL_ID;
+        }
+        if (other.records == null) {
+            return records == null ? dictionary.intern(other.dictionary, otherId) : other.dictionary.copyTo(otherId, records);
+        }
+        return intern(other.records.name(otherId));
+    }
+
+    // Method to write a row whose name is already interned
+    private int addRow(int nameId, double weight, double price, int units, byte typeCode) {
+        int row = size;
+        if (records != null) {
+            records.set(row, nameId, weight, price, units, typeCode);
+            size = row + 1; // publishes the row to readers
+            return row;
+        }
+        Storage columns = storage;
+        if (row == columns.prices.length) {
+            columns = grow(row + 1);
+        }
+        columns.nameIds[row] = nameId;
+        columns.weights[row] = weight;
+        columns.prices[row] = price;
+        columns.nSold[row] = units;
+        columns.types[row] = typeCode;
+        size = row + 1; // publishes the row to readers
+        return row;
+    }
+
+    /**
+     * Appends every row of another column store.
+     *
+     * @param other the rows to append
+     * @return the row index of the first appended row
+     */
+    // Method to add many rows with a single grow
+    int addAll(CarModelColumns other) {
+        if (records != null || other.records != null) {
+            return addAllRows(other);
+        }
+        int firstRow = size;
+        int count = other.size;
+        Storage from = other.storage;
+        Storage columns = storage;
+        if (firstRow + count > columns.prices.length) {
+            columns = grow(firstRow + count);
+        }
+        // the other columns number their names differently, so each distinct name is looked up here once
+        int[] translated = new int[other.dictionary.size()];
+        Arrays.fill(translated, StringDictionary.NULL_ID);
+        for (int i = 0; i < count; i++) {
+            int otherId = from.nameIds[i];
+            int nameId = StringDictionary.NULL_ID;
+            if (otherId != StringDictionary.NULL_ID) {
+                nameId = translated[otherId];
+                if (nameId == StringDictionary.NULL_ID) {
+                    nameId = dictionary.intern(other.dictionary, otherId);
+                    translated[otherId] = nameId;
+                }
+            }
+            columns.nameIds[firstRow + i] = nameId;
+        }
+        System.arraycopy(from.weights, 0, columns.weights, firstRow, count);
+        System.arraycopy(from.prices, 0, columns.prices, firstRow, count);
+        System.arraycopy(from.nSold, 0, columns.nSold, firstRow, count);
+        System.arraycopy(from.types, 0, columns.types, firstRow, count);
+        size = firstRow + count;
+        return firstRow;
+    }
+
+    // Method to add many rows one at a time, when either columns are kept off-heap
+    private int addAllRows(CarModelColumns other) {
+        int firstRow = size;
+        int count = other.size;
+        // each distinct name is looked up here once, as when both columns are on the heap
+        int[] translated = new int[other.distinctNames()];
+        Arrays.fill(translated, StringDictionary.NULL_ID);
+        for (int row = 0; row < count; row++) {
+            int otherId = other.nameId(row);
+            int nameId = StringDictionary.NULL_ID;
+            if (otherId != StringDictionary.NULL_ID) {
+                nameId = translated[otherId];
+                if (nameId == StringDictionary.NULL_ID) {
+                    nameId = internFrom(other, otherId);
+                    translated[otherId] = nameId;
+                }
+            }
+            addRow(nameId, other.weight(row), other.price(row), other.nSold(row), other.type(row));
+        }
+        return firstRow;
+    }
+
+    // Setter methods for the values of a row that can change after it is added
+    void setNSold(int row, int nSold) {
+        if (records != null) {
+            records.setNSold(row, nSold);
+        } else {
+            storage.nSold[row] = nSold;
+        }
+    }
+
+    void setPrice(int row, double price) {
+        if (records != null) {
+            records.setPrice(row, price);
+        } else {
+            storage.prices[row] = price;
+        }
+    }
+
+    // Method to empty the columns so they can be reused, the arrays are kept
+    void clear() {
+        if (records != null) {
+            records.clearNames();
+        } else {
+            dictionary.clear();
+        }
+        size = 0;
+    }
+
+    // Method to enlarge every column, at least doubling so adds stay cheap on average
+    private Storage grow(int minCapacity) {
+        Storage old = storage;
+        int capacity = Math.max(minCapacity, old.prices.length * 2);
+        // readers still holding the old arrays keep seeing the same rows, so they are copied rather than moved
+        Storage grown = new Storage(Arrays.copyOf(old.nameIds, capacity), Arrays.copyOf(old.weights, capacity),
+                Arrays.copyOf(old.prices, capacity), Arrays.copyOf(old.nSold, capacity), Arrays.copyOf(old.types, capacity));
+        storage = grown;
+        return grown;
+    }
+
+    // Getter and setter methods for the manufacturer that owns the columns
+    Manufacturer getManufacturer() {
+        return manufacturer;
+    }
+
+    void setManufacturer(Manufacturer manufacturer) {
+        this.manufacturer = manufacturer;
+    }
+
+    // Getter methods for single values
+    int size() {
+        return size;
+    }
+
+    String name(int row) {
+        return nameOf(nameId(row));
+    }
+
+    double weight(int row) {
+        OffHeapRecords records = this.records;
+        return records != null ? records.weight(row) : storage.weights[row];
+    }
+
+    double price(int row) {
+        OffHeapRecords records = this.records;
+        return records != null ? records.price(row) : storage.prices[row];
+    }
+
+    int nSold(int row) {
+        OffHeapRecords records = this.records;
+        return records != null ? records.nSold(row) : storage.nSold[row];
+    }
+
+    byte type(int row) {
+        OffHeapRecords records = this.records;
+        return records != null ? records.type(row) : storage.types[row];
+    }
+
+    // Getter methods for the name ids of rows and the names they stand for, numbered per columns
+    int nameId(int row) {
+        OffHeapRecords records = this.records;
+        return records != null ? records.nameId(row) : storage.nameIds[row];
+    }
+
+    String nameOf(int nameId) {
+        return records != null ? records.name(nameId) : dictionary.get(nameId);
+    }
+
+    int distinctNames() {
+        return records != null ? records.distinctNames() : dictionary.size();
+    }
+
+    // Getter methods for where the rows are kept and the native memory they take
+    boolean isOffHeap() {
+        return records != null;
+    }
+
+    long offHeapBytes() {
+        return records != null ? records.offHeapBytes() : 0;
+    }
+
+    // Getter method for the dictionary the name ids refer to, null for off-heap columns
+    StringDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the values of a run of rows as arrays for scanning. For columns on the heap these are the
+     * columns themselves and cover the whole run. For off-heap columns up to a fixed number of rows are
+     * copied into the slice's own arrays, so a scan takes slices until {@link Slice#end()} reaches {@code to}.
+     *
+     * @param from  the first row
+     * @param to    the row after the last, read from {@link #size()} before scanning
+     * @param reuse a slice returned by an earlier call whose arrays can be reused, or {@code null}
+     * @return the slice holding rows {@code from} up to its {@code end()}
+     */
+    // Method to read a run of rows into arrays
+    Slice slice(int from, int to, Slice reuse) {
+        Slice slice = reuse == null ? new Slice() : reuse;
+        if (records == null) {
+            Storage columns = storage;
+            slice.prices = columns.prices;
+            slice.weights = columns.weights;
+            slice.nSold = columns.nSold;
+            slice.types = columns.types;
+            slice.base = 0;
+            slice.end = to;
+            slice.copied = false;
+            return slice;
+        }
+        if (!slice.copied) {
+            // never copy into arrays handed out from columns on the heap
+            slice.prices = new double[SLICE_ROWS];
+            slice.weights = new double[SLICE_ROWS];
+            slice.nSold = new int[SLICE_ROWS];
+            slice.types = new byte[SLICE_ROWS];
+            slice.copied = true;
+        }
+        slice.base = from;
+        slice.end = Math.min(to, from + SLICE_ROWS);
+        records.copyRows(from, slice.end, slice.prices, slice.weights, slice.nSold, slice.types);
+        return slice;
+    }
+
+    /**
+     * Finds the row with the highest price in a run, the first one if several share it.
+     *
+     * @param from the first row
+     * @param to   the row after the last, greater than {@code from}
+     * @return the row of the most expensive car model
+     */
+    // Method to scan the price column for the most expensive row
+    int mostExpensiveRow(int from, int to) {
+        ScanKernels kernels = ScanKernels.get();
+        if (records == null) {
+            return kernels.mostExpensiveRow(storage.prices, from, to);
+        }
+        int bestRow = -1;
+        double bestPrice = 0;
+        Slice slice = null;
+        for (int start = from; start < to; start = slice.end) {
+            slice = slice(start, to, slice);
+            int index = kernels.mostExpensiveRow(slice.prices, 0, slice.end - start);
+            if (bestRow < 0 || slice.prices[index] > bestPrice) {
+                bestRow = start + index;
+                bestPrice = slice.prices[index];
+            }
+        }
+        return bestRow;
+    }
+
+    /**
+     * Adds the revenue of every car model of a car type in a run of rows to a running total.
+     *
+     * @param from     the first row
+     * @param to       the row after the last
+     * @param typeCode the code of the car type
+     * @param revenue  the total to add to
+     */
+    // Method to scan the columns for the revenue of a car type
+    void addRevenueByType(int from, int to, byte typeCode, CompensatedSum revenue) {
+        ScanKernels kernels = ScanKernels.get();
+        Slice slice = null;
+        for (int start = from; start < to; start = slice.end) {
+            slice = slice(start, to, slice);
+            kernels.addRevenueByType(slice.prices, slice.nSold, slice.types, start - slice.base, slice.end - slice.base, typeCode, revenue);
+        }
+    }
+
+    /**
+     * Finds the rows in a run whose price is greater than a threshold, in row order.
+     *
+     * @param from  the first row
+     * @param to    the row after the last
+     * @param price the price threshold
+     * @param rows  receives the matching rows, must have room for {@code to - from} rows
+     * @return the number of rows found
+     */
+    // Method to scan the price column for the rows above a price
+    int rowsAbovePrice(int from, int to, double price, int[] rows) {
+        ScanKernels kernels = ScanKernels.get();
+        if (records == null) {
+            return kernels.rowsAbovePrice(storage.prices, from, to, price, rows);
+        }
+        int count = 0;
+        int[] found = new int[Math.min(SLICE_ROWS, Math.max(0, to - from))];
+        Slice slice = null;
+        for (int start = from; start < to; start = slice.end) {
+            slice = slice(start, to, slice);
+            int n = kernels.rowsAbovePrice(slice.prices, 0, slice.end - start, price, found);
+            for (int i = 0; i < n; i++) {
+                rows[count++] = start + found[i];
+            }
+        }
+        return count;
+    }
+
+    // Getter methods for the raw columns of columns on the heap, only rows below a size() read before the call hold data
+    double[] prices() {
+        return storage.prices;
+    }
+
+    double[] weights() {
+        return storage.weights;
+    }
+
+    int[] nSold() {
+        return storage.nSold;
+    }
+
+    int[] nameIds() {
+        return storage.nameIds;
+    }
+
+    byte[] types() {
+        return storage.types;
+    }
+
+    /**
+     * Returns a {@code CarModel} view over the given row.
+     *
+     * @param row the row index
+     * @return a {@code CarModel} reading its values from these columns
+     */
+    CarModel view(int row) {
+        return new CarModel(this, row);
+    }
+
+    /**
+     * Returns a read-only list of {@code CarModel} views, one per row present when the list is created.
+     * <p>
+     * The views are created as the list is read, so no {@code CarModel} objects are kept for stored rows.
+     * Rows added later are not part of the list, so it can be read while other threads keep adding.
+     * </p>
+     *
+     * @return a list view of the car models in these columns
+     */
+    List<CarModel> asList() {
+        int size = this.size;
+        return new AbstractList<CarModel>() {
+            @Override
+            public CarModel get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return view(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * The {@code CarModelPage} record holds one page of the car models matching a price query.
+ * <p>
+ * The car models are a read-only view over the price index, looked up as the list is read, so a page costs the
+ * same however many car models match. The first page read after the index changes also copies the index's
+ * buffer of recent changes, which is kept small, or merges it into the index when it has grown too large.
+ * </p>
+ * <p>
+ * {@code nextPageToken} continues the query after the last car model of the page: it records that car model's
+ * price and position in the index rather than a count, so car models added between pages are shown on a later
+ * page if they sort after the token and not at all otherwise, and no other car model is skipped or repeated.
+ * A car model repriced between pages moves in the order, so it can be repeated, if it moves from before the
+ * token to after it, or skipped, if it moves the other way. The token also records the price threshold of the
+ * query, and is rejected by a query with a different threshold.
+ * </p>
+ *
+ * @param carModels     the car models of the page, in the order of the query
+ * @param offset        the number of matching car models before the page
+ * @param total         the number of car models matching the query
+ * @param nextPageToken the token for the next page, or {@code null} if this is the last page
+ */
+// CarModelPage record is one page of the result of a price query
+public record CarModelPage(List<CarModel> carModels, int offset, int total, String nextPageToken) {
+    // the query's price threshold, then the price and key of the last entry of the page
+    private static final int TOKEN_BYTES = 2 * Double.BYTES + Long.BYTES;
+
+    /**
+     * Cuts a page out of the entries matching a query.
+     *
+     * @param threshold the price threshold of the query, recorded in the token
+     * @param range     the entries matching the query
+     * @param offset    the position of the first entry of the page
+     * @param limit     the most car models on the page
+     * @param resolver  turns an index key into the {@code CarModel} it identifies
+     * @return the page
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    // Method to build a page from a run of price index entries
+    static CarModelPage of(double threshold, PriceIndex.Range range, int offset, int limit,
+                           LongFunction<CarModel> resolver) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative: " + offset + ", " + limit);
+        }
+        int from = Math.min(offset, range.size());
+        int to = (int) Math.min((long) from + limit, range.size());
+        String next = to < range.size() && to > from ? token(threshold, range.price(to - 1), range.key(to - 1)) : null;
+        return new CarModelPage(range.asList(resolver).subList(from, to), from, range.size(), next);
+    }
+
+    /**
+     * Cuts the page following a token out of the entries matching a query.
+     *
+     * @param threshold the price threshold of the query
+     * @param range     the entries matching the query
+     * @param token     a token from an earlier page of the same query, or {@code null} for the first page
+     * @param limit     the most car models on the page
+     * @param resolver  turns an index key into the {@code CarModel} it identifies
+     * @return the page
+     * @throws IllegalArgumentException if the token is not valid, was made by a query with another threshold,
+     *                                  or the limit is negative
+     */
+    // Method to build the page that continues after a token
+    static CarModelPage after(double threshold, PriceIndex.Range range, String token, int limit,
+                              LongFunction<CarModel> resolver) {
+        if (token == null) {
+            return of(threshold, range, 0, limit, resolver);
+        }
+        ByteBuffer entry;
+        try {
+            entry = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+        if (entry.remaining() != TOKEN_BYTES) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+        double tokenThreshold = entry.getDouble();
+        if (Double.compare(tokenThreshold, threshold) != 0) {
+            throw new IllegalArgumentException("Page token is for car models above " + tokenThreshold
+                    + ", not above " + threshold + ".");
+        }
+        return of(threshold, range, range.positionAfter(entry.getDouble(), entry.getLong()), limit, resolver);
+    }
+
+    // Method to encode the query's threshold and the last entry of a page as a token
+    private static String token(double threshold, double price, long key) {
+        byte[] entry = ByteBuffer.allocate(TOKEN_BYTES).putDouble(threshold).putDouble(price).putLong(key).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(entry);
+    }
+
+    // Method to check whether there are car models after this page
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.Locale;
+
+/**
+ * The {@code CarModelStorage} enum lists where a manufacturer keeps its car models.
+ * <p>
+ * {@link #HEAP} keeps them in primitive arrays on the Java heap. {@link #OFF_HEAP} keeps them as fixed-width
+ * records in native memory, with their names in an off-heap string area, so a very large catalogue adds
+ * far fewer objects for the garbage collector to trace. Reports read either storage the same way.
+ * The price indexes and running totals stay on the heap, which still needs about 30 bytes per car model, and
+ * more while the indexes grow during a load, against about 100 for {@link #HEAP}. A catalogue can therefore
+ * only be a few times larger than it could be on the heap, not unbounded by it.
+ * </p>
+ * <p>
+ * Off-heap storage uses the Foreign Memory API, final since JDK 22. The storage used when none is given is set
+ * with {@code -Dcatalogue.storage=offheap}, and is {@link #HEAP} otherwise.
+ * </p>
+ */
+// CarModelStorage enum represents the on-heap and off-heap car model storage
+public enum CarModelStorage {
+    HEAP("Heap"),
+    OFF_HEAP("Off-heap");
+
+    private static final CarModelStorage DEFAULT = parseDefault(System.getProperty("catalogue.storage"));
+
+    private final String displayName;
+
+    // Constructor
+    CarModelStorage(String displayName) {
+        this.displayName = displayName;
+    }
+
+    // Getter method for the display name
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Returns the storage used when none is given, set by the {@code catalogue.storage} system property.
+     *
+     * @return the default storage
+     */
+    // Getter method for the default storage
+    public static CarModelStorage getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Converts text such as "heap" or "off-heap" into a {@code CarModelStorage}, ignoring case.
+     *
+     * @param text the text to parse
+     * @return the matching storage, or {@code null} if the text is not one
+     */
+    // Method to parse a storage name
+    public static CarModelStorage parse(String text) {
+        String name = text.trim().toUpperCase(Locale.ROOT).replace("-", "").replace("_", "").replace(" ", "");
+        for (CarModelStorage storage : values()) {
+            if (storage.name().replace("_", "").equals(name)) {
+                return storage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates empty columns kept in this storage.
+     *
+     * @param capacity the number of car models to make room for
+     * @return the new columns
+     */
+    // Method to create columns in this storage
+    CarModelColumns newColumns(int capacity) {
+        if (this == HEAP) {
+            return new CarModelColumns(capacity);
+        }
+        return new CarModelColumns(new SegmentRecords(capacity));
+    }
+
+    // Method to read the default storage from the system property
+    private static CarModelStorage parseDefault(String text) {
+        CarModelStorage storage = text == null ? null : parse(text);
+        return storage == null ? HEAP : storage;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
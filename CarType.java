@@ -0,0 +1,115 @@
+/**
+ * The {@code CarType} enum lists the types of car a {@code CarModel} can be.
+ * <p>
+ * Car types are parsed from text once, when the data is entered, and stored as their ordinal.
+ * Reports then compare ordinals instead of comparing strings for every car model.
+ * </p>
+ */
+// CarType enum represents the valid car types hatchback, saloon and estate
+public enum CarType {
+    HATCHBACK("Hatchback"),
+    SALOON("Saloon"),
+    ESTATE("Estate");
+
+    // cached copy of values() so looking up a stored ordinal does not copy the array each time
+    private static final CarType[] VALUES = values();
+
+    private final String displayName;
+
+    // Constructor
+    CarType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Returns the name of the car type as it is shown to the user, for example "Hatchback".
+     *
+     * @return the display name of the car type
+     */
+    // Getter method for the display name
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Returns the ordinal stored in the type column for this car type.
+     *
+     * @return the ordinal as a byte
+     */
+    // Getter method for the stored code
+    byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Returns the car type for a stored ordinal.
+     *
+     * @param code the ordinal stored in the type column
+     * @return the matching {@code CarType}
+     */
+    // Method to turn a stored code back into a CarType
+    static CarType fromCode(byte code) {
+        return VALUES[code];
+    }
+
+    /**
+     * Parses a car type name, ignoring case, for example "saloon", "Saloon" or "SALOON".
+     * <p>
+     * The length of the text picks the only candidate, so at most one case-insensitive
+     * comparison is made and no new strings are created.
+     * </p>
+     *
+     * @param text the name of the car type
+     * @return the matching {@code CarType}, or {@code null} if the text is not hatchback, saloon, or estate
+     */
+    // Method to parse a car type name without case folding every candidate
+    public static CarType parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        CarType candidate;
+        switch (text.length()) {
+            case 9:
+                candidate = HATCHBACK;
+                break;
+            case 6:
+                candidate = text.charAt(0) == 'e' || text.charAt(0) == 'E' ? ESTATE : SALOON;
+                break;
+            default:
+                return null;
+        }
+        return candidate.displayName.equalsIgnoreCase(text) ? candidate : null;
+    }
+
+    /**
+     * Parses a car type name held as ASCII bytes, ignoring case, without creating a string.
+     *
+     * @param bytes the bytes holding the name
+     * @param from  the index of the first byte of the name
+     * @param to    the index after the last byte of the name
+     * @return the matching {@code CarType}, or {@code null} if the bytes are not hatchback, saloon, or estate
+     */
+    // Method used by bulk loaders to parse the type field straight from the input buffer
+    static CarType parse(byte[] bytes, int from, int to) {
+        for (CarType type : VALUES) {
+            String name = type.displayName;
+            if (name.length() != to - from) {
+                continue;
+            }
+            int i = 0;
+            // lower-case both ASCII letters by setting the 0x20 bit, the names only contain letters
+            while (i < name.length() && (bytes[from + i] | 0x20) == (name.charAt(i) | 0x20)) {
+                i++;
+            }
+            if (i == name.length()) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
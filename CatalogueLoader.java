@@ -0,0 +1,482 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code CatalogueLoader} class bulk loads car models from a CSV file into a {@code Reporting} system.
+ * <p>
+ * Each line holds one car model: manufacturer, name, weight, price, number sold, type. A header line
+ * starting with "manufacturer" is skipped, and fields may be wrapped in double quotes so names can contain
+ * commas. The file is streamed through a fixed buffer, numbers and car types are parsed straight from
+ * the bytes, and car models are handed to each manufacturer in batches. Manufacturers that do not exist
+ * yet are created.
+ * </p>
+ * <p>
+ * Bad lines do not stop the load. They are counted and the first {@value #MAX_REPORTED_ERRORS}
+ * are reported with their line numbers.
+ * </p>
+ */
+// CatalogueLoader class streams a CSV catalogue into the reporting system
+public class CatalogueLoader {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BATCH_SIZE = 4096;
+    private static final int NAME_CACHE_SIZE = 1024;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int FIELDS = 6;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The {@code LoadResult} class describes the outcome of a load.
+     */
+    public static final class LoadResult {
+        private final long rowsLoaded;
+        private final long rowsRejected;
+        private final List<String> errors;
+        private final long elapsedNanos;
+
+        LoadResult(long rowsLoaded, long rowsRejected, List<String> errors, long elapsedNanos) {
+            this.rowsLoaded = rowsLoaded;
+            this.rowsRejected = rowsRejected;
+            this.errors = Collections.unmodifiableList(errors);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // Getter methods for the load statistics
+        public long getRowsLoaded() {
+            return rowsLoaded;
+        }
+
+        public long getRowsRejected() {
+            return rowsRejected;
+        }
+
+        /**
+         * Returns messages for the first rejected lines, each starting with its line number.
+         *
+         * @return the error messages
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public double getSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : rowsLoaded / getSeconds();
+        }
+
+        @Override
+        public String toString() {
+            return "Loaded " + rowsLoaded + " car models (" + rowsRejected + " rejected) in "
+                    + String.format("%.3f", getSeconds()) + "s, " + Math.round(getRowsPerSecond()) + " rows/s";
+        }
+    }
+
+    private final Reporting reporting;
+
+    // car models waiting to be added, one batch per manufacturer
+    private final Map<Manufacturer, CarModelColumns> batches = new HashMap<>();
+
+    // recently read manufacturer names kept as bytes, so repeated names are matched without a new string
+    private final byte[][] cachedNames = new byte[NAME_CACHE_SIZE][];
+    private final Manufacturer[] cachedManufacturers = new Manufacturer[NAME_CACHE_SIZE];
+
+    // where each field of the current line starts and ends in the buffer
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private final boolean[] fieldEscaped = new boolean[FIELDS];
+
+    // values of the line last parsed by parseRow
+    private double weight;
+    private double price;
+    private int nSold;
+    private CarType type;
+
+    private long lineNumber;
+    private long rowsLoaded;
+    private long rowsRejected;
+    private final List<String> errors = new ArrayList<>();
+
+    // Constructor
+    CatalogueLoader(Reporting reporting) {
+        this.reporting = reporting;
+    }
+
+    /**
+     * Loads a CSV catalogue file into a reporting system.
+     *
+     * @param file      the CSV file
+     * @param reporting the reporting system to fill
+     * @return the outcome of the load
+     * @throws IOException if the file cannot be read
+     */
+    // Method to load a catalogue file
+    public static LoadResult load(Path file, Reporting reporting) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return load(channel, reporting);
+        }
+    }
+
+    /**
+     * Loads a CSV catalogue from a channel, for example a file or standard input, into a reporting system.
+     *
+     * @param in        the channel to read from
+     * @param reporting the reporting system to fill
+     * @return the outcome of the load
+     * @throws IOException if the channel cannot be read
+     */
+    // Method to load a catalogue from any channel
+    public static LoadResult load(ReadableByteChannel in, Reporting reporting) throws IOException {
+        return new CatalogueLoader(reporting).read(in);
+    }
+
+    // Method to stream the input through the buffer one complete line at a time
+    private LoadResult read(ReadableByteChannel in) throws IOException {
+        long start = System.nanoTime();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int filled = 0;
+        while (true) {
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2); // a single line longer than the buffer
+            }
+            int read = in.read(ByteBuffer.wrap(buffer, filled, buffer.length - filled));
+            if (read < 0) {
+                break;
+            }
+            int end = filled + read;
+            int lineStart = 0;
+            for (int i = filled; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    parseLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            // move the unfinished last line to the front of the buffer
+            filled = end - lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, filled);
+        }
+        if (filled > 0) {
+            parseLine(buffer, 0, filled);
+        }
+        flushBatch();
+        return new LoadResult(rowsLoaded, rowsRejected, errors, System.nanoTime() - start);
+    }
+
+    /**
+     * Parses one line and adds its car model to the current batch, or records why it was rejected.
+     *
+     * @param buffer the bytes holding the line
+     * @param from   the index of the first byte of the line
+     * @param to     the index after the last byte of the line, excluding the line break
+     */
+    // Method to parse a single CSV line
+    void parseLine(byte[] buffer, int from, int to) {
+        lineNumber++;
+        try {
+            if (!parseRow(buffer, from, to, lineNumber == 1)) {
+                return;
+            }
+            Manufacturer manufacturer = manufacturerFor(buffer);
+            CarModelColumns batch = batches.computeIfAbsent(manufacturer, m -> new CarModelColumns());
+            addTo(batch, buffer);
+            if (batch.size() == BATCH_SIZE) {
+                manufacturer.addCarModels(batch);
+                batch.clear();
+            }
+            rowsLoaded++;
+        } catch (IllegalArgumentException e) {
+            rowsRejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Splits a line into its fields and parses the numbers and car type, without looking up the manufacturer.
+     * The parsed values are read back with the getter methods below until the next line is parsed.
+     *
+     * @param buffer    the bytes holding the line
+     * @param from      the index of the first byte of the line
+     * @param to        the index after the last byte of the line, excluding the line break
+     * @param firstLine whether this is the first line of the input, which may be a header
+     * @return {@code false} if the line is blank or a header and holds no car model
+     * @throws IllegalArgumentException if the line is not a valid car model
+     */
+    // Method to parse the fields of one line, shared with the parse stage of IngestPipeline
+    boolean parseRow(byte[] buffer, int from, int to, boolean firstLine) {
+        if (to > from && buffer[to - 1] == '\r') {
+            to--;
+        }
+        if (isBlank(buffer, from, to)) {
+            return false;
+        }
+        int fields = splitFields(buffer, from, to);
+        if (firstLine && isHeader(buffer)) {
+            return false;
+        }
+        if (fields != FIELDS) {
+            throw new IllegalArgumentException("expected " + FIELDS + " fields but found " + fields);
+        }
+        weight = parseDouble(buffer, 2, "weight");
+        price = parseDouble(buffer, 3, "price");
+        nSold = parseInt(buffer, 4, "number sold");
+        type = CarType.parse(buffer, fieldStart[5], fieldEnd[5]);
+        if (type == null) {
+            throw new IllegalArgumentException("Invalid car type. Must be hatchback, saloon, or estate.");
+        }
+        return true;
+    }
+
+    // Getter method for the manufacturer of the line last parsed by parseRow, decoded from the same buffer
+    String manufacturerName(byte[] buffer) {
+        return fieldString(buffer, 0);
+    }
+
+    /**
+     * Adds the car model of the line last parsed by {@link #parseRow} to a batch. The name is interned
+     * straight from the buffer unless it holds escaped quotes, so no {@code String} is created for it.
+     *
+     * @param batch  the batch to add to
+     * @param buffer the bytes holding the line
+     * @return the row of the car model in the batch
+     */
+    // Method to add the parsed car model to a batch
+    int addTo(CarModelColumns batch, byte[] buffer) {
+        if (fieldEscaped[1]) {
+            return batch.add(fieldString(buffer, 1), weight, price, nSold, type.code());
+        }
+        return batch.add(buffer, fieldStart[1], fieldEnd[1], weight, price, nSold, type.code());
+    }
+
+    double weight() {
+        return weight;
+    }
+
+    double price() {
+        return price;
+    }
+
+    int nSold() {
+        return nSold;
+    }
+
+    CarType type() {
+        return type;
+    }
+
+    // Method to add the waiting car models to their manufacturers
+    void flushBatch() {
+        for (Map.Entry<Manufacturer, CarModelColumns> entry : batches.entrySet()) {
+            if (entry.getValue().size() > 0) {
+                entry.getKey().addCarModels(entry.getValue());
+                entry.getValue().clear();
+            }
+        }
+    }
+
+    // Method to record where each field starts and ends, returning the number of fields
+    private int splitFields(byte[] buffer, int from, int to) {
+        int count = 0;
+        int i = from;
+        while (true) {
+            while (i < to && buffer[i] == ' ') {
+                i++;
+            }
+            int start;
+            int end;
+            boolean escaped = false;
+            if (i < to && buffer[i] == '"') {
+                // quoted field, "" inside the quotes stands for one quote
+                start = ++i;
+                while (true) {
+                    if (i >= to) {
+                        throw new IllegalArgumentException("unclosed quote");
+                    }
+                    if (buffer[i] == '"') {
+                        if (i + 1 < to && buffer[i + 1] == '"') {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                end = i++;
+                while (i < to && buffer[i] != ',') {
+                    i++;
+                }
+            } else {
+                start = i;
+                while (i < to && buffer[i] != ',') {
+                    i++;
+                }
+                end = i;
+                while (end > start && buffer[end - 1] == ' ') {
+                    end--;
+                }
+            }
+            if (count < FIELDS) {
+                fieldStart[count] = start;
+                fieldEnd[count] = end;
+                fieldEscaped[count] = escaped;
+            }
+            count++;
+            if (i >= to) {
+                return count;
+            }
+            i++; // skip the comma
+        }
+    }
+
+    // Method to check whether the first line is a header naming the manufacturer column
+    private boolean isHeader(byte[] buffer) {
+        String header = "manufacturer";
+        if (fieldEnd[0] - fieldStart[0] != header.length()) {
+            return false;
+        }
+        for (int i = 0; i < header.length(); i++) {
+            if ((buffer[fieldStart[0] + i] | 0x20) != header.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Method to find or create the manufacturer named in the first field, using the name cache when the bytes match
+    private Manufacturer manufacturerFor(byte[] buffer) {
+        int start = fieldStart[0];
+        int end = fieldEnd[0];
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        byte[] cached = cachedNames[slot];
+        if (cached != null && !fieldEscaped[0] && Arrays.equals(buffer, start, end, cached, 0, cached.length)) {
+            return cachedManufacturers[slot];
+        }
+
+        String name = fieldString(buffer, 0);
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("missing manufacturer name");
+        }
+        Manufacturer manufacturer = reporting.getOrAddManufacturer(name);
+        if (!fieldEscaped[0]) {
+            cachedNames[slot] = Arrays.copyOfRange(buffer, start, end);
+            cachedManufacturers[slot] = manufacturer;
+        }
+        return manufacturer;
+    }
+
+    // Method to decode a text field
+    private String fieldString(byte[] buffer, int field) {
+        String text = new String(buffer, fieldStart[field], fieldEnd[field] - fieldStart[field], StandardCharsets.UTF_8);
+        return fieldEscaped[field] ? text.replace("\"\"", "\"") : text;
+    }
+
+    /**
+     * Parses a decimal number straight from the buffer.
+     * <p>
+     * Plain numbers with up to 15 digits, such as "24999.99", are converted exactly with one division.
+     * Anything else, such as exponents, falls back to {@code Double.parseDouble}, and {@code NaN} or infinite
+     * results are rejected like any other invalid number. The parse stage of {@code IngestPipeline} relies on this.
+     * </p>
+     */
+    // Method to parse a double field without creating a string in the common case
+    private double parseDouble(byte[] buffer, int field, String fieldName) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= 15) {
+            double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            return negative ? -value : value;
+        }
+        double value;
+        try {
+            value = Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + fieldName + " '" + fieldString(buffer, field) + "'");
+        }
+        // NaN, Infinity and numbers too large for a double parse, but would poison the revenue totals
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("invalid " + fieldName + " '" + fieldString(buffer, field) + "'");
+        }
+        return value;
+    }
+
+    // Method to parse an int field straight from the buffer
+    private int parseInt(byte[] buffer, int field, String fieldName) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        int i = start;
+        boolean negative = i < end && buffer[i] == '-';
+        if (negative || (i < end && buffer[i] == '+')) {
+            i++;
+        }
+        if (i == end) {
+            throw new IllegalArgumentException("invalid " + fieldName + " '" + fieldString(buffer, field) + "'");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b < '0' || b > '9' || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("invalid " + fieldName + " '" + fieldString(buffer, field) + "'");
+            }
+            value = value * 10 + (b - '0');
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid " + fieldName + " '" + fieldString(buffer, field) + "'");
+        }
+        return (int) value;
+    }
+
+    // Method to check whether a line only holds spaces
+    private static boolean isBlank(byte[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] != ' ' && buffer[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,283 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code CatalogueSnapshot} class saves a {@code Reporting} system to a compact binary file and reopens it.
+ * <p>
+ * The file starts with a magic number, a format version and the number of the first journal segment
+ * that is not included in the snapshot (see {@link ReportingJournal}), followed by a dictionary holding every
+ * distinct manufacturer and car model name once, a table of manufacturers, and then each manufacturer's
+ * car model columns written one after another (weights, prices, units sold, types, name ids).
+ * All numbers are big-endian.
+ * </p>
+ * <p>
+ * Reopening maps the file with a {@code MappedByteBuffer} and copies each column into its array in one
+ * bulk transfer, so no per-row parsing takes place. Car models are handed out as views over those columns
+ * only when they are asked for. A mapped buffer is limited to 2 GB, which is the largest snapshot that can be opened.
+ * </p>
+ */
+// CatalogueSnapshot class reads and writes the binary snapshot format
+public class CatalogueSnapshot {
+    private static final int MAGIC = 0x43415253; // "CARS"
+    private static final int VERSION = 2;
+    // version 1 snapshots have no journal segment number and are still read
+    private static final int FIRST_VERSION = 1;
+
+    // the snapshot only holds static methods
+    private CatalogueSnapshot() {
+    }
+
+    /**
+     * Saves every manufacturer and car model of a reporting system to a snapshot file.
+     * <p>
+     * The snapshot is written to a temporary file first and then moved over {@code file},
+     * so an existing snapshot is never left half written.
+     * </p>
+     *
+     * @param reporting the reporting system to save
+     * @param file      the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    // Method to write a snapshot
+    public static void save(Reporting reporting, Path file) throws IOException {
+        List<Manufacturer> manufacturers = List.copyOf(reporting.getManufacturers());
+        int[] rowCounts = new int[manufacturers.size()];
+        for (int m = 0; m < manufacturers.size(); m++) {
+            // car models added while the snapshot is written are left out of it
+            rowCounts[m] = manufacturers.get(m).getColumns().size();
+        }
+        save(manufacturers, rowCounts, 0, file);
+    }
+
+    /**
+     * Saves the first car models of each manufacturer to a snapshot file, used by the journal to write
+     * a checkpoint holding exactly the car models journaled before a segment.
+     *
+     * @param manufacturers  the manufacturers to save, in the order they were added
+     * @param rowCounts      the number of car models to save for each manufacturer
+     * @param journalSegment the first journal segment whose records are not in the snapshot, 0 if there is no journal
+     * @param file           the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    // Method to write a snapshot of given row counts
+    static void save(List<Manufacturer> manufacturers, int[] rowCounts, long journalSegment, Path file) throws IOException {
+        // build the string dictionary, giving every distinct name an id
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] manufacturerNameIds = new int[manufacturers.size()];
+        List<int[]> modelNameIds = new ArrayList<>();
+        for (int m = 0; m < manufacturers.size(); m++) {
+            Manufacturer manufacturer = manufacturers.get(m);
+            manufacturerNameIds[m] = idOf(manufacturer.getMname(), ids, strings);
+            CarModelColumns columns = manufacturer.getColumns();
+            // the columns already number their distinct names, so each one is decoded and looked up once
+            int[] snapshotIds = new int[columns.distinctNames()];
+            Arrays.fill(snapshotIds, -1);
+            int[] nameIds = new int[rowCounts[m]];
+            for (int row = 0; row < nameIds.length; row++) {
+                int nameId = columns.nameId(row);
+                if (nameId == StringDictionary.NULL_ID) {
+                    nameIds[row] = idOf(null, ids, strings);
+                } else {
+                    if (snapshotIds[nameId] < 0) {
+                        snapshotIds[nameId] = idOf(columns.nameOf(nameId), ids, strings);
+                    }
+                    nameIds[row] = snapshotIds[nameId];
+                }
+            }
+            modelNameIds.add(nameIds);
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(journalSegment);
+
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(manufacturers.size());
+            for (int m = 0; m < manufacturers.size(); m++) {
+                out.writeInt(manufacturerNameIds[m]);
+                out.writeInt(rowCounts[m]);
+            }
+
+            for (int m = 0; m < manufacturers.size(); m++) {
+                CarModelColumns columns = manufacturers.get(m).getColumns();
+                int rows = rowCounts[m];
+                for (int row = 0; row < rows; row++) {
+                    out.writeDouble(columns.weight(row));
+                }
+                for (int row = 0; row < rows; row++) {
+                    out.writeDouble(columns.price(row));
+                }
+                for (int row = 0; row < rows; row++) {
+                    out.writeInt(columns.nSold(row));
+                }
+                CarModelColumns.Slice slice = null;
+                for (int start = 0; start < rows; start = slice.end()) {
+                    slice = columns.slice(start, rows, slice);
+                    out.write(slice.types(), start - slice.base(), slice.end() - start);
+                }
+                for (int nameId : modelNameIds.get(m)) {
+                    out.writeInt(nameId);
+                }
+            }
+            // force the snapshot to disk before it replaces the old one, a checkpoint deletes the journal it covers
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reopens a snapshot file as a new reporting system.
+     *
+     * @param file the snapshot file
+     * @return a reporting system holding the saved manufacturers and car models
+     * @throws IOException if the file cannot be read or is not a snapshot of a supported version
+     */
+    // Method to read a snapshot through a memory-mapped buffer
+    public static Reporting open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is larger than 2 GB and cannot be mapped");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a car catalogue snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION && version != FIRST_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            if (version >= VERSION) {
+                buffer.getLong(); // journal segment, read by journalSegment(Path)
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int manufacturerCount = buffer.getInt();
+            int[] manufacturerNameIds = new int[manufacturerCount];
+            int[] rowCounts = new int[manufacturerCount];
+            for (int m = 0; m < manufacturerCount; m++) {
+                manufacturerNameIds[m] = buffer.getInt();
+                rowCounts[m] = buffer.getInt();
+            }
+
+            Reporting reporting = new Reporting();
+            for (int m = 0; m < manufacturerCount; m++) {
+                int rows = rowCounts[m];
+                double[] weights = new double[rows];
+                double[] prices = new double[rows];
+                int[] nSold = new int[rows];
+                byte[] types = new byte[rows];
+                int[] nameIds = new int[rows];
+
+                // copy each column out of the mapped file in one bulk transfer
+                buffer.asDoubleBuffer().get(weights);
+                skip(buffer, rows * (long) Double.BYTES);
+                buffer.asDoubleBuffer().get(prices);
+                skip(buffer, rows * (long) Double.BYTES);
+                buffer.asIntBuffer().get(nSold);
+                skip(buffer, rows * (long) Integer.BYTES);
+                buffer.get(types);
+                buffer.asIntBuffer().get(nameIds);
+                skip(buffer, rows * (long) Integer.BYTES);
+
+                String[] names = new String[rows];
+                for (int row = 0; row < rows; row++) {
+                    names[row] = strings[nameIds[row]];
+                    if (types[row] < 0 || types[row] >= CarType.values().length) {
+                        throw new IOException("Invalid car type code " + types[row] + " in " + file);
+                    }
+                }
+                CarModelColumns columns = new CarModelColumns(names, weights, prices, nSold, types, rows);
+                if (reporting.getCarModelStorage() != CarModelStorage.HEAP) {
+                    CarModelColumns offHeap = reporting.getCarModelStorage().newColumns(rows);
+                    offHeap.addAll(columns);
+                    columns = offHeap;
+                }
+                reporting.addManufacturer(new Manufacturer(strings[manufacturerNameIds[m]], columns));
+            }
+            return reporting;
+        } catch (RuntimeException e) {
+            // a truncated or corrupt file shows up as a buffer underflow or a bad index
+            throw new IOException("Snapshot " + file + " is corrupt: " + e, e);
+        }
+    }
+
+    /**
+     * Reads the number of the first journal segment that is not included in a snapshot.
+     *
+     * @param file the snapshot file
+     * @return the segment number, or 0 if the snapshot was not written by a journal
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    // Method to read the journal segment number from the snapshot header
+    static long journalSegment(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES + Long.BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+        }
+        header.flip();
+        if (header.remaining() < 2 * Integer.BYTES || header.getInt() != MAGIC) {
+            throw new IOException(file + " is not a car catalogue snapshot");
+        }
+        int version = header.getInt();
+        return version >= VERSION && header.remaining() == Long.BYTES ? header.getLong() : 0;
+    }
+
+    // Method to look up or assign the dictionary id of a string
+    private static int idOf(String string, Map<String, Integer> ids, List<String> strings) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            ids.put(string, id);
+            strings.add(string);
+        }
+        return id;
+    }
+
+    // Method to move the buffer past a column that was read through a view buffer
+    private static void skip(ByteBuffer buffer, long bytes) {
+        buffer.position(Math.toIntExact(buffer.position() + bytes));
+    }
+}
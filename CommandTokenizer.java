@@ -0,0 +1,255 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * The {@code CommandTokenizer} class splits a command script into lines of whitespace separated tokens.
+ * <p>
+ * The script is read through one large character buffer, and each line is split in place by recording where
+ * its tokens start and end, so a token only becomes a {@code String} when it is asked for and whole numbers are
+ * parsed straight from the buffer. A token wrapped in double quotes can hold spaces, with {@code ""} for a quote
+ * inside it. Blank lines and lines starting with {@code #} are skipped.
+ * </p>
+ */
+// CommandTokenizer class reads a command script a line at a time and splits each line into tokens
+final class CommandTokenizer {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_TOKENS = 16;
+
+    private final Reader in;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean end;
+    private long lineNumber;
+
+    // where each token of the current line starts and ends in the buffer, and whether it was quoted with "" inside
+    private final int[] tokenStart = new int[MAX_TOKENS];
+    private final int[] tokenEnd = new int[MAX_TOKENS];
+    private final boolean[] tokenEscaped = new boolean[MAX_TOKENS];
+    private int tokens;
+
+    /**
+     * Constructs a tokenizer over a script. The reader does not need to be buffered.
+     *
+     * @param in the script
+     */
+    // Constructor
+    CommandTokenizer(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Moves to the next line holding a command, splitting it into tokens.
+     *
+     * @return {@code false} at the end of the script
+     * @throws IOException              if the script cannot be read
+     * @throws IllegalArgumentException if the line has an unclosed quote or more than {@value #MAX_TOKENS} tokens,
+     *                                  after which the tokenizer is on the next line
+     */
+    // Method to advance to the next command
+    boolean nextLine() throws IOException {
+        while (true) {
+            int lineEnd = findLineEnd();
+            if (lineEnd < 0) {
+                return false;
+            }
+            lineNumber++;
+            int start = position;
+            position = lineEnd + 1;
+            split(start, lineEnd);
+            if (tokens > 0 && buffer[tokenStart[0]] != '#') {
+                return true;
+            }
+        }
+    }
+
+    // Method to find the end of the next line, reading more of the script as needed; -1 at the end of the script
+    private int findLineEnd() throws IOException {
+        int scanned = position;
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    return i;
+                }
+            }
+            if (end) {
+                if (position < limit) {
+                    // a last line without a newline
+                    buffer[limit] = '\n';
+                    return limit++;
+                }
+                return -1;
+            }
+            scanned = limit - position;
+            fill();
+        }
+    }
+
+    // Method to keep the unread part of the buffer and read more of the script after it
+    private void fill() throws IOException {
+        int unread = limit - position;
+        if (unread + 1 >= buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        System.arraycopy(buffer, position, buffer, 0, unread);
+        position = 0;
+        limit = unread;
+        // one character is kept free for a newline after the last line
+        int read = in.read(buffer, limit, buffer.length - limit - 1);
+        if (read < 0) {
+            end = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    // Method to record where the tokens of a line are
+    private void split(int from, int to) {
+        tokens = 0;
+        int i = from;
+        while (true) {
+            while (i < to && Character.isWhitespace(buffer[i])) {
+                i++;
+            }
+            if (i >= to) {
+                return;
+            }
+            if (tokens == MAX_TOKENS) {
+                throw new IllegalArgumentException("More than " + MAX_TOKENS + " tokens on a line.");
+            }
+            boolean escaped = false;
+            int start = i;
+            if (buffer[i] == '"') {
+                start = ++i;
+                while (true) {
+                    if (i >= to) {
+                        throw new IllegalArgumentException("Unclosed quote.");
+                    }
+                    if (buffer[i] == '"') {
+                        if (i + 1 < to && buffer[i + 1] == '"') {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                tokenEnd[tokens] = i++;
+            } else {
+                while (i < to && !Character.isWhitespace(buffer[i])) {
+                    i++;
+                }
+                tokenEnd[tokens] = i;
+            }
+            tokenStart[tokens] = start;
+            tokenEscaped[tokens] = escaped;
+            tokens++;
+        }
+    }
+
+    // Getter methods for the current line
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    int tokenCount() {
+        return tokens;
+    }
+
+    /**
+     * Returns a token of the current line.
+     *
+     * @param i the index of the token, 0 for the command
+     * @return the token, without its quotes
+     * @throws IllegalArgumentException if the line has no such token
+     */
+    // Method to read a token as a String
+    String token(int i) {
+        check(i);
+        String text = new String(buffer, tokenStart[i], tokenEnd[i] - tokenStart[i]);
+        return tokenEscaped[i] ? text.replace("\"\"", "\"") : text;
+    }
+
+    /**
+     * Returns whether a token of the current line is a word, ignoring case, without creating a string.
+     *
+     * @param i    the index of the token
+     * @param word the word, in lower case
+     * @return {@code true} if the token is the word
+     */
+    // Method to compare a token with a command word
+    boolean is(int i, String word) {
+        if (i >= tokens || tokenEnd[i] - tokenStart[i] != word.length()) {
+            return false;
+        }
+        for (int c = 0; c < word.length(); c++) {
+            if (Character.toLowerCase(buffer[tokenStart[i] + c]) != word.charAt(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a token of the current line as a whole number, straight from the buffer.
+     *
+     * @param i    the index of the token
+     * @param name what the number is, for the error message
+     * @return the number
+     * @throws IllegalArgumentException if the token is missing or not a whole number
+     */
+    // Method to parse a whole number token
+    int integer(int i, String name) {
+        check(i);
+        int from = tokenStart[i];
+        int to = tokenEnd[i];
+        boolean negative = from < to && buffer[from] == '-';
+        if (negative || from < to && buffer[from] == '+') {
+            from++;
+        }
+        if (from == to || to - from > 10) {
+            throw new IllegalArgumentException(name + " must be a whole number, got '" + token(i) + "'");
+        }
+        long value = 0;
+        for (int c = from; c < to; c++) {
+            int digit = buffer[c] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException(name + " must be a whole number, got '" + token(i) + "'");
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value != (int) value) {
+            throw new IllegalArgumentException(name + " is too large: " + token(i));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a token of the current line as a number.
+     *
+     * @param i    the index of the token
+     * @param name what the number is, for the error message
+     * @return the number
+     * @throws IllegalArgumentException if the token is missing or not a number
+     */
+    // Method to parse a decimal number token
+    double number(int i, String name) {
+        check(i);
+        try {
+            return Double.parseDouble(token(i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number, got '" + token(i) + "'");
+        }
+    }
+
+    // Method to check a token exists
+    private void check(int i) {
+        if (i >= tokens) {
+            String command = tokens == 0 ? "" : new String(buffer, tokenStart[0], tokenEnd[0] - tokenStart[0]);
+            throw new IllegalArgumentException("Missing argument " + i + " of " + command + ".");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * The {@code CompensatedSum} class adds up {@code double} values while keeping track of the rounding error.
+ * <p>
+ * It uses Neumaier's variant of Kahan summation: the low-order bits lost by each addition are collected
+ * in a separate compensation term and added back when the total is read. The error of the total is then
+ * about one rounding of the total itself, rather than growing with the number of values added, so revenue
+ * totals kept up to date one car model at a time stay far closer than a penny to a full recalculation,
+ * whatever order the models were added in. Adding the same values in a different order can still change the
+ * last bit of the result, so two totals are only guaranteed to be identical when every value and partial sum
+ * is exactly representable, as whole numbers below 2<sup>53</sup> are.
+ * </p>
+ * https://en.wikipedia.org/wiki/Kahan_summation_algorithm#Further_enhancements
+ */
+// CompensatedSum class keeps an accurate running total of doubles
+class CompensatedSum {
+    private double sum;
+    private double compensation;
+
+    /**
+     * Adds a value to the running total.
+     *
+     * @param value the value to add
+     */
+    // Method to add a value and remember the rounding error of the addition
+    void add(double value) {
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - total) + value;
+        } else {
+            compensation += (value - total) + sum;
+        }
+        sum = total;
+    }
+
+    /**
+     * Adds another running total to this one.
+     *
+     * @param other the total to add
+     */
+    // Method to merge two running totals
+    void add(CompensatedSum other) {
+        add(other.sum);
+        add(other.compensation);
+    }
+
+    /**
+     * Returns the running total with the collected rounding error added back.
+     *
+     * @return the total
+     */
+    // Getter method for the total
+    double get() {
+        return sum + compensation;
+    }
+
+    // Method to reset the total to zero
+    void clear() {
+        sum = 0.0;
+        compensation = 0.0;
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.Locale;
+
+/**
+ * The {@code GroupBy} enum lists the dimensions a pivot table can group car models by.
+ * <p>
+ * Price and weight are grouped into bands of a fixed width, for example £10000 bands starting at £0.
+ * </p>
+ */
+// GroupBy enum represents the dimensions of a pivot table
+public enum GroupBy {
+    MANUFACTURER("Manufacturer", 21),
+    TYPE("Type", 2),
+    PRICE_BAND("Price Band", 20),
+    WEIGHT_BAND("Weight Band", 20);
+
+    private final String displayName;
+    // number of bits the dimension takes in a packed group key, so every dimension together fits in 63 bits
+    private final int bits;
+
+    // Constructor
+    GroupBy(String displayName, int bits) {
+        this.displayName = displayName;
+        this.bits = bits;
+    }
+
+    // Getter method for the display name
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    // Getter method for the width of the dimension in a packed group key
+    int bits() {
+        return bits;
+    }
+
+    // Getter method for the largest value the dimension can hold in a packed group key
+    long maxValue() {
+        return (1L << bits) - 1;
+    }
+
+    /**
+     * Converts text such as "type" or "Price Band" into a {@code GroupBy}, ignoring case.
+     * "Price" and "Weight" are accepted for the bands.
+     *
+     * @param text the text to parse
+     * @return the matching dimension, or {@code null} if the text is not one
+     */
+    // Method to parse a dimension entered by the user
+    public static GroupBy parse(String text) {
+        String name = text.trim().toUpperCase(Locale.ROOT).replace(' ', '_');
+        for (GroupBy groupBy : values()) {
+            if (groupBy.name().equals(name) || groupBy.name().equals(name + "_BAND")) {
+                return groupBy;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+
+/**
+ * The {@code GroupTable} class adds up car model figures per group, keyed by a packed {@code long} group key.
+ * <p>
+ * Groups are stored densely in primitive arrays, one array per figure, in the order they are first seen.
+ * An open-addressing hash table of group numbers with linear probing finds a key's group, so adding a
+ * car model is a hash, usually one probe and a few array updates, with no boxing and no objects per group.
+ * Revenue is added up with the same compensated summation as the running totals, so a group covering a
+ * whole car type matches {@code getTotalRevenueByType}.
+ * </p>
+ * <p>
+ * A table is used by one thread. Parallel scans give every task its own table and merge them with {@link #addAll(GroupTable)}.
+ * </p>
+ */
+// GroupTable class is a primitive hash aggregation of count, units, revenue, price and weight per group
+final class GroupTable {
+    private static final int DEFAULT_GROUPS = 16;
+
+    // slots hold a group number plus one, 0 marks an empty slot; kept at most half full
+    private int[] slots;
+    private int mask;
+
+    // one entry per group, indexed by group number
+    private long[] keys;
+    private long[] counts;
+    private long[] units;
+    private double[] revenue;
+    private double[] revenueCompensation;
+    private double[] priceSums;
+    private double[] weightSums;
+    private int size;
+
+    /**
+     * Constructs an empty table.
+     */
+    // Constructor
+    GroupTable() {
+        slots = new int[DEFAULT_GROUPS * 2];
+        mask = slots.length - 1;
+        keys = new long[DEFAULT_GROUPS];
+        counts = new long[DEFAULT_GROUPS];
+        units = new long[DEFAULT_GROUPS];
+        revenue = new double[DEFAULT_GROUPS];
+        revenueCompensation = new double[DEFAULT_GROUPS];
+        priceSums = new double[DEFAULT_GROUPS];
+        weightSums = new double[DEFAULT_GROUPS];
+    }
+
+    /**
+     * Adds one car model to its group.
+     *
+     * @param key    the packed group key
+     * @param price  the sales price of the car model
+     * @param weight the weight of the car model
+     * @param nSold  the number of units sold
+     */
+    // Method to add a car model to the figures of its group
+    void add(long key, double price, double weight, int nSold) {
+        int group = groupOf(key);
+        counts[group]++;
+        units[group] += nSold;
+        addRevenue(group, price * nSold);
+        priceSums[group] += price;
+        weightSums[group] += weight;
+    }
+
+    /**
+     * Adds every group of another table to this one.
+     *
+     * @param other the table to merge in
+     */
+    // Method to merge the table of another task
+    void addAll(GroupTable other) {
+        for (int i = 0; i < other.size; i++) {
+            int group = groupOf(other.keys[i]);
+            counts[group] += other.counts[i];
+            units[group] += other.units[i];
+            addRevenue(group, other.revenue[i]);
+            addRevenue(group, other.revenueCompensation[i]);
+            priceSums[group] += other.priceSums[i];
+            weightSums[group] += other.weightSums[i];
+        }
+    }
+
+    // Method to add to a group's revenue, remembering the rounding error as CompensatedSum does
+    private void addRevenue(int group, double value) {
+        double sum = revenue[group];
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            revenueCompensation[group] += (sum - total) + value;
+        } else {
+            revenueCompensation[group] += (value - total) + sum;
+        }
+        revenue[group] = total;
+    }
+
+    // Method to find the group of a key, creating it if it is new
+    private int groupOf(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return newGroup(key, slot);
+            }
+            if (keys[entry - 1] == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Method to mix the bits of a key so keys differing only in their high dimensions spread over the slots
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Method to add a new group with zero figures
+    private int newGroup(long key, int slot) {
+        int group = size;
+        if (group == keys.length) {
+            int capacity = group * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            units = Arrays.copyOf(units, capacity);
+            revenue = Arrays.copyOf(revenue, capacity);
+            revenueCompensation = Arrays.copyOf(revenueCompensation, capacity);
+            priceSums = Arrays.copyOf(priceSums, capacity);
+            weightSums = Arrays.copyOf(weightSums, capacity);
+        }
+        keys[group] = key;
+        size = group + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        } else {
+            slots[slot] = group + 1;
+        }
+        return group;
+    }
+
+    // Method to double the hash table and place every group again
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        for (int group = 0; group < size; group++) {
+            int slot = hash(keys[group]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group + 1;
+        }
+    }
+
+    /**
+     * Returns the group numbers ordered by key, so by the first dimension, then the second and so on.
+     *
+     * @return the group numbers in key order
+     */
+    // Method to sort the groups by their packed keys
+    int[] sortedGroups() {
+        // keys are never negative and group numbers fit in 31 bits, but a key can use 63 bits,
+        // so the groups are sorted through a copy of the keys rather than packed with the group number
+        long[] sorted = Arrays.copyOf(keys, size);
+        Arrays.sort(sorted);
+        int[] groups = new int[size];
+        for (int i = 0; i < size; i++) {
+            groups[i] = groupOf(sorted[i]);
+        }
+        return groups;
+    }
+
+    // Getter methods for the figures of one group
+    int size() {
+        return size;
+    }
+
+    long key(int group) {
+        return keys[group];
+    }
+
+    long count(int group) {
+        return counts[group];
+    }
+
+    long units(int group) {
+        return units[group];
+    }
+
+    double revenue(int group) {
+        return revenue[group] + revenueCompensation[group];
+    }
+
+    double priceSum(int group) {
+        return priceSums[group];
+    }
+
+    double weightSum(int group) {
+        return weightSums[group];
+    }
+}
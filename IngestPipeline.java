@@ -0,0 +1,410 @@
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code IngestPipeline} class feeds a stream of car model lines into a reporting system on background threads.
+ * <p>
+ * Each line is a car model in the catalogue CSV format: manufacturer, name, weight, price, number sold, type.
+ * Producers {@link #submit(String)} lines into a bounded queue and three stages, each on its own thread, work
+ * through them:
+ * </p>
+ * <ul>
+ *   <li>parse: takes every waiting line, up to {@value #BATCH_ROWS}, and parses them into a batch of rows
+ *   with the same byte-level parser as {@code CatalogueLoader};</li>
+ *   <li>validate: finds, or adds, the manufacturer of each row;</li>
+ *   <li>apply: sorts the batch by manufacturer and adds each manufacturer's rows with a single
+ *   {@code addCarModels} call, so the price index, the rollup and the journal are updated once per run
+ *   of rows rather than once per car model.</li>
+ * </ul>
+ * <p>
+ * Batches are handed from stage to stage through small bounded queues and reused once applied, so only
+ * {@value #BATCHES} batches exist. When the stages fall behind the input queue fills up; with
+ * {@link OverflowPolicy#BLOCK} producers then wait for room, and with {@link OverflowPolicy#DROP} the line
+ * is turned away and counted. Batches are as large as the backlog, so a quiet pipeline applies each line
+ * almost at once and a busy one applies them in large batches.
+ * </p>
+ * <p>
+ * {@link #getStats()} reports the lines submitted, dropped, rejected and applied, the queue depth, how long
+ * producers were held back and the latency from submit to apply. While the pipeline is open the same
+ * figures appear in the reporting system's metrics.
+ * </p>
+ */
+// IngestPipeline class parses, validates and applies streamed car models in batches on separate threads
+public final class IngestPipeline implements Closeable {
+    static final int DEFAULT_CAPACITY = 65_536;
+    private static final int BATCH_ROWS = 4096;
+    // batches in flight between the stages
+    private static final int BATCHES = 8;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    /**
+     * What {@link #submit(String)} does when the queue is full.
+     */
+    public enum OverflowPolicy {
+        // wait until the stages make room
+        BLOCK,
+        // turn the line away and count it as dropped
+        DROP
+    }
+
+    // Event record is one submitted line and when it was submitted
+    private record Event(String line, long submittedNanos) {
+    }
+
+    // Batch class holds the rows parsed from a run of lines, reused once the rows are applied
+    private static final class Batch {
+        private final CarModelColumns rows = new CarModelColumns(BATCH_ROWS);
+        private final String[] manufacturerNames = new String[BATCH_ROWS];
+        private final Manufacturer[] manufacturers = new Manufacturer[BATCH_ROWS];
+        private final long[] lineNumbers = new long[BATCH_ROWS];
+        private final long[] submittedNanos = new long[BATCH_ROWS];
+        // lines taken from the queue, including blank and rejected ones
+        private int lines;
+
+        // Method to empty the batch for reuse
+        void clear() {
+            int size = rows.size();
+            Arrays.fill(manufacturerNames, 0, size, null);
+            Arrays.fill(manufacturers, 0, size, null);
+            rows.clear();
+            lines = 0;
+        }
+    }
+
+    private final Reporting reporting;
+    private final OverflowPolicy policy;
+    private final BlockingQueue<Event> queue;
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES);
+    private final BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(BATCHES);
+    private final BlockingQueue<Batch> validated = new ArrayBlockingQueue<>(BATCHES);
+    private final Thread[] stages;
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder blockedSubmits = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final List<String> errors = new ArrayList<>(); // guarded by itself
+    private long completed; // lines that have been through every stage, guarded by this
+
+    // Constructor creates the batches and the stage threads
+    private IngestPipeline(Reporting reporting, int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be at least 1.");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("An overflow policy is required.");
+        }
+        this.reporting = reporting;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < BATCHES; i++) {
+            free.add(new Batch());
+        }
+        this.stages = new Thread[] {
+                Thread.ofPlatform().name("ingest-parse").daemon(true).unstarted(this::parseLoop),
+                Thread.ofPlatform().name("ingest-validate").daemon(true).unstarted(this::validateLoop),
+                Thread.ofPlatform().name("ingest-apply").daemon(true).unstarted(this::applyLoop)
+        };
+    }
+
+    /**
+     * Starts a pipeline into a reporting system with a queue of {@value #DEFAULT_CAPACITY} lines that makes producers wait when full.
+     *
+     * @param reporting the reporting system to add car models to
+     * @return the running pipeline
+     */
+    // Method to start a pipeline with the default queue
+    public static IngestPipeline start(Reporting reporting) {
+        return start(reporting, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Starts a pipeline into a reporting system.
+     *
+     * @param reporting the reporting system to add car models to
+     * @param capacity  the number of lines the queue holds before the overflow policy applies
+     * @param policy    whether a full queue makes producers wait or drops their lines
+     * @return the running pipeline
+     * @throws IllegalArgumentException if the capacity is less than 1 or the policy is missing
+     */
+    // Method to start a pipeline and its stage threads
+    public static IngestPipeline start(Reporting reporting, int capacity, OverflowPolicy policy) {
+        IngestPipeline pipeline = new IngestPipeline(reporting, capacity, policy);
+        for (Thread stage : pipeline.stages) {
+            stage.start();
+        }
+        reporting.getMetrics().pipelineOpened(pipeline);
+        return pipeline;
+    }
+
+    /**
+     * Submits one car model line. Any number of threads may submit at the same time.
+     *
+     * @param line the line, in the catalogue CSV format
+     * @return {@code true} if the line was queued, {@code false} if it was dropped because the queue was full
+     *         or the waiting thread was interrupted
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    // Method to queue a line, waiting for room or dropping it when the queue is full
+    public boolean submit(String line) {
+        if (closed) {
+            throw new IllegalStateException("The ingest pipeline is closed.");
+        }
+        Event event = new Event(line, System.nanoTime());
+        if (!queue.offer(event)) {
+            if (policy == OverflowPolicy.DROP) {
+                dropped.increment();
+                return false;
+            }
+            long start = System.nanoTime();
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+                return false;
+            }
+            blockedSubmits.increment();
+            blockedNanos.add(System.nanoTime() - start);
+        }
+        submitted.increment();
+        return true;
+    }
+
+    /**
+     * Waits until every line submitted before this call has been applied or rejected.
+     * If the calling thread is interrupted it stops waiting and keeps its interrupt status.
+     */
+    // Method to wait for the lines submitted so far to reach the reporting system
+    public synchronized void flush() {
+        long target = submitted.sum();
+        try {
+            while (completed < target) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies every line submitted so far and stops the stage threads.
+     * Producers must have stopped submitting before the pipeline is closed.
+     */
+    // Method to drain and stop the pipeline
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flush();
+        for (Thread stage : stages) {
+            stage.interrupt();
+        }
+        for (Thread stage : stages) {
+            try {
+                stage.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        reporting.getMetrics().pipelineClosed(this);
+    }
+
+    /**
+     * Returns the counters of this pipeline.
+     *
+     * @return a snapshot of the counters
+     */
+    // Getter method for the pipeline counters
+    public IngestStats getStats() {
+        return new IngestStats(submitted.sum(), dropped.sum(), rejected.sum(), applied.sum(), queue.size(),
+                blockedSubmits.sum(), blockedNanos.sum() / 1e6, latency.mean() / 1e3, latency.percentile(99) / 1e3);
+    }
+
+    /**
+     * Returns messages for the first rejected lines, each starting with the line's position in the stream.
+     *
+     * @return a copy of the error messages
+     */
+    // Getter method for the reasons lines were rejected
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    // Method to count a rejected line and keep its message if there is room
+    private void reject(long lineNumber, String message) {
+        rejected.increment();
+        synchronized (errors) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("line " + lineNumber + ": " + message);
+            }
+        }
+    }
+
+    // Method run by the parse stage: drain the queue into a batch and parse each line into a row
+    private void parseLoop() {
+        CatalogueLoader parser = new CatalogueLoader(reporting);
+        List<Event> events = new ArrayList<>(BATCH_ROWS);
+        byte[] bytes = new byte[256];
+        long lineNumber = 0;
+        try {
+            while (true) {
+                events.add(queue.take());
+                queue.drainTo(events, BATCH_ROWS - 1);
+                Batch batch = free.take();
+                for (Event event : events) {
+                    lineNumber++;
+                    String line = event.line();
+                    if (line.length() > bytes.length) {
+                        bytes = new byte[Math.max(line.length(), bytes.length * 2)];
+                    }
+                    int length = encode(line, bytes);
+                    if (length < 0) {
+                        bytes = line.getBytes(StandardCharsets.UTF_8);
+                        length = bytes.length;
+                    }
+                    try {
+                        if (parser.parseRow(bytes, 0, length, lineNumber == 1)) {
+                            int row = parser.addTo(batch.rows, bytes);
+                            batch.manufacturerNames[row] = parser.manufacturerName(bytes);
+                            batch.lineNumbers[row] = lineNumber;
+                            batch.submittedNanos[row] = event.submittedNanos();
+                        }
+                    } catch (IllegalArgumentException e) {
+                        reject(lineNumber, e.getMessage());
+                    }
+                }
+                batch.lines = events.size();
+                events.clear();
+                parsed.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    // Method to copy an ASCII line into the parse buffer, returning its length, or -1 if it needs UTF-8 encoding
+    private static int encode(String line, byte[] bytes) {
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80) {
+                return -1;
+            }
+            bytes[i] = (byte) c;
+        }
+        return length;
+    }
+
+    // Method run by the validate stage: find the manufacturer of each row, the parser has already checked its values
+    private void validateLoop() {
+        // manufacturers already looked up, by the exact name used in the feed
+        Map<String, Manufacturer> known = new HashMap<>();
+        try {
+            while (true) {
+                Batch batch = parsed.take();
+                CarModelColumns rows = batch.rows;
+                for (int row = 0; row < rows.size(); row++) {
+                    try {
+                        String name = batch.manufacturerNames[row];
+                        Manufacturer manufacturer = known.get(name);
+                        if (manufacturer == null) {
+                            manufacturer = manufacturerNamed(name);
+                            known.put(name, manufacturer);
+                        }
+                        batch.manufacturers[row] = manufacturer;
+                    } catch (IllegalArgumentException e) {
+                        reject(batch.lineNumbers[row], e.getMessage());
+                    }
+                }
+                validated.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    // Method to find a manufacturer by name, adding it to the reporting system if it is new
+    private Manufacturer manufacturerNamed(String name) {
+        if (name.isBlank()) {
+            throw new IllegalArgumentException("missing manufacturer name");
+        }
+        return reporting.getOrAddManufacturer(name);
+    }
+
+    // Method run by the apply stage: add each manufacturer's rows of a batch in one call
+    private void applyLoop() {
+        CarModelColumns run = new CarModelColumns(BATCH_ROWS);
+        long[] order = new long[BATCH_ROWS];
+        try {
+            while (true) {
+                Batch batch = validated.take();
+                CarModelColumns rows = batch.rows;
+                // sort the valid rows by manufacturer index, keeping their order within a manufacturer
+                int count = 0;
+                for (int row = 0; row < rows.size(); row++) {
+                    Manufacturer manufacturer = batch.manufacturers[row];
+                    if (manufacturer != null) {
+                        order[count++] = (long) manufacturer.getIndex() << 32 | row;
+                    }
+                }
+                Arrays.sort(order, 0, count);
+                for (int start = 0; start < count; ) {
+                    Manufacturer manufacturer = batch.manufacturers[(int) order[start]];
+                    int end = start;
+                    while (end < count && batch.manufacturers[(int) order[end]] == manufacturer) {
+                        int row = (int) order[end++];
+                        run.add(rows, row);
+                    }
+                    apply(manufacturer, run, batch, order, start, end);
+                    run.clear();
+                    start = end;
+                }
+                int lines = batch.lines;
+                batch.clear();
+                free.put(batch);
+                synchronized (this) {
+                    completed += lines;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    // Method to add one manufacturer's run of rows and record how long each row took to arrive
+    private void apply(Manufacturer manufacturer, CarModelColumns run, Batch batch, long[] order, int start, int end) {
+        try {
+            manufacturer.addCarModels(run);
+        } catch (RuntimeException e) {
+            // for example the journal has been closed; the rows are counted as rejected rather than lost silently
+            for (int i = start; i < end; i++) {
+                reject(batch.lineNumbers[(int) order[i]], "could not add car model: " + e.getMessage());
+            }
+            return;
+        }
+        applied.add(run.size());
+        long now = System.nanoTime();
+        for (int i = start; i < end; i++) {
+            latency.record(now - batch.submittedNanos[(int) order[i]]);
+        }
+    }
+}
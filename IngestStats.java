@@ -0,0 +1,17 @@
+/**
+ * The {@code IngestStats} record holds the counters of an {@code IngestPipeline}.
+ *
+ * @param submitted         the number of lines accepted into the pipeline
+ * @param dropped           the number of lines turned away because the queue was full
+ * @param rejected          the number of lines that were not valid car models
+ * @param applied           the number of car models added to their manufacturers
+ * @param queued            the number of lines waiting to be parsed
+ * @param blockedSubmits    the number of submits that had to wait for room in the queue
+ * @param blockedMillis     the total time submits spent waiting for room, in milliseconds
+ * @param meanLatencyMicros the mean time from a line being submitted to its car model being added, in microseconds
+ * @param p99LatencyMicros  the 99th percentile of that time, in microseconds
+ */
+// IngestStats record is a snapshot of the ingest pipeline counters
+public record IngestStats(long submitted, long dropped, long rejected, long applied, int queued,
+                          long blockedSubmits, double blockedMillis, double meanLatencyMicros, double p99LatencyMicros) {
+}
@@ -0,0 +1,106 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LatencyHistogram} class counts durations in log-linear buckets, in the style of HdrHistogram.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKETS} equal buckets, so every recorded value is
+ * placed with a relative error below 1/{@value #SUB_BUCKETS} (about 6%) from nanoseconds up to
+ * centuries. The buckets are a fixed array of counters allocated once, so recording a value is a
+ * few bit operations and an atomic increment, and never allocates.
+ * </p>
+ */
+// LatencyHistogram class records durations in nanoseconds into log-linear buckets
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // one group of sub-buckets per power of two of a positive long, plus the first group for values below SUB_BUCKETS
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // Method to record one duration
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        total.add(nanos);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    // Method to find the bucket of a value: values below SUB_BUCKETS have a bucket each, larger values
+    // are grouped by their highest bit and split by the SUB_BUCKET_BITS bits below it
+    private static int bucketOf(long value) {
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        if (highestBit < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = highestBit - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    // Method to find the highest value that falls in a bucket
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // Getter method for the number of recorded values
+    long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    // Getter method for the mean of the recorded values, 0 when there are none
+    double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) total.sum() / count;
+    }
+
+    // Getter method for the largest recorded value
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value at a percentile, as the upper end of the bucket it falls in, capped at the largest value recorded.
+     *
+     * @param percent the percentile, from 0 to 100
+     * @return the value at the percentile, or 0 if nothing has been recorded
+     */
+    // Method to read a percentile from the bucket counts
+    long percentile(double percent) {
+        // copy the counts once so concurrent recording cannot move the percentile while it is read
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+}
@@ -1,5 +1,15 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The {@code Manufacturer} class represents a car manufacturer that manages multiple car models.
@@ -12,12 +22,67 @@ import java.util.List;
  * - Calculate revenue generated by a specific car type.
  * - List car models above a certain price threshold.
  * </p>
+ * <p>
+ * A manufacturer can be read and written from several threads. Adding car models takes the manufacturer's
+ * write lock, so writers to different manufacturers never wait for each other. Readers do not lock:
+ * lists of car models are snapshots of the rows present when they were asked for, and the running totals
+ * are read optimistically and only retried under the read lock if a writer got in the way.
+ * </p>
+ * <p>
+ * Sales are recorded without taking the lock on every call. {@link #recordSale(CarModel, int)} adds the
+ * units to a {@code LongAdder} for the car model, so many threads selling the same car model update
+ * different cells rather than one contended counter, and marks the car model as having unfolded sales.
+ * Whichever thread wins a flag then takes the write lock once and folds every marked car model's units
+ * into the columns, the running totals and the owner's rollup, while the others return straight away.
+ * The folding thread checks again before it lets go of the flag, so every sale is folded before the
+ * call that recorded it, or the fold running at the time, returns.
+ * </p>
+ * <p>
+ * A sale first claims its units in a second adder per car model, which holds every unit claimed but not yet
+ * folded. The sale is only recorded if the units folded and claimed, read together against any fold, still
+ * fit in an {@code int}, and is otherwise rejected and its claim taken back. Two large sales of the same car
+ * model at once therefore cannot both pass the check, and a fold never has to cap the number sold.
+ * </p>
+ * <p>
+ * Once the manufacturer belongs to a reporting system, the most expensive, above price and top car model
+ * reports are kept in the system's result cache. Adding car models bumps the manufacturer's version stamp,
+ * which makes only this manufacturer's cached results out of date.
+ * </p>
  */
 // Manufacturer class represents a car manufacturer that manages multiple car models
 class Manufacturer {
+    // the most car models above price display lists before saying how many more there are
+    static final int DISPLAY_LIMIT = 50;
+
     //attributes for the name of the manufacturer and the list of their car models
     private String Mname;
-    private List<CarModel> carModels; // Store CarModel objects directly
+    private CarModelColumns carModels; // Store car models as primitive columns
+
+    // running totals per car type, indexed by CarType ordinal and updated as car models are added
+    private final CompensatedSum[] revenueByType;
+    private final long[] unitsSoldByType;
+    private final int[] carModelCountByType;
+
+    // car models sorted by price for range queries, keyed by row
+    private final PriceIndex priceIndex = new PriceIndex();
+
+    // the reporting system this manufacturer belongs to, told about changes so it can keep its rollup
+    private Reporting owner;
+    private int index;
+
+    // bumped whenever car models are added, sold or repriced, so cached reports about this manufacturer can tell they are out of date
+    private volatile long version;
+
+    // guards the columns, totals and owner against concurrent writers, see the class comment
+    private final StampedLock lock = new StampedLock();
+
+    // units sold but not yet folded into the columns, one adder per car model that has ever had a sale recorded
+    private final ConcurrentHashMap<Integer, LongAdder> unfoldedUnits = new ConcurrentHashMap<>();
+    // units claimed by sales being recorded or not yet folded, checked so the number sold cannot overflow
+    private final ConcurrentHashMap<Integer, LongAdder> claimedUnits = new ConcurrentHashMap<>();
+    // rows whose adder may hold units, and the flag held by the thread folding them
+    private final Set<Integer> unfoldedRows = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean folding = new AtomicBoolean();
 
     /**
      * Constructs a {@code Manufacturer} with the specified name.
@@ -26,8 +91,39 @@ class Manufacturer {
      */
     // Constructor
     public Manufacturer(String Mname) {
+        this(Mname, CarModelStorage.getDefault());
+    }
+
+    /**
+     * Constructs a {@code Manufacturer} object that keeps its car models in the given storage.
+     *
+     * @param Mname   the name of the manufacturer
+     * @param storage where the car models are kept, on the heap or off-heap
+     */
+    // Constructor choosing the car model storage
+    public Manufacturer(String Mname, CarModelStorage storage) {
+        this(Mname, storage.newColumns(CarModelColumns.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Constructs a {@code Manufacturer} that takes over columns already filled with car models,
+     * for example when a snapshot is reopened.
+     *
+     * @param Mname     the name of the manufacturer
+     * @param carModels the car models of the manufacturer
+     */
+    // Constructor used when loading car models in bulk
+    Manufacturer(String Mname, CarModelColumns carModels) {
         this.Mname = Mname;
-        this.carModels = new ArrayList<>();
+        this.carModels = carModels;
+        this.revenueByType = new CompensatedSum[CarType.values().length];
+        for (int i = 0; i < revenueByType.length; i++) {
+            revenueByType[i] = new CompensatedSum();
+        }
+        this.unitsSoldByType = new long[revenueByType.length];
+        this.carModelCountByType = new int[revenueByType.length];
+        carModels.setManufacturer(this);
+        rowsAdded(0, carModels.size());
     }
 
     /**
@@ -42,21 +138,386 @@ class Manufacturer {
 
     /**
      * Adds a car model to the manufacturer's list of car models.
+     * <p>
+     * The car model's values are copied into the manufacturer's own columns, so the car model passed in is
+     * not itself held by the manufacturer. Sales and price changes must be made through the returned view,
+     * or a view read back from the manufacturer, as {@link #recordSale(CarModel, int)} and
+     * {@link #repriceModel(CarModel, double)} reject the car model passed in.
+     * </p>
      *
      * @param model the {@code CarModel} object to be added
+     * @return the view of the car model as stored by this manufacturer
      */
     // Method to add car models
-    public void addCarModel(CarModel model) {
-        carModels.add(model);
+    public CarModel addCarModel(CarModel model) {
+        ReportingMetrics metrics = metrics();
+        long start = metrics == null ? ReportingMetrics.NOT_TIMED : metrics.start();
+        int row;
+        long stamp = lock.writeLock();
+        try {
+            // copied from the car model's own columns, so its name is copied as bytes without decoding it
+            row = carModels.add(model.getColumns(), model.getRow());
+            rowsAdded(row, row + 1);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (metrics != null) {
+            metrics.stop(TimedOperation.ADD_CAR_MODEL, start);
+        }
+        return viewOf(row);
+    }
+
+    /**
+     * Adds every car model held in a batch of columns.
+     * <p>
+     * The columns grow once for the whole batch, which is how bulk loaders add car models.
+     * The batch itself is left unchanged.
+     * </p>
+     *
+     * @param batch the car models to add
+     */
+    // Method to add a batch of car models in one go
+    void addCarModels(CarModelColumns batch) {
+        ReportingMetrics metrics = metrics();
+        long start = metrics == null ? ReportingMetrics.NOT_TIMED : metrics.start();
+        long stamp = lock.writeLock();
+        try {
+            int firstRow = carModels.addAll(batch);
+            rowsAdded(firstRow, carModels.size());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (metrics != null) {
+            metrics.stop(TimedOperation.ADD_CAR_MODELS, start);
+        }
+    }
+
+    // Method to find the metrics of the owner, or null before this manufacturer is added to a reporting system
+    private ReportingMetrics metrics() {
+        Reporting reporting = owner;
+        return reporting == null ? null : reporting.getMetrics();
+    }
+
+    // Method to update the price index, the per type totals and the owner after rows are added, with the write lock held
+    private void rowsAdded(int firstRow, int endRow) {
+        for (int row = firstRow; row < endRow; row++) {
+            double price = carModels.price(row);
+            int nSold = carModels.nSold(row);
+            int type = carModels.type(row);
+            priceIndex.add(price, row);
+
+            // keep the per type totals up to date so revenue reports do not need to rescan the models
+            revenueByType[type].add(price * nSold);
+            unitsSoldByType[type] += nSold;
+            carModelCountByType[type]++;
+        }
+        // only this thread writes the version, it holds the write lock
+        version++;
+        if (owner != null) {
+            owner.carModelsAdded(this, firstRow, endRow);
+        }
+    }
+
+    /**
+     * Records units sold of one of this manufacturer's car models.
+     * <p>
+     * The units are added to the car model's number sold, its type's revenue and units sold, the owner's
+     * rollup and revenue rankings, and the journal if there is one. Many threads can record sales of the
+     * same car model at once: see the class comment for how they are folded in without contention.
+     * </p>
+     *
+     * @param model the car model sold, a view returned by this manufacturer, such as by {@link #addCarModel(CarModel)}
+     * @param units the number of units sold
+     * @throws IllegalArgumentException if the car model is not one of this manufacturer's, if units is not
+     *                                  positive, or if the number sold would no longer fit in an {@code int}
+     */
+    // Method to record a sale of a car model
+    public void recordSale(CarModel model, int units) {
+        int row = rowOf(model);
+        if (units <= 0) {
+            throw new IllegalArgumentException("Units sold must be greater than zero.");
+        }
+        ReportingMetrics metrics = metrics();
+        long start = metrics == null ? ReportingMetrics.NOT_TIMED : metrics.start();
+        Integer key = row;
+        LongAdder claimed = claimedUnits.get(key);
+        if (claimed == null) {
+            claimed = claimedUnits.computeIfAbsent(key, r -> new LongAdder());
+        }
+        // claimed before the check, so of two sales checked at once the later one counts the earlier
+        claimed.add(units);
+        if (soldAndClaimed(row, claimed) > Integer.MAX_VALUE) {
+            claimed.add(-units);
+            throw new IllegalArgumentException("Too many units sold of car model '" + model.getName() + "'.");
+        }
+        LongAdder adder = unfoldedUnits.get(key);
+        if (adder == null) {
+            adder = unfoldedUnits.computeIfAbsent(key, r -> new LongAdder());
+        }
+        adder.add(units);
+        // only add the row if it is not already marked, so a hot car model does not write to the set on every sale
+        if (!unfoldedRows.contains(key)) {
+            unfoldedRows.add(key);
+        }
+        foldSales();
+        if (metrics != null) {
+            metrics.stop(TimedOperation.RECORD_SALE, start);
+        }
+    }
+
+    /**
+     * Changes the sales price of one of this manufacturer's car models.
+     * <p>
+     * The car model's revenue is moved from the old price to the new one in the running totals and the
+     * owner's rollup, and the car model is moved in both price indexes. Units recorded but not yet folded
+     * are counted at the new price when they are folded, as every unit sold is counted at the current price.
+     * </p>
+     *
+     * @param model the car model, a view returned by this manufacturer, such as by {@link #addCarModel(CarModel)}
+     * @param price the new sales price in GBP
+     * @throws IllegalArgumentException if the car model is not one of this manufacturer's, or the price is
+     *                                  negative or not a finite number
+     */
+    // Method to change the price of a car model
+    public void repriceModel(CarModel model, double price) {
+        int row = rowOf(model);
+        if (!(price >= 0 && price < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Sales price must be a finite amount of at least zero.");
+        }
+        ReportingMetrics metrics = metrics();
+        long start = metrics == null ? ReportingMetrics.NOT_TIMED : metrics.start();
+        long stamp = lock.writeLock();
+        try {
+            priceChanged(row, price);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (metrics != null) {
+            metrics.stop(TimedOperation.REPRICE_MODEL, start);
+        }
+    }
+
+    // Method to find the row of a car model view, checking it is one of this manufacturer's
+    private int rowOf(CarModel model) {
+        if (model == null || model.getColumns() != carModels || model.getRow() >= carModels.size()) {
+            // most often the car model passed to addCarModel, rather than the view it returned
+            throw new IllegalArgumentException("Car model does not belong to manufacturer '" + Mname
+                    + "', use the view returned by addCarModel or read from the manufacturer.");
+        }
+        return model.getRow();
+    }
+
+    // Method to read a row's folded units plus its claimed units, retried under the read lock if a fold got in the way
+    private long soldAndClaimed(int row, LongAdder claimed) {
+        long stamp = lock.tryOptimisticRead();
+        long units = claimed.sum() + carModels.nSold(row);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                units = claimed.sum() + carModels.nSold(row);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return units;
+    }
+
+    // Method to fold recorded sales in, unless another thread is already folding and will see them
+    private void foldSales() {
+        // the folder checks for marked rows again after clearing the flag, so a sale marked while it was
+        // folding, by a thread that then failed to take the flag, is always picked up
+        while (!unfoldedRows.isEmpty() && folding.compareAndSet(false, true)) {
+            try {
+                long stamp = lock.writeLock();
+                try {
+                    foldSalesLocked();
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            } finally {
+                folding.set(false);
+            }
+        }
+    }
+
+    // Method to move the units of every marked row from its adder into the columns, with the write lock held
+    private void foldSalesLocked() {
+        int[] rows = new int[Math.min(unfoldedRows.size() + 1, 64)];
+        long[] units = new long[rows.length];
+        int count = 0;
+        for (Integer row : unfoldedRows) {
+            // unmarked before the adder is emptied, so units added after this are marked again
+            unfoldedRows.remove(row);
+            long sold = unfoldedUnits.get(row).sumThenReset();
+            if (sold == 0) {
+                continue;
+            }
+            // the folded units are counted by the number sold from now on rather than by the claim
+            claimedUnits.get(row).add(-sold);
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+                units = Arrays.copyOf(units, count * 2);
+            }
+            rows[count] = row;
+            units[count] = sold;
+            count++;
+        }
+        if (count > 0) {
+            salesAdded(rows, units, count);
+        }
+    }
+
+    /**
+     * Sets the number sold of car models to values read back from the journal.
+     *
+     * @param rows  the rows of the car models
+     * @param nSold the number sold of each car model
+     * @param count the number of car models
+     */
+    // Method used by journal replay to restore units sold
+    void restoreUnitsSold(int[] rows, int[] nSold, int count) {
+        long[] units = new long[count];
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (rows[i] < 0 || rows[i] >= carModels.size()) {
+                    throw new IllegalArgumentException("No car model at row " + rows[i] + " of manufacturer '" + Mname + "'.");
+                }
+                units[i] = (long) nSold[i] - carModels.nSold(rows[i]);
+            }
+            salesAdded(rows, units, count);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the sales price of a car model to a value read back from the journal.
+     *
+     * @param row   the row of the car model
+     * @param price the sales price
+     */
+    // Method used by journal replay to restore a price change
+    void restorePrice(int row, double price) {
+        long stamp = lock.writeLock();
+        try {
+            if (row < 0 || row >= carModels.size()) {
+                throw new IllegalArgumentException("No car model at row " + row + " of manufacturer '" + Mname + "'.");
+            }
+            priceChanged(row, price);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Method to add units sold to the columns, the per type totals and the owner, with the write lock held
+    private void salesAdded(int[] rows, long[] units, int count) {
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            int type = carModels.type(row);
+            double price = carModels.price(row);
+            int oldSold = carModels.nSold(row);
+            // recordSale only accepts units whose number sold fits in an int
+            int newSold = (int) (oldSold + units[i]);
+            carModels.setNSold(row, newSold);
+            // take the old revenue out and put the new revenue in rather than adding price * units, so the
+            // total stays the sum of price * nSold that recalculateRevenueByType works out
+            revenueByType[type].add(-price * oldSold);
+            revenueByType[type].add(price * newSold);
+            unitsSoldByType[type] += units[i];
+        }
+        version++;
+        if (owner != null) {
+            owner.salesAdded(this, rows, units, count);
+        }
+    }
+
+    // Method to change the price of a row in the columns, the price index, the per type totals and the owner,
+    // with the write lock held
+    private void priceChanged(int row, double price) {
+        double oldPrice = carModels.price(row);
+        if (Double.compare(oldPrice, price) == 0) {
+            return;
+        }
+        int type = carModels.type(row);
+        int nSold = carModels.nSold(row);
+        carModels.setPrice(row, price);
+        priceIndex.remove(oldPrice, row);
+        priceIndex.add(price, row);
+        revenueByType[type].add(-oldPrice * nSold);
+        revenueByType[type].add(price * nSold);
+        version++;
+        if (owner != null) {
+            owner.carModelRepriced(this, row, oldPrice);
+        }
+    }
+
+    /**
+     * Links this manufacturer to the reporting system it has been added to.
+     * <p>
+     * The owner is told about the car models already held while the write lock is held, so a car model
+     * added by another thread at the same time is reported to the owner exactly once.
+     * </p>
+     *
+     * @param owner the reporting system
+     * @param index the position of this manufacturer in the reporting system
+     * @throws IllegalArgumentException if the manufacturer already belongs to another reporting system
+     */
+    // Method called by Reporting when the manufacturer is added
+    void attach(Reporting owner, int index) {
+        long stamp = lock.writeLock();
+        try {
+            if (this.owner != null && this.owner != owner) {
+                throw new IllegalArgumentException("Manufacturer '" + Mname + "' already belongs to another report.");
+            }
+            this.owner = owner;
+            this.index = index;
+            owner.manufacturerAttached(this, carModels.size());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Getter method for the reporting system this manufacturer belongs to, or null
+    Reporting getOwner() {
+        return owner;
+    }
+
+    // Getter method for the version stamp, which changes whenever car models are added, sold or repriced
+    long getVersion() {
+        return version;
+    }
+
+    // Method to answer a report from the owner's result cache, or directly when this manufacturer has no owner
+    private <T> T cached(String report, Supplier<T> query, Object... parameters) {
+        Reporting reporting = owner;
+        if (reporting == null) {
+            return query.get();
+        }
+        // read the version before running the query, so a result that misses a concurrent add is never reused
+        return reporting.getCache().get(report, this, version, query, parameters);
+    }
+
+    // Getter method for the position of this manufacturer in its reporting system
+    int getIndex() {
+        return index;
     }
 
     /**
      * Returns a list of all car models associated with this manufacturer.
+     * <p>
+     * The list is a read-only view over the stored columns, each element is a {@code CarModel} view of one row.
+     * </p>
      *
      * @return a list of {@code CarModel} objects
      */
     // Getter method for list of Car models
     public List<CarModel> getCarModels() {
+        return carModels.asList();
+    }
+
+    // Getter method for the column store, used by reports that scan the primitive columns
+    CarModelColumns getColumns() {
         return carModels;
     }
 
@@ -66,15 +527,36 @@ class Manufacturer {
      */
     // Method to display all car models of the manufacturer
     public void displayManufacturer() {
-        System.out.println("Manufacturer: " + getMname());
-        System.out.println("Car Models: ");
+        new ReportRenderer(System.out).manufacturer(this).flush();
+    }
 
-        // Loop through and print each car model's details
-        for (CarModel model : carModels) {
-            System.out.println(model.getName() + " Type: " + model.getType() + " Price: $" + model.getSales_price());
-        }
+
+    /**
+     * Finds the most expensive car model manufactured by this manufacturer.
+     *
+     * @return the most expensive car model, or {@code null} if the manufacturer has no car models
+     */
+    // Method to find the most expensive car model
+    public MostExpensiveResult getMostExpensiveCarModel() {
+        return cached("mostExpensive", this::findMostExpensiveCarModel);
     }
 
+    // Method to scan the price column for the most expensive car model
+    private MostExpensiveResult findMostExpensiveCarModel() {
+        //check if the manufacturer has car models
+        int size = carModels.size(); // rows added after this are not scanned
+        ReportingMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.rowsScanned(size);
+        }
+        if (size == 0) {
+            return null;
+        }
+
+        // scan the price column for the most expensive car, the first one if several share its price
+        int mostExpensiveRow = carModels.mostExpensiveRow(0, size);
+        return new MostExpensiveResult(Mname, carModels.view(mostExpensiveRow));
+    }
 
     /**
      * Finds and displays the most expensive car model manufactured by this manufacturer.
@@ -82,83 +564,295 @@ class Manufacturer {
      */
     // Method to find and display the most expensive car model
     public void displayMostExpensiveCarModel() {
-        //check if the manufacturer has car models
-        if (carModels.isEmpty()) {
-            System.out.println("No car models available.");
-            return;
+        new ReportRenderer(System.out).mostExpensiveCarModel(getMostExpensiveCarModel()).flush();
+    }
+
+
+    /**
+     * Calculates the total revenue generated by a specific car type.
+     * If the car type is invalid, 0 is returned.
+     *
+     * @param carType the name of the car type (hatchback, saloon, or estate)
+     * @return the total revenue for the car type
+     */
+    // Method to calculate total revenue generated by a specific car type
+    public double calculateTotalRevenueByType(String carType) {
+        //validate the car type to prevent errors
+        CarType type = CarType.parse(carType);
+        if (type == null) {
+            return 0.0;
         }
+        return calculateTotalRevenueByType(type);
+    }
+
+    /**
+     * Calculates the total revenue generated by a specific car type.
+     * <p>
+     * The total is read from the running totals kept by {@link #addCarModel(CarModel)}.
+     * </p>
+     *
+     * @param carType the car type
+     * @return the total revenue for the car type
+     */
+    // Method to calculate total revenue for an already parsed car type
+    public double calculateTotalRevenueByType(CarType carType) {
+        return getRevenueByType(carType);
+    }
 
-        //Assume first car model is the most expensive car model
-        CarModel mostExpensive = carModels.get(0); // Assume first car is the most expensive
+    /**
+     * Returns the revenue, units sold and number of car models for a car type.
+     *
+     * @param carType the car type
+     * @return the sales figures for the car type
+     */
+    // Method to get all running totals for a car type as one result
+    public RevenueByType getSalesByType(CarType carType) {
+        int type = carType.ordinal();
+        // read the three totals together so they always describe the same car models
+        long stamp = lock.tryOptimisticRead();
+        double revenue = revenueByType[type].get();
+        long unitsSold = unitsSoldByType[type];
+        int count = carModelCountByType[type];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                revenue = revenueByType[type].get();
+                unitsSold = unitsSoldByType[type];
+                count = carModelCountByType[type];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return new RevenueByType(Mname, carType, revenue, unitsSold, count);
+    }
 
-        // loop through the list to find the most expensive car
-        for (CarModel model : carModels) {
-            if (model.getSales_price() > mostExpensive.getSales_price()) {
-                mostExpensive = model;
+    /**
+     * Returns the total revenue for a car type.
+     *
+     * @param carType the car type
+     * @return the total revenue for the car type
+     */
+    // Getter methods for the running totals per car type
+    public double getRevenueByType(CarType carType) {
+        long stamp = lock.tryOptimisticRead();
+        double revenue = revenueByType[carType.ordinal()].get();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                revenue = revenueByType[carType.ordinal()].get();
+            } finally {
+                lock.unlockRead(stamp);
             }
         }
+        return revenue;
+    }
 
-        // Print the most expensive car details
-        System.out.println("\nMost Expensive Car Model:");
-        System.out.println("Name: " + mostExpensive.getName());
-        System.out.println("Weight: " + mostExpensive.getWeight());
-        System.out.println("Sales Price: £" + mostExpensive.getSales_price());
-        System.out.println("Number Sold: " + mostExpensive.getNSold());
-        System.out.println("Type: " + mostExpensive.getType());
+    public long getUnitsSoldByType(CarType carType) {
+        return getSalesByType(carType).unitsSold();
     }
 
+    public int getCarModelCountByType(CarType carType) {
+        return getSalesByType(carType).carModelCount();
+    }
+
+    // Method for the owner to read a running total while this manufacturer's write lock is already held
+    double getRevenueByTypeLocked(CarType carType) {
+        return revenueByType[carType.ordinal()].get();
+    }
 
     /**
-     * Finds and displays the most expensive car model manufactured by this manufacturer.
-     * If no car models exist, a message is displayed.
+     * Recalculates the total revenue for a car type by scanning every car model.
+     * <p>
+     * This uses the same compensated summation as the running totals, so the result is within a
+     * rounding of the total of {@link #getRevenueByType(CarType)}, and equal to it when the prices and
+     * revenues are whole numbers. It is used to check the running totals.
+     * </p>
+     *
+     * @param carType the car type
+     * @return the total revenue for the car type
      */
-    // Method to calculate total revenue generated by a specific car type
-    public double calculateTotalRevenueByType(String carType) {
-        double totalRevenue = 0.0;
+    // Method to calculate revenue for a car type from scratch by comparing ordinals
+    public double recalculateRevenueByType(CarType carType) {
+        CompensatedSum totalRevenue = new CompensatedSum();
 
-        //validate the car type to prevent errors
-        if (!carType.equalsIgnoreCase("hatchback") &&
-                !carType.equalsIgnoreCase("saloon") &&
-                !carType.equalsIgnoreCase("estate")) {
-            System.out.println("Invalid car type. Please enter hatchback, saloon, or estate.");
-            return totalRevenue;
-        }
+        // Scan the columns and calculate revenue for the specified type
+        int size = carModels.size(); // rows added after this are not scanned
+        carModels.addRevenueByType(0, size, carType.code(), totalRevenue);
+        return totalRevenue.get();
+    }
 
-        // Loop through car models and calculate revenue for the specified type
-        for (CarModel model : carModels) {
-            if (model.getType().equalsIgnoreCase(carType)) {
-                totalRevenue += model.getSales_price() * model.getNSold();
-            }
+    /**
+     * Finds the car models priced above the given price by scanning the price column, in the order they were added.
+     * <p>
+     * Reports use the price index instead; this full scan is for checking it.
+     * </p>
+     *
+     * @param price the price threshold
+     * @return a list of {@code CarModel} objects priced above the given amount
+     */
+    // Method to find the car models above a price from scratch
+    public List<CarModel> scanCarModelsAbovePrice(double price) {
+        int size = carModels.size(); // rows added after this are not scanned
+        ReportingMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.rowsScanned(size);
         }
-
-        // Display and return the total revenue
-        System.out.println("\nTotal Revenue for " + carType + "s: £" + totalRevenue);
-        return totalRevenue;
+        int[] rows = new int[size];
+        int count = carModels.rowsAbovePrice(0, size, price, rows);
+        List<CarModel> models = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            models.add(carModels.view(rows[i]));
+        }
+        return models;
     }
 
     /**
-     * Displays all car models that have a sales price greater than a specified amount.
+     * Displays the first {@value #DISPLAY_LIMIT} car models that have a sales price greater than a specified
+     * amount, cheapest first, and how many there are in all.
      * If no models meet the criteria, a message is displayed.
      *
      * @param price the price threshold
      */
     // Method to get and display car models with a price greater than a given amount
     public void displayCarModelsAbovePrice(double price) {
-        System.out.println("\nCar Models with a price greater than £" + price + ":");
-        boolean found = false;
-
-        // Loop through all car models and check if price is above the given threshold
-        for (CarModel model : carModels) {
-            if (model.getSales_price() > price) {
-                System.out.println(model.getName() + " (£" + model.getSales_price() + ")");
-                found = true;
-            }
-        }
+        displayCarModelsAbovePrice(price, DISPLAY_LIMIT);
+    }
 
-        // If no models were found above the given price, display a message
-        if (!found) {
-            System.out.println("No car models found above £" + price);
+    /**
+     * Displays the first car models that have a sales price greater than a specified amount, cheapest first,
+     * and how many there are in all. Only the car models displayed are read.
+     *
+     * @param price the price threshold
+     * @param limit the most car models to display
+     */
+    // Method to display the first page of car models with a price greater than a given amount
+    public void displayCarModelsAbovePrice(double price, int limit) {
+        new ReportRenderer(System.out).carModelsAbovePrice(price, getCarModelsAbovePrice(price, 0, limit)).flush();
+    }
+
+    /**
+     * Returns the car models with a sales price greater than the given price, cheapest first.
+     * <p>
+     * The result is a read-only view over the price index, the car models are not copied.
+     * </p>
+     *
+     * @param price the price threshold
+     * @return a list of {@code CarModel} objects priced above the given amount
+     */
+    // Methods to query the price index
+    public List<CarModel> getCarModelsAbovePrice(double price) {
+        return cached("above", () -> priceIndex.above(price).asList(this::viewOf), price);
+    }
+
+    /**
+     * Streams the car models with a sales price greater than the given price, cheapest first.
+     * Car models are only looked up as the stream consumes them.
+     *
+     * @param price the price threshold
+     * @return a lazy stream of the car models priced above the given amount
+     */
+    public Stream<CarModel> streamCarModelsAbovePrice(double price) {
+        return StreamSupport.stream(priceIndex.above(price).spliterator(this::viewOf), false);
+    }
+
+    /**
+     * Returns one page of the car models with a sales price greater than the given price, cheapest first.
+     * See {@link Reporting#getCarModelsAbovePrice(double, int, int)}.
+     *
+     * @param price  the price threshold
+     * @param offset the number of matching car models to skip
+     * @param limit  the most car models on the page
+     * @return the page
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public CarModelPage getCarModelsAbovePrice(double price, int offset, int limit) {
+        return CarModelPage.of(price, priceIndex.above(price), offset, limit, this::viewOf);
+    }
+
+    /**
+     * Returns the page of car models with a sales price greater than the given price that follows an earlier page.
+     * See {@link Reporting#getCarModelsAbovePrice(double, String, int)}.
+     *
+     * @param price     the price threshold
+     * @param pageToken the token of the earlier page, or {@code null} for the first page
+     * @param limit     the most car models on the page
+     * @return the page
+     * @throws IllegalArgumentException if the token is not valid, is from a query with another price threshold,
+     *                                  or the limit is negative
+     */
+    public CarModelPage getCarModelsAbovePrice(double price, String pageToken, int limit) {
+        return CarModelPage.after(price, priceIndex.above(price), pageToken, limit, this::viewOf);
+    }
+
+    /**
+     * Returns the car models with a sales price less than the given price, cheapest first.
+     *
+     * @param price the price threshold
+     * @return a list of {@code CarModel} objects priced below the given amount
+     */
+    public List<CarModel> getCarModelsBelowPrice(double price) {
+        return priceIndex.below(price).asList(this::viewOf);
+    }
+
+    /**
+     * Returns the car models with a sales price between two prices, both inclusive, cheapest first.
+     *
+     * @param minPrice the lowest price to include
+     * @param maxPrice the highest price to include
+     * @return a list of {@code CarModel} objects priced within the range
+     */
+    public List<CarModel> getCarModelsBetweenPrices(double minPrice, double maxPrice) {
+        return priceIndex.between(minPrice, maxPrice).asList(this::viewOf);
+    }
+
+    /**
+     * Returns the {@code n} most expensive car models, most expensive first.
+     *
+     * @param n the number of car models to return
+     * @return a list of at most {@code n} {@code CarModel} objects
+     */
+    public List<CarModel> getMostExpensiveCarModels(int n) {
+        return priceIndex.highest(n).asList(this::viewOf);
+    }
+
+    /**
+     * Returns the {@code k} best car models of this manufacturer by a measure, best first.
+     * <p>
+     * The car models are found in one pass with a bounded heap, O(n log k), without sorting a copy of them.
+     * If two car models score the same, the one added first ranks higher.
+     * </p>
+     *
+     * @param k       the number of car models to return
+     * @param rankBy  the measure to rank by
+     * @param carType the car type to include, or {@code null} for every type
+     * @return a list of at most {@code k} ranked car models
+     */
+    // Method to find the top car models by price, revenue or units sold
+    public List<RankedCarModel> getTopCarModels(int k, RankBy rankBy, CarType carType) {
+        return cached("top", () -> findTopCarModels(k, rankBy, carType), k, rankBy, carType);
+    }
+
+    // Method to scan the columns for the top car models
+    private List<RankedCarModel> findTopCarModels(int k, RankBy rankBy, CarType carType) {
+        int size = carModels.size();
+        ReportingMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.rowsScanned(size);
         }
+        TopK top = new TopK(k);
+        ParallelReports.scanTop(carModels, 0, 0, size, rankBy, carType == null ? -1 : carType.code(), top);
+        top.sort();
+        List<RankedCarModel> results = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            results.add(new RankedCarModel(i + 1, Mname, viewOf(top.key(i)), top.score(i)));
+        }
+        // the list may be cached and shared between callers
+        return Collections.unmodifiableList(results);
+    }
+
+    // Method to turn a price index key back into a car model view
+    private CarModel viewOf(long key) {
+        return carModels.view((int) key);
     }
 
     // Main method for testing
@@ -193,12 +887,12 @@ class Manufacturer {
 
             // Calculate and display revenue for each type
             //valid
-            manufacturer.calculateTotalRevenueByType("Hatchback");
-            manufacturer.calculateTotalRevenueByType("Saloon");
+            System.out.println("Hatchback revenue: £" + manufacturer.calculateTotalRevenueByType("Hatchback"));
+            System.out.println("Saloon revenue: £" + manufacturer.calculateTotalRevenueByType("Saloon"));
             //boundary
-            manufacturer.calculateTotalRevenueByType("EsTatE");
+            System.out.println("Estate revenue: £" + manufacturer.calculateTotalRevenueByType("EsTatE"));
             //erroneous
-            manufacturer.calculateTotalRevenueByType("SUV");
+            System.out.println("SUV revenue: £" + manufacturer.calculateTotalRevenueByType("SUV"));
 
             //valid
             manufacturer.displayCarModelsAbovePrice(15000);
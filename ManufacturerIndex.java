@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The {@code ManufacturerIndex} class finds manufacturers by name without looping through all of them.
+ * <p>
+ * Names are canonicalised once (trimmed and lower-cased) and used as keys, so lookups ignore case
+ * like {@code equalsIgnoreCase} but cost a single hash lookup. A sorted copy of the keys answers
+ * prefix searches for autocomplete. The index only allows one manufacturer per canonical name.
+ * Both maps are concurrent, so lookups never wait for a manufacturer being added.
+ * </p>
+ */
+// ManufacturerIndex class maps canonical manufacturer names to manufacturers
+class ManufacturerIndex {
+    private final Map<String, Manufacturer> byName = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, Manufacturer> sortedByName = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the canonical form of a manufacturer name used as the index key.
+     *
+     * @param name the manufacturer name
+     * @return the trimmed, lower-case name
+     */
+    // Method to canonicalise a name so "Tesla", " tesla" and "TESLA" share one key
+    static String canonical(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds a manufacturer to the index.
+     *
+     * @param manufacturer the manufacturer to add
+     * @throws IllegalArgumentException if a manufacturer with the same name is already indexed
+     */
+    // Method to add a manufacturer, rejecting duplicate names
+    void add(Manufacturer manufacturer) {
+        String key = canonical(manufacturer.getMname());
+        if (byName.putIfAbsent(key, manufacturer) != null) {
+            throw new IllegalArgumentException("Manufacturer '" + manufacturer.getMname() + "' already exists.");
+        }
+        sortedByName.put(key, manufacturer);
+    }
+
+    // Method to check whether a name is already taken
+    boolean contains(String name) {
+        return byName.containsKey(canonical(name));
+    }
+
+    /**
+     * Finds a manufacturer by name, ignoring case and surrounding spaces.
+     *
+     * @param name the manufacturer name
+     * @return the manufacturer, or {@code null} if none has that name or the name is {@code null}
+     */
+    // Method to look up a manufacturer by name
+    Manufacturer get(String name) {
+        if (name == null) {
+            return null;
+        }
+        return byName.get(canonical(name));
+    }
+
+    /**
+     * Finds manufacturers whose name starts with a prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix the start of the name
+     * @param limit  the maximum number of manufacturers to return
+     * @return the matching manufacturers
+     */
+    // Method to list manufacturers for autocomplete
+    List<Manufacturer> startingWith(String prefix, int limit) {
+        String key = canonical(prefix);
+        List<Manufacturer> matches = new ArrayList<>();
+        for (Map.Entry<String, Manufacturer> entry : sortedByName.tailMap(key, true).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().startsWith(key)) {
+                break;
+            }
+            matches.add(entry.getValue());
+        }
+        return matches;
+    }
+}
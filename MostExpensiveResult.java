@@ -0,0 +1,10 @@
+/**
+ * The {@code MostExpensiveResult} record holds the most expensive car model found by a query
+ * and the manufacturer that makes it.
+ *
+ * @param manufacturer the name of the manufacturer
+ * @param carModel     the most expensive car model
+ */
+// MostExpensiveResult record is the result of a most expensive car model query
+public record MostExpensiveResult(String manufacturer, CarModel carModel) {
+}
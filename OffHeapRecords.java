@@ -0,0 +1,82 @@
+/**
+ * The {@code OffHeapRecords} interface is the storage behind {@code CarModelColumns} kept outside the Java heap:
+ * one fixed-width record per car model, and a string area holding each distinct name once as UTF-8 bytes.
+ * <p>
+ * It is implemented by {@code SegmentRecords} with the Foreign Memory API, so the rest of the program does not
+ * depend on that API.
+ * </p>
+ * <p>
+ * The same rules as for the on-heap columns apply: one thread at a time writes, the thread adding rows, and any
+ * number of threads read rows below a size the owning columns have published. Records and names are copied
+ * into new memory when they grow, and a reader still holding the old memory keeps seeing the rows it had.
+ * </p>
+ */
+// OffHeapRecords interface stores car model records and names outside the heap
+interface OffHeapRecords {
+    /**
+     * Writes a record, making room for it first if needed. Rows are written in order, each one after the last.
+     *
+     * @param row      the row to write
+     * @param nameId   the id of the name, from {@link #intern(byte[], int, int)}, or {@link StringDictionary#NULL_ID}
+     * @param weight   the weight of the car model in kilograms
+     * @param price    the sales price of the car model in GBP
+     * @param units    the number of units sold
+     * @param typeCode the byte code of the car type
+     */
+    void set(int row, int nameId, double weight, double price, int units, byte typeCode);
+
+    // Getter methods for the values of a record
+    int nameId(int row);
+
+    double weight(int row);
+
+    double price(int row);
+
+    int nSold(int row);
+
+    byte type(int row);
+
+    // Setter methods for the values of a record that can change after it is written
+    void setNSold(int row, int nSold);
+
+    void setPrice(int row, double price);
+
+    /**
+     * Copies the prices, weights, units sold and types of a run of rows into arrays, starting at index 0.
+     *
+     * @param from    the first row
+     * @param to      the row after the last
+     * @param prices  receives the prices
+     * @param weights receives the weights
+     * @param nSold   receives the units sold
+     * @param types   receives the car type codes
+     */
+    void copyRows(int from, int to, double[] prices, double[] weights, int[] nSold, byte[] types);
+
+    /**
+     * Returns the id of the name held as UTF-8 in part of a buffer, adding it to the string area if it is new.
+     *
+     * @param buffer the bytes holding the name
+     * @param from   the index of the first byte
+     * @param to     the index after the last byte
+     * @return the id of the name
+     */
+    int intern(byte[] buffer, int from, int to);
+
+    /**
+     * Returns the name with the given id, decoded from the string area.
+     *
+     * @param nameId the id returned when the name was interned
+     * @return a new {@code String} equal to the name
+     */
+    String name(int nameId);
+
+    // Getter method for the number of distinct names in the string area
+    int distinctNames();
+
+    // Method to empty the string area, the records are overwritten as rows are written again
+    void clearNames();
+
+    // Getter method for the bytes of memory held outside the heap
+    long offHeapBytes();
+}
@@ -0,0 +1,444 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code ParallelReports} class runs the reports that scan every car model on the fork-join pool.
+ * <p>
+ * The work is split across manufacturers and, for large manufacturers, into chunks of rows. Partial
+ * results are merged so the answer is exactly the one the sequential loop gives: the most expensive
+ * car model is the first one found with the highest price, and each manufacturer's revenue is still
+ * summed in row order by a single thread. Top-K queries give each task its own bounded heap and merge
+ * the heaps, which gives the same car models as one heap over the whole catalogue. Group-by queries
+ * likewise give each task its own {@code GroupTable} and merge the tables.
+ * </p>
+ * <p>
+ * Catalogues with fewer car models than the threshold are scanned on the calling thread, so small
+ * catalogues do not pay for task creation.
+ * </p>
+ */
+// ParallelReports class splits report scans into fork-join tasks
+final class ParallelReports {
+    // default number of car models below which reports stay on the calling thread
+    static final int DEFAULT_THRESHOLD = 100_000;
+    // largest run of rows handled by one task
+    private static final int CHUNK_ROWS = 32_768;
+
+    // the class only holds static methods
+    private ParallelReports() {
+    }
+
+    // Best class is the most expensive car model found in part of the catalogue
+    private static final class Best {
+        private final double price;
+        private final int manufacturer;
+        private final int row;
+
+        Best(double price, int manufacturer, int row) {
+            this.price = price;
+            this.manufacturer = manufacturer;
+            this.row = row;
+        }
+
+        // Method to keep the higher price, or the earlier car model if the prices are equal
+        static Best merge(Best left, Best right) {
+            if (left == null) {
+                return right;
+            }
+            if (right == null || right.price <= left.price) {
+                return left;
+            }
+            return right;
+        }
+    }
+
+    /**
+     * Finds the most expensive car model across manufacturers.
+     *
+     * @param manufacturers the manufacturers to search
+     * @param totalRows     the total number of car models held by the manufacturers
+     * @param threshold     the number of car models at which the search runs in parallel
+     * @return the manufacturer index in the upper 32 bits and the row in the lower 32 bits, or -1 if there are no car models
+     */
+    // Method to find the most expensive car model, in parallel for large catalogues
+    static long mostExpensive(List<Manufacturer> manufacturers, long totalRows, int threshold) {
+        Best best;
+        if (totalRows < threshold) {
+            best = scanMostExpensive(manufacturers, 0, manufacturers.size());
+        } else {
+            best = ForkJoinPool.commonPool().invoke(new MostExpensiveTask(manufacturers, 0, manufacturers.size()));
+        }
+        return best == null ? -1 : ((long) best.manufacturer << 32) | best.row;
+    }
+
+    // Method to scan whole manufacturers on the calling thread
+    private static Best scanMostExpensive(List<Manufacturer> manufacturers, int from, int to) {
+        Best best = null;
+        for (int m = from; m < to; m++) {
+            CarModelColumns columns = manufacturers.get(m).getColumns();
+            best = Best.merge(best, scanRows(columns, m, 0, columns.size()));
+        }
+        return best;
+    }
+
+    // Method to scan a run of rows of one manufacturer
+    private static Best scanRows(CarModelColumns columns, int manufacturer, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int bestRow = columns.mostExpensiveRow(from, to);
+        return new Best(columns.price(bestRow), manufacturer, bestRow);
+    }
+
+    // MostExpensiveTask class splits the manufacturers in half until one manufacturer is left
+    @SuppressWarnings("serial")
+    private static final class MostExpensiveTask extends RecursiveTask<Best> {
+        private final List<Manufacturer> manufacturers;
+        private final int from;
+        private final int to;
+
+        MostExpensiveTask(List<Manufacturer> manufacturers, int from, int to) {
+            this.manufacturers = manufacturers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Best compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                MostExpensiveTask left = new MostExpensiveTask(manufacturers, from, mid);
+                left.fork();
+                Best right = new MostExpensiveTask(manufacturers, mid, to).compute();
+                return Best.merge(left.join(), right);
+            }
+            if (to == from) {
+                return null;
+            }
+            CarModelColumns columns = manufacturers.get(from).getColumns();
+            return new RowChunkTask(columns, from, 0, columns.size()).compute();
+        }
+    }
+
+    // RowChunkTask class splits one manufacturer's rows into chunks
+    @SuppressWarnings("serial")
+    private static final class RowChunkTask extends RecursiveTask<Best> {
+        private final CarModelColumns columns;
+        private final int manufacturer;
+        private final int from;
+        private final int to;
+
+        RowChunkTask(CarModelColumns columns, int manufacturer, int from, int to) {
+            this.columns = columns;
+            this.manufacturer = manufacturer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Best compute() {
+            if (to - from <= CHUNK_ROWS) {
+                return scanRows(columns, manufacturer, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            RowChunkTask left = new RowChunkTask(columns, manufacturer, from, mid);
+            left.fork();
+            Best right = new RowChunkTask(columns, manufacturer, mid, to).compute();
+            return Best.merge(left.join(), right);
+        }
+    }
+
+    /**
+     * Finds the {@code k} best car models across manufacturers in a single pass, keeping a bounded heap per task.
+     *
+     * @param manufacturers the manufacturers to search
+     * @param k             the number of car models to find
+     * @param rankBy        the measure to rank by
+     * @param carType       the car type to include, or {@code null} for every type
+     * @param totalRows     the total number of car models held by the manufacturers
+     * @param threshold     the number of car models at which the search runs in parallel
+     * @return the best car models, keyed by manufacturer index in the upper 32 bits and row in the lower 32 bits
+     */
+    // Method to find the top car models, in parallel for large catalogues
+    static TopK topCarModels(List<Manufacturer> manufacturers, int k, RankBy rankBy, CarType carType, long totalRows, int threshold) {
+        int typeCode = carType == null ? -1 : carType.code();
+        if (totalRows < threshold) {
+            TopK top = new TopK(k);
+            for (int m = 0; m < manufacturers.size(); m++) {
+                CarModelColumns columns = manufacturers.get(m).getColumns();
+                scanTop(columns, m, 0, columns.size(), rankBy, typeCode, top);
+            }
+            return top;
+        }
+        return ForkJoinPool.commonPool().invoke(new TopTask(manufacturers, k, rankBy, typeCode, 0, manufacturers.size()));
+    }
+
+    /**
+     * Offers a run of one manufacturer's rows to a heap.
+     *
+     * @param columns      the manufacturer's columns
+     * @param manufacturer the manufacturer index placed in the upper 32 bits of each key
+     * @param from         the first row
+     * @param to           the row after the last, read from {@code columns.size()} before calling
+     * @param rankBy       the measure to rank by
+     * @param typeCode     the car type code to include, or -1 for every type
+     * @param top          the heap
+     */
+    // Method to scan a run of rows into a bounded heap
+    static void scanTop(CarModelColumns columns, int manufacturer, int from, int to, RankBy rankBy, int typeCode, TopK top) {
+        long base = (long) manufacturer << 32;
+        CarModelColumns.Slice slice = null;
+        for (int start = from; start < to; start = slice.end()) {
+            slice = columns.slice(start, to, slice);
+            double[] prices = slice.prices();
+            int[] nSold = slice.nSold();
+            byte[] types = slice.types();
+            int offset = slice.base();
+            for (int row = start; row < slice.end(); row++) {
+                if (typeCode < 0 || types[row - offset] == typeCode) {
+                    top.offer(rankBy.score(prices[row - offset], nSold[row - offset]), base | row);
+                }
+            }
+        }
+    }
+
+    // TopTask class splits the manufacturers in half until one manufacturer is left
+    @SuppressWarnings("serial")
+    private static final class TopTask extends RecursiveTask<TopK> {
+        private final List<Manufacturer> manufacturers;
+        private final int k;
+        private final RankBy rankBy;
+        private final int typeCode;
+        private final int from;
+        private final int to;
+
+        TopTask(List<Manufacturer> manufacturers, int k, RankBy rankBy, int typeCode, int from, int to) {
+            this.manufacturers = manufacturers;
+            this.k = k;
+            this.rankBy = rankBy;
+            this.typeCode = typeCode;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                TopTask left = new TopTask(manufacturers, k, rankBy, typeCode, from, mid);
+                left.fork();
+                TopK right = new TopTask(manufacturers, k, rankBy, typeCode, mid, to).compute();
+                right.addAll(left.join());
+                return right;
+            }
+            if (to == from) {
+                return new TopK(k);
+            }
+            CarModelColumns columns = manufacturers.get(from).getColumns();
+            return new TopChunkTask(columns, from, 0, columns.size(), k, rankBy, typeCode).compute();
+        }
+    }
+
+    // TopChunkTask class splits one manufacturer's rows into chunks, each with its own heap
+    @SuppressWarnings("serial")
+    private static final class TopChunkTask extends RecursiveTask<TopK> {
+        private final CarModelColumns columns;
+        private final int manufacturer;
+        private final int from;
+        private final int to;
+        private final int k;
+        private final RankBy rankBy;
+        private final int typeCode;
+
+        TopChunkTask(CarModelColumns columns, int manufacturer, int from, int to, int k, RankBy rankBy, int typeCode) {
+            this.columns = columns;
+            this.manufacturer = manufacturer;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.rankBy = rankBy;
+            this.typeCode = typeCode;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from <= CHUNK_ROWS) {
+                TopK top = new TopK(k);
+                scanTop(columns, manufacturer, from, to, rankBy, typeCode, top);
+                return top;
+            }
+            int mid = (from + to) >>> 1;
+            TopChunkTask left = new TopChunkTask(columns, manufacturer, from, mid, k, rankBy, typeCode);
+            left.fork();
+            TopK right = new TopChunkTask(columns, manufacturer, mid, to, k, rankBy, typeCode).compute();
+            right.addAll(left.join());
+            return right;
+        }
+    }
+
+    /**
+     * Recalculates every manufacturer's revenue for a car type by scanning their car models.
+     *
+     * @param manufacturers the manufacturers
+     * @param carType       the car type
+     * @param totalRows     the total number of car models held by the manufacturers
+     * @param threshold     the number of car models at which the scan runs in parallel
+     * @return the revenue of each manufacturer, in the same order as {@code manufacturers}
+     */
+    // Method to recalculate revenue per manufacturer, in parallel for large catalogues
+    static double[] recalculateRevenueByType(List<Manufacturer> manufacturers, CarType carType, long totalRows, int threshold) {
+        double[] revenue = new double[manufacturers.size()];
+        if (totalRows < threshold) {
+            for (int m = 0; m < revenue.length; m++) {
+                revenue[m] = manufacturers.get(m).recalculateRevenueByType(carType);
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new RevenueTask(manufacturers, carType, revenue, 0, revenue.length));
+        }
+        return revenue;
+    }
+
+    // RevenueTask class gives each manufacturer's revenue to its own task
+    @SuppressWarnings("serial")
+    private static final class RevenueTask extends RecursiveAction {
+        private final List<Manufacturer> manufacturers;
+        private final CarType carType;
+        private final double[] revenue;
+        private final int from;
+        private final int to;
+
+        RevenueTask(List<Manufacturer> manufacturers, CarType carType, double[] revenue, int from, int to) {
+            this.manufacturers = manufacturers;
+            this.carType = carType;
+            this.revenue = revenue;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RevenueTask(manufacturers, carType, revenue, from, mid),
+                        new RevenueTask(manufacturers, carType, revenue, mid, to));
+            } else if (to > from) {
+                revenue[from] = manufacturers.get(from).recalculateRevenueByType(carType);
+            }
+        }
+    }
+
+    /**
+     * Adds up every car model into its group in a single pass.
+     *
+     * @param manufacturers the manufacturers to scan
+     * @param keys          the layout of the group keys
+     * @param totalRows     the total number of car models held by the manufacturers
+     * @param threshold     the number of car models at which the scan runs in parallel
+     * @return the figures of every group
+     */
+    // Method to group and aggregate every car model, in parallel for large catalogues
+    static GroupTable groupBy(List<Manufacturer> manufacturers, PivotKeys keys, long totalRows, int threshold) {
+        if (totalRows < threshold) {
+            GroupTable table = new GroupTable();
+            for (int m = 0; m < manufacturers.size(); m++) {
+                CarModelColumns columns = manufacturers.get(m).getColumns();
+                scanGroups(columns, keys.manufacturerKey(m), 0, columns.size(), keys, table);
+            }
+            return table;
+        }
+        return ForkJoinPool.commonPool().invoke(new GroupTask(manufacturers, keys, 0, manufacturers.size()));
+    }
+
+    /**
+     * Adds a run of one manufacturer's rows to a group table.
+     *
+     * @param columns the manufacturer's columns
+     * @param base    the manufacturer part of every key
+     * @param from    the first row
+     * @param to      the row after the last, read from {@code columns.size()} before calling
+     * @param keys    the layout of the group keys
+     * @param table   the table to add to
+     */
+    // Method to scan a run of rows into a group table
+    private static void scanGroups(CarModelColumns columns, long base, int from, int to, PivotKeys keys, GroupTable table) {
+        CarModelColumns.Slice slice = null;
+        for (int start = from; start < to; start = slice.end()) {
+            slice = columns.slice(start, to, slice);
+            double[] prices = slice.prices();
+            double[] weights = slice.weights();
+            int[] nSold = slice.nSold();
+            byte[] types = slice.types();
+            // rows of off-heap columns are numbered from the start of the slice
+            for (int i = start - slice.base(); i < slice.end() - slice.base(); i++) {
+                table.add(keys.key(base, types[i], prices[i], weights[i]), prices[i], weights[i], nSold[i]);
+            }
+        }
+    }
+
+    // GroupTask class splits the manufacturers in half until one manufacturer is left
+    @SuppressWarnings("serial")
+    private static final class GroupTask extends RecursiveTask<GroupTable> {
+        private final List<Manufacturer> manufacturers;
+        private final PivotKeys keys;
+        private final int from;
+        private final int to;
+
+        GroupTask(List<Manufacturer> manufacturers, PivotKeys keys, int from, int to) {
+            this.manufacturers = manufacturers;
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupTable compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                GroupTask left = new GroupTask(manufacturers, keys, from, mid);
+                left.fork();
+                GroupTable right = new GroupTask(manufacturers, keys, mid, to).compute();
+                right.addAll(left.join());
+                return right;
+            }
+            if (to == from) {
+                return new GroupTable();
+            }
+            CarModelColumns columns = manufacturers.get(from).getColumns();
+            return new GroupChunkTask(columns, keys.manufacturerKey(from), 0, columns.size(), keys).compute();
+        }
+    }
+
+    // GroupChunkTask class splits one manufacturer's rows into chunks, each with its own table
+    @SuppressWarnings("serial")
+    private static final class GroupChunkTask extends RecursiveTask<GroupTable> {
+        private final CarModelColumns columns;
+        private final long base;
+        private final int from;
+        private final int to;
+        private final PivotKeys keys;
+
+        GroupChunkTask(CarModelColumns columns, long base, int from, int to, PivotKeys keys) {
+            this.columns = columns;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+            this.keys = keys;
+        }
+
+        @Override
+        protected GroupTable compute() {
+            if (to - from <= CHUNK_ROWS) {
+                GroupTable table = new GroupTable();
+                scanGroups(columns, base, from, to, keys, table);
+                return table;
+            }
+            int mid = (from + to) >>> 1;
+            GroupChunkTask left = new GroupChunkTask(columns, base, from, mid, keys);
+            left.fork();
+            GroupTable right = new GroupChunkTask(columns, base, mid, to, keys).compute();
+            right.addAll(left.join());
+            return right;
+        }
+    }
+}
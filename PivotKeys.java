@@ -0,0 +1,174 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code PivotKeys} class packs the groups of a car model into a single {@code long} key.
+ * <p>
+ * Each dimension of a pivot table takes a fixed number of bits of the key, with the first dimension in
+ * the highest bits, so sorting the keys as numbers sorts the groups by the first dimension, then the
+ * second and so on. Grouping by every dimension uses 63 bits, so keys are never negative.
+ * </p>
+ * <p>
+ * Price and weight bands are numbered from 0 by dividing the value by the band width. Values below zero
+ * fall in the first band, and values beyond the last band that fits in the key fall in the last band,
+ * which is shown as open ended.
+ * </p>
+ */
+// PivotKeys class turns car model values into packed group keys and group keys back into labels
+final class PivotKeys {
+    // number of the open-ended last band, price and weight bands take the same number of bits
+    private static final long LAST_BAND = GroupBy.PRICE_BAND.maxValue();
+
+    private final List<GroupBy> dimensions;
+    private final double priceBandWidth;
+    private final double weightBandWidth;
+    // position of each dimension in the key, indexed by GroupBy ordinal, or -1 if the table is not grouped by it
+    private final int[] shifts = new int[GroupBy.values().length];
+
+    /**
+     * Constructs the key layout for a pivot table.
+     *
+     * @param dimensions      the dimensions to group by, in order
+     * @param priceBandWidth  the width of a price band in GBP, used if grouping by price band
+     * @param weightBandWidth the width of a weight band in kilograms, used if grouping by weight band
+     * @throws IllegalArgumentException if a dimension is repeated or a band width used is not positive
+     */
+    // Constructor
+    PivotKeys(List<GroupBy> dimensions, double priceBandWidth, double weightBandWidth) {
+        Arrays.fill(shifts, -1);
+        int shift = 0;
+        for (int i = dimensions.size() - 1; i >= 0; i--) {
+            GroupBy dimension = dimensions.get(i);
+            if (dimension == null) {
+                throw new IllegalArgumentException("Group by dimension must not be null.");
+            }
+            if (shifts[dimension.ordinal()] >= 0) {
+                throw new IllegalArgumentException("Cannot group by " + dimension + " twice.");
+            }
+            shifts[dimension.ordinal()] = shift;
+            shift += dimension.bits();
+        }
+        if (dimensions.contains(GroupBy.PRICE_BAND) && !(priceBandWidth > 0 && priceBandWidth < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Price band width must be greater than zero.");
+        }
+        if (dimensions.contains(GroupBy.WEIGHT_BAND) && !(weightBandWidth > 0 && weightBandWidth < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Weight band width must be greater than zero.");
+        }
+        this.dimensions = List.copyOf(dimensions);
+        this.priceBandWidth = priceBandWidth;
+        this.weightBandWidth = weightBandWidth;
+    }
+
+    // Getter methods for the layout
+    List<GroupBy> dimensions() {
+        return dimensions;
+    }
+
+    double priceBandWidth() {
+        return priceBandWidth;
+    }
+
+    double weightBandWidth() {
+        return weightBandWidth;
+    }
+
+    // Method to check whether the table is grouped by a dimension
+    boolean groupsBy(GroupBy dimension) {
+        return shifts[dimension.ordinal()] >= 0;
+    }
+
+    /**
+     * Returns the part of the key shared by every car model of a manufacturer.
+     *
+     * @param manufacturer the manufacturer index
+     * @return the manufacturer bits of the key, or 0 if the table is not grouped by manufacturer
+     * @throws IllegalArgumentException if the index does not fit in the key
+     */
+    // Method to work out the manufacturer part of the key once per manufacturer
+    long manufacturerKey(int manufacturer) {
+        int shift = shifts[GroupBy.MANUFACTURER.ordinal()];
+        if (shift < 0) {
+            return 0;
+        }
+        if (manufacturer > GroupBy.MANUFACTURER.maxValue()) {
+            throw new IllegalArgumentException("Too many manufacturers to group by manufacturer.");
+        }
+        return (long) manufacturer << shift;
+    }
+
+    /**
+     * Returns the key of one car model.
+     *
+     * @param base   the manufacturer part of the key, from {@link #manufacturerKey(int)}
+     * @param type   the car type code
+     * @param price  the sales price
+     * @param weight the weight
+     * @return the packed group key
+     */
+    // Method to pack the groups of one car model
+    long key(long base, byte type, double price, double weight) {
+        long key = base;
+        int shift = shifts[GroupBy.TYPE.ordinal()];
+        if (shift >= 0) {
+            key |= (long) type << shift;
+        }
+        shift = shifts[GroupBy.PRICE_BAND.ordinal()];
+        if (shift >= 0) {
+            key |= band(price, priceBandWidth) << shift;
+        }
+        shift = shifts[GroupBy.WEIGHT_BAND.ordinal()];
+        if (shift >= 0) {
+            key |= band(weight, weightBandWidth) << shift;
+        }
+        return key;
+    }
+
+    // Method to number the band a value falls in, clamped to the bands that fit in the key
+    private static long band(double value, double width) {
+        // the cast truncates towards zero and turns NaN into 0, so only the upper end needs clamping
+        long band = (long) (value / width);
+        return Math.max(0, Math.min(band, LAST_BAND));
+    }
+
+    // Method to read one dimension back out of a packed key
+    long value(long key, GroupBy dimension) {
+        return (key >>> shifts[dimension.ordinal()]) & dimension.maxValue();
+    }
+
+    /**
+     * Returns the label of one group of a dimension, such as "Ford", "Saloon", "£10000-£20000" or "1500-1750kg".
+     *
+     * @param key           the packed group key
+     * @param dimension     the dimension to label
+     * @param manufacturers the manufacturers, indexed as in the key
+     * @return the label
+     */
+    // Method to turn a group back into text
+    String label(long key, GroupBy dimension, List<Manufacturer> manufacturers) {
+        long value = value(key, dimension);
+        switch (dimension) {
+            case MANUFACTURER:
+                return manufacturers.get((int) value).getMname();
+            case TYPE:
+                return CarType.fromCode((byte) value).getDisplayName();
+            case PRICE_BAND:
+                return bandLabel(value, priceBandWidth, "£", "");
+            default:
+                return bandLabel(value, weightBandWidth, "", "kg");
+        }
+    }
+
+    // Method to label a band with its lower and upper bounds, or only its lower bound if it is the open last band
+    private static String bandLabel(long band, double width, String prefix, String suffix) {
+        String from = prefix + number(band * width);
+        if (band == LAST_BAND) {
+            return from + suffix + "+";
+        }
+        return from + "-" + prefix + number((band + 1) * width) + suffix;
+    }
+
+    // Method to print whole numbers without a trailing ".0"
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -0,0 +1,15 @@
+import java.util.List;
+
+/**
+ * The {@code PivotRow} record holds the sales figures of one group of a pivot table.
+ *
+ * @param groups        the label of the group in each dimension, in the order of the table's dimensions
+ * @param carModelCount the number of car models in the group
+ * @param unitsSold     the total number of units sold
+ * @param revenue       the total revenue in GBP, the sum of price times units sold
+ * @param averagePrice  the mean sales price of the car models in the group
+ * @param averageWeight the mean weight of the car models in the group in kilograms
+ */
+// PivotRow record is one group of a group-by query
+public record PivotRow(List<String> groups, long carModelCount, long unitsSold, double revenue, double averagePrice, double averageWeight) {
+}
@@ -0,0 +1,16 @@
+import java.util.List;
+
+/**
+ * The {@code PivotTable} record holds the result of a group-by query over every car model.
+ *
+ * @param dimensions      the dimensions the car models were grouped by, in order
+ * @param priceBandWidth  the width of a price band in GBP
+ * @param weightBandWidth the width of a weight band in kilograms
+ * @param labels          the labels of each dimension that have car models, in order, used as the headings of a cross-tabulation
+ * @param rows            one row per group that has car models, ordered by the first dimension, then the second and so on
+ * @param total           the figures of every car model together, with no group labels
+ */
+// PivotTable record is the result of a group-by query
+public record PivotTable(List<GroupBy> dimensions, double priceBandWidth, double weightBandWidth, List<List<String>> labels,
+                         List<PivotRow> rows, PivotRow total) {
+}
@@ -0,0 +1,680 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * The {@code PriceIndex} class keeps car models sorted by sales price so price range queries
+ * can use binary search instead of checking every car model.
+ * <p>
+ * Each entry is a price and a {@code long} key that identifies the car model to the owner of the index.
+ * Entries are sorted by price and then by key. New entries go into a small buffer kept sorted, with where
+ * each falls among the sorted arrays, so adding a car model costs a binary search and a short array copy.
+ * Removed entries, such as the old price of a repriced car model, are buffered the same way by their
+ * position in the sorted arrays, unless they are still in the buffer of new entries. A query finds its
+ * entries by binary search in the sorted arrays and in the buffers, so it costs O(log n + k), and the first
+ * query after a write copies the buffers so the entries it returns stay as they were. Queries between writes
+ * share the same copy.
+ * </p>
+ * <p>
+ * Once the buffers hold {@code max(1024, sqrt(n))} entries, further entries are appended unsorted and the
+ * next query merges them all into new sorted arrays, so the O(n) cost of a merge is shared by that many
+ * writes. A bulk load followed by a query sorts and merges its entries once.
+ * </p>
+ * <p>
+ * The sorted arrays are never changed once built, so a {@link Range} returned by a query keeps reading the
+ * entries that existed when it was created even if more car models are added afterwards.
+ * </p>
+ * <p>
+ * Adding and querying are synchronized on the index, so one index can be written and queried from several threads.
+ * </p>
+ */
+// PriceIndex class is a sorted index of car models by price
+class PriceIndex {
+    private static final long[] NO_KEYS = new long[0];
+    private static final double[] NO_PRICES = new double[0];
+
+    // sorted entries
+    private double[] prices = NO_PRICES;
+    private long[] keys = NO_KEYS;
+
+    // entries added since the last merge, sorted, with the number of sorted entries before each
+    private double[] pendingPrices = new double[16];
+    private long[] pendingKeys = new long[16];
+    private int[] pendingAt = new int[16];
+    private int pending;
+
+    // entries removed since the last merge, sorted, with the position of each in the sorted entries
+    private double[] removedPrices = new double[16];
+    private long[] removedKeys = new long[16];
+    private int[] removedAt = new int[16];
+    private int removed;
+
+    // whether the buffers filled up, after which entries are appended unsorted until the next query merges them
+    private boolean overflowed;
+
+    // the fewest buffered entries that are merged into the sorted entries
+    private static final int MIN_MERGE = 1024;
+
+    // the sorted entries with the buffers as they were at the last query, or null if written since
+    private Snapshot snapshot;
+
+    // number of new entries at which sorting them is split across the fork-join pool
+    private int parallelThreshold = Integer.MAX_VALUE;
+
+    /**
+     * The {@code Range} class is a run of index entries returned by a query.
+     * <p>
+     * It does not copy the entries, it only records where the run starts and ends.
+     * </p>
+     */
+    static final class Range {
+        private final Snapshot entries;
+        private final int from;
+        private final int to;
+        private final boolean descending;
+
+        Range(Snapshot entries, int from, int to, boolean descending) {
+            this.entries = entries;
+            this.from = from;
+            this.to = Math.max(from, to);
+            this.descending = descending;
+        }
+
+        // Getter methods for the entries in the range
+        int size() {
+            return to - from;
+        }
+
+        long key(int i) {
+            return entries.key(position(i));
+        }
+
+        double price(int i) {
+            return entries.price(position(i));
+        }
+
+        /**
+         * Returns a read-only list of the car models in the range.
+         * <p>
+         * Car models are looked up through {@code resolver} as the list is read, nothing is copied.
+         * </p>
+         *
+         * @param resolver turns an index key into the {@code CarModel} it identifies
+         * @return a lazy list view of the range
+         */
+        List<CarModel> asList(LongFunction<CarModel> resolver) {
+            return new RangeList(this, resolver);
+        }
+
+        /**
+         * Returns a spliterator over the car models in the range, in the order of the range.
+         * <p>
+         * Car models are looked up through {@code resolver} only as the spliterator advances, so a stream that stops
+         * early never looks at the rest of the range. It splits in halves for parallel streams.
+         * </p>
+         *
+         * @param resolver turns an index key into the {@code CarModel} it identifies
+         * @return a lazy spliterator over the range
+         */
+        Spliterator<CarModel> spliterator(LongFunction<CarModel> resolver) {
+            return new RangeSpliterator(this, 0, size(), resolver);
+        }
+
+        /**
+         * Returns the position in the range of the first entry that comes after an entry, in the order of the range.
+         * The entry does not need to be in the range, or in the index any more.
+         *
+         * @param price the price of the entry
+         * @param key   the key of the entry
+         * @return the position of the first later entry, or the size of the range if there is none
+         */
+        // Method to find where a keyset page continues, by binary search on price and then key
+        int positionAfter(double price, long key) {
+            int position = descending
+                    ? to - Math.max(from, entries.countBelow(price, key, false))
+                    : entries.countBelow(price, key, true) - from;
+            return Math.max(0, Math.min(position, size()));
+        }
+
+        // Method to turn a position in the range into a position in the sorted arrays
+        private int position(int i) {
+            if (i < 0 || i >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+            }
+            return descending ? to - 1 - i : from + i;
+        }
+    }
+
+    // RangeList class is the list view returned by Range.asList
+    private static final class RangeList extends AbstractList<CarModel> implements RandomAccess {
+        private final Range range;
+        private final LongFunction<CarModel> resolver;
+
+        RangeList(Range range, LongFunction<CarModel> resolver) {
+            this.range = range;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public CarModel get(int index) {
+            return resolver.apply(range.key(index));
+        }
+
+        @Override
+        public int size() {
+            return range.size();
+        }
+    }
+
+    // RangeSpliterator class is the spliterator returned by Range.spliterator, over positions from and up to to
+    private static final class RangeSpliterator implements Spliterator<CarModel> {
+        private final Range range;
+        private final LongFunction<CarModel> resolver;
+        private int from;
+        private final int to;
+
+        RangeSpliterator(Range range, int from, int to, LongFunction<CarModel> resolver) {
+            this.range = range;
+            this.from = from;
+            this.to = to;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super CarModel> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(resolver.apply(range.key(from++)));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super CarModel> action) {
+            for (; from < to; from++) {
+                action.accept(resolver.apply(range.key(from)));
+            }
+        }
+
+        @Override
+        public Spliterator<CarModel> trySplit() {
+            int mid = (from + to) >>> 1;
+            if (mid <= from) {
+                return null;
+            }
+            Spliterator<CarModel> prefix = new RangeSpliterator(range, from, mid, resolver);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * The {@code Snapshot} class is the content of the index at one moment.
+     * <p>
+     * It holds the sorted arrays with the entries added and removed since they were built. Entries are
+     * numbered by their position in sorted order, and a position is turned into an entry by binary search
+     * over the added and removed entries, which are few.
+     * </p>
+     */
+    private static final class Snapshot {
+        private static final double[] NO_ADDED_PRICES = new double[0];
+        private static final long[] NO_ADDED_KEYS = new long[0];
+        private static final int[] NO_POSITIONS = new int[0];
+
+        private final double[] prices;
+        private final long[] keys;
+        // entries added since the sorted arrays were built, sorted, and the position of each in sorted order
+        private final double[] addedPrices;
+        private final long[] addedKeys;
+        private final int[] addedAt;
+        // positions in the sorted arrays of the entries removed since they were built, in increasing order
+        private final int[] removedAt;
+        private final int size;
+
+        // Constructor for the sorted arrays alone
+        Snapshot(double[] prices, long[] keys) {
+            this(prices, keys, NO_ADDED_PRICES, NO_ADDED_KEYS, NO_POSITIONS, NO_POSITIONS);
+        }
+
+        private Snapshot(double[] prices, long[] keys, double[] addedPrices, long[] addedKeys, int[] addedAt, int[] removedAt) {
+            this.prices = prices;
+            this.keys = keys;
+            this.addedPrices = addedPrices;
+            this.addedKeys = addedKeys;
+            this.addedAt = addedAt;
+            this.removedAt = removedAt;
+            this.size = keys.length + addedKeys.length - removedAt.length;
+        }
+
+        /**
+         * Takes a snapshot of the sorted arrays and the sorted buffers of entries added and removed since they were built.
+         *
+         * @param prices    the sorted prices
+         * @param keys      the sorted keys
+         * @param pp        the prices of the added entries, sorted with their keys, which are copied
+         * @param pk        the keys of the added entries
+         * @param pendingAt the number of entries of the sorted arrays before each added entry
+         * @param pending   the number of added entries
+         * @param goneAt    the positions in the sorted arrays of the removed entries, in increasing order
+         * @param removed   the number of removed entries
+         * @return the snapshot
+         */
+        // Method to copy the buffers and number the added entries among the others
+        static Snapshot of(double[] prices, long[] keys, double[] pp, long[] pk, int[] pendingAt, int pending,
+                           int[] goneAt, int removed) {
+            int[] removedAt = Arrays.copyOf(goneAt, removed);
+            int[] addedAt = new int[pending];
+            int r = 0;
+            for (int a = 0; a < pending; a++) {
+                while (r < removed && removedAt[r] < pendingAt[a]) {
+                    r++;
+                }
+                addedAt[a] = pendingAt[a] - r + a;
+            }
+            return new Snapshot(prices, keys, Arrays.copyOf(pp, pending), Arrays.copyOf(pk, pending), addedAt, removedAt);
+        }
+
+        // Getter methods for the entry at a position in sorted order
+        double price(int i) {
+            int at = locate(i);
+            return at >= 0 ? addedPrices[at] : prices[-1 - at];
+        }
+
+        long key(int i) {
+            int at = locate(i);
+            return at >= 0 ? addedKeys[at] : keys[-1 - at];
+        }
+
+        // Method to find an entry by its position in sorted order: the index of an added entry, or -1 minus its index in the sorted arrays
+        private int locate(int i) {
+            if (addedAt.length == 0 && removedAt.length == 0) {
+                return -1 - i;
+            }
+            int a = Arrays.binarySearch(addedAt, i);
+            if (a >= 0) {
+                return a;
+            }
+            // the entries of the sorted arrays still in the index before this one
+            int kept = i - (-1 - a);
+            // removed entry r has removedAt[r] - r kept entries before it, so count those it comes after
+            int low = 0;
+            int high = removedAt.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (removedAt[mid] - mid <= kept) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return -1 - (kept + low);
+        }
+
+        // Method to count the entries ordered before an entry, or before or equal to it when inclusive
+        int countBelow(double price, long key, boolean inclusive) {
+            int position = countBelow(prices, keys, prices.length, price, key, inclusive);
+            return position - removedBefore(removedAt, position)
+                    + countBelow(addedPrices, addedKeys, addedKeys.length, price, key, inclusive);
+        }
+
+        // Method to count the entries priced below a price, or at or below it when inclusive
+        int countPriceBelow(double price, boolean inclusive) {
+            int position = countPriceBelow(prices, price, inclusive);
+            return position - removedBefore(removedAt, position) + countPriceBelow(addedPrices, price, inclusive);
+        }
+
+        // Method to count the entries of sorted arrays ordered before an entry, or before or equal to it when inclusive
+        private static int countBelow(double[] p, long[] k, int length, double price, long key, boolean inclusive) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int order = compare(p[mid], k[mid], price, key);
+                if (order < 0 || inclusive && order == 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Method to count the sorted prices below a price, or at or below it when inclusive
+        private static int countPriceBelow(double[] p, double price, boolean inclusive) {
+            int low = 0;
+            int high = p.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (p[mid] < price || inclusive && p[mid] <= price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Method to count the removed entries before a position in the sorted arrays
+        private static int removedBefore(int[] removedAt, int position) {
+            int r = Arrays.binarySearch(removedAt, position);
+            return r >= 0 ? r : -1 - r;
+        }
+    }
+
+    /**
+     * Adds an entry to the index.
+     *
+     * @param price the sales price of the car model
+     * @param key   the key identifying the car model
+     */
+    // Method to add an entry to the sorted buffer, or to the end of it once it is full
+    synchronized void add(double price, long key) {
+        snapshot = null;
+        if (fillBuffers()) {
+            appendPending(price, key, 0);
+            return;
+        }
+        int position = Snapshot.countBelow(prices, keys, keys.length, price, key, false);
+        if (position < keys.length && compare(prices[position], keys[position], price, key) == 0) {
+            int r = Arrays.binarySearch(removedAt, 0, removed, position);
+            if (r >= 0) {
+                // added back after being removed, as when a car model is repriced and then repriced back
+                removed--;
+                System.arraycopy(removedPrices, r + 1, removedPrices, r, removed - r);
+                System.arraycopy(removedKeys, r + 1, removedKeys, r, removed - r);
+                System.arraycopy(removedAt, r + 1, removedAt, r, removed - r);
+                return;
+            }
+        }
+        int at = Snapshot.countBelow(pendingPrices, pendingKeys, pending, price, key, false);
+        appendPending(price, key, position);
+        rotate(pendingPrices, pendingKeys, pendingAt, at, pending - 1);
+    }
+
+    /**
+     * Removes an entry from the index. The entry must have been added with the same price and key.
+     *
+     * @param price the price the entry was added with
+     * @param key   the key identifying the car model
+     */
+    // Method to take an entry out of the buffer of new entries, or to buffer its removal from the sorted entries
+    synchronized void remove(double price, long key) {
+        snapshot = null;
+        if (fillBuffers()) {
+            appendRemoved(price, key, 0);
+            return;
+        }
+        int at = Snapshot.countBelow(pendingPrices, pendingKeys, pending, price, key, false);
+        if (at < pending && compare(pendingPrices[at], pendingKeys[at], price, key) == 0) {
+            pending--;
+            System.arraycopy(pendingPrices, at + 1, pendingPrices, at, pending - at);
+            System.arraycopy(pendingKeys, at + 1, pendingKeys, at, pending - at);
+            System.arraycopy(pendingAt, at + 1, pendingAt, at, pending - at);
+            return;
+        }
+        int position = Snapshot.countBelow(prices, keys, keys.length, price, key, false);
+        if (position < keys.length && compare(prices[position], keys[position], price, key) == 0) {
+            int r = Arrays.binarySearch(removedAt, 0, removed, position);
+            if (r < 0) {
+                appendRemoved(price, key, position);
+                rotate(removedPrices, removedKeys, removedAt, -1 - r, removed - 1);
+            }
+        }
+    }
+
+    // Method to check whether the buffers are full, after which entries are appended unsorted until the next merge
+    private boolean fillBuffers() {
+        if (!overflowed && pending + removed >= Math.max(MIN_MERGE, (int) Math.sqrt(keys.length))) {
+            overflowed = true;
+        }
+        return overflowed;
+    }
+
+    // Method to append an entry to the buffer of new entries
+    private void appendPending(double price, long key, int position) {
+        if (pending == pendingPrices.length) {
+            pendingPrices = Arrays.copyOf(pendingPrices, pending * 2);
+            pendingKeys = Arrays.copyOf(pendingKeys, pending * 2);
+            pendingAt = Arrays.copyOf(pendingAt, pending * 2);
+        }
+        pendingPrices[pending] = price;
+        pendingKeys[pending] = key;
+        pendingAt[pending] = position;
+        pending++;
+    }
+
+    // Method to append an entry to the buffer of removed entries
+    private void appendRemoved(double price, long key, int position) {
+        if (removed == removedPrices.length) {
+            removedPrices = Arrays.copyOf(removedPrices, removed * 2);
+            removedKeys = Arrays.copyOf(removedKeys, removed * 2);
+            removedAt = Arrays.copyOf(removedAt, removed * 2);
+        }
+        removedPrices[removed] = price;
+        removedKeys[removed] = key;
+        removedAt[removed] = position;
+        removed++;
+    }
+
+    // Method to move the buffered entry at index last to index at, shifting the entries between up by one
+    private static void rotate(double[] p, long[] k, int[] position, int at, int last) {
+        double price = p[last];
+        long key = k[last];
+        int sortedAt = position[last];
+        System.arraycopy(p, at, p, at + 1, last - at);
+        System.arraycopy(k, at, k, at + 1, last - at);
+        System.arraycopy(position, at, position, at + 1, last - at);
+        p[at] = price;
+        k[at] = key;
+        position[at] = sortedAt;
+    }
+
+    // Setter method for the parallel sort threshold
+    synchronized void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(parallelThreshold, 2);
+    }
+
+    // Getter method for the number of entries
+    synchronized int size() {
+        return keys.length + pending - removed;
+    }
+
+    /**
+     * Returns the entries with a price strictly greater than the given price, cheapest first.
+     *
+     * @param price the price threshold
+     * @return the matching entries
+     */
+    synchronized Range above(double price) {
+        Snapshot entries = snapshot();
+        return new Range(entries, entries.countPriceBelow(price, true), entries.size, false);
+    }
+
+    /**
+     * Returns the entries with a price strictly less than the given price, cheapest first.
+     *
+     * @param price the price threshold
+     * @return the matching entries
+     */
+    synchronized Range below(double price) {
+        Snapshot entries = snapshot();
+        return new Range(entries, 0, entries.countPriceBelow(price, false), false);
+    }
+
+    /**
+     * Returns the entries with a price between the two prices, both inclusive, cheapest first.
+     *
+     * @param minPrice the lowest price to include
+     * @param maxPrice the highest price to include
+     * @return the matching entries
+     */
+    synchronized Range between(double minPrice, double maxPrice) {
+        Snapshot entries = snapshot();
+        return new Range(entries, entries.countPriceBelow(minPrice, false), entries.countPriceBelow(maxPrice, true), false);
+    }
+
+    /**
+     * Returns the {@code n} most expensive entries, most expensive first.
+     *
+     * @param n the number of entries to return
+     * @return the matching entries
+     */
+    synchronized Range highest(int n) {
+        Snapshot entries = snapshot();
+        return new Range(entries, Math.max(0, entries.size - Math.max(n, 0)), entries.size, true);
+    }
+
+    // Method to return the snapshot for queries, merging the buffers first once they are full, with the lock held
+    private Snapshot snapshot() {
+        if (snapshot == null) {
+            if (overflowed) {
+                merge();
+            }
+            snapshot = pending == 0 && removed == 0
+                    ? new Snapshot(prices, keys)
+                    : Snapshot.of(prices, keys, pendingPrices, pendingKeys, pendingAt, pending, removedAt, removed);
+        }
+        return snapshot;
+    }
+
+    // Method to sort the pending entries and merge them with the sorted entries into new arrays, leaving out removed entries
+    private void merge() {
+        if (pending == 0 && removed == 0) {
+            return;
+        }
+        double[] addedPrices = Arrays.copyOf(pendingPrices, pending);
+        long[] addedKeys = Arrays.copyOf(pendingKeys, pending);
+        if (pending >= parallelThreshold) {
+            ForkJoinPool.commonPool().invoke(new SortTask(addedPrices, addedKeys, new double[pending], new long[pending], 0, pending, parallelThreshold));
+        } else {
+            sort(addedPrices, addedKeys, new double[pending], new long[pending], 0, pending);
+        }
+        double[] gonePrices = Arrays.copyOf(removedPrices, removed);
+        long[] goneKeys = Arrays.copyOf(removedKeys, removed);
+        sort(gonePrices, goneKeys, new double[removed], new long[removed], 0, removed);
+
+        double[] mergedPrices = new double[keys.length + pending];
+        long[] mergedKeys = new long[mergedPrices.length];
+        int i = 0;
+        int j = 0;
+        int r = 0;
+        int k = 0;
+        while (i < keys.length || j < pending) {
+            double price;
+            long key;
+            if (j >= pending || (i < keys.length && compare(prices[i], keys[i], addedPrices[j], addedKeys[j]) <= 0)) {
+                price = prices[i];
+                key = keys[i++];
+            } else {
+                price = addedPrices[j];
+                key = addedKeys[j++];
+            }
+            // removals are sorted the same way, so each one skips the next entry equal to it
+            while (r < removed && compare(gonePrices[r], goneKeys[r], price, key) < 0) {
+                r++;
+            }
+            if (r < removed && compare(gonePrices[r], goneKeys[r], price, key) == 0) {
+                r++;
+                continue;
+            }
+            mergedPrices[k] = price;
+            mergedKeys[k++] = key;
+        }
+        if (k < mergedPrices.length) {
+            mergedPrices = Arrays.copyOf(mergedPrices, k);
+            mergedKeys = Arrays.copyOf(mergedKeys, k);
+        }
+        prices = mergedPrices;
+        keys = mergedKeys;
+        pending = 0;
+        removed = 0;
+        overflowed = false;
+    }
+
+    // Method to merge sort a run of parallel price and key arrays
+    private static void sort(double[] p, long[] k, double[] tmpP, long[] tmpK, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(p, k, tmpP, tmpK, from, mid);
+        sort(p, k, tmpP, tmpK, mid, to);
+        mergeHalves(p, k, tmpP, tmpK, from, mid, to);
+    }
+
+    // Method to merge two sorted neighbouring runs
+    private static void mergeHalves(double[] p, long[] k, double[] tmpP, long[] tmpK, int from, int mid, int to) {
+        if (compare(p[mid - 1], k[mid - 1], p[mid], k[mid]) <= 0) {
+            return; // already in order, common when prices are added in increasing order
+        }
+        System.arraycopy(p, from, tmpP, from, to - from);
+        System.arraycopy(k, from, tmpK, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int out = from; out < to; out++) {
+            if (j >= to || (i < mid && compare(tmpP[i], tmpK[i], tmpP[j], tmpK[j]) <= 0)) {
+                p[out] = tmpP[i];
+                k[out] = tmpK[i++];
+            } else {
+                p[out] = tmpP[j];
+                k[out] = tmpK[j++];
+            }
+        }
+    }
+
+    // SortTask class sorts the two halves of a large run on different threads before merging them
+    @SuppressWarnings("serial")
+    private static final class SortTask extends RecursiveAction {
+        private final double[] p;
+        private final long[] k;
+        private final double[] tmpP;
+        private final long[] tmpK;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        SortTask(double[] p, long[] k, double[] tmpP, long[] tmpK, int from, int to, int threshold) {
+            this.p = p;
+            this.k = k;
+            this.tmpP = tmpP;
+            this.tmpK = tmpK;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < threshold) {
+                sort(p, k, tmpP, tmpK, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(p, k, tmpP, tmpK, from, mid, threshold),
+                    new SortTask(p, k, tmpP, tmpK, mid, to, threshold));
+            mergeHalves(p, k, tmpP, tmpK, from, mid, to);
+        }
+    }
+
+    // Method to order entries by price and then by key
+    private static int compare(double price1, long key1, double price2, long key2) {
+        int byPrice = Double.compare(price1, price2);
+        return byPrice != 0 ? byPrice : Long.compare(key1, key2);
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.Locale;
+
+/**
+ * The {@code RankBy} enum lists the measures a top car models query can rank by.
+ */
+// RankBy enum represents what a leaderboard is sorted by
+public enum RankBy {
+    PRICE("Price"),
+    REVENUE("Revenue"),
+    UNITS_SOLD("Units Sold");
+
+    private final String displayName;
+
+    // Constructor
+    RankBy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    // Getter method for the display name
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Returns the score a car model is ranked by.
+     *
+     * @param price the sales price of the car model
+     * @param nSold the number of units sold
+     * @return the score, higher ranks first
+     */
+    // Method to score one car model
+    double score(double price, int nSold) {
+        switch (this) {
+            case PRICE:
+                return price;
+            case REVENUE:
+                return price * nSold;
+            default:
+                return nSold;
+        }
+    }
+
+    /**
+     * Converts text such as "revenue" or "Units Sold" into a {@code RankBy}, ignoring case.
+     *
+     * @param text the text to parse
+     * @return the matching measure, or {@code null} if the text is not one
+     */
+    // Method to parse a measure entered by the user
+    public static RankBy parse(String text) {
+        String name = text.trim().toUpperCase(Locale.ROOT).replace(' ', '_');
+        for (RankBy rankBy : values()) {
+            if (rankBy.name().equals(name)) {
+                return rankBy;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * The {@code RankedCarModel} record holds one entry of a top car models query.
+ *
+ * @param rank         the position in the leaderboard, starting at 1
+ * @param manufacturer the name of the manufacturer
+ * @param carModel     the car model
+ * @param score        the value the car model was ranked by
+ */
+// RankedCarModel record is one row of a top car models query
+public record RankedCarModel(int rank, String manufacturer, CarModel carModel, double score) {
+}
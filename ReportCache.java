@@ -0,0 +1,211 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * The {@code ReportCache} class remembers the results of recent report queries so repeating a query
+ * does not recompute it.
+ * <p>
+ * Results are keyed by the report, the manufacturer it covers ({@code null} for reports across all
+ * manufacturers) and the query parameters. Each result is stored with the version stamp of the data
+ * it was computed from: a manufacturer's version for reports about one manufacturer, or the reporting
+ * system's version for reports across all of them. Adding car models bumps those versions, and a
+ * cached result is only returned while its version is still current, so the cache never returns stale
+ * data and only the reports that cover the changed manufacturer are recomputed.
+ * </p>
+ * <p>
+ * The cache holds at most {@code capacity} results and evicts the least recently used one when it is full.
+ * The first query to see a newer version of a manufacturer's data, or of the whole system's, drops the results
+ * computed from older versions of it, as they can never be returned again, and a result computed from an older
+ * version than one already seen is not stored. Only that manufacturer's results are visited, so the cost is
+ * one removal per result dropped. Without this a busy feed would fill the cache with out-of-date results,
+ * each keeping alive the arrays it viewed.
+ * It is safe to use from several threads; queries run outside the cache's lock. When several threads
+ * miss on the same query at once, only the first runs it and the others wait for its result, so a burst
+ * of identical requests after car models are added scans the catalogue once.
+ * </p>
+ */
+// ReportCache class is a bounded LRU cache of report results validated by version stamps
+final class ReportCache {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    // Key record identifies one report query
+    private record Key(String report, Manufacturer manufacturer, List<Object> parameters) {
+    }
+
+    // Entry record is a cached result and the version of the data it was computed from
+    private record Entry(long version, Object value) {
+    }
+
+    // Pending record is a query being computed by one thread that others can wait for
+    private record Pending(long version, CompletableFuture<Object> result) {
+    }
+
+    private final LinkedHashMap<Key, Entry> entries;
+    private final Map<Key, Pending> pending = new HashMap<>();
+    // newest version seen for each manufacturer, under the null key for reports across all manufacturers
+    private final Map<Manufacturer, Long> newestVersions = new HashMap<>();
+    // the cached queries about each manufacturer, so its out-of-date results are dropped without a full sweep
+    private final Map<Manufacturer, Set<Key>> keysByManufacturer = new HashMap<>();
+    private int capacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity the maximum number of results to keep, 0 disables caching
+     */
+    ReportCache(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        // access order, so the eldest entry is the least recently used
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > ReportCache.this.capacity) {
+                    evictions++;
+                    forgetKey(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of a query if it was computed from the current version of the data,
+     * otherwise runs the query and caches its result.
+     *
+     * @param report       the name of the report
+     * @param manufacturer the manufacturer the report covers, or {@code null} for all manufacturers
+     * @param version      the current version of the data the report reads, read before calling
+     * @param query        computes the result on a miss
+     * @param parameters   the query parameters, compared with {@code equals}
+     * @param <T>          the type of the result
+     * @return the result of the query
+     */
+    // Method to look up a result, computing and storing it on a miss
+    @SuppressWarnings("unchecked")
+    <T> T get(String report, Manufacturer manufacturer, long version, Supplier<T> query, Object... parameters) {
+        Key key = new Key(report, manufacturer, Arrays.asList(parameters));
+        Pending running;
+        CompletableFuture<Object> result = null;
+        synchronized (this) {
+            if (capacity == 0) {
+                misses++;
+                running = null;
+            } else {
+                dropOlderThan(manufacturer, version);
+                Entry entry = entries.get(key);
+                if (entry != null && entry.version() == version) {
+                    hits++;
+                    return (T) entry.value();
+                }
+                running = pending.get(key);
+                if (running != null && running.version() == version) {
+                    // another thread is already running this query over the same data, wait for it instead
+                    hits++;
+                } else {
+                    misses++;
+                    result = new CompletableFuture<>();
+                    pending.put(key, new Pending(version, result));
+                    running = null;
+                }
+            }
+        }
+        if (running != null) {
+            try {
+                return (T) running.result().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        // run the query without holding the lock, so a slow report does not hold up cache hits
+        T value;
+        try {
+            value = query.get();
+        } catch (RuntimeException | Error e) {
+            if (result != null) {
+                synchronized (this) {
+                    removePending(key, result);
+                }
+                result.completeExceptionally(e);
+            }
+            throw e;
+        }
+        if (result != null) {
+            synchronized (this) {
+                // a result computed from data older than a version seen meanwhile can never be returned
+                if (capacity > 0 && version >= newestVersions.getOrDefault(manufacturer, Long.MIN_VALUE)) {
+                    entries.put(key, new Entry(version, value));
+                    keysByManufacturer.computeIfAbsent(manufacturer, m -> new HashSet<>()).add(key);
+                }
+                removePending(key, result);
+            }
+            result.complete(value);
+        }
+        return value;
+    }
+
+    // Method to record the newest version seen of a manufacturer, removing its results from older versions, with the lock held
+    private void dropOlderThan(Manufacturer manufacturer, long version) {
+        Long newest = newestVersions.get(manufacturer);
+        if (newest != null && newest >= version) {
+            return; // older results were already dropped when this version was first seen
+        }
+        newestVersions.put(manufacturer, version);
+        // every result stored so far was computed from an older version, as none newer than this was seen
+        Set<Key> keys = keysByManufacturer.remove(manufacturer);
+        if (keys != null) {
+            for (Key key : keys) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    // Method to forget that a query is cached, with the lock held
+    private void forgetKey(Key key) {
+        Set<Key> keys = keysByManufacturer.get(key.manufacturer());
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            keysByManufacturer.remove(key.manufacturer());
+        }
+    }
+
+    // Method to forget a query this thread was running, unless a newer run has replaced it, with the lock held
+    private void removePending(Key key, CompletableFuture<Object> result) {
+        Pending running = pending.get(key);
+        if (running != null && running.result() == result) {
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * Changes the maximum number of results kept, evicting the least recently used results if needed.
+     *
+     * @param capacity the maximum number of results, 0 disables caching and empties the cache
+     */
+    // Setter method for the capacity
+    synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        var iterator = entries.entrySet().iterator();
+        while (entries.size() > this.capacity && iterator.hasNext()) {
+            forgetKey(iterator.next().getKey());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    // Method to read the counters as one consistent result
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), capacity);
+    }
+}
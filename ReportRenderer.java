@@ -0,0 +1,352 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code ReportRenderer} class turns report results into text.
+ * <p>
+ * The query methods of {@code Manufacturer} and {@code Reporting} only compute results. This class formats
+ * them into an in-memory buffer, and {@link #flush()} writes the whole buffer to the output in a single
+ * write, so a report with thousands of lines does not make thousands of calls to the console.
+ * </p>
+ */
+// ReportRenderer class formats report results and writes them out in one go
+public class ReportRenderer {
+    private final Appendable out;
+    private final StringBuilder buffer = new StringBuilder(4096);
+
+    /**
+     * Constructs a {@code ReportRenderer} writing to the given output, such as {@code System.out} or a {@code Writer}.
+     *
+     * @param out where rendered text is written when the renderer is flushed
+     */
+    // Constructor
+    public ReportRenderer(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Adds a line of text.
+     *
+     * @param text the text of the line
+     * @return this renderer
+     */
+    // Method to add a plain line, used for messages and prompts
+    public ReportRenderer line(String text) {
+        buffer.append(text).append('\n');
+        return this;
+    }
+
+    /**
+     * Adds a manufacturer and a line for each of its car models.
+     *
+     * @param manufacturer the manufacturer
+     * @return this renderer
+     */
+    // Method to render a manufacturer and its car models
+    public ReportRenderer manufacturer(Manufacturer manufacturer) {
+        buffer.append("Manufacturer: ").append(manufacturer.getMname()).append('\n');
+        buffer.append("Car Models: \n");
+        CarModelColumns columns = manufacturer.getColumns();
+        int size = columns.size();
+        for (int row = 0; row < size; row++) {
+            buffer.append(columns.name(row)).append(" Type: ").append(CarType.fromCode(columns.type(row)).getDisplayName())
+                    .append(" Price: $").append(columns.price(row)).append('\n');
+        }
+        return this;
+    }
+
+    /**
+     * Adds the most expensive car model of a single manufacturer.
+     *
+     * @param result the result, or {@code null} if the manufacturer has no car models
+     * @return this renderer
+     */
+    // Method to render the result of Manufacturer.getMostExpensiveCarModel
+    public ReportRenderer mostExpensiveCarModel(MostExpensiveResult result) {
+        if (result == null) {
+            return line("No car models available.");
+        }
+        CarModel model = result.carModel();
+        buffer.append("\nMost Expensive Car Model:\n");
+        buffer.append("Name: ").append(model.getName()).append('\n');
+        buffer.append("Weight: ").append(model.getWeight()).append('\n');
+        buffer.append("Sales Price: £").append(model.getSales_price()).append('\n');
+        buffer.append("Number Sold: ").append(model.getNSold()).append('\n');
+        buffer.append("Type: ").append(model.getType()).append('\n');
+        return this;
+    }
+
+    /**
+     * Adds the most expensive car model sold across all manufacturers.
+     *
+     * @param result the result, or {@code null} if there are no car models
+     * @return this renderer
+     */
+    // Method to render the result of Reporting.getMostExpensiveCarModelSold
+    public ReportRenderer mostExpensiveCarModelSold(MostExpensiveResult result) {
+        if (result == null) {
+            return line("No car models available.");
+        }
+        CarModel model = result.carModel();
+        buffer.append("\n Most Expensive Car Model Sold\n");
+        buffer.append("Name: ").append(model.getName()).append('\n');
+        buffer.append("Manufacturer: ").append(result.manufacturer()).append('\n');
+        buffer.append("Sales Price: £").append(model.getSales_price()).append('\n');
+        buffer.append("Type: ").append(model.getType()).append('\n');
+        buffer.append("Units Sold: ").append(model.getNSold()).append('\n');
+        return this;
+    }
+
+    /**
+     * Adds a manufacturer's total revenue for a car type.
+     *
+     * @param result the revenue figures
+     * @return this renderer
+     */
+    // Method to render a single revenue total
+    public ReportRenderer totalRevenue(RevenueByType result) {
+        buffer.append("\nTotal Revenue for ").append(result.carType()).append("s: £").append(result.revenue()).append('\n');
+        return this;
+    }
+
+    /**
+     * Adds every manufacturer's revenue for a car type and the manufacturer with the highest revenue.
+     *
+     * @param carType the car type
+     * @param results the revenue figures of each manufacturer
+     * @param highest the figures of the manufacturer with the highest revenue, or {@code null} if there is none
+     * @return this renderer
+     */
+    // Method to render the revenue by manufacturer report
+    public ReportRenderer revenueByManufacturer(CarType carType, List<RevenueByType> results, RevenueByType highest) {
+        buffer.append("\n Revenue for ").append(carType).append(" Cars by Manufacturer\n");
+        for (RevenueByType result : results) {
+            buffer.append(result.manufacturer()).append("Revenue: £").append(result.revenue()).append('\n');
+        }
+        if (highest != null) {
+            buffer.append("\n Manufacturer with Highest Revenue for ").append(carType).append(": ").append(highest.manufacturer()).append('\n');
+            buffer.append("Total Revenue: £").append(highest.revenue()).append('\n');
+        }
+        return this;
+    }
+
+    /**
+     * Adds the car models priced above a threshold, or a message if there are none.
+     *
+     * @param price  the price threshold
+     * @param models the car models priced above the threshold
+     * @return this renderer
+     */
+    // Method to render a price threshold query
+    public ReportRenderer carModelsAbovePrice(double price, List<CarModel> models) {
+        buffer.append("\nCar Models with a price greater than £").append(price).append(":\n");
+        for (CarModel model : models) {
+            buffer.append(model.getName()).append(" (£").append(model.getSales_price()).append(")\n");
+        }
+        if (models.isEmpty()) {
+            buffer.append("No car models found above £").append(price).append('\n');
+        }
+        return this;
+    }
+
+    /**
+     * Adds one page of the car models priced above an amount, followed by which of the matches are shown
+     * when there are more than fit on the page. Only the first page has a heading.
+     *
+     * @param price the price threshold
+     * @param page  the page of car models, cheapest first
+     * @return this renderer
+     */
+    // Method to render a page of the result of an above price query
+    public ReportRenderer carModelsAbovePrice(double price, CarModelPage page) {
+        if (page.offset() == 0) {
+            carModelsAbovePrice(price, page.carModels());
+        } else {
+            // a later page continues the list without its heading
+            for (CarModel model : page.carModels()) {
+                buffer.append(model.getName()).append(" (£").append(model.getSales_price()).append(")\n");
+            }
+        }
+        if (page.carModels().size() < page.total() && !page.carModels().isEmpty()) {
+            buffer.append("Showing ").append(page.offset() + 1).append(" to ").append(page.offset() + page.carModels().size())
+                    .append(" of ").append(page.total()).append(" car models\n");
+        }
+        return this;
+    }
+
+    /**
+     * Adds a leaderboard of top car models.
+     *
+     * @param rankBy  the measure the car models were ranked by
+     * @param carType the car type the leaderboard is limited to, or {@code null} for every type
+     * @param results the ranked car models, best first
+     * @return this renderer
+     */
+    // Method to render the result of a top car models query
+    public ReportRenderer topCarModels(RankBy rankBy, CarType carType, List<RankedCarModel> results) {
+        buffer.append("\nTop ").append(results.size()).append(' ').append(carType == null ? "Car" : carType.getDisplayName())
+                .append(" Models by ").append(rankBy).append(":\n");
+        if (results.isEmpty()) {
+            return line("No car models available.");
+        }
+        for (RankedCarModel result : results) {
+            CarModel model = result.carModel();
+            buffer.append(result.rank()).append(". ").append(model.getName()).append(" (").append(result.manufacturer())
+                    .append(", ").append(model.getType()).append(") ");
+            if (rankBy == RankBy.UNITS_SOLD) {
+                buffer.append((long) result.score()).append(" sold");
+            } else {
+                buffer.append('£').append(result.score());
+            }
+            buffer.append('\n');
+        }
+        return this;
+    }
+
+    /**
+     * Adds a pivot table: one line per group with its car model count, units sold, revenue, average price
+     * and average weight, then the totals. A table grouped by two dimensions is followed by a
+     * cross-tabulation of revenue, with the first dimension down the side and the second across the top.
+     *
+     * @param table the pivot table
+     * @return this renderer
+     */
+    // Method to render the result of a group-by query
+    public ReportRenderer pivotTable(PivotTable table) {
+        List<GroupBy> dimensions = table.dimensions();
+        buffer.append("\nPivot Table");
+        for (int d = 0; d < dimensions.size(); d++) {
+            buffer.append(d == 0 ? " by " : ", ").append(dimensions.get(d));
+        }
+        buffer.append(":\n");
+        if (table.rows().isEmpty()) {
+            return line("No car models available.");
+        }
+        int[] widths = new int[dimensions.size()];
+        for (int d = 0; d < widths.length; d++) {
+            widths[d] = dimensions.get(d).getDisplayName().length();
+            for (String label : table.labels().get(d)) {
+                widths[d] = Math.max(widths[d], label.length());
+            }
+        }
+        for (int d = 0; d < widths.length; d++) {
+            pad(dimensions.get(d).getDisplayName(), widths[d]);
+        }
+        buffer.append(String.format(Locale.ROOT, "%10s %12s %18s %12s %12s%n", "Models", "Units Sold", "Revenue", "Avg Price", "Avg Weight"));
+        if (dimensions.isEmpty()) {
+            pivotFigures(table.total());
+            return this;
+        }
+        for (PivotRow row : table.rows()) {
+            for (int d = 0; d < widths.length; d++) {
+                pad(row.groups().get(d), widths[d]);
+            }
+            pivotFigures(row);
+        }
+        int totalWidth = -2;
+        for (int width : widths) {
+            totalWidth += width + 2;
+        }
+        pad("Total", totalWidth);
+        pivotFigures(table.total());
+        if (dimensions.size() == 2) {
+            crossTabulation(table, widths[0]);
+        }
+        return this;
+    }
+
+    // Method to render the measures of one pivot table row
+    private void pivotFigures(PivotRow row) {
+        buffer.append(String.format(Locale.ROOT, "%10d %12d %18s %12s %12.1f%n", row.carModelCount(), row.unitsSold(),
+                String.format(Locale.ROOT, "£%.2f", row.revenue()), String.format(Locale.ROOT, "£%.2f", row.averagePrice()),
+                row.averageWeight()));
+    }
+
+    // Method to render the revenue of a two dimensional pivot table as a grid
+    private void crossTabulation(PivotTable table, int sideWidth) {
+        List<String> sides = table.labels().get(0);
+        List<String> columns = table.labels().get(1);
+        Map<String, Integer> sideOf = new HashMap<>();
+        Map<String, Integer> columnOf = new HashMap<>();
+        for (int i = 0; i < sides.size(); i++) {
+            sideOf.put(sides.get(i), i);
+        }
+        int columnWidth = 1;
+        for (int c = 0; c < columns.size(); c++) {
+            columnOf.put(columns.get(c), c);
+            columnWidth = Math.max(columnWidth, columns.get(c).length());
+        }
+        // groups with no car models are shown as "-"
+        String[][] cells = new String[sides.size()][columns.size()];
+        for (PivotRow row : table.rows()) {
+            String cell = String.format(Locale.ROOT, "%.2f", row.revenue());
+            cells[sideOf.get(row.groups().get(0))][columnOf.get(row.groups().get(1))] = cell;
+            columnWidth = Math.max(columnWidth, cell.length());
+        }
+        String format = "%" + (columnWidth + 2) + "s";
+        buffer.append("\nRevenue by ").append(table.dimensions().get(0)).append(" and ").append(table.dimensions().get(1)).append(":\n");
+        pad("", sideWidth);
+        for (String column : columns) {
+            buffer.append(String.format(Locale.ROOT, format, column));
+        }
+        buffer.append('\n');
+        for (int i = 0; i < sides.size(); i++) {
+            pad(sides.get(i), sideWidth);
+            for (String cell : cells[i]) {
+                buffer.append(String.format(Locale.ROOT, format, cell == null ? "-" : cell));
+            }
+            buffer.append('\n');
+        }
+    }
+
+    // Method to add a left aligned cell followed by two spaces
+    private void pad(String text, int width) {
+        buffer.append(text);
+        for (int i = text.length(); i < width + 2; i++) {
+            buffer.append(' ');
+        }
+    }
+
+    /**
+     * Writes everything rendered so far to the output once it is at least {@code length} characters long, without
+     * flushing the output, so a long run of short reports reaches a buffered output in a few large writes.
+     *
+     * @param length the number of characters to wait for
+     * @throws UncheckedIOException if the output cannot be written
+     */
+    // Method to pass the buffered text on once there is enough of it
+    public void writeIfLonger(int length) {
+        if (buffer.length() < length) {
+            return;
+        }
+        try {
+            out.append(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.setLength(0);
+    }
+
+    /**
+     * Writes everything rendered so far to the output in one write and empties the buffer.
+     *
+     * @throws UncheckedIOException if the output cannot be written
+     */
+    // Method to write the buffered text out
+    public void flush() {
+        try {
+            out.append(buffer);
+            if (out instanceof Flushable) {
+                ((Flushable) out).flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.setLength(0);
+    }
+}
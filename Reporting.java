@@ -1,5 +1,16 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
 * the (@code Reporting) class manages multiple muanufacturers and provides
@@ -10,25 +21,367 @@ import java.util.List;
  *   - Finding the most expensive car model sold.
  *   - Retrieving car models above a certain price.
  *   - Calculating and identifying the manufacturer with the highest revenue for a specific car type.
+ *   - Grouping car models by manufacturer, type, price band and weight band into pivot tables.
+ * </p>
+ * <p>
+ * Manufacturers and car models can be added from several threads while other threads run reports.
+ * Each manufacturer has its own lock, so feeds for different manufacturers do not block each other;
+ * the totals across manufacturers are updated under a separate rollup lock once per batch. Reports
+ * do not block writers. They read each manufacturer's rows up to the size seen when the report starts,
+ * so a report running during ingestion may include a car model in one figure and not yet in another.
+ * </p>
+ * <p>
+ * Repeated reports are answered from a bounded LRU cache of results. Each result is stored with the
+ * version stamp of the data it was computed from, and adding car models bumps the stamps of the
+ * manufacturer and of this reporting system, so a cached result is never returned once it is out of date.
+ * </p>
+ * <p>
+ * Sales and price changes are recorded with {@link #recordSale(CarModel, int)} and
+ * {@link #repriceModel(CarModel, double)}. They adjust the rollup, rankings and price index by the
+ * difference they make rather than rebuilding them, and bump the version stamps like an add.
  * </p>
  */
 public class Reporting {
-    private List<Manufacturer> manufacturers; // List of all manufacturers
+    private List<Manufacturer> manufacturers; // List of all manufacturers, copied on write so readers never see it change
+
+    // rollup across manufacturers, kept up to date as manufacturers and car models are added, guarded by rollupLock
+    private final StampedLock rollupLock = new StampedLock();
+    private final Map<CarType, RevenueRanking> revenueRankings;
+    private final CompensatedSum[] totalRevenueByType; // indexed by CarType ordinal
+
+    // case-insensitive name index, also used by ReportingIO for lookups and autocomplete
+    private final ManufacturerIndex manufacturerIndex;
+
+    // car models of every manufacturer sorted by price, keyed by manufacturer index and row
+    private final PriceIndex priceIndex;
+
+    // number of car models at which scanning reports run on the fork-join pool
+    private int parallelThreshold = ParallelReports.DEFAULT_THRESHOLD;
+    // where manufacturers created by the loaders, the journal and snapshots keep their car models
+    private volatile CarModelStorage carModelStorage = CarModelStorage.getDefault();
+    private volatile long carModelCount;
+
+    // results of recent reports across all manufacturers, checked against the version bumped in carModelsAdded
+    private final ReportCache cache = new ReportCache(ReportCache.DEFAULT_CAPACITY);
+    private volatile long version;
+
+    // ingest counters, report latencies and catalogue gauges, shared with the manufacturers;
+    // the metrics only keep the reference for reading the gauges later
+    @SuppressWarnings("this-escape")
+    private final ReportingMetrics metrics = new ReportingMetrics(this);
+
+    // write-ahead log every manufacturer and car model is appended to, or null if changes are not journaled
+    private volatile ReportingJournal journal;
 
     // Constructor initializes an empty list of manufacturers
     public Reporting() {
-        this.manufacturers = new ArrayList<>();
+        this.manufacturers = new CopyOnWriteArrayList<>();
+        this.revenueRankings = new EnumMap<>(CarType.class);
+        this.totalRevenueByType = new CompensatedSum[CarType.values().length];
+        for (CarType type : CarType.values()) {
+            revenueRankings.put(type, new RevenueRanking());
+            totalRevenueByType[type.ordinal()] = new CompensatedSum();
+        }
+        this.manufacturerIndex = new ManufacturerIndex();
+        this.priceIndex = new PriceIndex();
+        this.priceIndex.setParallelThreshold(parallelThreshold);
     }
 
+    /**
+     * Sets the number of car models at which reports that scan every car model are split across threads.
+     * Smaller catalogues are scanned on the calling thread.
+     *
+     * @param parallelThreshold the number of car models, at least 2
+     */
+    // Setter method for the parallel threshold
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(parallelThreshold, 2);
+        priceIndex.setParallelThreshold(this.parallelThreshold);
+    }
+
+    /**
+     * Sets where the manufacturers this reporting system creates keep their car models: those created
+     * by the catalogue loader, the ingest pipeline, journal replay and snapshots. Manufacturers created by
+     * the caller choose their own storage.
+     *
+     * @param carModelStorage the storage for new manufacturers
+     */
+    // Getter and setter methods for the car model storage
+    public void setCarModelStorage(CarModelStorage carModelStorage) {
+        this.carModelStorage = carModelStorage;
+    }
+
+    public CarModelStorage getCarModelStorage() {
+        return carModelStorage;
+    }
 
     /**
      * Adds a manufacturer to the reporting system.
+     * <p>
+     * Manufacturer names must be unique, ignoring case and surrounding spaces.
+     * </p>
      *
      * @param manufacturer the manufacturer to be added
+     * @throws IllegalArgumentException if a manufacturer with the same name has already been added
      */
     // Method to add a manufacturer to the reporting system
-    public void addManufacturer(Manufacturer manufacturer) {
+    public synchronized void addManufacturer(Manufacturer manufacturer) {
+        long start = metrics.start();
+        try {
+            if (manufacturerIndex.contains(manufacturer.getMname())) {
+                throw new IllegalArgumentException("Manufacturer '" + manufacturer.getMname() + "' already exists.");
+            }
+            // the manufacturer calls back manufacturerAttached while holding its own lock
+            manufacturer.attach(this, manufacturers.size());
+        } finally {
+            metrics.stop(TimedOperation.ADD_MANUFACTURER, start);
+        }
+    }
+
+    /**
+     * Retrieves a manufacturer by its name, adding a new manufacturer with that name if there is none.
+     * <p>
+     * The lookup and the add are one step under the same lock as {@link #addManufacturer(Manufacturer)}, so
+     * threads loading, ingesting or serving the same new manufacturer at once all get the one manufacturer
+     * added. A new manufacturer keeps its car models in this system's car model storage.
+     * </p>
+     *
+     * @param name the name of the manufacturer
+     * @return the existing or the newly added manufacturer
+     * @throws IllegalArgumentException if the manufacturer is new and the name is not valid
+     */
+    // Method to find a manufacturer by name, adding it if it is new
+    public Manufacturer getOrAddManufacturer(String name) {
+        Manufacturer manufacturer = getManufacturerByName(name);
+        if (manufacturer != null) {
+            return manufacturer;
+        }
+        synchronized (this) {
+            manufacturer = manufacturerIndex.get(name);
+            if (manufacturer == null) {
+                manufacturer = new Manufacturer(name, carModelStorage);
+                addManufacturer(manufacturer);
+            }
+            return manufacturer;
+        }
+    }
+
+    /**
+     * Registers a manufacturer once it has been linked to this reporting system.
+     * <p>
+     * Called by {@link Manufacturer#attach(Reporting, int)} with the manufacturer's write lock held, so no
+     * car models can be added to it until its existing car models are in the rollup and the price index.
+     * </p>
+     *
+     * @param manufacturer the manufacturer being added
+     * @param rows         the number of car models the manufacturer already holds
+     */
+    // Method called back by Manufacturer when it is attached
+    void manufacturerAttached(Manufacturer manufacturer, int rows) {
         manufacturers.add(manufacturer);
+        manufacturerIndex.add(manufacturer);
+        ReportingJournal journal = this.journal;
+        if (journal != null) {
+            // logged before its car models, which carModelsAdded logs next
+            journal.manufacturerAdded(manufacturer);
+        }
+
+        // include any car models the manufacturer already has in the rollup and the price index
+        carModelsAdded(manufacturer, 0, rows);
+    }
+
+    /**
+     * Updates the cross-manufacturer rollup and price index after a manufacturer has added car models.
+     * <p>
+     * A batch of car models is handled in one call, so each car type's ranking is updated once per batch.
+     * The caller holds the manufacturer's write lock.
+     * </p>
+     *
+     * @param manufacturer the manufacturer that added the car models
+     * @param firstRow     the row of the first new car model in the manufacturer's columns
+     * @param endRow       the row after the last new car model
+     */
+    // Method called by Manufacturer whenever car models are added
+    void carModelsAdded(Manufacturer manufacturer, int firstRow, int endRow) {
+        CarModelColumns columns = manufacturer.getColumns();
+        ReportingJournal journal = this.journal;
+        if (journal != null && endRow > firstRow) {
+            // logged under the manufacturer's lock, so each manufacturer's batches are logged in the order they were added
+            journal.carModelsAdded(manufacturer, firstRow, endRow);
+        }
+        long stamp = rollupLock.writeLock();
+        try {
+            carModelCount += endRow - firstRow;
+            metrics.carModelsAdded(endRow - firstRow);
+            for (int row = firstRow; row < endRow; row++) {
+                totalRevenueByType[columns.type(row)].add(columns.price(row) * columns.nSold(row));
+                priceIndex.add(columns.price(row), priceKey(manufacturer, row));
+            }
+            for (CarType type : CarType.values()) {
+                revenueRankings.get(type).update(manufacturer, manufacturer.getIndex(), manufacturer.getRevenueByTypeLocked(type));
+            }
+            // bumped last, so a report that sees the new version also sees the new rollup and index
+            version++;
+        } finally {
+            rollupLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Updates the rollup and revenue rankings after a manufacturer has folded in recorded sales.
+     * The caller holds the manufacturer's write lock.
+     *
+     * @param manufacturer the manufacturer whose car models were sold
+     * @param rows         the rows of the car models sold
+     * @param units        the units added to each car model
+     * @param count        the number of car models
+     */
+    // Method called by Manufacturer whenever units sold are added
+    void salesAdded(Manufacturer manufacturer, int[] rows, long[] units, int count) {
+        CarModelColumns columns = manufacturer.getColumns();
+        ReportingJournal journal = this.journal;
+        if (journal != null && count > 0) {
+            journal.unitsSold(manufacturer, rows, count);
+        }
+        long stamp = rollupLock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+                int row = rows[i];
+                double price = columns.price(row);
+                int nSold = columns.nSold(row);
+                // the same two terms the manufacturer adds, so the rollup stays equal to a recalculation
+                CompensatedSum total = totalRevenueByType[columns.type(row)];
+                total.add(-price * (nSold - units[i]));
+                total.add(price * nSold);
+            }
+            for (CarType type : CarType.values()) {
+                revenueRankings.get(type).update(manufacturer, manufacturer.getIndex(), manufacturer.getRevenueByTypeLocked(type));
+            }
+            version++;
+        } finally {
+            rollupLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Updates the rollup, revenue rankings and price index after a manufacturer has repriced a car model.
+     * The caller holds the manufacturer's write lock.
+     *
+     * @param manufacturer the manufacturer of the car model
+     * @param row          the row of the car model, which already holds the new price
+     * @param oldPrice     the price before the change
+     */
+    // Method called by Manufacturer whenever a car model is repriced
+    void carModelRepriced(Manufacturer manufacturer, int row, double oldPrice) {
+        CarModelColumns columns = manufacturer.getColumns();
+        ReportingJournal journal = this.journal;
+        if (journal != null) {
+            journal.priceChanged(manufacturer, row);
+        }
+        double price = columns.price(row);
+        int nSold = columns.nSold(row);
+        CarType type = CarType.fromCode(columns.type(row));
+        long stamp = rollupLock.writeLock();
+        try {
+            CompensatedSum total = totalRevenueByType[type.ordinal()];
+            total.add(-oldPrice * nSold);
+            total.add(price * nSold);
+            long key = priceKey(manufacturer, row);
+            priceIndex.remove(oldPrice, key);
+            priceIndex.add(price, key);
+            revenueRankings.get(type).update(manufacturer, manufacturer.getIndex(), manufacturer.getRevenueByTypeLocked(type));
+            version++;
+        } finally {
+            rollupLock.unlockWrite(stamp);
+        }
+    }
+
+    // Method to build the price index key of a car model from its manufacturer index and row
+    private static long priceKey(Manufacturer manufacturer, int row) {
+        return ((long) manufacturer.getIndex() << 32) | row;
+    }
+
+    // Method to turn a price index key back into a car model view
+    private CarModel viewOf(long key) {
+        return manufacturers.get((int) (key >>> 32)).getColumns().view((int) key);
+    }
+
+    /**
+     * Sets how many report results are cached. Cached results are only reused while no car models or
+     * manufacturers have been added since they were computed, so the cache never changes an answer.
+     *
+     * @param capacity the number of results to keep, 0 turns the cache off
+     */
+    // Setter method for the cache capacity
+    public void setCacheCapacity(int capacity) {
+        cache.setCapacity(capacity);
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the report result cache.
+     *
+     * @return a snapshot of the cache counters
+     */
+    // Getter method for the cache counters
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Returns the metrics of this reporting system: ingest rate, report latencies, rows scanned and
+     * catalogue size. They are recorded only while enabled, see {@link ReportingMetrics}.
+     *
+     * @return the metrics
+     */
+    // Getter method for the metrics
+    public ReportingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the journal that makes changes to this reporting system durable, see {@link ReportingJournal#open(Path)}.
+     *
+     * @return the journal, or {@code null} if changes are not journaled
+     */
+    // Getter method for the journal
+    public ReportingJournal getJournal() {
+        return journal;
+    }
+
+    // Setter method for the journal, called once recovery has finished and when the journal is closed
+    void setJournal(ReportingJournal journal) {
+        this.journal = journal;
+    }
+
+    // Getter method for the result cache, shared with the manufacturers of this reporting system
+    ReportCache getCache() {
+        return cache;
+    }
+
+    // Method to answer a report across all manufacturers from the result cache
+    private <T> T cached(String report, Supplier<T> query, Object... parameters) {
+        // read the version before running the query, so a result that misses a concurrent add is never reused
+        return cache.get(report, null, version, query, parameters);
+    }
+
+    /**
+     * Returns the number of car models held by all manufacturers.
+     *
+     * @return the number of car models
+     */
+    // Getter method for the number of car models in the rollup
+    public long getCarModelCount() {
+        return carModelCount;
+    }
+
+    /**
+     * Returns all manufacturers in the reporting system.
+     *
+     * @return a read-only list of manufacturers
+     */
+    // Getter method for the list of manufacturers
+    public List<Manufacturer> getManufacturers() {
+        return Collections.unmodifiableList(manufacturers);
     }
 
     /**
@@ -37,30 +390,76 @@ public class Reporting {
      */
     // Method to display all manufacturers and their car models
     public void displayAllManufacturers() {
+        ReportRenderer renderer = new ReportRenderer(System.out);
         if (manufacturers.isEmpty()) {
-            System.out.println("No manufacturers available.");
+            renderer.line("No manufacturers available.").flush();
             return;
         }
-        System.out.println("\n List of Manufacturers and Their Cars");
+        renderer.line("\n List of Manufacturers and Their Cars");
         for (Manufacturer manufacturer : manufacturers) {
-            manufacturer.displayManufacturer();
+            renderer.manufacturer(manufacturer);
         }
+        renderer.flush();
     }
 
     /**
-     * Retrieves a manufacturer by its name.
+     * Retrieves a manufacturer by its name, ignoring case and surrounding spaces.
      *
      * @param name the name of the manufacturer
-     * @return the {@code Manufacturer} object if found, otherwise {@code null}
+     * @return the {@code Manufacturer} object if found, otherwise {@code null}, as for a {@code null} name
      */
-    // Method to get a manufacturer by name
+    // Method to get a manufacturer by name from the name index
     public Manufacturer getManufacturerByName(String name) {
-        for (Manufacturer manufacturer : manufacturers) {
-            if (manufacturer.getMname().equalsIgnoreCase(name)) {
-                return manufacturer;
-            }
+        long start = metrics.start();
+        try {
+            return manufacturerIndex.get(name); // null if manufacturer not found
+        } finally {
+            metrics.stop(TimedOperation.GET_MANUFACTURER_BY_NAME, start);
+        }
+    }
+
+    /**
+     * Retrieves the manufacturers whose name starts with a prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix the start of the manufacturer name
+     * @param limit  the maximum number of manufacturers to return
+     * @return a list of matching manufacturers
+     */
+    // Method to suggest manufacturer names for autocomplete
+    public List<Manufacturer> findManufacturersByPrefix(String prefix, int limit) {
+        long start = metrics.start();
+        try {
+            return manufacturerIndex.startingWith(prefix, limit);
+        } finally {
+            metrics.stop(TimedOperation.FIND_MANUFACTURERS_BY_PREFIX, start);
+        }
+    }
+
+    /**
+     * Finds the most expensive car model sold across all manufacturers.
+     * If two car models have the same price the one added first is returned.
+     *
+     * @return the most expensive car model, or {@code null} if there are no car models
+     */
+    // Method to find the most expensive car model sold
+    public MostExpensiveResult getMostExpensiveCarModelSold() {
+        long start = metrics.start();
+        try {
+            return cached("mostExpensiveSold", this::findMostExpensiveCarModelSold);
+        } finally {
+            metrics.stop(TimedOperation.MOST_EXPENSIVE_CAR_MODEL_SOLD, start);
+        }
+    }
+
+    // Method to scan every manufacturer for the most expensive car model
+    private MostExpensiveResult findMostExpensiveCarModelSold() {
+        metrics.rowsScanned(carModelCount);
+        // Scan the price columns of every manufacturer, split across threads for large catalogues
+        long key = ParallelReports.mostExpensive(manufacturers, carModelCount, parallelThreshold);
+        if (key < 0) {
+            return null;
         }
-        return null; // Return null if manufacturer not found
+        return new MostExpensiveResult(manufacturers.get((int) (key >>> 32)).getMname(), viewOf(key));
     }
 
     /**
@@ -69,56 +468,215 @@ public class Reporting {
      */
     // Method to find and display the most expensive car model sold
     public void displayMostExpensiveCarModelSold() {
+        ReportRenderer renderer = new ReportRenderer(System.out);
         if (manufacturers.isEmpty()) {
-            System.out.println("No manufacturers available.");
-            return;
+            renderer.line("No manufacturers available.");
+        } else {
+            renderer.mostExpensiveCarModelSold(getMostExpensiveCarModelSold());
         }
+        renderer.flush();
+    }
 
-        CarModel mostExpensiveCar = null;
-        Manufacturer mostExpensiveManufacturer = null;
+    /**
+     * Records units sold of a car model held by one of this system's manufacturers.
+     * See {@link Manufacturer#recordSale(CarModel, int)}.
+     *
+     * @param model the car model sold, a view returned by a manufacturer or report of this system
+     * @param units the number of units sold
+     * @throws IllegalArgumentException if the car model does not belong to this system or units is not positive
+     */
+    // Method to record a sale of any car model in the system
+    public void recordSale(CarModel model, int units) {
+        manufacturerOf(model).recordSale(model, units);
+    }
 
-        // Loop through manufacturers and their car models
-        for (Manufacturer manufacturer : manufacturers) {
-            for (CarModel model : manufacturer.getCarModels()) {
-                if (mostExpensiveCar == null || model.getSales_price() > mostExpensiveCar.getSales_price()) {
-                    mostExpensiveCar = model;
-                    mostExpensiveManufacturer = manufacturer;
-                }
-            }
-        }
+    /**
+     * Changes the sales price of a car model held by one of this system's manufacturers.
+     * See {@link Manufacturer#repriceModel(CarModel, double)}.
+     *
+     * @param model the car model, a view returned by a manufacturer or report of this system
+     * @param price the new sales price in GBP
+     * @throws IllegalArgumentException if the car model does not belong to this system or the price is not valid
+     */
+    // Method to change the price of any car model in the system
+    public void repriceModel(CarModel model, double price) {
+        manufacturerOf(model).repriceModel(model, price);
+    }
 
-        // Display the most expensive car model found
-        if (mostExpensiveCar != null) {
-            System.out.println("\n Most Expensive Car Model Sold");
-            System.out.println("Name: " + mostExpensiveCar.getName());
-            System.out.println("Manufacturer: " + mostExpensiveManufacturer.getMname());
-            System.out.println("Sales Price: £" + mostExpensiveCar.getSales_price());
-            System.out.println("Type: " + mostExpensiveCar.getType());
-            System.out.println("Units Sold: " + mostExpensiveCar.getNSold());
-        } else {
-            System.out.println("No car models available.");
+    // Method to find the manufacturer holding a car model view
+    private Manufacturer manufacturerOf(CarModel model) {
+        Manufacturer manufacturer = model == null ? null : model.getColumns().getManufacturer();
+        if (manufacturer == null || manufacturer.getOwner() != this) {
+            // most often the car model passed to addCarModel, rather than the view it returned
+            throw new IllegalArgumentException("Car model does not belong to a manufacturer in this report,"
+                    + " use the view returned by addCarModel or read from a manufacturer.");
         }
+        return manufacturer;
     }
 
     /**
-     * Retrieves a list of car models that have a sales price above a specified amount.
+     * Retrieves a list of car models that have a sales price above a specified amount, cheapest first.
+     * <p>
+     * The models are found by binary search in a price index covering every manufacturer. The result
+     * is a read-only view over the index, the matching car models are not copied into a new list.
+     * </p>
      *
      * @param price the minimum price threshold
      * @return a list of {@code CarModel} objects that are priced above the given amount
      */
     public List<CarModel> getCarModelsAbovePrice(double price) {
-        List<CarModel> expensiveCars = new ArrayList<>();
+        long start = metrics.start();
+        try {
+            return cached("above", () -> priceIndex.above(price).asList(this::viewOf), price);
+        } finally {
+            metrics.stop(TimedOperation.CAR_MODELS_ABOVE_PRICE, start);
+        }
+    }
 
-        // Loop through manufacturers and their car models
-        for (Manufacturer manufacturer : manufacturers) {
-            for (CarModel model : manufacturer.getCarModels()) {
-                if (model.getSales_price() > price) {
-                    expensiveCars.add(model);
-                }
-            }
+    /**
+     * Streams the car models that have a sales price above a specified amount, cheapest first.
+     * <p>
+     * The stream reads the price index lazily, so {@code limit}, {@code findFirst} and other short-circuiting
+     * operations only look up the car models they consume, and nothing is collected unless the caller does.
+     * </p>
+     *
+     * @param price the minimum price threshold
+     * @return a stream of the car models priced above the given amount
+     */
+    // Method to stream the car models above a price
+    public Stream<CarModel> streamCarModelsAbovePrice(double price) {
+        long start = metrics.start();
+        try {
+            return StreamSupport.stream(priceIndex.above(price).spliterator(this::viewOf), false);
+        } finally {
+            metrics.stop(TimedOperation.CAR_MODELS_ABOVE_PRICE, start);
+        }
+    }
+
+    /**
+     * Retrieves one page of the car models that have a sales price above a specified amount, cheapest first.
+     *
+     * @param price  the minimum price threshold
+     * @param offset the number of matching car models to skip
+     * @param limit  the most car models on the page
+     * @return the page, with the number of matches and a token for the next page
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    // Method to read a page of the car models above a price by position
+    public CarModelPage getCarModelsAbovePrice(double price, int offset, int limit) {
+        long start = metrics.start();
+        try {
+            return CarModelPage.of(price, priceIndex.above(price), offset, limit, this::viewOf);
+        } finally {
+            metrics.stop(TimedOperation.CAR_MODELS_ABOVE_PRICE, start);
         }
+    }
 
-        return expensiveCars;
+    /**
+     * Retrieves the page of car models priced above a specified amount that follows an earlier page, cheapest first.
+     * <p>
+     * The page continues after the last car model of the earlier page, found by binary search, so paging
+     * through every match costs the same for the last page as for the first. See {@link CarModelPage} for how
+     * car models added or repriced between pages are paged.
+     * </p>
+     *
+     * @param price     the minimum price threshold, the same as for the earlier page
+     * @param pageToken the {@link CarModelPage#nextPageToken()} of the earlier page, or {@code null} for the first page
+     * @param limit     the most car models on the page
+     * @return the page, with the number of matches and a token for the next page
+     * @throws IllegalArgumentException if the token is not valid, is from a query with another price threshold,
+     *                                  or the limit is negative
+     */
+    // Method to read the next page of the car models above a price
+    public CarModelPage getCarModelsAbovePrice(double price, String pageToken, int limit) {
+        long start = metrics.start();
+        try {
+            return CarModelPage.after(price, priceIndex.above(price), pageToken, limit, this::viewOf);
+        } finally {
+            metrics.stop(TimedOperation.CAR_MODELS_ABOVE_PRICE, start);
+        }
+    }
+
+    /**
+     * Retrieves the car models that have a sales price below a specified amount, cheapest first.
+     *
+     * @param price the maximum price threshold
+     * @return a list of {@code CarModel} objects that are priced below the given amount
+     */
+    public List<CarModel> getCarModelsBelowPrice(double price) {
+        long start = metrics.start();
+        try {
+            return priceIndex.below(price).asList(this::viewOf);
+        } finally {
+            metrics.stop(TimedOperation.CAR_MODELS_BELOW_PRICE, start);
+        }
+    }
+
+    /**
+     * Retrieves the car models that have a sales price between two amounts, both inclusive, cheapest first.
+     *
+     * @param minPrice the lowest price to include
+     * @param maxPrice the highest price to include
+     * @return a list of {@code CarModel} objects priced within the range
+     */
+    public List<CarModel> getCarModelsBetweenPrices(double minPrice, double maxPrice) {
+        long start = metrics.start();
+        try {
+            return priceIndex.between(minPrice, maxPrice).asList(this::viewOf);
+        } finally {
+            metrics.stop(TimedOperation.CAR_MODELS_BETWEEN_PRICES, start);
+        }
+    }
+
+    /**
+     * Retrieves the {@code n} most expensive car models across all manufacturers, most expensive first.
+     *
+     * @param n the number of car models to return
+     * @return a list of at most {@code n} {@code CarModel} objects
+     */
+    public List<CarModel> getMostExpensiveCarModels(int n) {
+        long start = metrics.start();
+        try {
+            return priceIndex.highest(n).asList(this::viewOf);
+        } finally {
+            metrics.stop(TimedOperation.MOST_EXPENSIVE_CAR_MODELS, start);
+        }
+    }
+
+    /**
+     * Returns the {@code k} best car models across all manufacturers by a measure, best first.
+     * <p>
+     * Every car model is offered to a bounded heap in a single pass, O(n log k), split across threads
+     * for large catalogues. If two car models score the same, the one added first ranks higher.
+     * </p>
+     *
+     * @param k       the number of car models to return
+     * @param rankBy  the measure to rank by
+     * @param carType the car type to include, or {@code null} for every type
+     * @return a list of at most {@code k} ranked car models
+     */
+    // Method to find the top car models by price, revenue or units sold
+    public List<RankedCarModel> getTopCarModels(int k, RankBy rankBy, CarType carType) {
+        long start = metrics.start();
+        try {
+            return cached("top", () -> findTopCarModels(k, rankBy, carType), k, rankBy, carType);
+        } finally {
+            metrics.stop(TimedOperation.TOP_CAR_MODELS, start);
+        }
+    }
+
+    // Method to scan every manufacturer for the top car models
+    private List<RankedCarModel> findTopCarModels(int k, RankBy rankBy, CarType carType) {
+        metrics.rowsScanned(carModelCount);
+        TopK top = ParallelReports.topCarModels(manufacturers, k, rankBy, carType, carModelCount, parallelThreshold);
+        top.sort();
+        List<RankedCarModel> results = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            long key = top.key(i);
+            results.add(new RankedCarModel(i + 1, manufacturers.get((int) (key >>> 32)).getMname(), viewOf(key), top.score(i)));
+        }
+        // the list may be cached and shared between callers
+        return Collections.unmodifiableList(results);
     }
 
 /**
@@ -132,48 +690,235 @@ public class Reporting {
  */
     // Method to display revenue for each manufacturer and the one with the highest revenue for a specific car type
     public void displayManufacturerWithHighestRevenueByType(String carType) {
+        ReportRenderer renderer = new ReportRenderer(System.out);
         if (manufacturers.isEmpty()) {
-            System.out.println("No manufacturers available.");
+            renderer.line("No manufacturers available.").flush();
             return;
         }
 
         // Validate car type
-        if (!carType.equalsIgnoreCase("hatchback") &&
-                !carType.equalsIgnoreCase("saloon") &&
-                !carType.equalsIgnoreCase("estate")) {
-            System.out.println("Invalid car type. Please enter Hatchback, Saloon, or Estate.");
+        CarType type = CarType.parse(carType);
+        if (type == null) {
+            renderer.line("Invalid car type. Please enter Hatchback, Saloon, or Estate.").flush();
             return;
         }
+        displayManufacturerWithHighestRevenueByType(type);
+    }
 
-        Manufacturer highestRevenueManufacturer = null;
-        double highestRevenue = 0.0;
+    /**
+     * Displays the revenue for each manufacturer for an already parsed car type
+     * and identifies the manufacturer with the highest revenue for that type.
+     *
+     * @param carType the type of car
+     */
+    // Method to display revenue by manufacturer for a car type, comparing type ordinals
+    public void displayManufacturerWithHighestRevenueByType(CarType carType) {
+        ReportRenderer renderer = new ReportRenderer(System.out);
+        if (manufacturers.isEmpty()) {
+            renderer.line("No manufacturers available.").flush();
+            return;
+        }
 
-        System.out.println("\n Revenue for " + carType + " Cars by Manufacturer");
+        // Display every manufacturer's running revenue total and the manufacturer with the highest revenue
+        Manufacturer highest = getManufacturerWithHighestRevenueByType(carType);
+        renderer.revenueByManufacturer(carType, getRevenueByType(carType), highest == null ? null : highest.getSalesByType(carType));
+        renderer.flush();
+    }
 
-        // Loop through manufacturers to calculate revenue for the given car type
-        for (Manufacturer manufacturer : manufacturers) {
-            double revenue = 0.0;
-            for (CarModel model : manufacturer.getCarModels()) {
-                if (model.getType().equalsIgnoreCase(carType)) {
-                    revenue += model.getSales_price() * model.getNSold();
+    /**
+     * Returns every manufacturer's sales figures for a car type, in the order the manufacturers were added.
+     *
+     * @param carType the type of car
+     * @return the revenue figures of each manufacturer
+     */
+    // Method to collect the running totals of every manufacturer for a car type
+    public List<RevenueByType> getRevenueByType(CarType carType) {
+        long start = metrics.start();
+        try {
+            return cached("revenueByType", () -> {
+                List<RevenueByType> results = new ArrayList<>(manufacturers.size());
+                for (Manufacturer manufacturer : manufacturers) {
+                    results.add(manufacturer.getSalesByType(carType));
                 }
+                return Collections.unmodifiableList(results);
+            }, carType);
+        } finally {
+            metrics.stop(TimedOperation.REVENUE_BY_TYPE, start);
+        }
+    }
+
+    /**
+     * Returns the manufacturer with the highest revenue for a car type.
+     * <p>
+     * The answer is read from a ranking that is kept up to date as car models are added,
+     * so no car models are scanned. If two manufacturers have the same revenue the one added first is returned.
+     * </p>
+     *
+     * @param carType the type of car
+     * @return the manufacturer with the highest revenue, or {@code null} if no manufacturer has revenue for the type
+     */
+    // Method to look up the manufacturer with the highest revenue for a car type
+    public Manufacturer getManufacturerWithHighestRevenueByType(CarType carType) {
+        long start = metrics.start();
+        try {
+            long stamp = rollupLock.readLock();
+            try {
+                return revenueRankings.get(carType).top();
+            } finally {
+                rollupLock.unlockRead(stamp);
             }
+        } finally {
+            metrics.stop(TimedOperation.HIGHEST_REVENUE_BY_TYPE, start);
+        }
+    }
 
-            // Display revenue for this manufacturer
-            System.out.println(manufacturer.getMname() + "Revenue: £" + revenue);
+    /**
+     * Recalculates every manufacturer's revenue for a car type by scanning all car models.
+     * <p>
+     * Reports use the running totals instead; this full scan is for checking them. Large catalogues are
+     * scanned in parallel, one manufacturer per task, so the results are identical to
+     * {@link Manufacturer#recalculateRevenueByType(CarType)}.
+     * </p>
+     *
+     * @param carType the type of car
+     * @return the revenue of each manufacturer, in the order they were added
+     */
+    // Method to recalculate revenue for a car type for every manufacturer
+    public double[] recalculateRevenueByType(CarType carType) {
+        long start = metrics.start();
+        try {
+            metrics.rowsScanned(carModelCount);
+            return ParallelReports.recalculateRevenueByType(manufacturers, carType, carModelCount, parallelThreshold);
+        } finally {
+            metrics.stop(TimedOperation.RECALCULATE_REVENUE_BY_TYPE, start);
+        }
+    }
+
+    /**
+     * Returns the total revenue for a car type across all manufacturers.
+     *
+     * @param carType the type of car
+     * @return the total revenue for the car type
+     */
+    // Getter method for the cross-manufacturer revenue total
+    public double getTotalRevenueByType(CarType carType) {
+        long start = metrics.start();
+        try {
+            long stamp = rollupLock.tryOptimisticRead();
+            double total = totalRevenueByType[carType.ordinal()].get();
+            if (!rollupLock.validate(stamp)) {
+                stamp = rollupLock.readLock();
+                try {
+                    total = totalRevenueByType[carType.ordinal()].get();
+                } finally {
+                    rollupLock.unlockRead(stamp);
+                }
+            }
+            return total;
+        } finally {
+            metrics.stop(TimedOperation.TOTAL_REVENUE_BY_TYPE, start);
+        }
+    }
+
+    /**
+     * Groups every car model by any mix of manufacturer, type, price band and weight band and returns
+     * the revenue, units sold, average price and average weight of each group.
+     * <p>
+     * Every car model is added to its group in a single pass, using a primitive hash table keyed by the
+     * packed groups of the car model, so the cost does not grow with the number of groups asked for.
+     * Large catalogues are split across threads, each with its own table, and the tables are merged.
+     * </p>
+     *
+     * @param dimensions      the dimensions to group by, in order; an empty list gives only the total
+     * @param priceBandWidth  the width of a price band in GBP, used if grouping by price band
+     * @param weightBandWidth the width of a weight band in kilograms, used if grouping by weight band
+     * @return the pivot table
+     * @throws IllegalArgumentException if a dimension is repeated or a band width used is not positive
+     */
+    // Method to group and aggregate every car model into a pivot table
+    public PivotTable getPivotTable(List<GroupBy> dimensions, double priceBandWidth, double weightBandWidth) {
+        long start = metrics.start();
+        try {
+            PivotKeys keys = new PivotKeys(dimensions, priceBandWidth, weightBandWidth);
+            return cached("pivot", () -> findPivotTable(keys), keys.dimensions(), priceBandWidth, weightBandWidth);
+        } finally {
+            metrics.stop(TimedOperation.PIVOT_TABLE, start);
+        }
+    }
 
-            // Check if this manufacturer has the highest revenue for this car type
-            if (revenue > highestRevenue) {
-                highestRevenue = revenue;
-                highestRevenueManufacturer = manufacturer;
+    // Method to scan every manufacturer into a group table and label its groups
+    private PivotTable findPivotTable(PivotKeys keys) {
+        metrics.rowsScanned(carModelCount);
+        GroupTable table = ParallelReports.groupBy(manufacturers, keys, carModelCount, parallelThreshold);
+        List<GroupBy> dimensions = keys.dimensions();
+        List<PivotRow> rows = new ArrayList<>(table.size());
+        long count = 0;
+        long units = 0;
+        CompensatedSum revenue = new CompensatedSum();
+        double priceSum = 0;
+        double weightSum = 0;
+        // distinct labels of each dimension, ordered by their value in the key
+        List<TreeMap<Long, String>> headings = new ArrayList<>(dimensions.size());
+        for (int d = 0; d < dimensions.size(); d++) {
+            headings.add(new TreeMap<>());
+        }
+        for (int group : table.sortedGroups()) {
+            long key = table.key(group);
+            String[] labels = new String[dimensions.size()];
+            for (int d = 0; d < labels.length; d++) {
+                GroupBy dimension = dimensions.get(d);
+                labels[d] = headings.get(d).computeIfAbsent(keys.value(key, dimension), value -> keys.label(key, dimension, manufacturers));
             }
+            rows.add(pivotRow(List.of(labels), table.count(group), table.units(group), table.revenue(group),
+                    table.priceSum(group), table.weightSum(group)));
+            count += table.count(group);
+            units += table.units(group);
+            revenue.add(table.revenue(group));
+            priceSum += table.priceSum(group);
+            weightSum += table.weightSum(group);
         }
+        List<List<String>> labels = new ArrayList<>(headings.size());
+        for (TreeMap<Long, String> heading : headings) {
+            labels.add(List.copyOf(heading.values()));
+        }
+        return new PivotTable(dimensions, keys.priceBandWidth(), keys.weightBandWidth(), List.copyOf(labels),
+                Collections.unmodifiableList(rows), pivotRow(List.of(), count, units, revenue.get(), priceSum, weightSum));
+    }
 
-        // Display manufacturer with the highest revenue for this car type
-        if (highestRevenueManufacturer != null) {
-            System.out.println("\n Manufacturer with Highest Revenue for " + carType + ": " + highestRevenueManufacturer.getMname());
-            System.out.println("Total Revenue: £" + highestRevenue);
+    // Method to turn the figures of one group into a pivot table row, working out the averages
+    private static PivotRow pivotRow(List<String> groups, long count, long units, double revenue, double priceSum, double weightSum) {
+        return count == 0 ? new PivotRow(groups, 0, 0, 0.0, 0.0, 0.0)
+                : new PivotRow(groups, count, units, revenue, priceSum / count, weightSum / count);
+    }
+
+    /**
+     * Saves all manufacturers and car models to a binary snapshot file.
+     * If the file is the snapshot of this system's journal, a journal checkpoint is written instead.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    // Method to save the reporting system so it can be reopened after a restart
+    public void saveSnapshot(Path file) throws IOException {
+        ReportingJournal journal = this.journal;
+        if (journal != null && journal.isSnapshotFile(file)) {
+            // a plain snapshot would not record which journal segments it covers, so they would be replayed twice
+            journal.checkpoint();
+            return;
         }
+        CatalogueSnapshot.save(this, file);
+    }
+
+    /**
+     * Reopens a reporting system saved with {@link #saveSnapshot(Path)}.
+     *
+     * @param file the snapshot file
+     * @return the reopened reporting system
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    // Method to reopen a saved reporting system
+    public static Reporting openSnapshot(Path file) throws IOException {
+        return CatalogueSnapshot.open(file);
     }
 
     public static void main(String[] args) {
@@ -194,15 +939,19 @@ public class Reporting {
             report.displayAllManufacturers();
             report.getManufacturerByName(tesla.getMname());
 
+            ReportRenderer renderer = new ReportRenderer(System.out);
             //valid
-            report.getCarModelsAbovePrice(1000);
+            renderer.carModelsAbovePrice(1000, report.getCarModelsAbovePrice(1000));
             //boundary
-            report.getCarModelsAbovePrice(50000);
+            renderer.carModelsAbovePrice(50000, report.getCarModelsAbovePrice(50000));
             //erroneous
-            report.getCarModelsAbovePrice(-100);
+            renderer.carModelsAbovePrice(-100, report.getCarModelsAbovePrice(-100));
+            renderer.flush();
 
             report.displayMostExpensiveCarModelSold();
             report.displayManufacturerWithHighestRevenueByType("Saloon");
+
+            new ReportRenderer(System.out).topCarModels(RankBy.REVENUE, null, report.getTopCarModels(3, RankBy.REVENUE, null)).flush();
         } catch (IllegalArgumentException e) {
             // Catch and display any validation errors
             System.out.println("Error: " + e.getMessage());
@@ -0,0 +1,584 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.IntToLongFunction;
+
+/**
+ * The {@code ReportingBenchmark} class measures the hot paths of {@code Manufacturer} and {@code Reporting}
+ * over synthetic catalogues.
+ * <p>
+ * Each benchmark is warmed up and then run for a number of timed iterations. For every benchmark and
+ * catalogue size it reports the throughput, the average time per operation and the bytes allocated
+ * per operation and per second, measured from the thread's allocation counter. Results of every call
+ * are folded into a sink so the JIT cannot drop the work being measured.
+ * </p>
+ * <p>
+ * Usage: {@code java ReportingBenchmark [--sizes 1000,100000,1000000] [--manufacturers 50]
+ * [--types 1,1,1] [--prices uniform|normal|skewed] [--min-price 5000] [--max-price 150000]
+ * [--warmup 3] [--iterations 5] [--time 1000] [--seed 42] [--cache 0] [--bench name,...]}.
+ * The report result cache is off by default so the queries themselves are measured; {@code --cache 1024}
+ * measures repeated queries answered from the cache instead.
+ * The {@code scan} benchmarks run the column scan kernels over every car model, once with the scalar kernels
+ * and, when started with {@code --add-modules jdk.incubator.vector}, once more with the vector kernels.
+ * Run with a fixed heap, for example {@code -Xms4g -Xmx4g}, when measuring catalogues of 10 million car models.
+ * </p>
+ * <p>
+ * This harness runs every benchmark in one JVM, so the JIT profile of one benchmark can affect the next. The
+ * JMH benchmarks in {@code benchmarks/} run the same operations, through {@link #operation}, each in a JVM of
+ * its own; use those when comparing results across changes.
+ * </p>
+ */
+// ReportingBenchmark class times the reporting hot paths and reports throughput, latency and allocation
+public class ReportingBenchmark {
+    private static final String[] BENCHMARKS = {
+            "addCarModel", "calculateTotalRevenueByType", "getCarModelsAbovePrice", "pageCarModelsAbovePrice",
+            "pageWhileRepricing", "displayMostExpensiveCarModelSold", "getManufacturerByName", "journaledAddCarModel", "recoverJournal",
+            "getPivotTable", "ingestPipeline", "recordSale", "scanRevenueByType", "scanAbovePrice", "scanMostExpensive"
+    };
+    // benchmarks whose invocations handle the whole catalogue, reported per car model
+    private static final List<String> PER_CAR_MODEL = List.of("addCarModel", "journaledAddCarModel", "recoverJournal", "ingestPipeline",
+            "scanRevenueByType", "scanAbovePrice", "scanMostExpensive");
+    // benchmarks of the column scans, run once with each kind of scan kernel
+    private static final List<String> SCANS = List.of("scanRevenueByType", "scanAbovePrice", "scanMostExpensive");
+
+    // blackhole for benchmark results
+    static volatile long sink;
+
+    private int[] sizes = {1_000, 100_000, 1_000_000};
+    private int manufacturers = 50;
+    private double[] typeWeights = {1, 1, 1};
+    private SyntheticCatalogue.PriceDistribution distribution = SyntheticCatalogue.PriceDistribution.UNIFORM;
+    private double minPrice = 5_000;
+    private double maxPrice = 150_000;
+    private double aboveQuantile = 0.99;
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationMillis = 1_000;
+    private long seed = 42;
+    private int cacheCapacity = 0;
+    private List<String> selected = Arrays.asList(BENCHMARKS);
+    // holds the journal files of the journal benchmarks, deleted when the run ends
+    private Path scratch;
+
+    /**
+     * A benchmarked operation. Each invocation returns a value derived from its results, which is folded into the sink.
+     */
+    interface Operation {
+        long invoke(int invocation);
+    }
+
+    /**
+     * The measurements of one benchmark over one catalogue.
+     */
+    record Result(String benchmark, int size, double[] opsPerSecond, double nanosPerOp, double bytesPerOp) {
+        // Method to find the mean throughput over the iterations
+        double meanOpsPerSecond() {
+            double sum = 0;
+            for (double value : opsPerSecond) {
+                sum += value;
+            }
+            return sum / opsPerSecond.length;
+        }
+
+        // Method to find the standard deviation of the throughput over the iterations
+        double stddevOpsPerSecond() {
+            double mean = meanOpsPerSecond();
+            double sum = 0;
+            for (double value : opsPerSecond) {
+                sum += (value - mean) * (value - mean);
+            }
+            return opsPerSecond.length > 1 ? Math.sqrt(sum / (opsPerSecond.length - 1)) : 0;
+        }
+
+        // Method to find the allocation rate in megabytes per second
+        double allocationMegabytesPerSecond() {
+            return bytesPerOp * meanOpsPerSecond() / (1024 * 1024);
+        }
+    }
+
+    // Method to parse the command line options
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--sizes":
+                    sizes = Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--manufacturers":
+                    manufacturers = Integer.parseInt(value);
+                    break;
+                case "--types":
+                    typeWeights = SyntheticCatalogue.parseTypeWeights(value);
+                    break;
+                case "--prices":
+                    distribution = SyntheticCatalogue.PriceDistribution.parse(value);
+                    break;
+                case "--min-price":
+                    minPrice = Double.parseDouble(value);
+                    break;
+                case "--max-price":
+                    maxPrice = Double.parseDouble(value);
+                    break;
+                case "--above-quantile":
+                    aboveQuantile = Double.parseDouble(value);
+                    break;
+                case "--warmup":
+                    warmupIterations = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    iterations = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--time":
+                    iterationMillis = Long.parseLong(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--cache":
+                    cacheCapacity = Integer.parseInt(value);
+                    break;
+                case "--bench":
+                    selected = Arrays.asList(value.split(","));
+                    for (String name : selected) {
+                        if (!Arrays.asList(BENCHMARKS).contains(name)) {
+                            throw new IllegalArgumentException("Unknown benchmark " + name + ", expected one of " + Arrays.toString(BENCHMARKS));
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+
+    // Method to apply the cache capacity option to a reporting system under test
+    private Reporting withCache(Reporting reporting) {
+        reporting.setCacheCapacity(cacheCapacity);
+        return reporting;
+    }
+
+    // Method to build the operation for a benchmark, doing any setup outside the measured code
+    private Operation setUp(String benchmark, SyntheticCatalogue catalogue, ScanKernels kernels) {
+        int size = catalogue.size();
+        switch (benchmark) {
+            case "addCarModel": {
+                // every invocation ingests the whole catalogue into a new reporting system, one car model at a time,
+                // building each CarModel the way a caller of addCarModel would
+                return invocation -> {
+                    Reporting reporting = withCache(new Reporting());
+                    Manufacturer[] makers = new Manufacturer[catalogue.manufacturerCount()];
+                    for (int m = 0; m < makers.length; m++) {
+                        makers[m] = new Manufacturer(catalogue.manufacturerName(m));
+                        reporting.addManufacturer(makers[m]);
+                    }
+                    for (int i = 0; i < size; i++) {
+                        makers[catalogue.manufacturer(i)].addCarModel(catalogue.carModel(i));
+                    }
+                    return (long) reporting.getTotalRevenueByType(CarType.SALOON);
+                };
+            }
+            case "calculateTotalRevenueByType": {
+                List<Manufacturer> makers = withCache(catalogue.toReporting()).getManufacturers();
+                String[] types = {"Hatchback", "saloon", "ESTATE"};
+                return invocation -> (long) makers.get(invocation % makers.size()).calculateTotalRevenueByType(types[invocation % types.length]);
+            }
+            case "getCarModelsAbovePrice": {
+                Reporting reporting = withCache(catalogue.toReporting());
+                double[] thresholds = thresholdsAt(catalogue, aboveQuantile);
+                return invocation -> {
+                    long checksum = 0;
+                    for (CarModel model : reporting.getCarModelsAbovePrice(thresholds[invocation & (thresholds.length - 1)])) {
+                        checksum += (long) model.getSales_price();
+                    }
+                    return checksum;
+                };
+            }
+            case "pageCarModelsAbovePrice": {
+                Reporting reporting = withCache(catalogue.toReporting());
+                // a threshold almost every car model is above, read five pages of 20 at a time
+                double[] thresholds = thresholdsAt(catalogue, 0.01);
+                return invocation -> {
+                    long checksum = 0;
+                    double price = thresholds[invocation & (thresholds.length - 1)];
+                    String token = null;
+                    for (int page = 0; page < 5; page++) {
+                        CarModelPage models = reporting.getCarModelsAbovePrice(price, token, 20);
+                        for (CarModel model : models.carModels()) {
+                            checksum += (long) model.getSales_price();
+                        }
+                        token = models.nextPageToken();
+                    }
+                    return checksum;
+                };
+            }
+            case "pageWhileRepricing": {
+                // the same five pages, each read after repricing a car model, so every page is read after a write
+                Reporting reporting = withCache(catalogue.toReporting());
+                double[] thresholds = thresholdsAt(catalogue, 0.01);
+                List<CarModel> carModels = new ArrayList<>();
+                for (Manufacturer maker : reporting.getManufacturers()) {
+                    carModels.addAll(maker.getCarModels());
+                }
+                SplittableRandom random = new SplittableRandom(seed);
+                return invocation -> {
+                    long checksum = 0;
+                    double price = thresholds[invocation & (thresholds.length - 1)];
+                    String token = null;
+                    for (int page = 0; page < 5; page++) {
+                        CarModel repriced = carModels.get(random.nextInt(carModels.size()));
+                        reporting.repriceModel(repriced, minPrice + random.nextDouble() * (maxPrice - minPrice));
+                        CarModelPage models = reporting.getCarModelsAbovePrice(price, token, 20);
+                        for (CarModel model : models.carModels()) {
+                            checksum += (long) model.getSales_price();
+                        }
+                        token = models.nextPageToken();
+                    }
+                    return checksum;
+                };
+            }
+            case "displayMostExpensiveCarModelSold": {
+                Reporting reporting = withCache(catalogue.toReporting());
+                return invocation -> {
+                    reporting.displayMostExpensiveCarModelSold();
+                    return invocation;
+                };
+            }
+            case "getManufacturerByName": {
+                Reporting reporting = withCache(catalogue.toReporting());
+                String[] names = new String[256];
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < names.length; i++) {
+                    String name = catalogue.manufacturerName(random.nextInt(catalogue.manufacturerCount()));
+                    // mix of exact, lower and upper case lookups, and a few misses
+                    switch (i % 4) {
+                        case 1 -> name = name.toLowerCase(Locale.ROOT);
+                        case 2 -> name = " " + name.toUpperCase(Locale.ROOT);
+                        case 3 -> name = name + "?";
+                        default -> { }
+                    }
+                    names[i] = name;
+                }
+                return invocation -> {
+                    Manufacturer manufacturer = reporting.getManufacturerByName(names[invocation & (names.length - 1)]);
+                    return manufacturer == null ? 0 : manufacturer.getIndex();
+                };
+            }
+            case "getPivotTable": {
+                // cycles through groupings from a single dimension up to every dimension at once
+                Reporting reporting = withCache(catalogue.toReporting());
+                List<List<GroupBy>> groupings = List.of(List.of(GroupBy.TYPE), List.of(GroupBy.MANUFACTURER, GroupBy.TYPE),
+                        List.of(GroupBy.PRICE_BAND, GroupBy.TYPE), List.of(GroupBy.MANUFACTURER, GroupBy.TYPE, GroupBy.PRICE_BAND, GroupBy.WEIGHT_BAND));
+                return invocation -> reporting.getPivotTable(groupings.get(invocation & 3), 10_000, 250).rows().size();
+            }
+            case "ingestPipeline": {
+                // every invocation streams the whole catalogue as CSV lines through a new pipeline and waits until
+                // the last one is applied, so the rate per car model is the sustained events per second
+                String[] lines = new String[size];
+                for (int i = 0; i < size; i++) {
+                    CarModel model = catalogue.carModel(i);
+                    lines[i] = catalogue.manufacturerName(catalogue.manufacturer(i)) + "," + model.getName() + ","
+                            + model.getWeight() + "," + model.getSales_price() + "," + model.getNSold() + "," + model.getType();
+                }
+                return invocation -> {
+                    Reporting reporting = withCache(new Reporting());
+                    try (IngestPipeline pipeline = IngestPipeline.start(reporting)) {
+                        for (String line : lines) {
+                            pipeline.submit(line);
+                        }
+                        pipeline.flush();
+                    }
+                    return reporting.getCarModelCount();
+                };
+            }
+            case "recordSale": {
+                // three sales in four are of one hot car model, the rest of car models spread over the catalogue
+                Reporting reporting = withCache(catalogue.toReporting());
+                List<Manufacturer> makers = reporting.getManufacturers();
+                CarModel[] models = new CarModel[1024];
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < models.length; i++) {
+                    List<CarModel> carModels = makers.get(random.nextInt(makers.size())).getCarModels();
+                    models[i] = carModels.isEmpty() ? null : carModels.get(random.nextInt(carModels.size()));
+                }
+                CarModel hot = reporting.getMostExpensiveCarModelSold().carModel();
+                return invocation -> {
+                    CarModel model = (invocation & 3) != 0 || models[invocation & 1023] == null ? hot : models[invocation & 1023];
+                    reporting.recordSale(model, 1);
+                    return model.getNSold();
+                };
+            }
+            case "scanRevenueByType": {
+                // every invocation adds up one car type's revenue over every manufacturer's columns
+                List<Manufacturer> makers = catalogue.toReporting().getManufacturers();
+                CarType[] types = CarType.values();
+                return invocation -> {
+                    CompensatedSum revenue = new CompensatedSum();
+                    byte typeCode = types[invocation % types.length].code();
+                    for (Manufacturer manufacturer : makers) {
+                        CarModelColumns columns = manufacturer.getColumns();
+                        kernels.addRevenueByType(columns.prices(), columns.nSold(), columns.types(), 0, columns.size(), typeCode, revenue);
+                    }
+                    return (long) revenue.get();
+                };
+            }
+            case "scanAbovePrice": {
+                // every invocation collects the rows above a price near the quantile from every manufacturer's columns
+                List<Manufacturer> makers = catalogue.toReporting().getManufacturers();
+                double[] thresholds = thresholdsAt(catalogue, aboveQuantile);
+                int[] rows = new int[size];
+                return invocation -> {
+                    long found = 0;
+                    double price = thresholds[invocation & (thresholds.length - 1)];
+                    for (Manufacturer manufacturer : makers) {
+                        CarModelColumns columns = manufacturer.getColumns();
+                        found += kernels.rowsAbovePrice(columns.prices(), 0, columns.size(), price, rows);
+                    }
+                    return found;
+                };
+            }
+            case "scanMostExpensive": {
+                // every invocation finds the most expensive row of every manufacturer
+                List<Manufacturer> makers = catalogue.toReporting().getManufacturers();
+                return invocation -> {
+                    long rows = 0;
+                    for (Manufacturer manufacturer : makers) {
+                        CarModelColumns columns = manufacturer.getColumns();
+                        rows += columns.size() == 0 ? 0 : kernels.mostExpensiveRow(columns.prices(), 0, columns.size());
+                    }
+                    return rows;
+                };
+            }
+            case "journaledAddCarModel": {
+                // every invocation ingests the whole catalogue into a new journaled reporting system and makes it
+                // durable, so the cost per car model includes appending its record and its share of the fsyncs
+                return invocation -> {
+                    try {
+                        Path snapshot = emptyScratch().resolve("reporting.snapshot");
+                        Reporting reporting = ReportingJournal.open(snapshot, Long.MAX_VALUE);
+                        reporting.setCacheCapacity(cacheCapacity);
+                        Manufacturer[] makers = new Manufacturer[catalogue.manufacturerCount()];
+                        for (int m = 0; m < makers.length; m++) {
+                            makers[m] = new Manufacturer(catalogue.manufacturerName(m));
+                            reporting.addManufacturer(makers[m]);
+                        }
+                        for (int i = 0; i < size; i++) {
+                            makers[catalogue.manufacturer(i)].addCarModel(catalogue.carModel(i));
+                        }
+                        reporting.getJournal().sync();
+                        reporting.getJournal().close();
+                        return reporting.getCarModelCount();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+            }
+            case "recoverJournal": {
+                // the catalogue is journaled one car model at a time with no checkpoint, so recovery replays every record
+                Path snapshot;
+                try {
+                    snapshot = emptyScratch().resolve("reporting.snapshot");
+                    Reporting reporting = ReportingJournal.open(snapshot, Long.MAX_VALUE);
+                    Manufacturer[] makers = new Manufacturer[catalogue.manufacturerCount()];
+                    for (int m = 0; m < makers.length; m++) {
+                        makers[m] = new Manufacturer(catalogue.manufacturerName(m));
+                        reporting.addManufacturer(makers[m]);
+                    }
+                    for (int i = 0; i < size; i++) {
+                        makers[catalogue.manufacturer(i)].addCarModel(catalogue.carModel(i));
+                    }
+                    reporting.getJournal().close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return invocation -> {
+                    try {
+                        return ReportingJournal.read(snapshot).getCarModelCount();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown benchmark " + benchmark);
+        }
+    }
+
+    // Method to create or empty the scratch directory used by the journal benchmarks
+    private Path emptyScratch() throws IOException {
+        if (scratch == null) {
+            scratch = Files.createTempDirectory("reporting-benchmark");
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(scratch)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        return scratch;
+    }
+
+    // Method to pick 64 price thresholds close to a quantile of the catalogue's prices
+    private static double[] thresholdsAt(SyntheticCatalogue catalogue, double quantile) {
+        double[] sorted = new double[catalogue.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = catalogue.price(i);
+        }
+        Arrays.sort(sorted);
+        double[] thresholds = new double[64];
+        SplittableRandom random = new SplittableRandom(17);
+        int centre = (int) Math.min(sorted.length - 1, sorted.length * quantile);
+        int spread = Math.max(1, (sorted.length - centre) / 4);
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholds[i] = sorted.length == 0 ? 0 : sorted[Math.max(0, Math.min(sorted.length - 1, centre - spread + random.nextInt(2 * spread)))];
+        }
+        return thresholds;
+    }
+
+    // Method to run the warmup and measured iterations of one operation
+    private Result measure(String benchmark, String label, int size, Operation operation) {
+        long operationsPerInvocation = PER_CAR_MODEL.contains(benchmark) ? Math.max(1, size) : 1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long iterationNanos = iterationMillis * 1_000_000;
+        double[] opsPerSecond = new double[iterations];
+        long totalOperations = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        int invocation = 0;
+        long checksum = 0;
+
+        for (int iteration = -warmupIterations; iteration < iterations; iteration++) {
+            long invocations = 0;
+            int batch = 1;
+            long startBytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                // quick operations run in growing batches so reading the clock does not dominate
+                for (int i = 0; i < batch; i++) {
+                    checksum += operation.invoke(invocation++ & Integer.MAX_VALUE);
+                }
+                invocations += batch;
+                elapsed = System.nanoTime() - start;
+                if (elapsed < invocations * 10_000L && batch < 1 << 16) {
+                    batch <<= 1;
+                }
+            } while (elapsed < iterationNanos);
+            long bytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+            if (iteration >= 0) {
+                long operations = invocations * operationsPerInvocation;
+                opsPerSecond[iteration] = operations * 1e9 / elapsed;
+                totalOperations += operations;
+                totalNanos += elapsed;
+                totalBytes += bytes;
+            }
+        }
+        sink = checksum;
+        return new Result(label, size, opsPerSecond, (double) totalNanos / totalOperations, (double) totalBytes / totalOperations);
+    }
+
+    // Method to run every selected benchmark over every catalogue size
+    private List<Result> run(PrintStream report) {
+        List<Result> results = new ArrayList<>();
+        PrintStream console = System.out;
+        // displayMostExpensiveCarModelSold writes to System.out, which is discarded while measuring
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int size : sizes) {
+                SyntheticCatalogue catalogue = new SyntheticCatalogue(size, manufacturers, typeWeights, distribution, minPrice, maxPrice, seed);
+                for (String benchmark : selected) {
+                    for (ScanKernels kernels : kernelsFor(benchmark)) {
+                        Operation operation = setUp(benchmark, catalogue, kernels);
+                        String label = SCANS.contains(benchmark) ? benchmark + " (" + kernels.name() + ")" : benchmark;
+                        Result result = measure(benchmark, label, size, operation);
+                        results.add(result);
+                        report.println(format(result));
+                        System.gc();
+                    }
+                }
+            }
+        } finally {
+            System.setOut(console);
+            if (scratch != null) {
+                try {
+                    emptyScratch();
+                    Files.delete(scratch);
+                } catch (IOException e) {
+                    report.println("Could not delete " + scratch + ": " + e.getMessage());
+                }
+            }
+        }
+        return results;
+    }
+
+    // Method to list the scan kernels a benchmark runs with: each kind available for the scans, the selected one otherwise
+    private static List<ScanKernels> kernelsFor(String benchmark) {
+        if (SCANS.contains(benchmark) && ScanKernels.vector() != null) {
+            return List.of(ScanKernels.scalar(), ScanKernels.vector());
+        }
+        return List.of(SCANS.contains(benchmark) ? ScanKernels.scalar() : ScanKernels.get());
+    }
+
+    // Method to format one result as a row of the report
+    private static String format(Result result) {
+        return String.format(Locale.ROOT, "%-34s %10d %14.1f +- %-12.1f %14.1f %12.1f %12.1f",
+                result.benchmark(), result.size(), result.meanOpsPerSecond(), result.stddevOpsPerSecond(),
+                result.nanosPerOp(), result.bytesPerOp(), result.allocationMegabytesPerSecond());
+    }
+
+    /**
+     * Sets up one benchmark over one synthetic catalogue for another harness, such as the JMH benchmarks in
+     * {@code benchmarks/}. Those find this method by reflection, as classes in a named package cannot refer to
+     * the classes of this project.
+     *
+     * @param benchmark the name of the benchmark
+     * @param options   the command line options of this class that describe the catalogue, with a single size
+     * @return the operation, called with increasing invocation numbers, whose results must be consumed
+     * @throws IllegalArgumentException if the benchmark or an option is not valid
+     */
+    // Method to set up a benchmarked operation for another harness
+    public static IntToLongFunction operation(String benchmark, String... options) {
+        ReportingBenchmark harness = new ReportingBenchmark();
+        harness.parse(options);
+        if (!Arrays.asList(BENCHMARKS).contains(benchmark)) {
+            throw new IllegalArgumentException("Unknown benchmark " + benchmark + ", expected one of " + Arrays.toString(BENCHMARKS));
+        }
+        if (harness.sizes.length != 1) {
+            throw new IllegalArgumentException("Expected a single size, got " + Arrays.toString(harness.sizes));
+        }
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(harness.sizes[0], harness.manufacturers, harness.typeWeights,
+                harness.distribution, harness.minPrice, harness.maxPrice, harness.seed);
+        Operation operation = harness.setUp(benchmark, catalogue, ScanKernels.get());
+        return operation::invoke;
+    }
+
+    public static void main(String[] args) {
+        ReportingBenchmark benchmark = new ReportingBenchmark();
+        try {
+            benchmark.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        PrintStream report = System.out;
+        report.printf(Locale.ROOT, "%d manufacturers, types %s, %s prices from %.0f to %.0f, %d warmup and %d measured iterations of %d ms%n",
+                benchmark.manufacturers, Arrays.toString(benchmark.typeWeights), benchmark.distribution,
+                benchmark.minPrice, benchmark.maxPrice, benchmark.warmupIterations, benchmark.iterations, benchmark.iterationMillis);
+        report.printf(Locale.ROOT, "%-34s %10s %-30s %14s %12s %12s%n",
+                "Benchmark", "Models", "  Throughput (ops/s)", "Avg (ns/op)", "Alloc (B/op)", "Alloc (MB/s)");
+        benchmark.run(report);
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * The {@code ReportingFootprint} class measures how much heap a loaded catalogue keeps per car model, and how
+ * long the garbage collector pauses for it, with the car models kept on the heap or off-heap.
+ * <p>
+ * For each catalogue size a synthetic catalogue is written out as a CSV file and loaded through
+ * {@code CatalogueLoader}, the way a real catalogue is ingested, so the names are read from a file buffer
+ * rather than shared from the generator. The heap in use is measured after a full collection before and
+ * after the load, together with the native memory held by off-heap storage. The time the collectors spent
+ * during the load is reported, then the pause of one full collection with the catalogue loaded, which grows
+ * with the live heap the collector has to trace.
+ * </p>
+ * <p>
+ * Each manufacturer's car models are named from a pool of {@code --names} names, as in catalogues with trim
+ * variants and re-imports, and the names are stored once per manufacturer. For comparison the same names are
+ * then decoded into one {@code String} per car model, as they were held before they were deduplicated, and the
+ * heap those strings take is measured too, unless {@code --strings false} is given for catalogues too large for that.
+ * </p>
+ * <p>
+ * Usage: {@code java ReportingFootprint [--sizes 100000,1000000] [--manufacturers 50] [--names 1000] [--seed 42]
+ * [--storage heap,off-heap] [--strings true]}. Run with a fixed heap and the serial collector, for example
+ * {@code -Xms4g -Xmx4g -XX:+UseSerialGC}, so every reading follows a full, compacting collection.
+ * </p>
+ */
+// ReportingFootprint class measures the retained heap per car model and the GC pauses of a loaded catalogue
+public class ReportingFootprint {
+    private int[] sizes = {100_000, 1_000_000};
+    private int manufacturers = 50;
+    private int names = 1_000;
+    private long seed = 42;
+    private List<CarModelStorage> storages = List.of(CarModelStorage.values());
+    // whether to decode the names into Strings too, which needs room for a String per car model
+    private boolean strings = true;
+
+    // Method to parse the command line options
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--sizes" -> sizes = Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+                case "--manufacturers" -> manufacturers = Math.max(1, Integer.parseInt(value));
+                case "--names" -> names = Math.max(1, Integer.parseInt(value));
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--storage" -> storages = parseStorages(value);
+                case "--strings" -> strings = Boolean.parseBoolean(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    // Method to parse a list of storages
+    private static List<CarModelStorage> parseStorages(String value) {
+        List<CarModelStorage> parsed = new ArrayList<>();
+        for (String name : value.split(",")) {
+            CarModelStorage storage = CarModelStorage.parse(name);
+            if (storage == null) {
+                throw new IllegalArgumentException("Unknown storage " + name + ", expected heap or off-heap");
+            }
+            parsed.add(storage);
+        }
+        return parsed;
+    }
+
+    // Method to write a synthetic catalogue as a CSV file
+    private Path catalogueCsv(int size) throws IOException {
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(size, manufacturers, new double[]{1, 1, 1},
+                SyntheticCatalogue.PriceDistribution.UNIFORM, 5_000, 150_000, seed);
+        Path file = Files.createTempFile("footprint", ".csv");
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder line = new StringBuilder();
+        try (OutputStream csv = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            for (int i = 0; i < size; i++) {
+                CarModel model = catalogue.carModel(i);
+                line.setLength(0);
+                // each manufacturer's car models share a pool of names, like trim variants of the same model
+                line.append(catalogue.manufacturerName(catalogue.manufacturer(i))).append(',')
+                        .append("Model ").append(random.nextInt(names)).append(" Trim Edition").append(',')
+                        .append(model.getWeight()).append(',').append(model.getSales_price()).append(',')
+                        .append(model.getNSold()).append(',').append(model.getType()).append('\n');
+                csv.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return file;
+    }
+
+    // Method to read the heap in use after collecting everything that is no longer reachable
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // a few rounds, until a collection no longer frees anything
+        for (int i = 0; i < 8; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    // Method to add up the time every collector has spent collecting, in milliseconds
+    private static long collectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    // Method to measure one catalogue size in one storage and print a line of results
+    private void measure(Path csv, int size, CarModelStorage storage) throws IOException {
+        long before = usedHeap();
+        long collecting = collectionMillis();
+        Reporting reporting = new Reporting();
+        reporting.setCarModelStorage(storage);
+        CatalogueLoader.load(csv, reporting);
+        collecting = collectionMillis() - collecting;
+        long loaded = usedHeap();
+        long start = System.nanoTime();
+        System.gc();
+        double fullCollectionMillis = (System.nanoTime() - start) / 1e6;
+
+        long distinctNames = 0;
+        long dictionaryBytes = 0;
+        long offHeapBytes = 0;
+        List<Manufacturer> makers = reporting.getManufacturers();
+        for (Manufacturer manufacturer : makers) {
+            CarModelColumns columns = manufacturer.getColumns();
+            distinctNames += columns.distinctNames();
+            offHeapBytes += columns.offHeapBytes();
+            if (!columns.isOffHeap()) {
+                dictionaryBytes += columns.dictionary().heapBytes() + (long) Integer.BYTES * columns.size();
+            }
+        }
+
+        // the names as they were held before they were deduplicated: one String per car model
+        String[][] strings = new String[this.strings ? makers.size() : 0][];
+        for (int m = 0; m < strings.length; m++) {
+            CarModelColumns columns = makers.get(m).getColumns();
+            strings[m] = new String[columns.size()];
+            for (int row = 0; row < strings[m].length; row++) {
+                strings[m][row] = columns.name(row);
+            }
+        }
+        long withStrings = usedHeap();
+
+        String dictionary = storage == CarModelStorage.HEAP ? String.format(Locale.ROOT, "%.1f", dictionaryBytes / (double) size) : "off-heap";
+        String asStrings = this.strings ? String.format(Locale.ROOT, "%.1f", (withStrings - loaded) / (double) size) : "-";
+        System.out.printf(Locale.ROOT, "%-9s %10d %12.1f %14.1f %14s %16s %10d %10d %14.1f%n", storage, size,
+                (loaded - before) / (double) size, offHeapBytes / (double) size, dictionary,
+                asStrings, distinctNames, collecting, fullCollectionMillis);
+        // keep everything measured reachable until the last reading
+        if (strings.length != (this.strings ? makers.size() : 0) || reporting.getCarModelCount() != size) {
+            throw new IllegalStateException("Catalogue was not fully loaded.");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ReportingFootprint footprint = new ReportingFootprint();
+        try {
+            footprint.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        System.out.printf(Locale.ROOT, "%d manufacturers with %d car model names each, memory retained per car model in bytes%n",
+                footprint.manufacturers, footprint.names);
+        System.out.printf(Locale.ROOT, "%-9s %10s %12s %14s %14s %16s %10s %10s %14s%n", "Storage", "Models", "Heap/model",
+                "Off-heap/model", "Names (dict)", "Names (String)", "Distinct", "GC (ms)", "Full GC (ms)");
+        for (int size : footprint.sizes) {
+            Path csv = footprint.catalogueCsv(size);
+            try {
+                for (CarModelStorage storage : footprint.storages) {
+                    footprint.measure(csv, size, storage);
+                }
+            } finally {
+                Files.delete(csv);
+            }
+        }
+    }
+}
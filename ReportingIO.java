@@ -1,3 +1,17 @@
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -8,26 +22,269 @@ import java.util.Scanner;
  * list manufacturers, generate reports, and display information about cars based on various
  */
 public class ReportingIO {
-    private List<Manufacturer> manufacturers;
+    private static final int MAX_SUGGESTIONS = 5;
+    // batch output is passed to the console in pieces of about this many characters
+    private static final int BATCH_BUFFER = 1 << 16;
+    // data is saved here on exit and reopened on the next start
+    private static final Path SNAPSHOT_FILE = Paths.get("reporting.snapshot");
+
+    private Reporting reporting;
     private Scanner scanner;
+    // reports are rendered into a buffer and written to the console in one go
+    private ReportRenderer output;
+    // where saving, loading and journal messages are printed, standard error in batch mode
+    private PrintStream status = System.out;
 
     /**
-     * Constructor initializes the list of manufacturers and the scanner for user input.
+     * Constructor initializes the reporting system holding the manufacturers and the scanner for user input.
      */
     public ReportingIO() {
-        this.manufacturers = new ArrayList<>();
+        this(new Reporting());
+    }
+
+    /**
+     * Constructor using an existing reporting system, for example one reopened from a snapshot.
+     */
+    public ReportingIO(Reporting reporting) {
+        this.reporting = reporting;
         this.scanner = new Scanner(System.in);
+        this.output = new ReportRenderer(System.out);
     }
 
     /**
      * The main entry point of the program.
-     * Where the reportingIO object is run
+     * Where the reportingIO object is run.
+     * The data saved when the program last exited is reopened first.
+     * Any arguments are treated as CSV catalogue files and loaded before the menu is shown.
+     * With {@code --batch script} the commands of the script, or of standard input for "-", are run instead of the menu,
+     * and the summary of the reopened data, the catalogues loaded and saving the data are written to standard error,
+     * so standard output only holds the results.
      */
     public static void main(String[] args) {
-        ReportingIO reportingIO = new ReportingIO();
+        String batch = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--batch") && i + 1 < args.length) {
+                batch = args[++i];
+            } else {
+                files.add(args[i]);
+            }
+        }
+        Reporting reporting = openSnapshot(batch != null ? System.err : System.out);
+        // record metrics unless started with -Dreporting.metrics=false, and publish them over JMX
+        reporting.getMetrics().setEnabled(!"false".equals(System.getProperty("reporting.metrics")));
+        reporting.getMetrics().register("console");
+        ReportingIO reportingIO = new ReportingIO(reporting);
+        if (batch != null) {
+            // standard output only holds the results of the script
+            reportingIO.status = System.err;
+        }
+        for (String file : files) {
+            reportingIO.importCatalogue(Paths.get(file));
+        }
+        if (batch != null) {
+            // the exit status tells a calling script whether every command succeeded
+            System.exit(reportingIO.runBatch(batch) ? 0 : 1);
+        }
         reportingIO.run();
     }
 
+    /**
+     * Runs the commands of a script file, or of standard input if the file is "-", then saves the data as on exit.
+     * Results are written to standard output through one large buffer, and messages about reading the script and
+     * saving the data to standard error.
+     *
+     * @param script the path of the script, or "-" for standard input
+     * @return {@code true} if every command succeeded
+     */
+    public boolean runBatch(String script) {
+        status = System.err;
+        int failed;
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), System.out.charset()), BATCH_BUFFER);
+        try (Reader in = script.equals("-") ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+            failed = runBatch(in, out);
+        } catch (IOException | UncheckedIOException e) {
+            status.println("Could not run " + script + ": " + e.getMessage());
+            return false;
+        }
+        // everything the script entered is on disk once the batch has finished
+        syncJournal();
+        saveSnapshot();
+        return failed == 0;
+    }
+
+    /**
+     * Runs the commands of a script without showing the menu or prompts, one command per line.
+     * <p>
+     * Each line is a command followed by its arguments, separated by spaces, with double quotes around any
+     * argument that contains spaces. Blank lines and lines starting with # are skipped. The commands are:
+     * </p>
+     * <ul>
+     *   <li>{@code manufacturer NAME} - adds a manufacturer</li>
+     *   <li>{@code model MANUFACTURER NAME WEIGHT PRICE SOLD TYPE} - adds a car model to a manufacturer</li>
+     *   <li>{@code list} - lists the manufacturers</li>
+     *   <li>{@code models MANUFACTURER} - shows a manufacturer and its car models</li>
+     *   <li>{@code revenue TYPE} - the manufacturer with the highest revenue for a car type</li>
+     *   <li>{@code most-expensive} - the most expensive car model of each manufacturer</li>
+     *   <li>{@code above PRICE [LIMIT]} - the cheapest car models above a price for each manufacturer</li>
+     *   <li>{@code top BY K [TYPE]} - the top car models by price, revenue or units-sold</li>
+     *   <li>{@code pivot DIMENSIONS [PRICE-BAND] [WEIGHT-BAND]} - a pivot table, dimensions separated by commas</li>
+     *   <li>{@code import FILE} - loads a CSV catalogue file</li>
+     *   <li>{@code metrics} - shows the metrics</li>
+     *   <li>{@code exit} - stops reading the script</li>
+     * </ul>
+     * <p>
+     * Commands that add data print nothing unless they fail. A failed command, whether its arguments are not
+     * valid or the operation itself fails, prints its line number and error, is counted as failed and the script
+     * carries on. Output is written to {@code out} in large pieces and flushed once at the end,
+     * and the journal is not synced after every command, see {@link #runBatch(String)}.
+     * </p>
+     *
+     * @param in  the script
+     * @param out where the results are written
+     * @return the number of commands that failed
+     * @throws IOException if the script cannot be read
+     */
+    public int runBatch(Reader in, Appendable out) throws IOException {
+        CommandTokenizer commands = new CommandTokenizer(in);
+        ReportRenderer renderer = new ReportRenderer(out);
+        int failed = 0;
+        try {
+            while (true) {
+                try {
+                    if (!commands.nextLine()) {
+                        break;
+                    }
+                    if (commands.is(0, "exit")) {
+                        break;
+                    }
+                    runCommand(commands, renderer);
+                } catch (IllegalArgumentException e) {
+                    failed++;
+                    renderer.line("Line " + commands.lineNumber() + ": Error: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    // an operation that failed unexpectedly, for example writing the journal, only fails its own line
+                    failed++;
+                    renderer.line("Line " + commands.lineNumber() + ": Error: " + e);
+                }
+                renderer.writeIfLonger(BATCH_BUFFER);
+            }
+        } finally {
+            // the results of the commands before a script that cannot be read are still written out
+            renderer.flush();
+        }
+        return failed;
+    }
+
+    /**
+     * Runs one command of a batch script.
+     *
+     * @throws IllegalArgumentException if the command or its arguments are not valid, or the operation fails
+     */
+    private void runCommand(CommandTokenizer command, ReportRenderer renderer) {
+        if (command.is(0, "model")) {
+            Manufacturer manufacturer = existingManufacturer(command.token(1));
+            String type = command.token(6);
+            manufacturer.addCarModel(new CarModel(command.token(2), command.number(3, "Weight"), command.number(4, "Price"),
+                    command.integer(5, "Number sold"), type));
+        } else if (command.is(0, "manufacturer")) {
+            reporting.addManufacturer(new Manufacturer(command.token(1), reporting.getCarModelStorage()));
+        } else if (command.is(0, "list")) {
+            for (Manufacturer manufacturer : reporting.getManufacturers()) {
+                renderer.line(manufacturer.getMname());
+            }
+        } else if (command.is(0, "models")) {
+            renderer.manufacturer(existingManufacturer(command.token(1)));
+        } else if (command.is(0, "import")) {
+            Path file = Paths.get(command.token(1));
+            try {
+                CatalogueLoader.LoadResult result = CatalogueLoader.load(file, reporting);
+                renderer.line(result.toString());
+                for (String error : result.getErrors()) {
+                    renderer.line("Rejected " + error);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not read " + file + ": " + e.getMessage());
+            }
+        } else if (command.is(0, "metrics")) {
+            renderer.line(reporting.getMetrics().dump());
+        } else {
+            runReport(command, renderer);
+        }
+    }
+
+    /**
+     * Runs a report command of a batch script, timed like the reports chosen from the menu.
+     *
+     * @throws IllegalArgumentException if the command or its arguments are not valid
+     */
+    private void runReport(CommandTokenizer command, ReportRenderer renderer) {
+        ReportingMetrics metrics = reporting.getMetrics();
+        long start = metrics.start();
+        if (command.is(0, "revenue")) {
+            CarType type = carType(command.token(1));
+            Manufacturer topManufacturer = reporting.getManufacturerWithHighestRevenueByType(type);
+            if (topManufacturer != null) {
+                renderer.line("Manufacturer with the highest revenue for " + type + ": " + topManufacturer.getMname());
+                renderer.line("Total Revenue: £" + topManufacturer.getRevenueByType(type));
+            } else {
+                renderer.line("Manufacturer not found");
+            }
+        } else if (command.is(0, "most-expensive")) {
+            for (Manufacturer manufacturer : reporting.getManufacturers()) {
+                renderer.mostExpensiveCarModel(manufacturer.getMostExpensiveCarModel());
+            }
+        } else if (command.is(0, "above")) {
+            double price = command.number(1, "Price");
+            int limit = command.tokenCount() > 2 ? command.integer(2, "Limit") : Manufacturer.DISPLAY_LIMIT;
+            for (Manufacturer manufacturer : reporting.getManufacturers()) {
+                renderer.carModelsAbovePrice(price, manufacturer.getCarModelsAbovePrice(price, 0, limit));
+            }
+        } else if (command.is(0, "top")) {
+            RankBy rankBy = RankBy.parse(command.token(1).replace('-', ' '));
+            if (rankBy == null) {
+                throw new IllegalArgumentException("Invalid measure '" + command.token(1) + "'. Please enter Price, Revenue or Units-Sold.");
+            }
+            int k = command.integer(2, "Number of car models");
+            CarType type = command.tokenCount() > 3 ? carType(command.token(3)) : null;
+            renderer.topCarModels(rankBy, type, reporting.getTopCarModels(k, rankBy, type));
+        } else if (command.is(0, "pivot")) {
+            List<GroupBy> dimensions = new ArrayList<>();
+            for (String text : command.token(1).split(",")) {
+                GroupBy dimension = GroupBy.parse(text.replace('-', ' '));
+                if (dimension == null) {
+                    throw new IllegalArgumentException("Invalid dimension '" + text.trim() + "'. Please enter Manufacturer, Type, Price or Weight.");
+                }
+                dimensions.add(dimension);
+            }
+            double priceBand = command.tokenCount() > 2 ? command.number(2, "Price band width") : 0;
+            double weightBand = command.tokenCount() > 3 ? command.number(3, "Weight band width") : 0;
+            renderer.pivotTable(reporting.getPivotTable(dimensions, priceBand, weightBand));
+        } else {
+            throw new IllegalArgumentException("Unknown command '" + command.token(0) + "'.");
+        }
+        metrics.stop(TimedOperation.GENERATE_REPORTS, start);
+    }
+
+    // Method to find a manufacturer named in a batch command
+    private Manufacturer existingManufacturer(String name) {
+        Manufacturer manufacturer = reporting.getManufacturerByName(name);
+        if (manufacturer == null) {
+            throw new IllegalArgumentException("Manufacturer '" + name + "' not found.");
+        }
+        return manufacturer;
+    }
+
+    // Method to parse a car type named in a batch command
+    private static CarType carType(String text) {
+        CarType type = CarType.parse(text);
+        if (type == null) {
+            throw new IllegalArgumentException("Invalid car type '" + text + "'. Please enter Hatchback, Saloon, or Estate.");
+        }
+        return type;
+    }
+
     /**
      * Runs the main loop, displaying the menu and processing user choices.
      */
@@ -53,11 +310,19 @@ public class ReportingIO {
                     generateReports();
                     break;
                 case 6:
+                    System.out.println("Enter CSV file path: ");
+                    importCatalogue(Paths.get(scanner.nextLine().trim()));
+                    break;
+                case 7:
+                    System.out.print(reporting.getMetrics().dump());
+                    break;
+                case 8:
+                    saveSnapshot();
                     System.out.println("Exiting program");
                     scanner.close();
                     System.exit(0);
                 default:
-                    System.out.println("Invalid choice. Please enter a number betwween 1 and 6");
+                    System.out.println("Invalid choice. Please enter a number betwween 1 and 8");
             }
         }
     }
@@ -72,7 +337,9 @@ public class ReportingIO {
         System.out.println("3. List All Car Models by Manufacturers");
         System.out.println("4. List Car Models by Manufacturer");
         System.out.println("5. Generate Reports");
-        System.out.println("6. Exit Program");
+        System.out.println("6. Import Catalogue File (CSV)");
+        System.out.println("7. Show Metrics");
+        System.out.println("8. Exit Program");
     }
 
     /**
@@ -95,8 +362,13 @@ public class ReportingIO {
     private void enterManufacturerData() {
         System.out.println("\n Enter manufacturer name: ");
         String name = scanner.nextLine();
-        manufacturers.add(new Manufacturer(name));
-        System.out.println("Manufacturer '" + name + "' added successfully");
+        try {
+            reporting.addManufacturer(new Manufacturer(name, reporting.getCarModelStorage()));
+            syncJournal();
+            System.out.println("Manufacturer '" + name + "' added successfully");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
 
     }
 
@@ -104,6 +376,7 @@ public class ReportingIO {
      * Allows the user to enter data for a new car model under a selected manufacturer.
      */
     private void enterCarModelData() {
+        List<Manufacturer> manufacturers = reporting.getManufacturers();
         if (manufacturers.isEmpty()) {
             System.out.println("No manufacturers available. Please adda manufacturer first.");
             return;
@@ -144,6 +417,7 @@ public class ReportingIO {
 
             CarModel carModel = new CarModel(name, weight, price, nSold, type);
             selectManufacturer.addCarModel(carModel);
+            syncJournal();
             System.out.println("Car model '" + name + "' added successfully");
         } catch (NumberFormatException e) {
             System.out.println("Invalid input. Please enter numerical values where required.");
@@ -153,45 +427,119 @@ public class ReportingIO {
     }
 
 
+    /**
+     * Reopens the data saved on the last exit and replays everything entered after it, or starts with no data if there is none.
+     * Everything entered from now on is written to the journal, so it survives the program being stopped.
+     *
+     * @param status where the summary of the reopened data, or why it could not be reopened, is printed
+     */
+    private static Reporting openSnapshot(PrintStream status) {
+        try {
+            Reporting reporting = ReportingJournal.open(SNAPSHOT_FILE);
+            status.println(reporting.getJournal().recoverySummary());
+            return reporting;
+        } catch (IOException e) {
+            status.println("Could not reopen saved data: " + e.getMessage());
+        }
+        return new Reporting();
+    }
+
+    /**
+     * Waits until the data entered so far is on disk, so a confirmed entry is never lost.
+     */
+    private void syncJournal() {
+        ReportingJournal journal = reporting.getJournal();
+        if (journal != null) {
+            try {
+                journal.sync();
+            } catch (IOException e) {
+                status.println("Could not save data: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Saves all manufacturers and car models so they are still available after a restart.
+     * With a journal, a checkpoint is written so the next start does not need to replay it.
+     */
+    private void saveSnapshot() {
+        try {
+            ReportingJournal journal = reporting.getJournal();
+            if (journal != null) {
+                journal.checkpoint();
+                journal.close();
+            } else {
+                reporting.saveSnapshot(SNAPSHOT_FILE);
+            }
+            status.println("Data saved to " + SNAPSHOT_FILE);
+        } catch (IOException e) {
+            status.println("Could not save data: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads car models from a CSV catalogue file and prints how many rows were loaded and rejected.
+     * Each line holds: manufacturer, name, weight, price, number sold, type.
+     */
+    private void importCatalogue(Path file) {
+        try {
+            CatalogueLoader.LoadResult result = CatalogueLoader.load(file, reporting);
+            syncJournal();
+            status.println(result);
+            for (String error : result.getErrors()) {
+                status.println("Rejected " + error);
+            }
+        } catch (IOException e) {
+            status.println("Could not read " + file + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Displays a list of all registered manufacturers.
      */
     private void listAllManufacturer() {
+        List<Manufacturer> manufacturers = reporting.getManufacturers();
         if (manufacturers.isEmpty()) {
             System.out.println("No manufacturers available.");
             return;
         }
 
-        System.out.println("\nList of Manufacturers:");
+        output.line("\nList of Manufacturers:");
         for (Manufacturer manufacturer : manufacturers) {
-            System.out.println(manufacturer.getMname());
+            output.line(manufacturer.getMname());
         }
+        output.flush();
     }
 
     /**
      * Prompts the user to enter a manufacturer's name and displays its car models
      */
     private void listCarModelsByManufacturer() {
+        List<Manufacturer> manufacturers = reporting.getManufacturers();
         if (manufacturers.isEmpty()) {
             System.out.println("No manufacturers available. add a manufacturer first");
             return;
         }
         System.out.println("Enter manufacturer name:");
         String name = scanner.nextLine();
-        Manufacturer manufacturer = null;
-
-        for (Manufacturer manufacturer1 : manufacturers) {
-            if (manufacturer1.getMname().equalsIgnoreCase(name)) {
-                manufacturer = manufacturer1;
-                break;
-            }
-        }
+        Manufacturer manufacturer = reporting.getManufacturerByName(name);
 
         if (manufacturer == null) {
-            System.out.println("Manufacturer not found");
+            output.line("Manufacturer not found");
+            /**
+             * suggests manufacturers whose name starts with what was typed
+             */
+            List<Manufacturer> suggestions = reporting.findManufacturersByPrefix(name, MAX_SUGGESTIONS);
+            if (!suggestions.isEmpty()) {
+                output.line("Did you mean:");
+                for (Manufacturer suggestion : suggestions) {
+                    output.line(suggestion.getMname());
+                }
+            }
         } else{
-            manufacturer.displayManufacturer();
+            output.manufacturer(manufacturer);
         }
+        output.flush();
 
     }
 
@@ -200,8 +548,10 @@ public class ReportingIO {
      * User can choose to: Find the manufacturer with the highest revenue for a specific car type
      * Display the most expensive car model sold
      * List car models above a given price
+     * Group car models into a pivot table
      */
     private void generateReports() {
+        List<Manufacturer> manufacturers = reporting.getManufacturers();
         if (manufacturers.isEmpty()) {
             System.out.println("No data available.");
             return;
@@ -211,63 +561,141 @@ public class ReportingIO {
         System.out.println("1. Manufacturer with largest revenue for a given car type");
         System.out.println("2. Most expensive car model sold");
         System.out.println("3. Car Models above a given price");
+        System.out.println("4. Top car models by price, revenue or units sold");
+        System.out.println("5. Pivot table by manufacturer, type, price band and weight band");
         System.out.println("Enter choice: ");
 
         int reportChoice = getUserChoice();
+        // each report is timed from when its input has been read until it is written out
+        ReportingMetrics metrics = reporting.getMetrics();
+        long start = ReportingMetrics.NOT_TIMED;
         switch (reportChoice) {
             case 1:
                 /**
-                 * asks for a specific type of car type to search the list of manufacturers
-                 * replacing the variable highestRevenue when the manufacturer is found
-                 * and finding its total revenue
+                 * asks for a specific type of car type and looks up the manufacturer
+                 * with the highest revenue in the ranking kept by the reporting system
                  */
                 System.out.println("Enter Car Type (Hatchback, Saloon, Estate): ");
-                String type = scanner.nextLine();
-                Manufacturer topManufacturer = null;
-                double highestRevenue = 0.0;
-
-                for (Manufacturer m : manufacturers) {
-                    double revenue = m.calculateTotalRevenueByType(type);
-                    if (highestRevenue < revenue) {
-                        highestRevenue = revenue;
-                        topManufacturer = m;
-                    }
+                CarType type = CarType.parse(scanner.nextLine());
+                if (type == null) {
+                    System.out.println("Invalid car type. Please enter Hatchback, Saloon, or Estate.");
+                    break;
                 }
+                start = metrics.start();
+                Manufacturer topManufacturer = reporting.getManufacturerWithHighestRevenueByType(type);
 
                 if (topManufacturer != null) {
-                    System.out.println("\nManufacturer with the highest revenue for " + type + ": " + topManufacturer.getMname());
+                    output.line("\nManufacturer with the highest revenue for " + type + ": " + topManufacturer.getMname());
+                    output.line("Total Revenue: £" + topManufacturer.getRevenueByType(type));
                 } else {
-                    System.out.println("Manufacturer not found");
+                    output.line("Manufacturer not found");
                 }
+                output.flush();
                 break;
 
             case 2:
                 /**
-                 * using the displayMostExpensiveCarModel() from the manufacturer class
-                 * to find the most expensive car model across all manufacturers
+                 * using the getMostExpensiveCarModel() from the manufacturer class
+                 * to find the most expensive car model of each manufacturer
                  */
-                System.out.println("\n Most Expensive car model sold");
+                start = metrics.start();
+                output.line("\n Most Expensive car model sold");
                 for (Manufacturer manufacturer : manufacturers) {
-                    manufacturer.displayMostExpensiveCarModel();
-
+                    output.mostExpensiveCarModel(manufacturer.getMostExpensiveCarModel());
                 }
+                output.flush();
                 break;
 
             case 3:
                 /**
-                 * Prompts for the minimum price from the user and
-                 * displays all the cars that are above the price entered
+                 * Prompts for the minimum price from the user and displays the cheapest
+                 * cars above the price entered for each manufacturer, and how many there are
                  */
                 System.out.println("Enter minimum price (£): ");
                 double price = Double.parseDouble(scanner.nextLine());
+                start = metrics.start();
                 for (Manufacturer manufacturer : manufacturers) {
-                    manufacturer.displayCarModelsAbovePrice(price);
+                    output.carModelsAbovePrice(price, manufacturer.getCarModelsAbovePrice(price, 0, Manufacturer.DISPLAY_LIMIT));
+                }
+                output.flush();
+                break;
+
+            case 4:
+                /**
+                 * asks what to rank by, an optional car type and how many car models to list,
+                 * then shows the leaderboard across all manufacturers
+                 */
+                System.out.println("Rank by (Price, Revenue, Units Sold): ");
+                RankBy rankBy = RankBy.parse(scanner.nextLine());
+                if (rankBy == null) {
+                    System.out.println("Invalid choice. Please enter Price, Revenue or Units Sold.");
+                    break;
+                }
+                System.out.println("Enter Car Type (Hatchback, Saloon, Estate) or leave blank for all: ");
+                String typeText = scanner.nextLine();
+                CarType topType = typeText.isBlank() ? null : CarType.parse(typeText);
+                if (!typeText.isBlank() && topType == null) {
+                    System.out.println("Invalid car type. Please enter Hatchback, Saloon, or Estate.");
+                    break;
+                }
+                System.out.println("How many car models: ");
+                int k;
+                try {
+                    k = Integer.parseInt(scanner.nextLine().trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid input. Please enter a whole number.");
+                    break;
+                }
+                start = metrics.start();
+                output.topCarModels(rankBy, topType, reporting.getTopCarModels(k, rankBy, topType));
+                output.flush();
+                break;
+
+            case 5:
+                /**
+                 * asks which dimensions to group by and how wide the price and weight bands are,
+                 * then shows the revenue, units sold and averages of every group
+                 */
+                System.out.println("Group by (Manufacturer, Type, Price, Weight), separated by commas: ");
+                List<GroupBy> dimensions = new ArrayList<>();
+                for (String text : scanner.nextLine().split(",")) {
+                    if (text.isBlank()) {
+                        continue;
+                    }
+                    GroupBy dimension = GroupBy.parse(text);
+                    if (dimension == null) {
+                        System.out.println("Invalid dimension '" + text.trim() + "'. Please enter Manufacturer, Type, Price or Weight.");
+                        return;
+                    }
+                    dimensions.add(dimension);
+                }
+                double priceBand = 0;
+                double weightBand = 0;
+                try {
+                    if (dimensions.contains(GroupBy.PRICE_BAND)) {
+                        System.out.println("Enter price band width (£): ");
+                        priceBand = Double.parseDouble(scanner.nextLine());
+                    }
+                    if (dimensions.contains(GroupBy.WEIGHT_BAND)) {
+                        System.out.println("Enter weight band width (kg): ");
+                        weightBand = Double.parseDouble(scanner.nextLine());
+                    }
+                    start = metrics.start();
+                    output.pivotTable(reporting.getPivotTable(dimensions, priceBand, weightBand));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid input. Please enter numerical values where required.");
+                    break;
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Error: " + e.getMessage());
+                    break;
                 }
+                output.flush();
                 break;
 
                 default:
                     System.out.println("Invalid choice.");
         }
+        metrics.stop(TimedOperation.GENERATE_REPORTS, start);
 
 
     }
@@ -0,0 +1,743 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code ReportingJournal} class makes every manufacturer and car model added to a reporting system
+ * durable, without saving a full snapshot after each change.
+ * <p>
+ * Each addition is appended to a write-ahead log as a record: its payload length, a CRC32 checksum,
+ * a record type and the payload. Manufacturers are logged by name, and every batch of car models
+ * added to a manufacturer is logged as one record. Recorded sales and price changes are logged as the
+ * new number sold or price of each car model rather than the change, so replaying one that a
+ * checkpoint already includes leaves the car model as it was. Records are collected in memory and written by a
+ * flusher thread, which forces them to disk in groups: every thread calling {@link #sync()} while a
+ * write is in progress is satisfied by the next one, so the cost of an fsync is shared by all the
+ * inserts it covers. Records not explicitly synced are written within {@value #FLUSH_INTERVAL_MILLIS} ms.
+ * </p>
+ * <p>
+ * The log is split into numbered segment files next to the snapshot file, for example
+ * {@code reporting.snapshot.journal.3}. Once a segment grows past the compaction size, the flusher
+ * starts a new segment and a background thread writes a checkpoint: a snapshot holding exactly the
+ * car models logged before the new segment, which records the segment number it stops at. Older
+ * segments are then deleted. If the process stops during a checkpoint, the old snapshot and all
+ * segments are still there, so nothing is lost or applied twice.
+ * </p>
+ * <p>
+ * {@link #open(Path)} recovers a reporting system by opening the snapshot and replaying every segment
+ * after it. A record that was only partly written when the process stopped fails its checksum and is
+ * dropped, together with anything after it in the same segment.
+ * </p>
+ */
+// ReportingJournal class is the append-only write-ahead log of a reporting system
+public final class ReportingJournal implements Closeable {
+    private static final int MAGIC = 0x4341524A; // "CARJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    // length, checksum and type before each payload
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES + 1;
+
+    private static final byte MANUFACTURER = 1;
+    private static final byte CAR_MODELS = 2;
+    private static final byte UNITS_SOLD = 3;
+    private static final byte PRICE = 4;
+
+    static final long FLUSH_INTERVAL_MILLIS = 10;
+    // appenders wait for the flusher once this many bytes are waiting to be written
+    private static final int MAX_PENDING_BYTES = 16 << 20;
+    static final long DEFAULT_COMPACTION_BYTES = 64L << 20;
+
+    private final Path snapshotFile;
+    private final Reporting reporting;
+    private final long compactionBytes;
+
+    // records waiting to be written, swapped with the spare buffer by the flusher, guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private final CRC32 crc = new CRC32();
+    private long appended; // bytes appended since the journal was opened
+    private long durable; // bytes appended since the journal was opened that are forced to disk
+    private long pendingSince;
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+
+    // what has been logged for each manufacturer, so a checkpoint can save exactly that, guarded by this
+    private final List<Manufacturer> manufacturers = new ArrayList<>();
+    private int[] rowsLogged = new int[16];
+
+    // the segment being written, only used by the flusher thread
+    private FileChannel channel;
+    private long segment;
+    private long segmentBytes;
+
+    // checkpoint state, guarded by this
+    private CompletableFuture<Void> checkpointRequested;
+    private boolean checkpointRunning;
+
+    private final Thread flusher;
+
+    // recovery figures, reported by recoverySummary()
+    private long recoveredRecords;
+    private long recoveredCarModels;
+    private long discardedBytes;
+    private long recoveryNanos;
+
+    // Constructor starts a new segment after the recovered ones and the flusher thread
+    private ReportingJournal(Path snapshotFile, Reporting reporting, long segment, long compactionBytes) throws IOException {
+        this.snapshotFile = snapshotFile;
+        this.reporting = reporting;
+        this.compactionBytes = compactionBytes;
+        for (Manufacturer manufacturer : reporting.getManufacturers()) {
+            manufacturers.add(manufacturer);
+            rowsLogged = ensureLength(rowsLogged, manufacturers.size());
+            rowsLogged[manufacturer.getIndex()] = manufacturer.getColumns().size();
+        }
+        openSegment(segment);
+        this.flusher = Thread.ofPlatform().name("journal-flusher").daemon(true).unstarted(this::flushLoop);
+    }
+
+    /**
+     * Recovers a reporting system from a snapshot and the journal segments written after it, and keeps
+     * journaling every change made to it from then on.
+     *
+     * @param snapshotFile the snapshot file, which does not have to exist yet
+     * @return the recovered reporting system, whose {@link Reporting#getJournal()} is the new journal
+     * @throws IOException if the snapshot or a journal segment cannot be read
+     */
+    // Method to recover a reporting system and attach a journal to it
+    public static Reporting open(Path snapshotFile) throws IOException {
+        return open(snapshotFile, DEFAULT_COMPACTION_BYTES);
+    }
+
+    /**
+     * Recovers a reporting system like {@link #open(Path)}, compacting the journal whenever a segment
+     * grows past the given size.
+     *
+     * @param snapshotFile    the snapshot file
+     * @param compactionBytes the segment size that starts a checkpoint
+     * @return the recovered reporting system
+     * @throws IOException if the snapshot or a journal segment cannot be read
+     */
+    public static Reporting open(Path snapshotFile, long compactionBytes) throws IOException {
+        long start = System.nanoTime();
+        long[] counts = new long[4]; // records, car models, discarded bytes, last segment replayed
+        Reporting reporting = recover(snapshotFile, true, counts);
+
+        ReportingJournal journal = new ReportingJournal(snapshotFile, reporting, Math.max(counts[3] + 1, 1), compactionBytes);
+        journal.recoveredRecords = counts[0];
+        journal.recoveredCarModels = counts[1];
+        journal.discardedBytes = counts[2];
+        journal.recoveryNanos = System.nanoTime() - start;
+        reporting.setJournal(journal);
+        journal.flusher.start();
+        return reporting;
+    }
+
+    /**
+     * Recovers a reporting system from a snapshot and its journal without journaling further changes
+     * or touching the files, for a process that only reads the data another process is journaling.
+     *
+     * @param snapshotFile the snapshot file, which does not have to exist yet
+     * @return the recovered reporting system
+     * @throws IOException if the snapshot or a journal segment cannot be read
+     */
+    // Method to recover a reporting system read-only
+    public static Reporting read(Path snapshotFile) throws IOException {
+        return recover(snapshotFile, false, new long[4]);
+    }
+
+    // Method to open the snapshot and replay the segments after it, optionally deleting segments a checkpoint already covers
+    private static Reporting recover(Path snapshotFile, boolean deleteCovered, long[] counts) throws IOException {
+        Reporting reporting;
+        long firstSegment = 0;
+        if (Files.exists(snapshotFile)) {
+            reporting = CatalogueSnapshot.open(snapshotFile);
+            firstSegment = CatalogueSnapshot.journalSegment(snapshotFile);
+        } else {
+            reporting = new Reporting();
+        }
+
+        // replay the segments after the snapshot in order
+        counts[3] = firstSegment;
+        for (var entry : segments(snapshotFile).entrySet()) {
+            if (entry.getKey() >= firstSegment) {
+                replay(entry.getValue(), reporting, counts);
+                counts[3] = entry.getKey();
+            } else if (deleteCovered) {
+                // left behind by a checkpoint that finished just before the process stopped
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+        return reporting;
+    }
+
+    // Method to find the journal segments next to a snapshot file, by segment number
+    private static TreeMap<Long, Path> segments(Path snapshotFile) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        String prefix = snapshotFile.getFileName() + ".journal.";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                try {
+                    segments.put(Long.parseLong(file.getFileName().toString().substring(prefix.length())), file);
+                } catch (NumberFormatException e) {
+                    // not a segment, for example a file left by an editor
+                }
+            }
+        }
+        return segments;
+    }
+
+    // Method to check whether a file is the snapshot this journal checkpoints to
+    boolean isSnapshotFile(Path file) {
+        return snapshotFile.toAbsolutePath().normalize().equals(file.toAbsolutePath().normalize());
+    }
+
+    // Method to find the file of a segment
+    private Path segmentFile(long number) {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + ".journal." + number);
+    }
+
+    /**
+     * Applies the records of one segment to a reporting system, stopping at the first damaged record.
+     *
+     * @param file      the segment file
+     * @param reporting the reporting system to apply the records to
+     * @param counts    incremented by the number of records and car models replayed and the bytes dropped
+     * @throws IOException if the file cannot be read or is not a journal segment
+     */
+    // Method to replay a journal segment
+    private static void replay(Path file, Reporting reporting, long[] counts) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < HEADER_BYTES) {
+            // the process stopped while creating the segment
+            counts[2] += buffer.remaining();
+            return;
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(file + " is not a car catalogue journal segment");
+        }
+        CRC32 crc = new CRC32();
+        Replay replay = new Replay();
+        try {
+            replaySegment(file, buffer, crc, reporting, replay, counts);
+        } finally {
+            // add what was read before the end of the segment or a damaged record
+            flushReplay(replay, reporting);
+        }
+    }
+
+    // Method to read the records of a segment, stopping at the first damaged record
+    private static void replaySegment(Path file, ByteBuffer buffer, CRC32 crc, Reporting reporting, Replay replay, long[] counts)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int recordStart = buffer.position();
+            if (buffer.remaining() < RECORD_HEADER_BYTES) {
+                counts[2] += buffer.remaining();
+                return;
+            }
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining() - 1) {
+                counts[2] += buffer.limit() - recordStart;
+                return;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length + 1);
+            if ((int) crc.getValue() != checksum) {
+                counts[2] += buffer.limit() - recordStart;
+                return;
+            }
+            byte type = buffer.get();
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            try {
+                counts[1] += apply(type, payload, reporting, replay);
+            } catch (RuntimeException e) {
+                throw new IOException("Journal record at byte " + recordStart + " of " + file + " cannot be applied: " + e.getMessage(), e);
+            }
+            counts[0]++;
+        }
+    }
+
+    // Method to apply one record, returning the number of car models it added. Car models are collected
+    // into one batch per manufacturer, which is added by flushReplay, so interleaved feeds replay in bulk
+    private static int apply(byte type, ByteBuffer payload, Reporting reporting, Replay replay) {
+        switch (type) {
+            case MANUFACTURER:
+                reporting.getOrAddManufacturer(getString(payload));
+                return 0;
+            case CAR_MODELS:
+                int index = payload.getInt();
+                Manufacturer manufacturer = reporting.getManufacturers().get(index);
+                CarModelColumns batch = replay.batchOf(index);
+                int count = payload.getInt();
+                for (int i = 0; i < count; i++) {
+                    String name = getString(payload);
+                    double weight = payload.getDouble();
+                    double price = payload.getDouble();
+                    int nSold = payload.getInt();
+                    byte carType = payload.get();
+                    if (carType < 0 || carType >= CarType.values().length) {
+                        throw new IllegalArgumentException("Invalid car type code " + carType);
+                    }
+                    batch.add(name, weight, price, nSold, carType);
+                }
+                if (batch.size() >= Replay.BATCH_ROWS) {
+                    manufacturer.addCarModels(batch);
+                    replay.batches[index] = null;
+                }
+                return count;
+            case UNITS_SOLD:
+                index = payload.getInt();
+                // the car models sold may still be waiting in the replay batch
+                flushReplay(replay, reporting, index);
+                count = payload.getInt();
+                int[] rows = new int[count];
+                int[] nSold = new int[count];
+                for (int i = 0; i < count; i++) {
+                    rows[i] = payload.getInt();
+                    nSold[i] = payload.getInt();
+                }
+                reporting.getManufacturers().get(index).restoreUnitsSold(rows, nSold, count);
+                return 0;
+            case PRICE:
+                index = payload.getInt();
+                flushReplay(replay, reporting, index);
+                int row = payload.getInt();
+                reporting.getManufacturers().get(index).restorePrice(row, payload.getDouble());
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unknown record type " + type);
+        }
+    }
+
+    // Replay class holds the car models read for each manufacturer but not yet added
+    private static final class Replay {
+        private static final int BATCH_ROWS = 1 << 16;
+        private CarModelColumns[] batches = new CarModelColumns[16];
+
+        // Method to find the batch of a manufacturer, starting one if needed
+        private CarModelColumns batchOf(int index) {
+            if (index >= batches.length) {
+                batches = Arrays.copyOf(batches, Math.max(index + 1, batches.length * 2));
+            }
+            if (batches[index] == null) {
+                batches[index] = new CarModelColumns();
+            }
+            return batches[index];
+        }
+    }
+
+    // Method to add the car models collected during replay
+    private static void flushReplay(Replay replay, Reporting reporting) {
+        for (int index = 0; index < replay.batches.length; index++) {
+            flushReplay(replay, reporting, index);
+        }
+    }
+
+    // Method to add the car models collected for one manufacturer during replay
+    private static void flushReplay(Replay replay, Reporting reporting, int index) {
+        if (index >= replay.batches.length) {
+            return;
+        }
+        CarModelColumns batch = replay.batches[index];
+        if (batch != null && batch.size() > 0) {
+            reporting.getManufacturers().get(index).addCarModels(batch);
+        }
+        replay.batches[index] = null;
+    }
+
+    // Method to read a length-prefixed UTF-8 string
+    private static String getString(ByteBuffer payload) {
+        int length = payload.getInt();
+        String string = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return string;
+    }
+
+    /**
+     * Logs a manufacturer added to the reporting system. Called by {@code Reporting} before the
+     * manufacturer's existing car models are logged.
+     *
+     * @param manufacturer the manufacturer
+     */
+    // Method to append a manufacturer record
+    synchronized void manufacturerAdded(Manufacturer manufacturer) {
+        byte[] name = manufacturer.getMname().getBytes(StandardCharsets.UTF_8);
+        int start = beginRecord(Integer.BYTES + name.length);
+        pending.putInt(name.length).put(name);
+        endRecord(start, MANUFACTURER);
+        manufacturers.add(manufacturer);
+        rowsLogged = ensureLength(rowsLogged, manufacturers.size());
+    }
+
+    /**
+     * Logs a batch of car models added to a manufacturer. Called by {@code Reporting} with the
+     * manufacturer's write lock held, so the batches of one manufacturer are logged in order.
+     *
+     * @param manufacturer the manufacturer
+     * @param firstRow     the row of the first new car model
+     * @param endRow       the row after the last new car model
+     */
+    // Method to append a car models record
+    synchronized void carModelsAdded(Manufacturer manufacturer, int firstRow, int endRow) {
+        CarModelColumns columns = manufacturer.getColumns();
+        byte[][] names = new byte[endRow - firstRow][];
+        long length = 2 * Integer.BYTES;
+        for (int row = firstRow; row < endRow; row++) {
+            names[row - firstRow] = columns.name(row).getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + names[row - firstRow].length + 2 * Double.BYTES + Integer.BYTES + 1;
+        }
+        if (length > Integer.MAX_VALUE - RECORD_HEADER_BYTES) {
+            // split batches too large for one record
+            int middle = firstRow + (endRow - firstRow) / 2;
+            carModelsAdded(manufacturer, firstRow, middle);
+            carModelsAdded(manufacturer, middle, endRow);
+            return;
+        }
+
+        int start = beginRecord((int) length);
+        pending.putInt(manufacturer.getIndex()).putInt(endRow - firstRow);
+        for (int row = firstRow; row < endRow; row++) {
+            byte[] name = names[row - firstRow];
+            pending.putInt(name.length).put(name)
+                    .putDouble(columns.weight(row)).putDouble(columns.price(row))
+                    .putInt(columns.nSold(row)).put(columns.type(row));
+        }
+        endRecord(start, CAR_MODELS);
+        rowsLogged[manufacturer.getIndex()] = endRow;
+    }
+
+    /**
+     * Logs the new number sold of car models after recorded sales were folded in. Called by
+     * {@code Reporting} with the manufacturer's write lock held.
+     *
+     * @param manufacturer the manufacturer
+     * @param rows         the rows of the car models sold
+     * @param count        the number of car models
+     */
+    // Method to append a units sold record
+    synchronized void unitsSold(Manufacturer manufacturer, int[] rows, int count) {
+        CarModelColumns columns = manufacturer.getColumns();
+        int start = beginRecord(2 * Integer.BYTES + count * 2 * Integer.BYTES);
+        pending.putInt(manufacturer.getIndex()).putInt(count);
+        for (int i = 0; i < count; i++) {
+            pending.putInt(rows[i]).putInt(columns.nSold(rows[i]));
+        }
+        endRecord(start, UNITS_SOLD);
+    }
+
+    /**
+     * Logs the new price of a repriced car model. Called by {@code Reporting} with the manufacturer's
+     * write lock held.
+     *
+     * @param manufacturer the manufacturer
+     * @param row          the row of the car model
+     */
+    // Method to append a price record
+    synchronized void priceChanged(Manufacturer manufacturer, int row) {
+        int start = beginRecord(2 * Integer.BYTES + Double.BYTES);
+        pending.putInt(manufacturer.getIndex()).putInt(row).putDouble(manufacturer.getColumns().price(row));
+        endRecord(start, PRICE);
+    }
+
+    // Method to make room for a record, waiting for the flusher if too much is pending, with the lock held
+    private int beginRecord(int payloadLength) {
+        if (failure != null) {
+            throw new UncheckedIOException("The journal could not be written", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("The journal is closed.");
+        }
+        // back pressure: do not let a fast feed buffer more than the flusher can keep up with
+        while (pending.position() >= MAX_PENDING_BYTES && failure == null) {
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int needed = RECORD_HEADER_BYTES + payloadLength;
+        if (pending.remaining() < needed) {
+            long capacity = Math.max(pending.capacity() * 2L, (long) pending.position() + needed);
+            pending = ByteBuffer.allocate((int) Math.min(capacity, Integer.MAX_VALUE - 8)).put(pending.flip());
+        }
+        if (pending.position() == 0) {
+            pendingSince = System.nanoTime();
+        }
+        int start = pending.position();
+        // the length, checksum and type are filled in by endRecord
+        pending.position(start + RECORD_HEADER_BYTES);
+        return start;
+    }
+
+    // Method to fill in the length, type and checksum of the record being appended, with the lock held
+    private void endRecord(int start, byte type) {
+        int end = pending.position();
+        int payloadStart = start + RECORD_HEADER_BYTES;
+        pending.put(start + 2 * Integer.BYTES, type);
+        // the checksum covers the type and the payload
+        crc.reset();
+        crc.update(pending.array(), start + 2 * Integer.BYTES, end - start - 2 * Integer.BYTES);
+        pending.putInt(start, end - payloadStart);
+        pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+        appended += end - start;
+        if (pending.position() >= MAX_PENDING_BYTES / 4) {
+            // enough for a large write, wake the flusher early
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every record appended before this call has been forced to disk.
+     * <p>
+     * Threads that sync at the same time share one write and one fsync, so the cost per insert falls
+     * as more threads insert at once.
+     * </p>
+     *
+     * @throws IOException if the journal could not be written
+     */
+    // Method to wait for the records appended so far to be durable
+    public synchronized void sync() throws IOException {
+        long target = appended;
+        if (durable >= target) {
+            return;
+        }
+        syncRequested = true;
+        notifyAll();
+        try {
+            while (durable < target && failure == null) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes a checkpoint now and waits for it, so the next recovery starts from a snapshot holding
+     * every car model logged so far and has no journal to replay.
+     *
+     * @throws IOException if the checkpoint or the journal could not be written
+     */
+    // Method to compact the journal into the snapshot
+    public void checkpoint() throws IOException {
+        CompletableFuture<Void> done;
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (checkpointRequested == null) {
+                checkpointRequested = new CompletableFuture<>();
+            }
+            done = checkpointRequested;
+            notifyAll();
+        }
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the checkpoint");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+        }
+    }
+
+    // Method run by the flusher thread: write pending records in groups, force them, and start checkpoints
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long batchEnd;
+            List<Manufacturer> checkpointManufacturers = null;
+            int[] checkpointRows = null;
+            CompletableFuture<Void> checkpointDone = null;
+            synchronized (this) {
+                try {
+                    while (!readyToFlush()) {
+                        if (pending.position() == 0) {
+                            wait();
+                        } else {
+                            long waitNanos = pendingSince + FLUSH_INTERVAL_MILLIS * 1_000_000 - System.nanoTime();
+                            if (waitNanos > 0) {
+                                wait(Math.max(1, waitNanos / 1_000_000));
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+                if (closed && pending.position() == 0 && checkpointRequested == null) {
+                    notifyAll();
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                batchEnd = appended;
+                syncRequested = false;
+                // a checkpoint starts a new segment after this batch, and holds exactly what was logged up to here
+                boolean compact = segmentBytes + batch.position() >= compactionBytes;
+                if ((checkpointRequested != null || compact) && !checkpointRunning) {
+                    checkpointRunning = true;
+                    checkpointManufacturers = List.copyOf(manufacturers);
+                    checkpointRows = Arrays.copyOf(rowsLogged, manufacturers.size());
+                    checkpointDone = checkpointRequested != null ? checkpointRequested : new CompletableFuture<>();
+                    checkpointRequested = null;
+                }
+                notifyAll(); // appenders waiting for room can use the swapped buffer
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    segmentBytes += channel.write(batch);
+                }
+                channel.force(false);
+                if (checkpointDone != null) {
+                    openSegment(segment + 1);
+                    startCheckpoint(checkpointManufacturers, checkpointRows, segment, checkpointDone);
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                if (checkpointDone != null) {
+                    checkpointDone.completeExceptionally(e);
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+            synchronized (this) {
+                durable = batchEnd;
+                notifyAll();
+            }
+        }
+    }
+
+    // Method to decide whether the flusher should write now, with the lock held
+    private boolean readyToFlush() {
+        if (checkpointRequested != null && !checkpointRunning) {
+            return true;
+        }
+        if (pending.position() == 0) {
+            // when closing, stop once nothing is pending and no checkpoint is waiting to start
+            return closed && checkpointRequested == null;
+        }
+        return closed || syncRequested || pending.position() >= MAX_PENDING_BYTES / 4
+                || System.nanoTime() - pendingSince >= FLUSH_INTERVAL_MILLIS * 1_000_000;
+    }
+
+    // Method to close the current segment and start writing the next one, only called by the flusher
+    private void openSegment(long number) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(segmentFile(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        segment = number;
+        segmentBytes = HEADER_BYTES;
+    }
+
+    // Method to write a checkpoint in the background and delete the segments it covers
+    private void startCheckpoint(List<Manufacturer> manufacturers, int[] rows, long nextSegment, CompletableFuture<Void> done) {
+        Thread.ofPlatform().name("journal-checkpoint").daemon(true).start(() -> {
+            try {
+                CatalogueSnapshot.save(manufacturers, rows, nextSegment, snapshotFile);
+                for (var entry : segments(snapshotFile).headMap(nextSegment).values()) {
+                    Files.deleteIfExists(entry);
+                }
+                done.complete(null);
+            } catch (IOException | RuntimeException e) {
+                done.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    checkpointRunning = false;
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes and forces every pending record, waits for a running checkpoint and stops the flusher.
+     * Changes made to the reporting system afterwards are no longer journaled.
+     *
+     * @throws IOException if the journal could not be written
+     */
+    // Method to flush and close the journal
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+            synchronized (this) {
+                while (checkpointRunning) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the journal");
+        } finally {
+            reporting.setJournal(null);
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Describes the last recovery: how many records and car models were replayed from the journal,
+     * how many bytes of damaged records were dropped, and how long it took.
+     *
+     * @return a one line summary
+     */
+    // Method to summarise the recovery
+    public String recoverySummary() {
+        return String.format(Locale.ROOT, "Recovered %d car models: %d journal records replayed (%d car models), %d damaged bytes dropped, in %.1f ms",
+                reporting.getCarModelCount(), recoveredRecords, recoveredCarModels, discardedBytes, recoveryNanos / 1e6);
+    }
+
+    // Method to grow an array to at least the given length
+    private static int[] ensureLength(int[] array, int length) {
+        return array.length >= length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+    }
+}
@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code ReportingLoadGenerator} class measures how a {@code ReportingServer} copes with many concurrent clients.
+ * <p>
+ * Each client runs on its own virtual thread and sends its requests one after another, picking a
+ * realistic mix of manufacturer lookups, price queries, most expensive, top revenue and leaderboard
+ * queries. All clients start together. The latency of every request is recorded, and the run reports
+ * the throughput, the error count and the p50, p90, p99 and p99.9 latencies.
+ * </p>
+ * <p>
+ * Without {@code --url} a server is started in this process over a synthetic catalogue.
+ * Usage: {@code java ReportingLoadGenerator [--url http://localhost:8080] [--clients 2000] [--requests 25]
+ * [--models 100000] [--manufacturers 50] [--seed 1]}. The process exits with status 1 if any request fails.
+ * </p>
+ */
+// ReportingLoadGenerator class runs concurrent HTTP clients against the reporting server and reports latency percentiles
+public class ReportingLoadGenerator {
+    private String url;
+    private int clients = 2_000;
+    private int requestsPerClient = 25;
+    private int models = 100_000;
+    private int manufacturers = 50;
+    private long seed = 1;
+
+    // Method to parse the command line options
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--url" -> url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "--clients" -> clients = Math.max(1, Integer.parseInt(value));
+                case "--requests" -> requestsPerClient = Math.max(1, Integer.parseInt(value));
+                case "--models" -> models = Integer.parseInt(value);
+                case "--manufacturers" -> manufacturers = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    // Method to pick the next request of a client
+    private static String nextPath(SplittableRandom random, List<String> names) {
+        int pick = random.nextInt(100);
+        CarType type = CarType.fromCode((byte) random.nextInt(CarType.values().length));
+        if (pick < 30 && !names.isEmpty()) {
+            return "/manufacturer?limit=10&name=" + URLEncoder.encode(names.get(random.nextInt(names.size())), StandardCharsets.UTF_8);
+        } else if (pick < 60) {
+            return "/models/above?limit=20&price=" + (5_000 + random.nextInt(145_000));
+        } else if (pick < 70) {
+            return "/models/most-expensive";
+        } else if (pick < 85) {
+            return "/revenue/top?type=" + type.getDisplayName();
+        }
+        RankBy rankBy = RankBy.values()[random.nextInt(RankBy.values().length)];
+        return "/models/top?k=10&by=" + rankBy.name() + "&type=" + (random.nextBoolean() ? type.getDisplayName() : "");
+    }
+
+    // Method to read the manufacturer names served, so lookups ask for names that exist
+    private static List<String> manufacturerNames(HttpClient client, String url) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/manufacturers?limit=10000")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        List<String> names = new ArrayList<>();
+        String body = response.body();
+        int start = body.indexOf('[');
+        // the names are a flat array of JSON strings, which never contain an unescaped quote
+        for (int i = body.indexOf('"', start); i >= 0 && i < body.lastIndexOf(']'); ) {
+            int end = i + 1;
+            while (body.charAt(end) != '"' || body.charAt(end - 1) == '\\') {
+                end++;
+            }
+            names.add(body.substring(i + 1, end).replace("\\\"", "\"").replace("\\\\", "\\"));
+            i = body.indexOf('"', end + 1);
+        }
+        return names;
+    }
+
+    // Method to run every client and print the latency report, returning false if any request failed
+    private boolean run() throws IOException, InterruptedException {
+        ReportingServer server = null;
+        Reporting reporting = null;
+        if (url == null) {
+            reporting = new SyntheticCatalogue(models, manufacturers, new double[]{1, 1, 1},
+                    SyntheticCatalogue.PriceDistribution.UNIFORM, 5_000, 150_000, seed).toReporting();
+            reporting.getMetrics().setEnabled(true);
+            server = new ReportingServer(reporting, new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            url = "http://127.0.0.1:" + server.getPort();
+            System.out.println("Started a server over " + models + " car models at " + url);
+        }
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder().executor(threads).connectTimeout(Duration.ofSeconds(30)).build();
+            List<String> names = manufacturerNames(client, url);
+
+            long[] latencies = new long[clients * requestsPerClient];
+            AtomicInteger completed = new AtomicInteger();
+            LongAdder errors = new LongAdder();
+            List<String> firstErrors = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(clients);
+            for (int c = 0; c < clients; c++) {
+                SplittableRandom random = new SplittableRandom(seed * 31 + c);
+                threads.execute(() -> {
+                    try {
+                        start.await();
+                        for (int r = 0; r < requestsPerClient; r++) {
+                            HttpRequest request = HttpRequest.newBuilder(URI.create(url + nextPath(random, names))).build();
+                            long begin = System.nanoTime();
+                            try {
+                                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                                if (response.statusCode() != 200) {
+                                    throw new IOException("HTTP " + response.statusCode() + " for " + request.uri() + ": " + response.body());
+                                }
+                                latencies[completed.getAndIncrement()] = System.nanoTime() - begin;
+                            } catch (IOException e) {
+                                errors.increment();
+                                synchronized (firstErrors) {
+                                    if (firstErrors.size() < 5) {
+                                        firstErrors.add(e.toString());
+                                    }
+                                }
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            done.await();
+            double seconds = (System.nanoTime() - begin) / 1e9;
+
+            int succeeded = completed.get();
+            long[] sorted = Arrays.copyOf(latencies, succeeded);
+            Arrays.sort(sorted);
+            System.out.printf(Locale.ROOT, "%d clients sent %d requests in %.2f s: %.0f requests/s, %d errors%n",
+                    clients, succeeded + errors.sum(), seconds, succeeded / seconds, errors.sum());
+            System.out.printf(Locale.ROOT, "latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9),
+                    percentile(sorted, 100));
+            firstErrors.forEach(System.out::println);
+            if (reporting != null) {
+                // the server runs in this process, so show how long the reports behind the requests took
+                System.out.print(reporting.getMetrics().dump());
+            }
+            return errors.sum() == 0;
+        } finally {
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+
+    // Method to read a percentile, in milliseconds, from sorted latencies in nanoseconds
+    private static double percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ReportingLoadGenerator generator = new ReportingLoadGenerator();
+        try {
+            generator.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+        if (!generator.run()) {
+            System.exit(1);
+        }
+    }
+}
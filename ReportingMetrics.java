@@ -0,0 +1,267 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The {@code ReportingMetrics} class records how a reporting system is used: how fast car models arrive,
+ * how long each report takes, how many rows the reports scan and how large the catalogue is.
+ * <p>
+ * Every reporting system has its own metrics, shared with its manufacturers. Timed code calls
+ * {@link #start()} and passes the result to {@link #stop(TimedOperation, long)}; latencies go into a
+ * {@link LatencyHistogram} per operation. Counters are {@code LongAdder}s, so threads adding car models
+ * at the same time do not contend on one counter.
+ * </p>
+ * <p>
+ * Metrics start disabled unless the system property {@code reporting.metrics} is {@code true}, and the
+ * console and the server turn them on. While disabled, {@code start()} returns without reading the
+ * clock and nothing else records, so the instrumented code does no extra work and allocates nothing.
+ * The counters of open {@link IngestPipeline}s are kept by the pipelines and always included.
+ * The metrics can be read over JMX once {@link #register(String)} is called, or as text with {@link #dump()}.
+ * </p>
+ */
+// ReportingMetrics class holds the ingest counters, report latency histograms and catalogue gauges
+public final class ReportingMetrics implements ReportingMetricsMXBean {
+    // returned by start() while disabled, telling stop() not to record
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final Reporting reporting;
+    private volatile boolean enabled;
+    private volatile long enabledAt = System.nanoTime();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[TimedOperation.values().length];
+    private final LongAdder carModelsAdded = new LongAdder();
+    private final LongAdder rowsScanned = new LongAdder();
+    // ingest pipelines feeding the reporting system, reported until they are closed
+    private final List<IngestPipeline> pipelines = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs the metrics of a reporting system.
+     *
+     * @param reporting the reporting system, read for the catalogue size gauges
+     */
+    // Constructor
+    ReportingMetrics(Reporting reporting) {
+        this.reporting = reporting;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        this.enabled = Boolean.getBoolean("reporting.metrics");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Setter method to turn recording on or off; the ingest rate is measured from when it was last turned on
+    @Override
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            enabledAt = System.nanoTime();
+        }
+        this.enabled = enabled;
+    }
+
+    // Method to start timing an operation, returning NOT_TIMED while disabled
+    long start() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    // Method to record the time an operation took since start()
+    void stop(TimedOperation operation, long start) {
+        if (start != NOT_TIMED) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    // Method to count car models added to the reporting system
+    void carModelsAdded(int count) {
+        if (enabled) {
+            carModelsAdded.add(count);
+        }
+    }
+
+    // Method to count the rows a report scanned
+    void rowsScanned(long count) {
+        if (enabled) {
+            rowsScanned.add(count);
+        }
+    }
+
+    // Methods to start and stop reporting the counters of an ingest pipeline
+    void pipelineOpened(IngestPipeline pipeline) {
+        pipelines.add(pipeline);
+    }
+
+    void pipelineClosed(IngestPipeline pipeline) {
+        pipelines.remove(pipeline);
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server, under
+     * {@code CarDealership:type=ReportingMetrics,name=<name>}.
+     *
+     * @param name the name to publish under
+     * @throws IllegalArgumentException if the name is already taken
+     */
+    // Method to register the metrics with JMX
+    public void register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("CarDealership:type=ReportingMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot register metrics as '" + name + "': " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int getManufacturerCount() {
+        return reporting.getManufacturers().size();
+    }
+
+    @Override
+    public long getCarModelCount() {
+        return reporting.getCarModelCount();
+    }
+
+    @Override
+    public long getCarModelsAdded() {
+        return carModelsAdded.sum();
+    }
+
+    @Override
+    public double getIngestRatePerSecond() {
+        double seconds = (System.nanoTime() - enabledAt) / 1e9;
+        return seconds <= 0 ? 0 : carModelsAdded.sum() / seconds;
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return reporting.getCacheStats().hits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return reporting.getCacheStats().misses();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return reporting.getCacheStats().evictions();
+    }
+
+    @Override
+    public int getIngestQueued() {
+        int queued = 0;
+        for (IngestPipeline pipeline : pipelines) {
+            queued += pipeline.getStats().queued();
+        }
+        return queued;
+    }
+
+    @Override
+    public long getIngestDropped() {
+        long dropped = 0;
+        for (IngestPipeline pipeline : pipelines) {
+            dropped += pipeline.getStats().dropped();
+        }
+        return dropped;
+    }
+
+    @Override
+    public long getIngestRejected() {
+        long rejected = 0;
+        for (IngestPipeline pipeline : pipelines) {
+            rejected += pipeline.getStats().rejected();
+        }
+        return rejected;
+    }
+
+    @Override
+    public long getIngestBlockedSubmits() {
+        long blocked = 0;
+        for (IngestPipeline pipeline : pipelines) {
+            blocked += pipeline.getStats().blockedSubmits();
+        }
+        return blocked;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (TimedOperation operation : TimedOperation.values()) {
+            counts.put(operation.getMethodName(), latencies[operation.ordinal()].count());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencyMicros() {
+        Map<String, Double> means = new LinkedHashMap<>();
+        for (TimedOperation operation : TimedOperation.values()) {
+            means.put(operation.getMethodName(), latencies[operation.ordinal()].mean() / 1e3);
+        }
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getP99LatencyMicros() {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (TimedOperation operation : TimedOperation.values()) {
+            percentiles.put(operation.getMethodName(), latencies[operation.ordinal()].percentile(99) / 1e3);
+        }
+        return percentiles;
+    }
+
+    /**
+     * Returns every metric as plain text: the gauges and counters, then a table of the latency
+     * percentiles of each operation that has been called, in microseconds.
+     *
+     * @return the metrics, one per line
+     */
+    // Method to write the metrics as plain text
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder(2048);
+        CacheStats cache = reporting.getCacheStats();
+        text.append("Reporting metrics (").append(enabled ? "enabled" : "disabled").append(")\n");
+        text.append(String.format(Locale.ROOT, "manufacturers        %d%n", getManufacturerCount()));
+        text.append(String.format(Locale.ROOT, "car models           %d%n", getCarModelCount()));
+        text.append(String.format(Locale.ROOT, "car models added     %d (%.1f/s)%n", getCarModelsAdded(), getIngestRatePerSecond()));
+        text.append(String.format(Locale.ROOT, "rows scanned         %d%n", getRowsScanned()));
+        text.append(String.format(Locale.ROOT, "cache                %d hits, %d misses, %d evictions, %d/%d entries (%.1f%% hit rate)%n",
+                cache.hits(), cache.misses(), cache.evictions(), cache.size(), cache.capacity(), cache.hitRate() * 100));
+        for (IngestPipeline pipeline : pipelines) {
+            IngestStats ingest = pipeline.getStats();
+            text.append(String.format(Locale.ROOT, "ingest pipeline      %d submitted, %d dropped, %d rejected, %d applied, %d queued, "
+                            + "%d blocked submits (%.1f ms), latency mean %.1f us p99 %.1f us%n",
+                    ingest.submitted(), ingest.dropped(), ingest.rejected(), ingest.applied(), ingest.queued(),
+                    ingest.blockedSubmits(), ingest.blockedMillis(), ingest.meanLatencyMicros(), ingest.p99LatencyMicros()));
+        }
+        text.append(String.format(Locale.ROOT, "%-40s %10s %10s %10s %10s %10s %10s %10s%n",
+                "operation (us)", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        for (TimedOperation operation : TimedOperation.values()) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            long count = histogram.count();
+            if (count == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.ROOT, "%-40s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    operation.getMethodName(), count, histogram.mean() / 1e3, histogram.percentile(50) / 1e3,
+                    histogram.percentile(90) / 1e3, histogram.percentile(99) / 1e3, histogram.percentile(99.9) / 1e3,
+                    histogram.max() / 1e3));
+        }
+        return text.toString();
+    }
+}
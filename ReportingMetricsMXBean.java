@@ -0,0 +1,52 @@
+import java.util.Map;
+
+/**
+ * The {@code ReportingMetricsMXBean} interface is the JMX view of a reporting system's metrics,
+ * readable from JConsole, VisualVM or any other JMX client.
+ */
+// ReportingMetricsMXBean interface lists the attributes and operations published over JMX
+public interface ReportingMetricsMXBean {
+
+    // Getter and setter for whether metrics are being recorded
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    // Gauges for the size of the catalogue
+    int getManufacturerCount();
+
+    long getCarModelCount();
+
+    // Counters for ingestion and scanning since the metrics were enabled
+    long getCarModelsAdded();
+
+    double getIngestRatePerSecond();
+
+    long getRowsScanned();
+
+    // Counters of the report result cache
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    // Counters of the ingest pipelines currently feeding the reporting system, summed
+    int getIngestQueued();
+
+    long getIngestDropped();
+
+    long getIngestRejected();
+
+    long getIngestBlockedSubmits();
+
+    // Per operation call counts and latencies in microseconds, keyed by operation name
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Double> getMeanLatencyMicros();
+
+    Map<String, Double> getP99LatencyMicros();
+
+    // Operation returning every metric as plain text
+    String dump();
+}
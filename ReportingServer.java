@@ -0,0 +1,402 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The {@code ReportingServer} class serves the {@code Reporting} queries over HTTP as JSON, so many
+ * users can query the same data at once.
+ * <p>
+ * It uses the JDK's built-in {@code HttpServer} and handles every request on its own virtual thread, so
+ * thousands of concurrent clients cost little more than their sockets. Every endpoint answers
+ * {@code GET} requests and takes its arguments as query parameters:
+ * </p>
+ * <ul>
+ *   <li>{@code /health} - the number of manufacturers and car models, and the report cache counters</li>
+ *   <li>{@code /manufacturers?prefix=te&limit=20} - manufacturer names, optionally those starting with a prefix</li>
+ *   <li>{@code /manufacturer?name=Tesla&limit=100} - one manufacturer's totals by car type and its car models</li>
+ *   <li>{@code /models/above?price=50000&limit=100&offset=0} - car models priced above an amount, cheapest first,
+ *   a page at a time: pass the {@code "next"} token of a response as {@code after} to get the following page</li>
+ *   <li>{@code /models/most-expensive} - the most expensive car model sold</li>
+ *   <li>{@code /models/top?by=revenue&type=Saloon&k=50} - the top car models by price, revenue or units sold</li>
+ *   <li>{@code /revenue/top?type=Saloon} - the manufacturer with the highest revenue for a car type</li>
+ *   <li>{@code /metrics} - the reporting metrics as plain text, see {@link ReportingMetrics#dump()}</li>
+ * </ul>
+ * <p>
+ * Invalid parameters get a 400 response and unknown names a 404, both with an {@code "error"} message.
+ * Lists are cut to {@code limit} entries, at most {@value #MAX_LIMIT}, and report the full count alongside.
+ * </p>
+ */
+// ReportingServer class exposes the reporting queries as a JSON web service
+public class ReportingServer {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+    private static final int BACKLOG = 4096;
+    private static final Path SNAPSHOT_FILE = Paths.get("reporting.snapshot");
+
+    static {
+        // the built-in server writes the headers and the body of a response separately, and without TCP_NODELAY
+        // the body waits for the client's delayed ACK, adding about 40 ms to every response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Reporting reporting;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a server for a reporting system. The server does not accept requests until it is started.
+     *
+     * @param reporting the reporting system to serve
+     * @param address   the address and port to listen on, port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    // Constructor binds the socket and registers the request handler
+    public ReportingServer(Reporting reporting, InetSocketAddress address) throws IOException {
+        this.reporting = reporting;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.createContext("/", this::handle);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(executor);
+    }
+
+    // Method to start accepting requests
+    public void start() {
+        server.start();
+    }
+
+    // Method to stop accepting requests and wait up to the given number of seconds for running requests
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    // Getter method for the port the server listens on
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Method to answer one request, run on its own virtual thread
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        StringBuilder json = new StringBuilder(256);
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                status = 405;
+                error(json, "Only GET is supported.");
+            } else {
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                status = route(exchange.getRequestURI().getPath(), query, json);
+            }
+        } catch (IllegalArgumentException e) {
+            json.setLength(0);
+            status = 400;
+            error(json, e.getMessage());
+        } catch (RuntimeException e) {
+            json.setLength(0);
+            status = 500;
+            error(json, "Internal error: " + e);
+        }
+
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Method to answer a metrics request with the plain text dump
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        byte[] body = reporting.getMetrics().dump().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Runs the query for a path and writes its JSON answer.
+     *
+     * @param path  the request path
+     * @param query the query parameters
+     * @param json  where the answer is written
+     * @return the HTTP status code
+     * @throws IllegalArgumentException if a parameter is missing or invalid
+     */
+    // Method to dispatch a request to the matching reporting query
+    private int route(String path, Map<String, String> query, StringBuilder json) {
+        switch (path) {
+            case "/health": {
+                json.append("{\"status\":\"ok\",\"manufacturers\":").append(reporting.getManufacturers().size())
+                        .append(",\"carModels\":").append(reporting.getCarModelCount());
+                CacheStats cache = reporting.getCacheStats();
+                json.append(",\"cache\":{\"hits\":").append(cache.hits()).append(",\"misses\":").append(cache.misses())
+                        .append(",\"evictions\":").append(cache.evictions()).append(",\"size\":").append(cache.size())
+                        .append(",\"capacity\":").append(cache.capacity()).append("}}");
+                return 200;
+            }
+            case "/manufacturers": {
+                int limit = limit(query);
+                String prefix = query.get("prefix");
+                List<Manufacturer> manufacturers = prefix == null ? reporting.getManufacturers()
+                        : reporting.findManufacturersByPrefix(prefix, limit);
+                json.append("{\"count\":").append(manufacturers.size()).append(",\"manufacturers\":[");
+                for (int i = 0; i < Math.min(limit, manufacturers.size()); i++) {
+                    if (i > 0) {
+                        json.append(',');
+                    }
+                    string(json, manufacturers.get(i).getMname());
+                }
+                json.append("]}");
+                return 200;
+            }
+            case "/manufacturer": {
+                Manufacturer manufacturer = reporting.getManufacturerByName(required(query, "name"));
+                if (manufacturer == null) {
+                    error(json, "Manufacturer not found");
+                    return 404;
+                }
+                json.append("{\"name\":");
+                string(json, manufacturer.getMname());
+                json.append(",\"revenueByType\":[");
+                for (CarType type : CarType.values()) {
+                    if (type.ordinal() > 0) {
+                        json.append(',');
+                    }
+                    sales(json, manufacturer.getSalesByType(type));
+                }
+                json.append("],");
+                carModels(json, manufacturer.getCarModels(), limit(query));
+                json.append('}');
+                return 200;
+            }
+            case "/models/above": {
+                double price = number(required(query, "price"), "price");
+                String after = query.get("after");
+                // a token continues after the last car model of the previous page, an offset skips a number of car models
+                CarModelPage page = after != null ? reporting.getCarModelsAbovePrice(price, after, limit(query))
+                        : reporting.getCarModelsAbovePrice(price, offset(query), limit(query));
+                json.append("{\"price\":").append(price).append(",\"offset\":").append(page.offset()).append(',');
+                carModels(json, page.carModels(), page.total(), page.carModels().size());
+                json.append(",\"next\":");
+                if (page.hasNextPage()) {
+                    string(json, page.nextPageToken());
+                } else {
+                    json.append("null");
+                }
+                json.append('}');
+                return 200;
+            }
+            case "/models/most-expensive": {
+                MostExpensiveResult result = reporting.getMostExpensiveCarModelSold();
+                if (result == null) {
+                    error(json, "No car models available.");
+                    return 404;
+                }
+                json.append("{\"manufacturer\":");
+                string(json, result.manufacturer());
+                json.append(",\"model\":");
+                carModel(json, result.carModel());
+                json.append('}');
+                return 200;
+            }
+            case "/models/top": {
+                RankBy rankBy = RankBy.parse(query.getOrDefault("by", "revenue"));
+                if (rankBy == null) {
+                    throw new IllegalArgumentException("by must be price, revenue or units_sold");
+                }
+                CarType type = optionalType(query);
+                int k = Math.min((int) number(query.getOrDefault("k", "10"), "k"), MAX_LIMIT);
+                json.append("{\"by\":");
+                string(json, rankBy.getDisplayName());
+                json.append(",\"models\":[");
+                List<RankedCarModel> results = reporting.getTopCarModels(k, rankBy, type);
+                for (int i = 0; i < results.size(); i++) {
+                    RankedCarModel result = results.get(i);
+                    json.append(i > 0 ? ",{\"rank\":" : "{\"rank\":").append(result.rank()).append(",\"manufacturer\":");
+                    string(json, result.manufacturer());
+                    json.append(",\"score\":").append(result.score()).append(",\"model\":");
+                    carModel(json, result.carModel());
+                    json.append('}');
+                }
+                json.append("]}");
+                return 200;
+            }
+            case "/revenue/top": {
+                CarType type = optionalType(query);
+                if (type == null) {
+                    throw new IllegalArgumentException("Missing parameter type");
+                }
+                Manufacturer top = reporting.getManufacturerWithHighestRevenueByType(type);
+                if (top == null) {
+                    json.append("{\"type\":");
+                    string(json, type.getDisplayName());
+                    json.append(",\"manufacturer\":null}");
+                } else {
+                    sales(json, top.getSalesByType(type));
+                }
+                return 200;
+            }
+            default:
+                error(json, "Unknown path " + path);
+                return 404;
+        }
+    }
+
+    // Method to read the query string into a map, decoding percent escapes
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    // Method to get a parameter that must be present
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value;
+    }
+
+    // Method to parse a numeric parameter
+    private static double number(String value, String name) {
+        try {
+            double number = Double.parseDouble(value);
+            if (!Double.isFinite(number)) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    // Method to read the limit parameter, capped so a response cannot grow without bound
+    private static int limit(Map<String, String> query) {
+        String value = query.get("limit");
+        return value == null ? DEFAULT_LIMIT : (int) Math.max(0, Math.min(MAX_LIMIT, number(value, "limit")));
+    }
+
+    // Method to read the offset parameter
+    private static int offset(Map<String, String> query) {
+        String value = query.get("offset");
+        return value == null ? 0 : (int) Math.max(0, Math.min(Integer.MAX_VALUE, number(value, "offset")));
+    }
+
+    // Method to read an optional car type parameter
+    private static CarType optionalType(Map<String, String> query) {
+        String value = query.get("type");
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        CarType type = CarType.parse(value);
+        if (type == null) {
+            throw new IllegalArgumentException("type must be Hatchback, Saloon or Estate");
+        }
+        return type;
+    }
+
+    // Methods to write JSON values
+    private static void error(StringBuilder json, String message) {
+        json.append("{\"error\":");
+        string(json, message);
+        json.append('}');
+    }
+
+    private static void sales(StringBuilder json, RevenueByType sales) {
+        json.append("{\"manufacturer\":");
+        string(json, sales.manufacturer());
+        json.append(",\"type\":");
+        string(json, sales.carType().getDisplayName());
+        json.append(",\"revenue\":").append(sales.revenue()).append(",\"unitsSold\":").append(sales.unitsSold())
+                .append(",\"carModels\":").append(sales.carModelCount()).append('}');
+    }
+
+    private static void carModels(StringBuilder json, List<CarModel> models, int limit) {
+        carModels(json, models, models.size(), limit);
+    }
+
+    private static void carModels(StringBuilder json, List<CarModel> models, int count, int limit) {
+        json.append("\"count\":").append(count).append(",\"models\":[");
+        for (int i = 0; i < Math.min(limit, models.size()); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            carModel(json, models.get(i));
+        }
+        json.append(']');
+    }
+
+    private static void carModel(StringBuilder json, CarModel model) {
+        json.append("{\"name\":");
+        string(json, model.getName());
+        json.append(",\"weight\":").append(model.getWeight()).append(",\"price\":").append(model.getSales_price())
+                .append(",\"unitsSold\":").append(model.getNSold()).append(",\"type\":");
+        string(json, model.getType());
+        json.append('}');
+    }
+
+    // Method to write a JSON string, escaping quotes, backslashes and control characters
+    private static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Starts a server over the saved data, loading any CSV catalogue files given after the options.
+     * Usage: {@code java ReportingServer [--port 8080] [catalogue.csv ...]}.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        // read the data the console saved and journaled, without writing to its journal
+        Reporting reporting = ReportingJournal.read(SNAPSHOT_FILE);
+        // record metrics unless started with -Dreporting.metrics=false, and publish them over JMX
+        reporting.getMetrics().setEnabled(!"false".equals(System.getProperty("reporting.metrics")));
+        reporting.getMetrics().register("server");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                System.out.println(CatalogueLoader.load(Paths.get(args[i]), reporting));
+            }
+        }
+        ReportingServer server = new ReportingServer(reporting, new InetSocketAddress(port));
+        server.start();
+        System.out.println("Serving " + reporting.getCarModelCount() + " car models on http://localhost:" + server.getPort() + "/");
+    }
+}
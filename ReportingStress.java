@@ -0,0 +1,364 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code ReportingStress} class checks that a {@code Reporting} system stays correct while
+ * several threads add manufacturers and car models and several other threads run reports.
+ * <p>
+ * Writers add car models to randomly chosen manufacturers, singly and in batches, creating the
+ * manufacturers on first use so that {@code getOrAddManufacturer} is contended too. Writers also record sales,
+ * half of them of each manufacturer's first car model so every writer sells the same few hot car models.
+ * Each writer records what it added and sold. Prices and units sold are whole numbers, so every total is exact and can be compared with
+ * {@code ==}. While the writers run, readers check invariants that must hold for any consistent snapshot:
+ * totals never go down, the revenue, units and count read together belong to the same car models, lists
+ * never contain a half written car model and price queries stay sorted. When the writers finish every
+ * running total, the rollup, the ranking and the price index are compared with what was written.
+ * </p>
+ * <p>
+ * Usage: {@code java ReportingStress [--writers 4] [--readers 4] [--manufacturers 8] [--models 200000] [--seed 1]},
+ * where {@code --models} is the number of car models added by each writer. The process exits with status 1 if a check fails.
+ * </p>
+ */
+// ReportingStress class runs concurrent writers and readers against one reporting system and checks the results
+public class ReportingStress {
+    private static final int BATCH_EVERY = 16; // one add in this many is a batch instead of a single car model
+    private static final int BATCH_SIZE = 32;
+    private static final int SALE_EVERY = 4; // one add in this many is followed by a sale
+    private static final int MAX_FAILURES = 20;
+
+    private int writers = 4;
+    private int readers = 4;
+    private int manufacturerCount = 8;
+    private int modelsPerWriter = 200_000;
+    private long seed = 1;
+
+    private final Reporting reporting = new Reporting();
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean(true);
+    private final LongAdder readerChecks = new LongAdder();
+
+    // Expected class records what one writer added, per manufacturer and car type
+    private static final class Expected {
+        final long[][] revenue;
+        final long[][] unitsSold;
+        final int[][] count;
+        double maxPrice;
+
+        Expected(int manufacturers) {
+            revenue = new long[manufacturers][CarType.values().length];
+            unitsSold = new long[manufacturers][CarType.values().length];
+            count = new int[manufacturers][CarType.values().length];
+        }
+
+        // Method to record one car model
+        void record(int manufacturer, double price, int nSold, byte type) {
+            revenue[manufacturer][type] += (long) price * nSold;
+            unitsSold[manufacturer][type] += nSold;
+            count[manufacturer][type]++;
+            maxPrice = Math.max(maxPrice, price);
+        }
+
+        // Method to record units sold of a car model already recorded
+        void sold(int manufacturer, double price, int units, byte type) {
+            revenue[manufacturer][type] += (long) price * units;
+            unitsSold[manufacturer][type] += units;
+        }
+
+        // Method to add another writer's figures to these
+        void add(Expected other) {
+            for (int m = 0; m < revenue.length; m++) {
+                for (int t = 0; t < revenue[m].length; t++) {
+                    revenue[m][t] += other.revenue[m][t];
+                    unitsSold[m][t] += other.unitsSold[m][t];
+                    count[m][t] += other.count[m][t];
+                }
+            }
+            maxPrice = Math.max(maxPrice, other.maxPrice);
+        }
+    }
+
+    // Method to parse the command line options
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "--writers" -> writers = Math.max(1, value);
+                case "--readers" -> readers = Math.max(0, value);
+                case "--manufacturers" -> manufacturerCount = Math.max(1, value);
+                case "--models" -> modelsPerWriter = Math.max(0, value);
+                case "--seed" -> seed = value;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+        }
+    }
+
+    // Method to record a failed check, keeping only the first few messages
+    private void fail(String message) {
+        if (failures.size() < MAX_FAILURES) {
+            failures.add(message);
+        }
+    }
+
+    // Method to find a manufacturer by name, adding it if no other thread has yet
+    private Manufacturer manufacturer(int m) {
+        return reporting.getOrAddManufacturer("Maker " + m);
+    }
+
+    // Method run by each writer thread
+    private Expected write(int writer) {
+        Expected expected = new Expected(manufacturerCount);
+        SplittableRandom random = new SplittableRandom(seed * 1_000_003 + writer);
+        Manufacturer[] makers = new Manufacturer[manufacturerCount];
+        CarModelColumns batch = new CarModelColumns(BATCH_SIZE);
+        int added = 0;
+        while (added < modelsPerWriter) {
+            int m = random.nextInt(manufacturerCount);
+            if (makers[m] == null) {
+                makers[m] = manufacturer(m);
+            }
+            int rows = random.nextInt(BATCH_EVERY) == 0 ? Math.min(BATCH_SIZE, modelsPerWriter - added) : 1;
+            batch.clear();
+            for (int i = 0; i < rows; i++) {
+                double price = 1_000 + random.nextInt(99_000);
+                int nSold = 1 + random.nextInt(100);
+                byte type = (byte) random.nextInt(CarType.values().length);
+                batch.add("W" + writer + "-" + (added + i), 1_200, price, nSold, type);
+                expected.record(m, price, nSold, type);
+            }
+            if (rows == 1) {
+                makers[m].addCarModel(new CarModel(batch.name(0), batch.weight(0), batch.price(0), batch.nSold(0), CarType.fromCode(batch.type(0))));
+            } else {
+                makers[m].addCarModels(batch);
+            }
+            added += rows;
+
+            if (random.nextInt(SALE_EVERY) == 0) {
+                List<CarModel> models = makers[m].getCarModels();
+                CarModel model = models.get(random.nextBoolean() ? 0 : random.nextInt(models.size()));
+                int units = 1 + random.nextInt(5);
+                reporting.recordSale(model, units);
+                expected.sold(m, model.getSales_price(), units, model.getCarType().code());
+            }
+        }
+        return expected;
+    }
+
+    // Method run by each reader thread until the writers finish
+    private void read(int reader) {
+        SplittableRandom random = new SplittableRandom(seed * 7_919 + reader);
+        double[] lastTotals = new double[CarType.values().length];
+        double lastMaxPrice = 0;
+        while (writing.get()) {
+            List<Manufacturer> manufacturers = reporting.getManufacturers();
+            if (manufacturers.isEmpty()) {
+                Thread.onSpinWait();
+                continue;
+            }
+            Manufacturer manufacturer = manufacturers.get(random.nextInt(manufacturers.size()));
+
+            // the three figures of one type are read together, so they describe the same car models
+            int counted = 0;
+            for (CarType type : CarType.values()) {
+                RevenueByType sales = manufacturer.getSalesByType(type);
+                counted += sales.carModelCount();
+                if (sales.revenue() != Math.rint(sales.revenue()) || sales.unitsSold() < sales.carModelCount()
+                        || sales.revenue() < sales.carModelCount() * 1_000.0 || sales.revenue() > sales.unitsSold() * 99_999.0) {
+                    fail("Inconsistent totals for " + manufacturer.getMname() + " " + type + ": " + sales);
+                }
+            }
+
+            // a list is a snapshot of fully written car models, at least as many as were already counted
+            List<CarModel> models = manufacturer.getCarModels();
+            if (models.size() < counted) {
+                fail("List of " + models.size() + " car models is older than totals counting " + counted);
+            }
+            for (int i = random.nextInt(Math.max(1, models.size())); i < models.size(); i += 1 + random.nextInt(64)) {
+                CarModel model = models.get(i);
+                if (model.getName() == null || model.getSales_price() < 1_000 || model.getNSold() < 1) {
+                    fail("Half written car model at row " + i + " of " + manufacturer.getMname());
+                }
+            }
+
+            // price queries return sorted car models above the threshold
+            double threshold = 90_000 + random.nextInt(10_000);
+            double previous = threshold;
+            for (CarModel model : reporting.getCarModelsAbovePrice(threshold)) {
+                if (model.getSales_price() <= threshold || model.getSales_price() < previous) {
+                    fail("Price query above " + threshold + " returned " + model.getSales_price() + " out of order");
+                    break;
+                }
+                previous = model.getSales_price();
+            }
+
+            // totals only ever grow
+            for (CarType type : CarType.values()) {
+                double total = reporting.getTotalRevenueByType(type);
+                if (total < lastTotals[type.ordinal()]) {
+                    fail("Total revenue for " + type + " went down from " + lastTotals[type.ordinal()] + " to " + total);
+                }
+                lastTotals[type.ordinal()] = total;
+                if (total > 0 && reporting.getManufacturerWithHighestRevenueByType(type) == null) {
+                    fail("No top manufacturer for " + type + " with revenue " + total);
+                }
+            }
+            if (random.nextInt(16) == 0) {
+                MostExpensiveResult mostExpensive = reporting.getMostExpensiveCarModelSold();
+                double price = mostExpensive == null ? 0 : mostExpensive.carModel().getSales_price();
+                if (price < lastMaxPrice) {
+                    fail("Most expensive price went down from " + lastMaxPrice + " to " + price);
+                }
+                lastMaxPrice = price;
+            }
+            readerChecks.increment();
+        }
+    }
+
+    // Method to compare the final state with what the writers recorded
+    private void verify(Expected expected) {
+        long totalModels = 0;
+        long[] totalRevenue = new long[CarType.values().length];
+        for (int m = 0; m < manufacturerCount; m++) {
+            Manufacturer manufacturer = reporting.getManufacturerByName("Maker " + m);
+            int models = 0;
+            for (CarType type : CarType.values()) {
+                int t = type.ordinal();
+                models += expected.count[m][t];
+                totalModels += expected.count[m][t];
+                totalRevenue[t] += expected.revenue[m][t];
+                if (manufacturer == null) {
+                    if (expected.count[m][t] > 0) {
+                        fail("Maker " + m + " is missing");
+                    }
+                    continue;
+                }
+                RevenueByType sales = manufacturer.getSalesByType(type);
+                if (sales.revenue() != expected.revenue[m][t] || sales.unitsSold() != expected.unitsSold[m][t]
+                        || sales.carModelCount() != expected.count[m][t]) {
+                    fail("Maker " + m + " " + type + " totals " + sales + ", expected revenue " + expected.revenue[m][t]
+                            + " units " + expected.unitsSold[m][t] + " count " + expected.count[m][t]);
+                }
+                if (manufacturer.recalculateRevenueByType(type) != expected.revenue[m][t]) {
+                    fail("Maker " + m + " " + type + " recalculated revenue " + manufacturer.recalculateRevenueByType(type));
+                }
+            }
+            if (manufacturer != null && manufacturer.getCarModels().size() != models) {
+                fail("Maker " + m + " holds " + manufacturer.getCarModels().size() + " car models, expected " + models);
+            }
+        }
+
+        if (reporting.getCarModelCount() != totalModels) {
+            fail("Rollup counts " + reporting.getCarModelCount() + " car models, expected " + totalModels);
+        }
+        if (reporting.getCarModelsAbovePrice(0).size() != totalModels) {
+            fail("Price index holds " + reporting.getCarModelsAbovePrice(0).size() + " car models, expected " + totalModels);
+        }
+        MostExpensiveResult mostExpensive = reporting.getMostExpensiveCarModelSold();
+        if (totalModels > 0 && (mostExpensive == null || mostExpensive.carModel().getSales_price() != expected.maxPrice)) {
+            fail("Most expensive car model " + mostExpensive + ", expected price " + expected.maxPrice);
+        }
+        for (CarType type : CarType.values()) {
+            int t = type.ordinal();
+            if (reporting.getTotalRevenueByType(type) != totalRevenue[t]) {
+                fail("Rollup revenue for " + type + " is " + reporting.getTotalRevenueByType(type) + ", expected " + totalRevenue[t]);
+            }
+            // the ranking must agree with a plain loop over the manufacturers in the order they were added
+            Manufacturer best = null;
+            for (Manufacturer manufacturer : reporting.getManufacturers()) {
+                if (manufacturer.getRevenueByType(type) > 0
+                        && (best == null || manufacturer.getRevenueByType(type) > best.getRevenueByType(type))) {
+                    best = manufacturer;
+                }
+            }
+            Manufacturer ranked = reporting.getManufacturerWithHighestRevenueByType(type);
+            if (ranked != best) {
+                fail("Ranking for " + type + " returned " + (ranked == null ? null : ranked.getMname())
+                        + ", expected " + (best == null ? null : best.getMname()));
+            }
+        }
+    }
+
+    // Method to run the writers and readers and then verify the result
+    private boolean run() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Expected[] results = new Expected[writers];
+        List<Thread> writerThreads = new ArrayList<>();
+        List<Thread> readerThreads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            writerThreads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    results[writer] = write(writer);
+                } catch (Throwable e) {
+                    fail("Writer " + writer + " failed: " + e);
+                }
+            }, "writer-" + w));
+        }
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            readerThreads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    read(reader);
+                } catch (Throwable e) {
+                    fail("Reader " + reader + " failed: " + e);
+                }
+            }, "reader-" + r));
+        }
+        writerThreads.forEach(Thread::start);
+        readerThreads.forEach(Thread::start);
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : writerThreads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        writing.set(false);
+        for (Thread thread : readerThreads) {
+            thread.join();
+        }
+
+        Expected expected = new Expected(manufacturerCount);
+        for (Expected result : results) {
+            if (result != null) {
+                expected.add(result);
+            }
+        }
+        verify(expected);
+
+        long added = (long) writers * modelsPerWriter;
+        System.out.printf("%d writers added %d car models to %d manufacturers in %.2f s (%.0f car models/s)%n",
+                writers, added, manufacturerCount, seconds, added / seconds);
+        System.out.printf("%d readers ran %d rounds of checks meanwhile%n", readers, readerChecks.sum());
+        if (failures.isEmpty()) {
+            System.out.println("All checks passed");
+            return true;
+        }
+        System.out.println(failures.size() + " checks failed:");
+        failures.forEach(System.out::println);
+        return false;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ReportingStress stress = new ReportingStress();
+        try {
+            stress.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+        if (!stress.run()) {
+            System.exit(1);
+        }
+    }
+}
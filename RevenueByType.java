@@ -0,0 +1,12 @@
+/**
+ * The {@code RevenueByType} record holds a manufacturer's sales figures for one car type.
+ *
+ * @param manufacturer  the name of the manufacturer
+ * @param carType       the car type
+ * @param revenue       the total revenue for the car type in GBP
+ * @param unitsSold     the total number of units sold of the car type
+ * @param carModelCount the number of car models of the car type
+ */
+// RevenueByType record is the result of a revenue by type query
+public record RevenueByType(String manufacturer, CarType carType, double revenue, long unitsSold, int carModelCount) {
+}
@@ -0,0 +1,76 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The {@code RevenueRanking} class keeps manufacturers sorted by their revenue for one car type.
+ * <p>
+ * When a manufacturer's revenue changes its entry is removed and re-inserted, so the manufacturer
+ * with the highest revenue can be read in O(log m) instead of recalculating every manufacturer.
+ * Ties are won by the manufacturer that was added first, the same as a loop with a strict comparison.
+ * The ranking is not thread-safe; {@code Reporting} only uses it while holding its rollup lock.
+ * </p>
+ */
+// RevenueRanking class orders manufacturers by revenue for a single car type
+class RevenueRanking {
+    // Entry class records the revenue a manufacturer was ranked with
+    private static final class Entry implements Comparable<Entry> {
+        private final Manufacturer manufacturer;
+        private final int order;
+        private final double revenue;
+
+        Entry(Manufacturer manufacturer, int order, double revenue) {
+            this.manufacturer = manufacturer;
+            this.order = order;
+            this.revenue = revenue;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byRevenue = Double.compare(revenue, other.revenue);
+            if (byRevenue != 0) {
+                return byRevenue;
+            }
+            // the earlier manufacturer sorts last so it is returned on a tie
+            return Integer.compare(other.order, order);
+        }
+    }
+
+    private final TreeSet<Entry> ranking = new TreeSet<>();
+    private final Map<Manufacturer, Entry> entries = new HashMap<>();
+
+    /**
+     * Records the current revenue of a manufacturer, replacing any earlier value.
+     *
+     * @param manufacturer the manufacturer
+     * @param order        the position the manufacturer was added in, used to break ties
+     * @param revenue      the manufacturer's revenue for this ranking's car type
+     */
+    // Method to insert or move a manufacturer in the ranking
+    void update(Manufacturer manufacturer, int order, double revenue) {
+        Entry previous = entries.get(manufacturer);
+        if (previous != null) {
+            if (previous.revenue == revenue) {
+                return;
+            }
+            ranking.remove(previous);
+        }
+        Entry entry = new Entry(manufacturer, order, revenue);
+        ranking.add(entry);
+        entries.put(manufacturer, entry);
+    }
+
+    /**
+     * Returns the manufacturer with the highest revenue.
+     *
+     * @return the top manufacturer, or {@code null} if no manufacturer has a revenue above zero
+     */
+    // Method to get the manufacturer with the highest revenue
+    Manufacturer top() {
+        if (ranking.isEmpty()) {
+            return null;
+        }
+        Entry top = ranking.last();
+        return top.revenue > 0.0 ? top.manufacturer : null;
+    }
+}
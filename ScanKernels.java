@@ -0,0 +1,128 @@
+/**
+ * The {@code ScanKernels} class holds the inner loops of the reports that scan whole primitive columns:
+ * revenue for a car type, the car models above a price and the most expensive car model.
+ * <p>
+ * This class runs them one row at a time. When the JDK Vector API is available, {@link #get()} returns
+ * {@code VectorScanKernels} instead, which runs the same loops over several rows per instruction. The
+ * Vector API is an incubator module, so it is only used when the program is started with
+ * {@code --add-modules jdk.incubator.vector}; otherwise these scalar kernels are used. The choice can be
+ * forced with the system property {@code -Dscan.kernels=scalar}.
+ * </p>
+ * <p>
+ * Both kernels give the same results: the same rows in the same order, and revenue added up with the
+ * same compensated summation, so it stays within a rounding of the running totals.
+ * </p>
+ */
+// ScanKernels class runs the column scans one row at a time, and picks the fastest kernels available
+class ScanKernels {
+    private static final ScanKernels SCALAR = new ScanKernels();
+    private static final ScanKernels VECTOR = loadVectorKernels();
+    private static final ScanKernels SELECTED =
+            "scalar".equals(System.getProperty("scan.kernels")) || VECTOR == null ? SCALAR : VECTOR;
+
+    // Constructor, subclasses replace the loops
+    ScanKernels() {
+    }
+
+    /**
+     * Returns the kernels used by the reports: the vector kernels when the Vector API is available,
+     * unless {@code -Dscan.kernels=scalar} is set, and the scalar kernels otherwise.
+     *
+     * @return the kernels to scan with
+     */
+    // Getter methods for the selected, scalar and vector kernels
+    static ScanKernels get() {
+        return SELECTED;
+    }
+
+    static ScanKernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Returns the vector kernels, or {@code null} if the Vector API is not available.
+     *
+     * @return the vector kernels, or {@code null}
+     */
+    static ScanKernels vector() {
+        return VECTOR;
+    }
+
+    // Method to load the vector kernels by name, so this class runs without the incubator module
+    private static ScanKernels loadVectorKernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (ScanKernels) Class.forName("VectorScanKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            // not compiled in, or no vector registers wide enough to be worth it
+            return null;
+        }
+    }
+
+    // Getter method for the name shown by benchmarks
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * Adds the revenue of every car model of a car type in a run of rows to a running total.
+     *
+     * @param prices   the price column
+     * @param nSold    the units sold column
+     * @param types    the car type code column
+     * @param from     the first row to scan
+     * @param to       the row after the last row to scan
+     * @param typeCode the code of the car type to add up
+     * @param revenue  the total to add the revenue to
+     */
+    // Method to add up price times units sold over the rows of one car type
+    void addRevenueByType(double[] prices, int[] nSold, byte[] types, int from, int to, byte typeCode, CompensatedSum revenue) {
+        for (int row = from; row < to; row++) {
+            if (types[row] == typeCode) {
+                revenue.add(prices[row] * nSold[row]);
+            }
+        }
+    }
+
+    /**
+     * Finds the rows in a run whose price is greater than a threshold.
+     *
+     * @param prices the price column
+     * @param from   the first row to scan
+     * @param to     the row after the last row to scan
+     * @param price  the price threshold
+     * @param rows   receives the matching rows in order, must have room for {@code to - from} rows
+     * @return the number of rows found
+     */
+    // Method to collect the rows priced above a threshold
+    int rowsAbovePrice(double[] prices, int from, int to, double price, int[] rows) {
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            if (prices[row] > price) {
+                rows[count++] = row;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the row with the highest price in a run, the first one if several share it.
+     *
+     * @param prices the price column
+     * @param from   the first row to scan
+     * @param to     the row after the last row to scan, greater than {@code from}
+     * @return the row of the most expensive car model
+     */
+    // Method to find the row with the highest price
+    int mostExpensiveRow(double[] prices, int from, int to) {
+        int bestRow = from;
+        for (int row = from + 1; row < to; row++) {
+            if (prices[row] > prices[bestRow]) {
+                bestRow = row;
+            }
+        }
+        return bestRow;
+    }
+}
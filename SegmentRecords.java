@@ -0,0 +1,264 @@
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code SegmentRecords} class keeps car model records and names in native memory with the Foreign Memory API.
+ * <p>
+ * Each car model is a 32 byte record: its price, weight, units sold, name id and car type code at fixed
+ * offsets. Names are kept once each as UTF-8 bytes in a string area, with the offset of each name and an
+ * open-addressing hash table of name ids, all in native memory, so neither the records nor the names add
+ * objects for the garbage collector to trace. Only the handful of objects pointing at the memory stay on the heap.
+ * </p>
+ * <p>
+ * Memory is allocated from automatic arenas, one per allocation. When the records or the string area grow,
+ * they are copied into a larger allocation and the old one is freed once no reader holds it any more, the
+ * same way the on-heap arrays are left to the garbage collector.
+ * </p>
+ * <p>
+ * This class uses the final Foreign Memory API of JDK 22. It only uses calls that are the same in the preview
+ * API of JDK 21, so it also compiles and runs there with {@code --enable-preview}.
+ * </p>
+ */
+// SegmentRecords class stores car model records and names in native memory segments
+final class SegmentRecords implements OffHeapRecords {
+    // layout of a record, offsets in bytes
+    private static final long PRICE = 0;
+    private static final long WEIGHT = 8;
+    private static final long N_SOLD = 16;
+    private static final long NAME_ID = 20;
+    private static final long TYPE = 24;
+    private static final long RECORD_BYTES = 32;
+
+    private static final int DEFAULT_NAMES = 64;
+    private static final int BYTES_PER_NAME = 16;
+
+    // Names class holds one generation of the string area, replaced as a whole when either part grows
+    private static final class Names {
+        // name i is bytes[offsets[i]] up to bytes[offsets[i + 1]], offsets are longs
+        private final MemorySegment bytes;
+        private final MemorySegment offsets;
+
+        Names(MemorySegment bytes, MemorySegment offsets) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+        }
+    }
+
+    private volatile MemorySegment records;
+    private volatile Names names;
+    private int nameCount;
+    private long nameBytesUsed;
+
+    // slots hold a name id plus one, 0 marks an empty slot; kept at most half full, only used by the writer
+    private MemorySegment slots;
+    private int mask;
+    // hash of each name by id, so rehashing does not hash the bytes again
+    private MemorySegment hashes;
+
+    /**
+     * Constructs empty records with room for {@code capacity} car models before growing.
+     *
+     * @param capacity the initial number of records
+     */
+    // Constructor, called by name from CarModelStorage
+    SegmentRecords(int capacity) {
+        this.records = allocate(Math.max(capacity, 1) * RECORD_BYTES);
+        this.names = new Names(allocate((long) DEFAULT_NAMES * BYTES_PER_NAME), allocate((DEFAULT_NAMES + 1) * Long.BYTES));
+        this.slots = allocate(DEFAULT_NAMES * 2L * Integer.BYTES);
+        this.mask = DEFAULT_NAMES * 2 - 1;
+        this.hashes = allocate(DEFAULT_NAMES * (long) Integer.BYTES);
+    }
+
+    // Method to allocate zeroed native memory that is freed once it is no longer reachable
+    private static MemorySegment allocate(long bytes) {
+        return Arena.ofAuto().allocate(bytes, Long.BYTES);
+    }
+
+    @Override
+    public void set(int row, int nameId, double weight, double price, int units, byte typeCode) {
+        MemorySegment current = records;
+        long offset = row * RECORD_BYTES;
+        if (offset + RECORD_BYTES > current.byteSize()) {
+            // readers still holding the old records keep seeing the same rows, so they are copied rather than moved
+            MemorySegment grown = allocate(Math.max(offset + RECORD_BYTES, current.byteSize() * 2));
+            MemorySegment.copy(current, 0, grown, 0, offset);
+            records = grown;
+            current = grown;
+        }
+        current.set(ValueLayout.JAVA_DOUBLE, offset + PRICE, price);
+        current.set(ValueLayout.JAVA_DOUBLE, offset + WEIGHT, weight);
+        current.set(ValueLayout.JAVA_INT, offset + N_SOLD, units);
+        current.set(ValueLayout.JAVA_INT, offset + NAME_ID, nameId);
+        current.set(ValueLayout.JAVA_BYTE, offset + TYPE, typeCode);
+    }
+
+    @Override
+    public int nameId(int row) {
+        return records.get(ValueLayout.JAVA_INT, row * RECORD_BYTES + NAME_ID);
+    }
+
+    @Override
+    public double weight(int row) {
+        return records.get(ValueLayout.JAVA_DOUBLE, row * RECORD_BYTES + WEIGHT);
+    }
+
+    @Override
+    public double price(int row) {
+        return records.get(ValueLayout.JAVA_DOUBLE, row * RECORD_BYTES + PRICE);
+    }
+
+    @Override
+    public int nSold(int row) {
+        return records.get(ValueLayout.JAVA_INT, row * RECORD_BYTES + N_SOLD);
+    }
+
+    @Override
+    public byte type(int row) {
+        return records.get(ValueLayout.JAVA_BYTE, row * RECORD_BYTES + TYPE);
+    }
+
+    @Override
+    public void setNSold(int row, int nSold) {
+        records.set(ValueLayout.JAVA_INT, row * RECORD_BYTES + N_SOLD, nSold);
+    }
+
+    @Override
+    public void setPrice(int row, double price) {
+        records.set(ValueLayout.JAVA_DOUBLE, row * RECORD_BYTES + PRICE, price);
+    }
+
+    @Override
+    public void copyRows(int from, int to, double[] prices, double[] weights, int[] nSold, byte[] types) {
+        MemorySegment current = records;
+        long offset = from * RECORD_BYTES;
+        for (int i = 0; i < to - from; i++, offset += RECORD_BYTES) {
+            prices[i] = current.get(ValueLayout.JAVA_DOUBLE, offset + PRICE);
+            weights[i] = current.get(ValueLayout.JAVA_DOUBLE, offset + WEIGHT);
+            nSold[i] = current.get(ValueLayout.JAVA_INT, offset + N_SOLD);
+            types[i] = current.get(ValueLayout.JAVA_BYTE, offset + TYPE);
+        }
+    }
+
+    @Override
+    public int intern(byte[] buffer, int from, int to) {
+        int hash = hash(buffer, from, to);
+        Names current = names;
+        MemorySegment name = MemorySegment.ofArray(buffer);
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots.getAtIndex(ValueLayout.JAVA_INT, slot);
+            if (entry == 0) {
+                return add(buffer, from, to, slot, hash);
+            }
+            int id = entry - 1;
+            if (hashes.getAtIndex(ValueLayout.JAVA_INT, id) == hash) {
+                long start = current.offsets.getAtIndex(ValueLayout.JAVA_LONG, id);
+                long end = current.offsets.getAtIndex(ValueLayout.JAVA_LONG, id + 1);
+                if (MemorySegment.mismatch(current.bytes, start, end, name, from, to) < 0) {
+                    return id;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public String name(int nameId) {
+        if (nameId == StringDictionary.NULL_ID) {
+            return null;
+        }
+        Names current = names;
+        long start = current.offsets.getAtIndex(ValueLayout.JAVA_LONG, nameId);
+        byte[] bytes = new byte[(int) (current.offsets.getAtIndex(ValueLayout.JAVA_LONG, nameId + 1) - start)];
+        MemorySegment.copy(current.bytes, ValueLayout.JAVA_BYTE, start, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int distinctNames() {
+        return nameCount;
+    }
+
+    @Override
+    public void clearNames() {
+        slots.fill((byte) 0);
+        nameCount = 0;
+        nameBytesUsed = 0;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        Names current = names;
+        return records.byteSize() + current.bytes.byteSize() + current.offsets.byteSize() + slots.byteSize() + hashes.byteSize();
+    }
+
+    // Method to append a new name to the string area and the hash table
+    private int add(byte[] buffer, int from, int to, int slot, int hash) {
+        int length = to - from;
+        Names current = names;
+        if (nameBytesUsed + length > current.bytes.byteSize()
+                || (nameCount + 2L) * Long.BYTES > current.offsets.byteSize()) {
+            current = grow(length);
+        }
+        int id = nameCount;
+        if ((id + 1L) * Integer.BYTES > hashes.byteSize()) {
+            MemorySegment grown = allocate(hashes.byteSize() * 2);
+            MemorySegment.copy(hashes, 0, grown, 0, hashes.byteSize());
+            hashes = grown;
+        }
+        hashes.setAtIndex(ValueLayout.JAVA_INT, id, hash);
+        MemorySegment.copy(buffer, from, current.bytes, ValueLayout.JAVA_BYTE, nameBytesUsed, length);
+        nameBytesUsed += length;
+        current.offsets.setAtIndex(ValueLayout.JAVA_LONG, id + 1, nameBytesUsed);
+        nameCount = id + 1;
+        if (nameCount * 2L > mask + 1L) {
+            rehash();
+        } else {
+            slots.setAtIndex(ValueLayout.JAVA_INT, slot, id + 1);
+        }
+        return id;
+    }
+
+    // Method to enlarge whichever part of the string area is full, at least doubling it
+    private Names grow(int length) {
+        Names old = names;
+        MemorySegment bytes = old.bytes;
+        if (nameBytesUsed + length > bytes.byteSize()) {
+            bytes = allocate(Math.max(nameBytesUsed + length, bytes.byteSize() * 2));
+            MemorySegment.copy(old.bytes, 0, bytes, 0, nameBytesUsed);
+        }
+        MemorySegment offsets = old.offsets;
+        if ((nameCount + 2L) * Long.BYTES > offsets.byteSize()) {
+            offsets = allocate(offsets.byteSize() * 2);
+            MemorySegment.copy(old.offsets, 0, offsets, 0, (nameCount + 1L) * Long.BYTES);
+        }
+        Names grown = new Names(bytes, offsets);
+        names = grown;
+        return grown;
+    }
+
+    // Method to double the hash table and place every name again
+    private void rehash() {
+        int capacity = (mask + 1) * 2;
+        slots = allocate(capacity * (long) Integer.BYTES);
+        mask = capacity - 1;
+        for (int id = 0; id < nameCount; id++) {
+            int slot = hashes.getAtIndex(ValueLayout.JAVA_INT, id) & mask;
+            while (slots.getAtIndex(ValueLayout.JAVA_INT, slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots.setAtIndex(ValueLayout.JAVA_INT, slot, id + 1);
+        }
+    }
+
+    // Method to hash a run of bytes the way StringDictionary does
+    private static int hash(byte[] buffer, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + buffer[i];
+        }
+        return h ^ (h >>> 16) ^ (h >>> 7);
+    }
+}
@@ -0,0 +1,304 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code ShardBenchmark} class measures how loading and querying a catalogue scale with the number of shards.
+ * <p>
+ * A synthetic catalogue is written out as a CSV file. For each shard count, that many {@code ShardWorker}
+ * processes are started on this machine with the same Java and class path as the benchmark, and a
+ * {@code ShardCoordinator} connects to them over loopback sockets. The catalogue is loaded through the
+ * coordinator and timed, and the merged results of every query are checked against a single {@code Reporting}
+ * system holding the whole catalogue. Then concurrent clients, each on its own virtual thread, send a mix of
+ * price threshold, most expensive, revenue by type and top car model queries for a fixed time, and the run
+ * reports the query throughput and latency percentiles. The workers are shut down before the next shard count.
+ * </p>
+ * <p>
+ * Each worker holds a share of the catalogue and answers with its own cores, so on a machine with enough cores
+ * both the load and the scans behind the queries speed up with more shards, until the coordinator's fan-out and
+ * merging cost more than they save. The workers cache repeated reports as a single system does.
+ * </p>
+ * <p>
+ * Usage: {@code java ShardBenchmark [--shards 1,2,4] [--models 1000000] [--manufacturers 200] [--clients 16]
+ * [--seconds 5] [--worker-heap 1g] [--storage heap] [--verify true] [--seed 42]}. The process exits with
+ * status 1 if any merged result differs from the single system's.
+ * </p>
+ */
+// ShardBenchmark class runs shard workers as local processes and measures load time and query throughput
+public class ShardBenchmark {
+    private static final String LISTENING = "Shard worker listening on port ";
+
+    private int[] shardCounts = {1, 2, 4};
+    private int models = 1_000_000;
+    private int manufacturers = 200;
+    private int clients = 16;
+    private double seconds = 5;
+    private String workerHeap = "1g";
+    private CarModelStorage storage = CarModelStorage.HEAP;
+    private boolean verify = true;
+    private long seed = 42;
+
+    // Method to parse the command line options
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--shards" -> shardCounts = Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+                case "--models" -> models = Integer.parseInt(value);
+                case "--manufacturers" -> manufacturers = Math.max(1, Integer.parseInt(value));
+                case "--clients" -> clients = Math.max(1, Integer.parseInt(value));
+                case "--seconds" -> seconds = Double.parseDouble(value);
+                case "--worker-heap" -> workerHeap = value;
+                case "--storage" -> {
+                    storage = CarModelStorage.parse(value);
+                    if (storage == null) {
+                        throw new IllegalArgumentException("Unknown storage " + value + ", expected heap or off-heap");
+                    }
+                }
+                case "--verify" -> verify = Boolean.parseBoolean(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        for (int shards : shardCounts) {
+            if (shards < 1) {
+                throw new IllegalArgumentException("Shard counts must be at least 1, got " + shards);
+            }
+        }
+    }
+
+    // Method to write a synthetic catalogue as a CSV file
+    private Path catalogueCsv() throws IOException {
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(models, manufacturers, new double[]{1, 1, 1},
+                SyntheticCatalogue.PriceDistribution.UNIFORM, 5_000, 150_000, seed);
+        Path file = Files.createTempFile("shards", ".csv");
+        StringBuilder line = new StringBuilder();
+        try (OutputStream csv = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            for (int i = 0; i < models; i++) {
+                CarModel model = catalogue.carModel(i);
+                line.setLength(0);
+                line.append(catalogue.manufacturerName(catalogue.manufacturer(i))).append(',').append(model.getName()).append(',')
+                        .append(model.getWeight()).append(',').append(model.getSales_price()).append(',')
+                        .append(model.getNSold()).append(',').append(model.getType()).append('\n');
+                csv.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return file;
+    }
+
+    // Method to start a worker process and read the port it listens on
+    private Process startWorker(List<InetSocketAddress> addresses) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-Xmx" + workerHeap);
+        // the same module options as this JVM, and --enable-preview on JDK 21, so off-heap storage and vector
+        // kernels work the same
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (option.equals("--enable-preview") || option.startsWith("--add-modules") || option.startsWith("-D")) {
+                command.add(option);
+            }
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "ShardWorker",
+                "--port", "0", "--storage", storage.name()));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine();
+        if (line == null || !line.startsWith(LISTENING)) {
+            process.destroy();
+            throw new IOException("Shard worker did not start: " + line);
+        }
+        addresses.add(new InetSocketAddress("127.0.0.1", Integer.parseInt(line.substring(LISTENING.length()).trim())));
+        // pass on anything else the worker prints
+        Thread.ofVirtual().start(() -> out.lines().forEach(text -> System.out.println("worker " + process.pid() + ": " + text)));
+        return process;
+    }
+
+    // Method to compare every merged report with the single system's, printing each difference
+    private static boolean verify(ShardCoordinator coordinator, Reporting reference) throws IOException {
+        List<String> differences = new ArrayList<>();
+        check(differences, "car model count", reference.getCarModelCount(), coordinator.getCarModelCount());
+        check(differences, "manufacturer count", reference.getManufacturers().size(), coordinator.getManufacturerCount());
+
+        MostExpensiveResult expected = reference.getMostExpensiveCarModelSold();
+        MostExpensiveResult actual = coordinator.getMostExpensiveCarModelSold();
+        check(differences, "most expensive price", expected == null ? null : expected.carModel().getSales_price(),
+                actual == null ? null : actual.carModel().getSales_price());
+
+        for (double price : new double[]{0, 50_000, 149_000}) {
+            check(differences, "count above " + price, (long) reference.getCarModelsAbovePrice(price).size(),
+                    coordinator.countCarModelsAbovePrice(price));
+            List<CarModel> above = reference.getCarModelsAbovePrice(price);
+            check(differences, "cheapest above " + price, prices(above.subList(0, Math.min(20, above.size()))),
+                    prices(coordinator.getCarModelsAbovePrice(price, 20)));
+        }
+
+        for (CarType type : CarType.values()) {
+            double total = reference.getTotalRevenueByType(type);
+            double merged = coordinator.getTotalRevenueByType(type);
+            // the shards add their totals in a different order, so the last bits may differ
+            if (Math.abs(total - merged) > 1e-9 * Math.abs(total)) {
+                differences.add("total revenue for " + type + ": expected " + total + ", got " + merged);
+            }
+            Manufacturer highest = reference.getManufacturerWithHighestRevenueByType(type);
+            RevenueByType mergedHighest = coordinator.getManufacturerWithHighestRevenueByType(type);
+            check(differences, "highest revenue for " + type, highest == null ? null : highest.getMname(),
+                    mergedHighest == null ? null : mergedHighest.manufacturer());
+            check(differences, "manufacturers with revenue for " + type, (long) reference.getRevenueByType(type).size(),
+                    (long) coordinator.getRevenueByType(type).size());
+            for (RankBy rankBy : RankBy.values()) {
+                check(differences, "top 10 by " + rankBy + " for " + type, scores(reference.getTopCarModels(10, rankBy, type)),
+                        scores(coordinator.getTopCarModels(10, rankBy, type)));
+            }
+        }
+        differences.forEach(difference -> System.out.println("  Mismatch: " + difference));
+        return differences.isEmpty();
+    }
+
+    // Method to record a difference between an expected and a merged value
+    private static void check(List<String> differences, String what, Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            differences.add(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    // Method to list the prices of car models, to compare lists whose equal prices may come in another order
+    private static List<Double> prices(List<CarModel> models) {
+        return models.stream().map(CarModel::getSales_price).toList();
+    }
+
+    // Method to list the scores of ranked car models
+    private static List<Double> scores(List<RankedCarModel> ranked) {
+        return ranked.stream().map(RankedCarModel::score).toList();
+    }
+
+    // Method to run one query of the mix a client sends
+    private static void query(ShardCoordinator coordinator, SplittableRandom random) throws IOException {
+        int pick = random.nextInt(100);
+        CarType type = CarType.fromCode((byte) random.nextInt(CarType.values().length));
+        if (pick < 40) {
+            coordinator.getCarModelsAbovePrice(5_000 + random.nextInt(145_000), 20);
+        } else if (pick < 60) {
+            coordinator.getMostExpensiveCarModelSold();
+        } else if (pick < 80) {
+            coordinator.getTotalRevenueByType(type);
+        } else {
+            RankBy rankBy = RankBy.values()[random.nextInt(RankBy.values().length)];
+            coordinator.getTopCarModels(10, rankBy, random.nextBoolean() ? type : null);
+        }
+    }
+
+    // Method to run every client for the set time, returning the queries per second and recording their latencies
+    private double throughput(ShardCoordinator coordinator, LatencyHistogram latencies) throws InterruptedException {
+        LongAdder errors = new LongAdder();
+        CountDownLatch done = new CountDownLatch(clients);
+        long begin = System.nanoTime();
+        long deadline = begin + (long) (seconds * 1e9);
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                SplittableRandom random = new SplittableRandom(seed * 31 + c);
+                threads.execute(() -> {
+                    try {
+                        for (long now = System.nanoTime(); now < deadline; ) {
+                            query(coordinator, random);
+                            long end = System.nanoTime();
+                            latencies.record(end - now);
+                            now = end;
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        errors.increment();
+                        System.out.println("Query failed: " + e);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+        if (errors.sum() > 0) {
+            System.out.println(errors.sum() + " clients stopped on an error.");
+        }
+        return latencies.count() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    // Method to measure one shard count and print a line of results, returning false if a merged result differs
+    private boolean measure(Path csv, int shards, Reporting reference) throws IOException, InterruptedException {
+        List<Process> workers = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        try {
+            for (int i = 0; i < shards; i++) {
+                workers.add(startWorker(addresses));
+            }
+            boolean verified = true;
+            try (ShardCoordinator coordinator = new ShardCoordinator(addresses)) {
+                CatalogueLoader.LoadResult loaded = coordinator.load(csv);
+                if (reference != null) {
+                    verified = verify(coordinator, reference);
+                }
+                LatencyHistogram latencies = new LatencyHistogram();
+                double queriesPerSecond = throughput(coordinator, latencies);
+                System.out.printf(Locale.ROOT, "%6d %10.2f %12.0f %12.0f %10.3f %10.3f %10.3f %10s%n", shards,
+                        loaded.getSeconds(), loaded.getRowsPerSecond(), queriesPerSecond, latencies.percentile(50) / 1e6,
+                        latencies.percentile(99) / 1e6, latencies.max() / 1e6, reference == null ? "-" : verified ? "yes" : "NO");
+                coordinator.shutdown();
+            }
+            for (Process worker : workers) {
+                worker.waitFor();
+            }
+            return verified;
+        } finally {
+            workers.forEach(Process::destroy);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ShardBenchmark benchmark = new ShardBenchmark();
+        try {
+            benchmark.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+        Path csv = benchmark.catalogueCsv();
+        boolean verified = true;
+        try {
+            Reporting reference = null;
+            if (benchmark.verify) {
+                reference = new Reporting();
+                CatalogueLoader.load(csv, reference);
+            }
+            System.out.printf(Locale.ROOT, "%d car models of %d manufacturers, %d clients for %.1f s per shard count, %d cores%n",
+                    benchmark.models, benchmark.manufacturers, benchmark.clients, benchmark.seconds,
+                    Runtime.getRuntime().availableProcessors());
+            System.out.printf(Locale.ROOT, "%6s %10s %12s %12s %10s %10s %10s %10s%n", "Shards", "Load (s)", "Load rows/s",
+                    "Queries/s", "p50 (ms)", "p99 (ms)", "Max (ms)", "Verified");
+            for (int shards : benchmark.shardCounts) {
+                verified &= benchmark.measure(csv, shards, reference);
+            }
+        } finally {
+            Files.delete(csv);
+        }
+        if (!verified) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,744 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * The {@code ShardCoordinator} class runs reports over a catalogue split across several {@code ShardWorker} processes.
+ * <p>
+ * Manufacturers are partitioned by a hash of their canonical name, so every car model of a manufacturer is held by
+ * the same shard and each shard's reports are complete for its manufacturers. A query is sent to every shard at
+ * once, each on its own virtual thread, and the partial results are merged: counts and revenue totals are added,
+ * the most expensive car model and the manufacturer with the highest revenue are the largest of the shards',
+ * and lists of the cheapest or top car models are merged from each shard's own first {@code k}, which always
+ * hold the overall first {@code k}. Car models in the results are standalone copies, not views over the data.
+ * </p>
+ * <p>
+ * Where two shards hold car models or manufacturers that tie, the one in the lower numbered shard comes first,
+ * rather than the one added first as in a single {@code Reporting} system. Each shard is reached over a pool of
+ * connections that grows to the number of concurrent queries, so callers on many threads do not queue behind
+ * each other.
+ * </p>
+ */
+// ShardCoordinator class fans reports out to the shard workers and merges their partial results
+public class ShardCoordinator implements AutoCloseable {
+    // CSV lines are sent to each shard in chunks of about this many bytes
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int READ_BUFFER = 1 << 20;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    // Connection class is one socket to a worker, used by one query at a time
+    private static final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing more to do with a connection that failed to close
+            }
+        }
+    }
+
+    // Exchange interface writes one request and reads its reply, after the status byte
+    private interface Exchange<T> {
+        void request(DataOutputStream out) throws IOException;
+
+        T reply(DataInputStream in) throws IOException;
+    }
+
+    private final List<InetSocketAddress> shards;
+    private final List<ConcurrentLinkedDeque<Connection>> idle;
+    private final ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean closed;
+
+    /**
+     * Constructs a coordinator over running workers, checking that each one can be reached.
+     *
+     * @param shards the address of each worker, in shard order
+     * @throws IllegalArgumentException if no workers are given
+     * @throws IOException              if a worker cannot be reached
+     */
+    // Constructor
+    public ShardCoordinator(List<InetSocketAddress> shards) throws IOException {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A sharded catalogue needs at least one shard.");
+        }
+        this.shards = List.copyOf(shards);
+        this.idle = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            ConcurrentLinkedDeque<Connection> pool = new ConcurrentLinkedDeque<>();
+            pool.push(new Connection(shards.get(i)));
+            idle.add(pool);
+        }
+    }
+
+    // Getter method for the number of shards
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Returns the shard holding a manufacturer: a hash of the UTF-8 bytes of its canonical name.
+     *
+     * @param manufacturer the manufacturer name
+     * @return the shard, from 0 to one less than the number of shards
+     */
+    // Method to find the shard of a manufacturer name
+    public int shardOf(String manufacturer) {
+        byte[] bytes = ManufacturerIndex.canonical(manufacturer).getBytes(StandardCharsets.UTF_8);
+        return shardOf(hash(bytes, 0, bytes.length));
+    }
+
+    // Method to turn the hash of a canonical name into a shard
+    private int shardOf(int hash) {
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    // Method to hash a run of bytes, the same for a name read from a file and one given as a String
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    /**
+     * Loads a CSV catalogue file, sending each line to the shard of its manufacturer.
+     * <p>
+     * Lines are routed by their first field without being parsed any further, and sent in chunks of about
+     * {@value #CHUNK_BYTES} bytes that each worker loads with {@code CatalogueLoader} while the file is still
+     * being read. Error messages start with the shard that rejected the line, and their line numbers count
+     * from the start of the chunk.
+     * </p>
+     *
+     * @param file the CSV file
+     * @return the rows loaded and rejected by every shard
+     * @throws IOException if the file cannot be read or a worker fails
+     */
+    // Method to load a catalogue file across the shards
+    public CatalogueLoader.LoadResult load(Path file) throws IOException {
+        long start = System.nanoTime();
+        int n = shards.size();
+        byte[][] chunks = new byte[n][CHUNK_BYTES + 4096];
+        int[] used = new int[n];
+        List<Future<CatalogueLoader.LoadResult>> pending = new ArrayList<>(Collections.nCopies(n, null));
+        long[] totals = new long[2];
+        List<String> errors = new ArrayList<>();
+
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[READ_BUFFER];
+            int filled = 0;
+            boolean first = true;
+            while (true) {
+                int read = in.read(buffer, filled, buffer.length - filled);
+                boolean end = read < 0;
+                filled += Math.max(read, 0);
+                int lineStart = 0;
+                while (true) {
+                    int newline = indexOf(buffer, (byte) '\n', lineStart, filled);
+                    if (newline < 0 && !(end && lineStart < filled)) {
+                        break;
+                    }
+                    int lineEnd = newline < 0 ? filled : newline + 1;
+                    // the header line is not sent, every chunk is loaded as lines of data
+                    boolean header = first && startsWithIgnoreCase(buffer, lineStart, lineEnd, "manufacturer");
+                    first = false;
+                    if (!header) {
+                        int shard = shardOfLine(buffer, lineStart, lineEnd);
+                        int length = lineEnd - lineStart;
+                        if (used[shard] + length + 1 > chunks[shard].length) {
+                            chunks[shard] = Arrays.copyOf(chunks[shard], Math.max(chunks[shard].length * 2, used[shard] + length + 1));
+                        }
+                        System.arraycopy(buffer, lineStart, chunks[shard], used[shard], length);
+                        used[shard] += length;
+                        if (buffer[lineEnd - 1] != '\n') {
+                            chunks[shard][used[shard]++] = '\n';
+                        }
+                        if (used[shard] >= CHUNK_BYTES) {
+                            send(shard, Arrays.copyOf(chunks[shard], used[shard]), pending, totals, errors);
+                            used[shard] = 0;
+                        }
+                    }
+                    lineStart = lineEnd;
+                }
+                if (end) {
+                    break;
+                }
+                // keep the start of a line cut off by the end of the buffer, growing the buffer for a very long line
+                System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                filled -= lineStart;
+                if (filled == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        }
+        for (int shard = 0; shard < n; shard++) {
+            if (used[shard] > 0) {
+                send(shard, Arrays.copyOf(chunks[shard], used[shard]), pending, totals, errors);
+            }
+            collect(shard, pending, totals, errors);
+        }
+        return new CatalogueLoader.LoadResult(totals[0], totals[1], errors, System.nanoTime() - start);
+    }
+
+    // Method to send a chunk to a shard once its previous chunk has been loaded, so one chunk per shard is in flight
+    private void send(int shard, byte[] chunk, List<Future<CatalogueLoader.LoadResult>> pending,
+                      long[] totals, List<String> errors) throws IOException {
+        collect(shard, pending, totals, errors);
+        pending.set(shard, fanOut.submit(() -> call(shard, new Exchange<CatalogueLoader.LoadResult>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.LOAD);
+                out.writeInt(chunk.length);
+                out.write(chunk);
+            }
+
+            @Override
+            public CatalogueLoader.LoadResult reply(DataInputStream in) throws IOException {
+                long loaded = in.readLong();
+                long rejected = in.readLong();
+                List<String> messages = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    messages.add("shard " + shard + ": " + in.readUTF());
+                }
+                return new CatalogueLoader.LoadResult(loaded, rejected, messages, 0);
+            }
+        })));
+    }
+
+    // Method to wait for the chunk in flight to a shard and add up its outcome
+    private static void collect(int shard, List<Future<CatalogueLoader.LoadResult>> pending,
+                                long[] totals, List<String> errors) throws IOException {
+        Future<CatalogueLoader.LoadResult> future = pending.set(shard, null);
+        if (future == null) {
+            return;
+        }
+        CatalogueLoader.LoadResult result = await(future);
+        totals[0] += result.getRowsLoaded();
+        totals[1] += result.getRowsRejected();
+        for (String error : result.getErrors()) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    // Method to find the shard of a CSV line from its first field, without decoding ASCII names
+    private int shardOfLine(byte[] line, int from, int to) {
+        int end = from;
+        if (from < to && line[from] == '"') {
+            // a quoted name ends at a quote that is not doubled
+            boolean escaped = false;
+            end = ++from;
+            while (end < to) {
+                if (line[end] != '"') {
+                    end++;
+                } else if (end + 1 < to && line[end + 1] == '"') {
+                    escaped = true;
+                    end += 2;
+                } else {
+                    break;
+                }
+            }
+            if (escaped) {
+                return shardOf(new String(line, from, end - from, StandardCharsets.UTF_8).replace("\"\"", "\""));
+            }
+        } else {
+            while (end < to && line[end] != ',' && line[end] != '\n' && line[end] != '\r') {
+                end++;
+            }
+        }
+        // trim and lower-case ASCII in place of ManufacturerIndex.canonical, which gives the same bytes
+        int first = from;
+        int last = end;
+        while (first < last && (line[first] & 0xff) <= ' ') {
+            first++;
+        }
+        while (last > first && (line[last - 1] & 0xff) <= ' ') {
+            last--;
+        }
+        int h = 1;
+        for (int i = first; i < last; i++) {
+            byte b = line[i];
+            if (b < 0) {
+                // a multi-byte character, lower-cased the way String does
+                return shardOf(new String(line, from, end - from, StandardCharsets.UTF_8));
+            }
+            h = 31 * h + (b >= 'A' && b <= 'Z' ? b | 0x20 : b);
+        }
+        return shardOf(h);
+    }
+
+    // Method to find a byte in part of a buffer
+    private static int indexOf(byte[] buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Method to check whether part of a buffer starts with an ASCII word, ignoring case
+    private static boolean startsWithIgnoreCase(byte[] buffer, int from, int to, String word) {
+        if (to - from < word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if ((buffer[from + i] | 0x20) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a car model to a manufacturer on its shard, creating the manufacturer if it does not exist yet.
+     *
+     * @param manufacturer the manufacturer name
+     * @param model        the car model
+     * @throws IOException if the worker fails or rejects the car model
+     */
+    // Method to add one car model to the shard of its manufacturer
+    public void addCarModel(String manufacturer, CarModel model) throws IOException {
+        call(shardOf(manufacturer), new Exchange<Void>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.ADD);
+                out.writeUTF(manufacturer);
+                ShardProtocol.writeCarModel(out, model);
+            }
+
+            @Override
+            public Void reply(DataInputStream in) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns the number of manufacturers held by every shard.
+     *
+     * @return the number of manufacturers
+     * @throws IOException if a worker fails
+     */
+    // Getter method for the number of manufacturers across the shards
+    public int getManufacturerCount() throws IOException {
+        int total = 0;
+        for (long[] counts : count()) {
+            total += (int) counts[0];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of car models held by every shard.
+     *
+     * @return the number of car models
+     * @throws IOException if a worker fails
+     */
+    // Getter method for the number of car models across the shards
+    public long getCarModelCount() throws IOException {
+        long total = 0;
+        for (long[] counts : count()) {
+            total += counts[1];
+        }
+        return total;
+    }
+
+    // Method to ask every shard for its number of manufacturers and car models
+    private List<long[]> count() throws IOException {
+        return callAll(shard -> new Exchange<>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.COUNT);
+            }
+
+            @Override
+            public long[] reply(DataInputStream in) throws IOException {
+                return new long[]{in.readInt(), in.readLong()};
+            }
+        });
+    }
+
+    /**
+     * Returns the cheapest car models priced above an amount across every shard, cheapest first.
+     *
+     * @param price the minimum price threshold
+     * @param limit the most car models to return
+     * @return at most {@code limit} car models priced above the amount
+     * @throws IOException if a worker fails
+     */
+    // Method to merge the cheapest car models above a price from every shard
+    public List<CarModel> getCarModelsAbovePrice(double price, int limit) throws IOException {
+        List<List<CarModel>> partials = abovePrice(price, limit).stream().map(partial -> partial.models).toList();
+        List<CarModel> merged = new ArrayList<>(Math.min(limit, partials.stream().mapToInt(List::size).sum()));
+        // a k-way merge of the shards' lists, each already cheapest first; ties go to the lower shard
+        int[] next = new int[partials.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>((a, b) -> {
+            int byPrice = Double.compare(partials.get(a).get(next[a]).getSales_price(), partials.get(b).get(next[b]).getSales_price());
+            return byPrice != 0 ? byPrice : Integer.compare(a, b);
+        });
+        for (int shard = 0; shard < partials.size(); shard++) {
+            if (!partials.get(shard).isEmpty()) {
+                heads.add(shard);
+            }
+        }
+        while (merged.size() < limit && !heads.isEmpty()) {
+            int shard = heads.poll();
+            merged.add(partials.get(shard).get(next[shard]++));
+            if (next[shard] < partials.get(shard).size()) {
+                heads.add(shard);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Counts the car models priced above an amount across every shard.
+     *
+     * @param price the minimum price threshold
+     * @return the number of car models priced above the amount
+     * @throws IOException if a worker fails
+     */
+    // Method to add up the number of car models above a price on every shard
+    public long countCarModelsAbovePrice(double price) throws IOException {
+        long total = 0;
+        for (AbovePrice partial : abovePrice(price, 0)) {
+            total += partial.count;
+        }
+        return total;
+    }
+
+    // AbovePrice class is one shard's count of car models above a price and the cheapest of them
+    private static final class AbovePrice {
+        private final int count;
+        private final List<CarModel> models;
+
+        AbovePrice(int count, List<CarModel> models) {
+            this.count = count;
+            this.models = models;
+        }
+    }
+
+    // Method to ask every shard for the car models above a price
+    private List<AbovePrice> abovePrice(double price, int limit) throws IOException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+        }
+        return callAll(shard -> new Exchange<>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.ABOVE_PRICE);
+                out.writeDouble(price);
+                out.writeInt(limit);
+            }
+
+            @Override
+            public AbovePrice reply(DataInputStream in) throws IOException {
+                int count = in.readInt();
+                List<CarModel> models = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    models.add(ShardProtocol.readCarModel(in));
+                }
+                return new AbovePrice(count, models);
+            }
+        });
+    }
+
+    /**
+     * Finds the most expensive car model sold across every shard.
+     *
+     * @return the most expensive car model, or {@code null} if there are no car models
+     * @throws IOException if a worker fails
+     */
+    // Method to find the most expensive car model of every shard and keep the highest
+    public MostExpensiveResult getMostExpensiveCarModelSold() throws IOException {
+        MostExpensiveResult highest = null;
+        for (MostExpensiveResult result : callAll(shard -> new Exchange<MostExpensiveResult>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.MOST_EXPENSIVE);
+            }
+
+            @Override
+            public MostExpensiveResult reply(DataInputStream in) throws IOException {
+                return in.readBoolean() ? new MostExpensiveResult(in.readUTF(), ShardProtocol.readCarModel(in)) : null;
+            }
+        })) {
+            if (result != null && (highest == null || result.carModel().getSales_price() > highest.carModel().getSales_price())) {
+                highest = result;
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * Returns every manufacturer's sales figures for a car type, shard by shard.
+     *
+     * @param carType the type of car
+     * @return the revenue figures of each manufacturer
+     * @throws IOException if a worker fails
+     */
+    // Method to collect the running totals of every manufacturer on every shard for a car type
+    public List<RevenueByType> getRevenueByType(CarType carType) throws IOException {
+        List<RevenueByType> results = new ArrayList<>();
+        for (List<RevenueByType> partial : callAll(shard -> new Exchange<List<RevenueByType>>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.REVENUE_BY_TYPE);
+                ShardProtocol.writeCarType(out, carType);
+            }
+
+            @Override
+            public List<RevenueByType> reply(DataInputStream in) throws IOException {
+                List<RevenueByType> revenues = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    revenues.add(ShardProtocol.readRevenue(in));
+                }
+                return revenues;
+            }
+        })) {
+            results.addAll(partial);
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Returns the total revenue for a car type across every shard.
+     *
+     * @param carType the type of car
+     * @return the total revenue for the car type
+     * @throws IOException if a worker fails
+     */
+    // Method to add up the revenue totals of every shard for a car type
+    public double getTotalRevenueByType(CarType carType) throws IOException {
+        CompensatedSum total = new CompensatedSum();
+        for (TotalRevenue partial : totalRevenue(carType)) {
+            total.add(partial.total);
+        }
+        return total.get();
+    }
+
+    /**
+     * Returns the sales figures of the manufacturer with the highest revenue for a car type across every shard.
+     *
+     * @param carType the type of car
+     * @return the figures of the manufacturer with the highest revenue, or {@code null} if no manufacturer has revenue
+     * @throws IOException if a worker fails
+     */
+    // Method to find the manufacturer with the highest revenue of every shard and keep the highest
+    public RevenueByType getManufacturerWithHighestRevenueByType(CarType carType) throws IOException {
+        RevenueByType highest = null;
+        for (TotalRevenue partial : totalRevenue(carType)) {
+            if (partial.highest != null && (highest == null || partial.highest.revenue() > highest.revenue())) {
+                highest = partial.highest;
+            }
+        }
+        return highest;
+    }
+
+    // TotalRevenue class is one shard's revenue total for a car type and its manufacturer with the highest
+    private static final class TotalRevenue {
+        private final double total;
+        private final RevenueByType highest;
+
+        TotalRevenue(double total, RevenueByType highest) {
+            this.total = total;
+            this.highest = highest;
+        }
+    }
+
+    // Method to ask every shard for its revenue total and highest manufacturer for a car type
+    private List<TotalRevenue> totalRevenue(CarType carType) throws IOException {
+        if (carType == null) {
+            throw new IllegalArgumentException("Car type cannot be null.");
+        }
+        return callAll(shard -> new Exchange<>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.TOTAL_REVENUE);
+                ShardProtocol.writeCarType(out, carType);
+            }
+
+            @Override
+            public TotalRevenue reply(DataInputStream in) throws IOException {
+                double total = in.readDouble();
+                return new TotalRevenue(total, in.readBoolean() ? ShardProtocol.readRevenue(in) : null);
+            }
+        });
+    }
+
+    /**
+     * Returns the {@code k} best car models across every shard by a measure, best first.
+     *
+     * @param k       the number of car models to return
+     * @param rankBy  the measure to rank by
+     * @param carType the car type to include, or {@code null} for every type
+     * @return a list of at most {@code k} car models, ranked from 1 across every shard
+     * @throws IOException if a worker fails
+     */
+    // Method to merge the top car models of every shard
+    public List<RankedCarModel> getTopCarModels(int k, RankBy rankBy, CarType carType) throws IOException {
+        List<RankedCarModel> all = new ArrayList<>();
+        for (List<RankedCarModel> partial : callAll(shard -> new Exchange<List<RankedCarModel>>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.TOP);
+                out.writeInt(k);
+                out.writeByte(rankBy.ordinal());
+                ShardProtocol.writeCarType(out, carType);
+            }
+
+            @Override
+            public List<RankedCarModel> reply(DataInputStream in) throws IOException {
+                List<RankedCarModel> top = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    String manufacturer = in.readUTF();
+                    CarModel model = ShardProtocol.readCarModel(in);
+                    top.add(new RankedCarModel(0, manufacturer, model, in.readDouble()));
+                }
+                return top;
+            }
+        })) {
+            all.addAll(partial);
+        }
+        // a stable sort, so equal scores keep the order of their shards and their ranks within them
+        all.sort((a, b) -> Double.compare(b.score(), a.score()));
+        List<RankedCarModel> results = new ArrayList<>(Math.min(k, all.size()));
+        for (int i = 0; i < Math.min(k, all.size()); i++) {
+            RankedCarModel ranked = all.get(i);
+            results.add(new RankedCarModel(i + 1, ranked.manufacturer(), ranked.carModel(), ranked.score()));
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Stops every worker. The coordinator cannot be used afterwards.
+     *
+     * @throws IOException if a worker cannot be reached
+     */
+    // Method to shut down every worker
+    public void shutdown() throws IOException {
+        callAll(shard -> new Exchange<Void>() {
+            @Override
+            public void request(DataOutputStream out) throws IOException {
+                out.writeByte(ShardProtocol.SHUTDOWN);
+            }
+
+            @Override
+            public Void reply(DataInputStream in) {
+                return null;
+            }
+        });
+        close();
+    }
+
+    // Method to send a request to every shard at once and wait for all the replies, in shard order
+    private <T> List<T> callAll(IntFunction<Exchange<T>> exchanges) throws IOException {
+        int n = shards.size();
+        List<Future<T>> futures = new ArrayList<>(n);
+        for (int shard = 1; shard < n; shard++) {
+            int target = shard;
+            futures.add(fanOut.submit(() -> call(target, exchanges.apply(target))));
+        }
+        // the calling thread asks the first shard itself rather than waiting idle
+        List<T> results = new ArrayList<>(n);
+        results.add(call(0, exchanges.apply(0)));
+        for (Future<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    // Method to wait for a request on another thread, rethrowing its failure
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a shard.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Method to send one request to a shard over an idle connection, opening one if every connection is busy
+    private <T> T call(int shard, Exchange<T> exchange) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The coordinator is closed.");
+        }
+        ConcurrentLinkedDeque<Connection> pool = idle.get(shard);
+        Connection connection = pool.poll();
+        if (connection == null) {
+            connection = new Connection(shards.get(shard));
+        }
+        String error;
+        T reply;
+        try {
+            exchange.request(connection.out);
+            connection.out.flush();
+            error = ShardProtocol.readError(connection.in);
+            reply = error == null ? exchange.reply(connection.in) : null;
+        } catch (IOException | RuntimeException e) {
+            // part of a reply may be left unread, so the connection cannot be used again
+            connection.close();
+            throw e;
+        }
+        pool.push(connection);
+        if (error != null) {
+            throw new IllegalArgumentException("Shard " + shard + " rejected the request: " + error);
+        }
+        return reply;
+    }
+
+    /**
+     * Closes every connection to the workers, leaving the workers running.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        fanOut.shutdown();
+        for (ConcurrentLinkedDeque<Connection> pool : idle) {
+            for (Connection connection = pool.poll(); connection != null; connection = pool.poll()) {
+                connection.close();
+            }
+        }
+    }
+}
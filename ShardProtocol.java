@@ -0,0 +1,111 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The {@code ShardProtocol} class defines the messages a {@code ShardCoordinator} and its {@code ShardWorker}s exchange.
+ * <p>
+ * Each request is an opcode byte followed by its arguments, and each reply starts with {@link #OK} followed by
+ * the result, or with {@link #ERROR} followed by the message of the exception the request was rejected with.
+ * Numbers are written with {@code DataOutput} and names as modified UTF-8, so a connection is a plain
+ * {@code DataInputStream} and {@code DataOutputStream} pair over a socket. A connection carries one request
+ * at a time: the caller sends a request, flushes it and reads the whole reply.
+ * </p>
+ * <ul>
+ *   <li>{@link #LOAD} - a chunk of CSV lines, replied to with the rows loaded and rejected and the first errors</li>
+ *   <li>{@link #ADD} - one car model of a manufacturer, created if it does not exist</li>
+ *   <li>{@link #ABOVE_PRICE} - how many car models are priced above an amount and the cheapest of them</li>
+ *   <li>{@link #MOST_EXPENSIVE} - the most expensive car model and its manufacturer, if there is one</li>
+ *   <li>{@link #REVENUE_BY_TYPE} - every manufacturer's sales figures for a car type</li>
+ *   <li>{@link #TOTAL_REVENUE} - the total revenue for a car type and the manufacturer with the highest</li>
+ *   <li>{@link #TOP} - the top car models by a measure, with their scores</li>
+ *   <li>{@link #COUNT} - the number of manufacturers and car models</li>
+ *   <li>{@link #SHUTDOWN} - stops the worker once it has replied</li>
+ * </ul>
+ */
+// ShardProtocol class holds the opcodes and encodings of the shard wire protocol
+final class ShardProtocol {
+    static final byte LOAD = 1;
+    static final byte ADD = 2;
+    static final byte ABOVE_PRICE = 3;
+    static final byte MOST_EXPENSIVE = 4;
+    static final byte REVENUE_BY_TYPE = 5;
+    static final byte TOTAL_REVENUE = 6;
+    static final byte TOP = 7;
+    static final byte COUNT = 8;
+    static final byte SHUTDOWN = 9;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    // no null car type on the wire, every type is sent as its code
+    static final byte ANY_TYPE = -1;
+
+    // Constructor, no instances
+    private ShardProtocol() {
+    }
+
+    // Method to write the fields of a car model
+    static void writeCarModel(DataOutput out, CarModel model) throws IOException {
+        out.writeUTF(model.getName());
+        out.writeDouble(model.getWeight());
+        out.writeDouble(model.getSales_price());
+        out.writeInt(model.getNSold());
+        out.writeByte(model.getCarType().code());
+    }
+
+    // Method to read a car model written by writeCarModel, as a new standalone CarModel
+    static CarModel readCarModel(DataInput in) throws IOException {
+        String name = in.readUTF();
+        double weight = in.readDouble();
+        double price = in.readDouble();
+        int nSold = in.readInt();
+        return new CarModel(name, weight, price, nSold, CarType.fromCode(in.readByte()));
+    }
+
+    // Method to write a manufacturer's sales figures for a car type
+    static void writeRevenue(DataOutput out, RevenueByType revenue) throws IOException {
+        out.writeUTF(revenue.manufacturer());
+        out.writeByte(revenue.carType().code());
+        out.writeDouble(revenue.revenue());
+        out.writeLong(revenue.unitsSold());
+        out.writeInt(revenue.carModelCount());
+    }
+
+    // Method to read sales figures written by writeRevenue
+    static RevenueByType readRevenue(DataInput in) throws IOException {
+        String manufacturer = in.readUTF();
+        CarType carType = CarType.fromCode(in.readByte());
+        return new RevenueByType(manufacturer, carType, in.readDouble(), in.readLong(), in.readInt());
+    }
+
+    // Method to write a car type that may be null
+    static void writeCarType(DataOutput out, CarType carType) throws IOException {
+        out.writeByte(carType == null ? ANY_TYPE : carType.code());
+    }
+
+    // Method to read a car type that may be null
+    static CarType readCarType(DataInput in) throws IOException {
+        byte code = in.readByte();
+        return code == ANY_TYPE ? null : CarType.fromCode(code);
+    }
+
+    /**
+     * Reads the status byte that starts a reply, and the worker's message if it is an error.
+     *
+     * @param in the connection to read from
+     * @return {@code null} if the reply is {@link #OK}, otherwise the message of the request the worker rejected
+     * @throws IOException if the reply cannot be read
+     */
+    // Method to read the status of a reply
+    static String readError(DataInput in) throws IOException {
+        byte status = in.readByte();
+        if (status == ERROR) {
+            return in.readUTF();
+        }
+        if (status != OK) {
+            throw new IOException("Unexpected reply status " + status);
+        }
+        return null;
+    }
+}
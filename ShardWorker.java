@@ -0,0 +1,229 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The {@code ShardWorker} class holds one shard of a sharded catalogue and answers a {@code ShardCoordinator}'s
+ * requests over a socket.
+ * <p>
+ * A worker is a {@code Reporting} system of its own, holding the manufacturers whose names hash to its shard.
+ * It answers the requests in {@link ShardProtocol} from its own reports, so each reply is a partial result the
+ * coordinator merges with the other shards'. Every connection is served on its own virtual thread, and the
+ * coordinator keeps several connections open, so one worker answers queries from many clients at once.
+ * </p>
+ * <p>
+ * Usage: {@code java ShardWorker [--port 0] [--bind 127.0.0.1] [--storage heap]}. Port 0 picks a free port,
+ * and the worker prints the port it listens on as its first line of output, so a process that starts it knows
+ * where to connect. The worker runs until a coordinator sends {@link ShardProtocol#SHUTDOWN}.
+ * </p>
+ */
+// ShardWorker class serves one shard of the catalogue to a coordinator
+public class ShardWorker {
+    // the first errors of a load sent back to the coordinator
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private final Reporting reporting;
+    private final ServerSocket server;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Constructs a worker over an empty reporting system, listening on an address.
+     *
+     * @param reporting the reporting system holding this shard
+     * @param address   the address to listen on, with port 0 for any free port
+     * @throws IOException if the address cannot be bound
+     */
+    // Constructor
+    public ShardWorker(Reporting reporting, InetSocketAddress address) throws IOException {
+        this.reporting = reporting;
+        this.server = new ServerSocket();
+        server.bind(address, 1024);
+    }
+
+    // Getter method for the port the worker listens on
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the worker is shut down, serving each on its own virtual thread.
+     *
+     * @throws IOException if accepting a connection fails for any reason but a shutdown
+     */
+    // Method to accept and serve connections until shut down
+    public void serve() throws IOException {
+        try (connections) {
+            while (!server.isClosed()) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (IOException e) {
+                    if (server.isClosed()) {
+                        break;
+                    }
+                    throw e;
+                }
+                connections.execute(() -> handle(socket));
+            }
+        }
+    }
+
+    // Method to answer the requests of one connection until it is closed
+    private void handle(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            while (true) {
+                int opcode = in.read();
+                if (opcode < 0) {
+                    return;
+                }
+                try {
+                    answer((byte) opcode, in, out);
+                } catch (RuntimeException e) {
+                    // the arguments have been read, so the connection can carry on with the next request
+                    out.writeByte(ShardProtocol.ERROR);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                }
+                out.flush();
+                if (opcode == ShardProtocol.SHUTDOWN) {
+                    server.close();
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // the coordinator closed the connection in the middle of a request
+        } catch (IOException e) {
+            System.out.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    // Method to read the arguments of one request and write its reply
+    private void answer(byte opcode, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (opcode) {
+            case ShardProtocol.LOAD -> {
+                byte[] chunk = new byte[in.readInt()];
+                in.readFully(chunk);
+                CatalogueLoader.LoadResult result = CatalogueLoader.load(Channels.newChannel(new ByteArrayInputStream(chunk)), reporting);
+                out.writeByte(ShardProtocol.OK);
+                out.writeLong(result.getRowsLoaded());
+                out.writeLong(result.getRowsRejected());
+                List<String> errors = result.getErrors();
+                int reported = Math.min(errors.size(), MAX_REPORTED_ERRORS);
+                out.writeInt(reported);
+                for (int i = 0; i < reported; i++) {
+                    out.writeUTF(errors.get(i));
+                }
+            }
+            case ShardProtocol.ADD -> {
+                String name = in.readUTF();
+                CarModel model = ShardProtocol.readCarModel(in);
+                reporting.getOrAddManufacturer(name).addCarModel(model);
+                out.writeByte(ShardProtocol.OK);
+            }
+            case ShardProtocol.ABOVE_PRICE -> {
+                double price = in.readDouble();
+                int limit = in.readInt();
+                // only the car models sent are read from the price index
+                CarModelPage page = reporting.getCarModelsAbovePrice(price, 0, limit);
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(page.total());
+                out.writeInt(page.carModels().size());
+                for (CarModel model : page.carModels()) {
+                    ShardProtocol.writeCarModel(out, model);
+                }
+            }
+            case ShardProtocol.MOST_EXPENSIVE -> {
+                MostExpensiveResult result = reporting.getMostExpensiveCarModelSold();
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(result != null);
+                if (result != null) {
+                    out.writeUTF(result.manufacturer());
+                    ShardProtocol.writeCarModel(out, result.carModel());
+                }
+            }
+            case ShardProtocol.REVENUE_BY_TYPE -> {
+                List<RevenueByType> revenues = reporting.getRevenueByType(ShardProtocol.readCarType(in));
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(revenues.size());
+                for (RevenueByType revenue : revenues) {
+                    ShardProtocol.writeRevenue(out, revenue);
+                }
+            }
+            case ShardProtocol.TOTAL_REVENUE -> {
+                CarType carType = ShardProtocol.readCarType(in);
+                double total = reporting.getTotalRevenueByType(carType);
+                Manufacturer highest = reporting.getManufacturerWithHighestRevenueByType(carType);
+                out.writeByte(ShardProtocol.OK);
+                out.writeDouble(total);
+                out.writeBoolean(highest != null);
+                if (highest != null) {
+                    ShardProtocol.writeRevenue(out, highest.getSalesByType(carType));
+                }
+            }
+            case ShardProtocol.TOP -> {
+                int k = in.readInt();
+                RankBy rankBy = RankBy.values()[in.readByte()];
+                List<RankedCarModel> top = reporting.getTopCarModels(k, rankBy, ShardProtocol.readCarType(in));
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(top.size());
+                for (RankedCarModel ranked : top) {
+                    out.writeUTF(ranked.manufacturer());
+                    ShardProtocol.writeCarModel(out, ranked.carModel());
+                    out.writeDouble(ranked.score());
+                }
+            }
+            case ShardProtocol.COUNT -> {
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(reporting.getManufacturers().size());
+                out.writeLong(reporting.getCarModelCount());
+            }
+            case ShardProtocol.SHUTDOWN -> out.writeByte(ShardProtocol.OK);
+            default -> throw new IOException("Unknown opcode " + opcode);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 0;
+        String bind = "127.0.0.1";
+        Reporting reporting = new Reporting();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                switch (args[i]) {
+                    case "--port" -> port = Integer.parseInt(args[i + 1]);
+                    case "--bind" -> bind = args[i + 1];
+                    case "--storage" -> {
+                        CarModelStorage storage = CarModelStorage.parse(args[i + 1]);
+                        if (storage == null) {
+                            throw new IllegalArgumentException("Unknown storage " + args[i + 1] + ", expected heap or off-heap");
+                        }
+                        reporting.setCarModelStorage(storage);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+        ShardWorker worker = new ShardWorker(reporting, new InetSocketAddress(InetAddress.getByName(bind), port));
+        System.out.println("Shard worker listening on port " + worker.getPort());
+        worker.serve();
+    }
+}
@@ -0,0 +1,252 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The {@code StringDictionary} class stores each distinct string once, as UTF-8 bytes in a shared arena,
+ * and identifies it by an {@code int} id.
+ * <p>
+ * Catalogues repeat the same car model names many times, for trim variants and re-imports. Storing an id
+ * per car model instead of a {@code String} costs 4 bytes a row, and each distinct name costs its UTF-8
+ * bytes plus an offset, its hash and a hash table slot, instead of a {@code String} object and its own byte array
+ * for every row. Strings are decoded from the arena when asked for, so they are not kept on the heap.
+ * </p>
+ * <p>
+ * An open-addressing hash table of ids with linear probing finds a string's id, comparing the bytes in
+ * the arena, so names read from a file buffer can be looked up without creating a {@code String} first.
+ * </p>
+ * <p>
+ * One thread at a time may add strings, the same thread that adds rows to the owning {@code CarModelColumns}.
+ * Any number of threads may read. The arena and offsets are published through a volatile reference and
+ * copied when they grow, so an id read from a published row always finds its bytes in whichever
+ * generation of the arena the reader sees.
+ * </p>
+ */
+// StringDictionary class maps strings to int ids backed by a compact UTF-8 arena
+final class StringDictionary {
+    // id stored for a null string, which is not kept in the arena
+    static final int NULL_ID = -1;
+
+    // room made for each string when a dictionary is created, names are rarely longer
+    private static final int BYTES_PER_STRING = 16;
+    private static final int DEFAULT_STRINGS = 4;
+
+    // Arena class holds one generation of the bytes and offsets, replaced as a whole when either grows
+    private static final class Arena {
+        private final byte[] bytes;
+        // string i is bytes[offsets[i]] up to bytes[offsets[i + 1]]
+        private final int[] offsets;
+
+        Arena(byte[] bytes, int[] offsets) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+        }
+    }
+
+    private volatile Arena arena;
+    private int size;
+    private int used;
+
+    // slots hold an id plus one, 0 marks an empty slot; kept at most half full, only read by the writer
+    private int[] slots;
+    private int mask;
+    // hash of each string by id, so rehashing and copying between dictionaries do not hash the bytes again
+    private int[] hashes;
+
+    /**
+     * Constructs an empty dictionary with room for a few strings.
+     */
+    // Constructor
+    StringDictionary() {
+        this(DEFAULT_STRINGS);
+    }
+
+    /**
+     * Constructs an empty dictionary with room for {@code capacity} strings before growing, so the
+     * single row of a standalone car model does not pay for a full size dictionary.
+     *
+     * @param capacity the number of strings expected, at most a few are allocated up front
+     */
+    StringDictionary(int capacity) {
+        int strings = Math.max(1, Math.min(capacity, DEFAULT_STRINGS));
+        this.arena = new Arena(new byte[strings * BYTES_PER_STRING], new int[strings + 1]);
+        // a power of two of at least twice the strings, so the table starts at most half full
+        this.slots = new int[Integer.highestOneBit(strings) * 4];
+        this.mask = slots.length - 1;
+        this.hashes = new int[strings];
+    }
+
+    // Getter methods for the number of distinct strings and the bytes they take in the arena
+    int size() {
+        return size;
+    }
+
+    int bytesUsed() {
+        return used;
+    }
+
+    // Method to add up the arrays held by the dictionary, leaving out object headers
+    long heapBytes() {
+        Arena current = arena;
+        return current.bytes.length + (long) Integer.BYTES * (current.offsets.length + slots.length + hashes.length);
+    }
+
+    /**
+     * Returns the id of a string, adding it if it is new.
+     *
+     * @param string the string, may be {@code null}
+     * @return the id of the string, or {@link #NULL_ID} for {@code null}
+     */
+    // Method to intern a string
+    int intern(String string) {
+        if (string == null) {
+            return NULL_ID;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        return intern(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the id of the string held as UTF-8 in part of a buffer, adding it if it is new.
+     *
+     * @param buffer the bytes holding the string
+     * @param from   the index of the first byte
+     * @param to     the index after the last byte
+     * @return the id of the string
+     */
+    // Method to intern a string straight from a byte buffer, without decoding it
+    int intern(byte[] buffer, int from, int to) {
+        return intern(buffer, from, to, hash(buffer, from, to));
+    }
+
+    // Method to intern a run of bytes whose hash is already known
+    private int intern(byte[] buffer, int from, int to, int hash) {
+        Arena current = arena;
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return add(buffer, from, to, slot, hash);
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && Arrays.equals(current.bytes, current.offsets[id], current.offsets[id + 1], buffer, from, to)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the id in this dictionary of a string held by another dictionary, adding it if it is new.
+     *
+     * @param other the dictionary holding the string
+     * @param id    the id of the string in {@code other}
+     * @return the id of the string in this dictionary
+     */
+    // Method to copy a string between dictionaries byte for byte
+    int intern(StringDictionary other, int id) {
+        if (id == NULL_ID) {
+            return NULL_ID;
+        }
+        Arena from = other.arena;
+        return intern(from.bytes, from.offsets[id], from.offsets[id + 1], other.hashes[id]);
+    }
+
+    /**
+     * Returns the id in off-heap records of a string held by this dictionary, adding it if it is new.
+     *
+     * @param id      the id of the string in this dictionary
+     * @param records the records whose string area receives the string
+     * @return the id of the string in the records
+     */
+    // Method to copy a string into an off-heap string area byte for byte
+    int copyTo(int id, OffHeapRecords records) {
+        Arena current = arena;
+        return records.intern(current.bytes, current.offsets[id], current.offsets[id + 1]);
+    }
+
+    /**
+     * Returns the string with the given id, decoded from the arena.
+     *
+     * @param id the id returned when the string was interned
+     * @return a new {@code String} equal to the one interned, or {@code null} for {@link #NULL_ID}
+     */
+    // Method to look up a string by id
+    String get(int id) {
+        if (id == NULL_ID) {
+            return null;
+        }
+        Arena current = arena;
+        int from = current.offsets[id];
+        return new String(current.bytes, from, current.offsets[id + 1] - from, StandardCharsets.UTF_8);
+    }
+
+    // Method to empty the dictionary so it can be reused, the arrays are kept
+    void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+        used = 0;
+    }
+
+    // Method to append a new string to the arena and the hash table
+    private int add(byte[] buffer, int from, int to, int slot, int hash) {
+        int length = to - from;
+        Arena current = arena;
+        if (used + length > current.bytes.length || size + 1 == current.offsets.length) {
+            current = grow(length);
+        }
+        int id = size;
+        if (id == hashes.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        hashes[id] = hash;
+        System.arraycopy(buffer, from, current.bytes, used, length);
+        used += length;
+        current.offsets[id + 1] = used;
+        size = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        } else {
+            slots[slot] = id + 1;
+        }
+        return id;
+    }
+
+    // Method to enlarge whichever part of the arena is full, at least doubling it so adds stay cheap on average
+    private Arena grow(int length) {
+        Arena old = arena;
+        byte[] bytes = old.bytes;
+        if (used + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(used + length, bytes.length * 2));
+        }
+        int[] offsets = old.offsets;
+        if (size + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        // the part that is not full is shared: readers of the old arena only look below what they were published
+        Arena grown = new Arena(bytes, offsets);
+        arena = grown;
+        return grown;
+    }
+
+    // Method to double the hash table and place every string again
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    // Method to hash a run of bytes, mixing the result so similar names spread over the slots
+    private static int hash(byte[] buffer, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + buffer[i];
+        }
+        return h ^ (h >>> 16) ^ (h >>> 7);
+    }
+}
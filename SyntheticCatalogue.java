@@ -0,0 +1,204 @@
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * The {@code SyntheticCatalogue} class generates reproducible catalogues of car models for benchmarks and stress runs.
+ * <p>
+ * The car models are generated once into plain arrays, so building a {@code Reporting} system from them
+ * measures only the reporting code. Car types are drawn with configurable relative weights and prices
+ * from one of the {@link PriceDistribution}s. The same seed always gives the same catalogue.
+ * </p>
+ */
+// SyntheticCatalogue class generates car models with configurable type and price distributions
+final class SyntheticCatalogue {
+
+    /**
+     * The shapes of price distribution a catalogue can be generated with.
+     */
+    enum PriceDistribution {
+        // every price between the minimum and maximum is equally likely
+        UNIFORM,
+        // prices cluster around the middle of the range
+        NORMAL,
+        // most prices are near the minimum with a long tail of expensive models
+        SKEWED;
+
+        // Method to parse a distribution name, ignoring case
+        static PriceDistribution parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final int MODEL_NAMES = 1 << 16; // must be a power of two
+
+    private final int size;
+    private final int manufacturerCount;
+    private final String[] manufacturerNames;
+    private final int[] manufacturers; // manufacturer of each car model, as an index into manufacturerNames
+    private final String[] names;
+    private final double[] weights;
+    private final double[] prices;
+    private final int[] nSold;
+    private final byte[] types;
+
+    /**
+     * Generates a catalogue.
+     *
+     * @param size              the number of car models
+     * @param manufacturerCount the number of manufacturers the car models are spread over
+     * @param typeWeights       the relative weight of each car type, in {@code CarType} order
+     * @param distribution      the price distribution
+     * @param minPrice          the lowest price
+     * @param maxPrice          the highest price
+     * @param seed              the random seed
+     * @throws IllegalArgumentException if a count is not positive, the type weights do not match the car types,
+     *                                  or the price range is empty
+     */
+    // Constructor generates every column up front
+    SyntheticCatalogue(int size, int manufacturerCount, double[] typeWeights, PriceDistribution distribution,
+                       double minPrice, double maxPrice, long seed) {
+        if (size < 0 || manufacturerCount <= 0) {
+            throw new IllegalArgumentException("The catalogue needs a non-negative size and at least one manufacturer.");
+        }
+        if (typeWeights.length != CarType.values().length) {
+            throw new IllegalArgumentException("Expected " + CarType.values().length + " type weights, got " + typeWeights.length);
+        }
+        if (!(minPrice > 0 && maxPrice > minPrice)) {
+            throw new IllegalArgumentException("Invalid price range " + minPrice + " to " + maxPrice);
+        }
+        this.size = size;
+        this.manufacturerCount = manufacturerCount;
+        this.manufacturerNames = new String[manufacturerCount];
+        for (int m = 0; m < manufacturerCount; m++) {
+            manufacturerNames[m] = "Maker " + m;
+        }
+
+        // cumulative type weights, so a type is drawn with one uniform number
+        double[] cumulative = new double[typeWeights.length];
+        double total = 0;
+        for (int t = 0; t < typeWeights.length; t++) {
+            if (typeWeights[t] < 0) {
+                throw new IllegalArgumentException("Type weights cannot be negative.");
+            }
+            total += typeWeights[t];
+            cumulative[t] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one type weight must be positive.");
+        }
+
+        this.manufacturers = new int[size];
+        this.names = new String[size];
+        this.weights = new double[size];
+        this.prices = new double[size];
+        this.nSold = new int[size];
+        this.types = new byte[size];
+        // car model names repeat across manufacturers, so large catalogues share a pool of names
+        String[] modelNames = new String[MODEL_NAMES];
+        for (int i = 0; i < modelNames.length; i++) {
+            modelNames[i] = "Model " + i;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < size; i++) {
+            manufacturers[i] = random.nextInt(manufacturerCount);
+            names[i] = modelNames[i & (modelNames.length - 1)];
+            weights[i] = 900 + random.nextInt(1600);
+            prices[i] = Math.rint(price(random, distribution, minPrice, maxPrice) * 100) / 100;
+            nSold[i] = random.nextInt(10_000);
+            double draw = random.nextDouble() * total;
+            int type = 0;
+            while (type < cumulative.length - 1 && draw >= cumulative[type]) {
+                type++;
+            }
+            types[i] = (byte) type;
+        }
+    }
+
+    // Method to draw one price from the distribution, always within the range
+    private static double price(SplittableRandom random, PriceDistribution distribution, double min, double max) {
+        double unit;
+        switch (distribution) {
+            case NORMAL:
+                // sum of uniforms approximates a normal curve and never leaves the range
+                unit = (random.nextDouble() + random.nextDouble() + random.nextDouble() + random.nextDouble()) / 4;
+                break;
+            case SKEWED:
+                unit = Math.pow(random.nextDouble(), 4);
+                break;
+            default:
+                unit = random.nextDouble();
+        }
+        return min + unit * (max - min);
+    }
+
+    /**
+     * Parses relative type weights written as a comma separated list, such as {@code "6,3,1"}.
+     *
+     * @param text the weights
+     * @return the weights in {@code CarType} order
+     * @throws NumberFormatException if a weight is not a number
+     */
+    // Method to parse type weights from a command line argument
+    static double[] parseTypeWeights(String text) {
+        String[] parts = text.split(",");
+        double[] typeWeights = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            typeWeights[i] = Double.parseDouble(parts[i].trim());
+        }
+        return typeWeights;
+    }
+
+    // Getter methods for the generated catalogue
+    int size() {
+        return size;
+    }
+
+    int manufacturerCount() {
+        return manufacturerCount;
+    }
+
+    String manufacturerName(int m) {
+        return manufacturerNames[m];
+    }
+
+    int manufacturer(int i) {
+        return manufacturers[i];
+    }
+
+    double price(int i) {
+        return prices[i];
+    }
+
+    /**
+     * Returns car model {@code i} as a new {@code CarModel}, the way a caller of {@code addCarModel} would build it.
+     *
+     * @param i the car model
+     * @return the car model
+     */
+    // Method to build a CarModel object for one generated car model
+    CarModel carModel(int i) {
+        return new CarModel(names[i], weights[i], prices[i], nSold[i], CarType.fromCode(types[i]));
+    }
+
+    /**
+     * Builds a reporting system holding every car model, grouped into manufacturers in bulk.
+     *
+     * @return the reporting system
+     */
+    // Method to build a reporting system from the generated columns
+    Reporting toReporting() {
+        CarModelColumns[] columns = new CarModelColumns[manufacturerCount];
+        int expected = size / manufacturerCount + 1;
+        for (int m = 0; m < manufacturerCount; m++) {
+            columns[m] = new CarModelColumns(expected);
+        }
+        for (int i = 0; i < size; i++) {
+            columns[manufacturers[i]].add(names[i], weights[i], prices[i], nSold[i], types[i]);
+        }
+        Reporting reporting = new Reporting();
+        for (int m = 0; m < manufacturerCount; m++) {
+            reporting.addManufacturer(new Manufacturer(manufacturerNames[m], columns[m]));
+        }
+        return reporting;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * The {@code TimedOperation} enum lists the operations whose latency is recorded by {@code ReportingMetrics},
+ * named after the methods they time.
+ */
+// TimedOperation enum names the instrumented ingest and report methods
+public enum TimedOperation {
+    ADD_CAR_MODEL("addCarModel"),
+    ADD_CAR_MODELS("addCarModels"),
+    ADD_MANUFACTURER("addManufacturer"),
+    RECORD_SALE("recordSale"),
+    REPRICE_MODEL("repriceModel"),
+    GET_MANUFACTURER_BY_NAME("getManufacturerByName"),
+    FIND_MANUFACTURERS_BY_PREFIX("findManufacturersByPrefix"),
+    MOST_EXPENSIVE_CAR_MODEL_SOLD("getMostExpensiveCarModelSold"),
+    CAR_MODELS_ABOVE_PRICE("getCarModelsAbovePrice"),
+    CAR_MODELS_BELOW_PRICE("getCarModelsBelowPrice"),
+    CAR_MODELS_BETWEEN_PRICES("getCarModelsBetweenPrices"),
+    MOST_EXPENSIVE_CAR_MODELS("getMostExpensiveCarModels"),
+    TOP_CAR_MODELS("getTopCarModels"),
+    REVENUE_BY_TYPE("getRevenueByType"),
+    HIGHEST_REVENUE_BY_TYPE("getManufacturerWithHighestRevenueByType"),
+    RECALCULATE_REVENUE_BY_TYPE("recalculateRevenueByType"),
+    TOTAL_REVENUE_BY_TYPE("getTotalRevenueByType"),
+    PIVOT_TABLE("getPivotTable"),
+    GENERATE_REPORTS("generateReports");
+
+    private final String methodName;
+
+    TimedOperation(String methodName) {
+        this.methodName = methodName;
+    }
+
+    // Getter method for the name the operation is reported under
+    public String getMethodName() {
+        return methodName;
+    }
+}
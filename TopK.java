@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/**
+ * The {@code TopK} class keeps the {@code k} best entries seen so far in a bounded min-heap.
+ * <p>
+ * Each entry is a score and a {@code long} key that identifies the car model to the caller. The heap is
+ * stored in two primitive arrays with the worst kept entry at the root, so each offered entry costs one
+ * comparison when it does not make the cut and O(log k) when it does. A full pass over n car models
+ * is O(n log k) and never copies or sorts the catalogue.
+ * </p>
+ * <p>
+ * Higher scores are better. On equal scores the entry with the smaller key is better, so the car model
+ * added first wins a tie, as it does in the other reports.
+ * </p>
+ */
+// TopK class is a bounded min-heap of (score, key) pairs
+final class TopK {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int k;
+    private double[] scores;
+    private long[] keys;
+    private int size;
+
+    /**
+     * Constructs an empty {@code TopK} that keeps at most {@code k} entries.
+     *
+     * @param k the number of entries to keep, a value below 1 keeps none
+     */
+    TopK(int k) {
+        this.k = Math.max(k, 0);
+        // grow as entries arrive, so a large k does not allocate more than the catalogue holds
+        int capacity = Math.min(this.k, INITIAL_CAPACITY);
+        this.scores = new double[capacity];
+        this.keys = new long[capacity];
+    }
+
+    // Getter method for the number of entries kept
+    int size() {
+        return size;
+    }
+
+    /**
+     * Offers an entry, keeping it only if it is among the {@code k} best seen so far.
+     *
+     * @param score the score of the entry
+     * @param key   the key identifying the entry
+     */
+    // Method to offer an entry to the heap
+    void offer(double score, long key) {
+        if (size == k && (k == 0 || score < scores[0])) {
+            // most entries of a long scan lose to the worst kept entry, so reject them before anything else
+            return;
+        }
+        if (size < k) {
+            if (size == scores.length) {
+                int capacity = (int) Math.min(k, scores.length * 2L);
+                scores = Arrays.copyOf(scores, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+            }
+            scores[size] = score;
+            keys[size] = key;
+            siftUp(size++);
+        } else if (isWorse(scores[0], keys[0], score, key)) {
+            // the new entry beats the worst kept entry, so it takes its place
+            scores[0] = score;
+            keys[0] = key;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Offers every entry kept by another {@code TopK}, used to merge the results of parallel scans.
+     *
+     * @param other the entries to offer
+     */
+    // Method to merge another heap into this one
+    void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.scores[i], other.keys[i]);
+        }
+    }
+
+    /**
+     * Sorts the kept entries best first, in place. The heap cannot be offered more entries afterwards.
+     * After sorting, {@link #score(int)} and {@link #key(int)} return the entries in rank order.
+     */
+    // Method to heap sort the entries, moving the worst remaining entry to the end each time
+    void sort() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    // Getter methods for the entries, in rank order once sort() has been called
+    double score(int i) {
+        return scores[i];
+    }
+
+    long key(int i) {
+        return keys[i];
+    }
+
+    // Method to check whether the first entry ranks below the second
+    private static boolean isWorse(double score1, long key1, double score2, long key2) {
+        int byScore = Double.compare(score1, score2);
+        return byScore < 0 || (byScore == 0 && key1 > key2);
+    }
+
+    // Method to move an entry up until its parent is worse than it
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(scores[i], keys[i], scores[parent], keys[parent])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    // Method to move an entry down until both its children are better than it
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                break;
+            }
+            if (child + 1 < end && isWorse(scores[child + 1], keys[child + 1], scores[child], keys[child])) {
+                child++;
+            }
+            if (!isWorse(scores[child], keys[child], scores[i], keys[i])) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    // Method to swap two entries
+    private void swap(int i, int j) {
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+    }
+}
@@ -0,0 +1,131 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code VectorScanKernels} class runs the column scans with the JDK Vector API, several rows per instruction.
+ * <p>
+ * Revenue by type compares eight type codes at once and, for each group of rows with a match, multiplies
+ * prices by units sold and adds them under the type mask, skipping groups with no car model of the type.
+ * Each lane keeps its own compensated total, using the exact two-sum error term, and the lanes are added
+ * together at the end. The price threshold compares a vector of prices and compresses the row numbers
+ * of the matches into the result. The most expensive car model is a vector max reduction followed by a
+ * search for the first row holding that price.
+ * </p>
+ * <p>
+ * It needs {@code --add-modules jdk.incubator.vector} to compile and run, and is only loaded by name from
+ * {@code ScanKernels}, so the rest of the program runs without it.
+ * </p>
+ */
+// VectorScanKernels class runs the column scans with SIMD vectors
+final class VectorScanKernels extends ScanKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // as many int lanes as double lanes, for row numbers and units sold
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.length() * Integer.SIZE));
+    // type codes are compared eight at a time, the fewest lanes a byte vector has
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_64;
+
+    /**
+     * Constructs the vector kernels.
+     *
+     * @throws UnsupportedOperationException if the vectors hold fewer than two doubles
+     */
+    // Constructor
+    VectorScanKernels() {
+        // a double vector holds at most eight lanes, so the type codes of a group always cover it
+        if (DOUBLES.length() < 2 || BYTES.length() % DOUBLES.length() != 0) {
+            throw new UnsupportedOperationException("No vector registers wider than a double.");
+        }
+    }
+
+    @Override
+    String name() {
+        return "vector " + DOUBLES.vectorBitSize() + "-bit";
+    }
+
+    @Override
+    void addRevenueByType(double[] prices, int[] nSold, byte[] types, int from, int to, byte typeCode, CompensatedSum revenue) {
+        int lanes = DOUBLES.length();
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        DoubleVector compensation = DoubleVector.zero(DOUBLES);
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+        int row = from;
+        for (int bound = to - BYTES.length(); row <= bound; row += BYTES.length()) {
+            long matches = ByteVector.fromArray(BYTES, types, row).eq(typeCode).toLong();
+            for (int part = row; matches != 0; part += lanes, matches >>>= lanes) {
+                VectorMask<Double> ofType = VectorMask.fromLong(DOUBLES, matches);
+                if (!ofType.anyTrue()) {
+                    continue;
+                }
+                DoubleVector units = (DoubleVector) IntVector.fromArray(INTS, nSold, part).convertShape(VectorOperators.I2D, DOUBLES, 0);
+                DoubleVector value = zero.blend(DoubleVector.fromArray(DOUBLES, prices, part).mul(units), ofType);
+                // two-sum: the rounding error of sum + value, exactly
+                DoubleVector total = sum.add(value);
+                DoubleVector added = total.sub(sum);
+                compensation = compensation.add(sum.sub(total.sub(added)).add(value.sub(added)));
+                sum = total;
+            }
+        }
+        for (int lane = 0; lane < lanes; lane++) {
+            revenue.add(sum.lane(lane));
+            revenue.add(compensation.lane(lane));
+        }
+        super.addRevenueByType(prices, nSold, types, row, to, typeCode, revenue);
+    }
+
+    @Override
+    int rowsAbovePrice(double[] prices, int from, int to, double price, int[] rows) {
+        int lanes = DOUBLES.length();
+        IntVector laneIndex = IntVector.zero(INTS).addIndex(1);
+        int count = 0;
+        int row = from;
+        for (int bound = to - lanes; row <= bound; row += lanes) {
+            VectorMask<Double> above = DoubleVector.fromArray(DOUBLES, prices, row).compare(VectorOperators.GT, price);
+            if (above.anyTrue()) {
+                int found = above.trueCount();
+                laneIndex.add(row).compress(above.cast(INTS)).intoArray(rows, count, INTS.indexInRange(0, found));
+                count += found;
+            }
+        }
+        for (; row < to; row++) {
+            if (prices[row] > price) {
+                rows[count++] = row;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    int mostExpensiveRow(double[] prices, int from, int to) {
+        int lanes = DOUBLES.length();
+        int bound = from + (to - from) / lanes * lanes;
+        double highest = prices[from];
+        if (bound > from) {
+            DoubleVector max = DoubleVector.fromArray(DOUBLES, prices, from);
+            for (int row = from + lanes; row < bound; row += lanes) {
+                max = max.max(DoubleVector.fromArray(DOUBLES, prices, row));
+            }
+            highest = max.reduceLanes(VectorOperators.MAX);
+        }
+        for (int row = bound; row < to; row++) {
+            highest = Math.max(highest, prices[row]);
+        }
+        // the first row holding the highest price, as a scan keeping the earliest of equal prices finds
+        for (int row = from; row < bound; row += lanes) {
+            VectorMask<Double> equal = DoubleVector.fromArray(DOUBLES, prices, row).compare(VectorOperators.EQ, highest);
+            if (equal.anyTrue()) {
+                return row + equal.firstTrue();
+            }
+        }
+        for (int row = bound; row < to; row++) {
+            if (prices[row] == highest) {
+                return row;
+            }
+        }
+        return super.mostExpensiveRow(prices, from, to);
+    }
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code ReportingHotPaths} class runs the reporting hot paths under JMH over synthetic catalogues.
+ * <p>
+ * Each benchmark is an operation of {@code ReportingBenchmark}, set up over a catalogue built from the
+ * parameters, so this class and the command line harness measure the same code. The project's classes are
+ * in the default package, which a class in a named package such as this one cannot refer to, so the operation
+ * is found by reflection once per trial and then called through a {@code java.util.function} interface. Every
+ * fork runs a single benchmark, so that call site only ever sees one operation and is inlined.
+ * </p>
+ * <p>
+ * Usage: {@code java --add-modules jdk.incubator.vector -jar benchmarks/target/benchmarks.jar -prof gc
+ * -p size=1000,1000000,10000000 -p types=6,3,1 -p prices=skewed}, adding {@code --enable-preview} on JDK 21.
+ * The forks are started with the same JVM options, and {@code -prof gc} adds the allocation rate and bytes
+ * allocated per operation.
+ * The {@code addCarModel} benchmark ingests the whole catalogue in every operation. The sizes run from 1 thousand to
+ * 10 million car models; the largest needs a fixed heap, for example {@code java -Xms4g -Xmx4g ...}, which the
+ * forks inherit, and {@code -p size=1000,1000000} leaves it out.
+ * </p>
+ */
+// ReportingHotPaths class is the JMH benchmark of the reporting hot paths
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ReportingHotPaths {
+    @Param({"addCarModel", "calculateTotalRevenueByType", "getCarModelsAbovePrice",
+            "displayMostExpensiveCarModelSold", "getManufacturerByName"})
+    public String benchmark;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public String size;
+
+    // relative weights of hatchbacks, saloons and estates
+    @Param({"1,1,1"})
+    public String types;
+
+    // uniform, normal or skewed
+    @Param({"uniform"})
+    public String prices;
+
+    @Param({"50"})
+    public String manufacturers;
+
+    private IntToLongFunction operation;
+    private int invocation;
+    private PrintStream console;
+
+    // Method to build the catalogue and the operation before the measured iterations
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        operation = (IntToLongFunction) Class.forName("ReportingBenchmark")
+                .getMethod("operation", String.class, String[].class)
+                .invoke(null, benchmark, new String[]{"--sizes", size, "--types", types, "--prices", prices,
+                        "--manufacturers", manufacturers});
+        // the display reports write to System.out, which is discarded while measuring
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    // Method to put System.out back after the trial
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    // Method to run one operation, JMH consumes the result
+    @Benchmark
+    public long run() {
+        return operation.applyAsLong(invocation++ & Integer.MAX_VALUE);
+    }
+}